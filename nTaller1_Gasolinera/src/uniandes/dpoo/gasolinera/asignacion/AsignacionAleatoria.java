@@ -0,0 +1,42 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+import uniandes.dpoo.gasolinera.utils.Sorteo;
+
+/**
+ * Asigna a cada surtidor un empleado sorteado al azar, sin tener en cuenta cuántos surtidores atiende ya cada empleado.
+ */
+public class AsignacionAleatoria implements EstrategiaAsignacion
+{
+    /**
+     * El sorteo con el que se eligen los empleados
+     */
+    private Sorteo<Empleado> sorteo;
+
+    /**
+     * Construye una asignación aleatoria que usa el generador del thread actual
+     */
+    public AsignacionAleatoria( )
+    {
+        this.sorteo = new Sorteo<Empleado>( );
+    }
+
+    /**
+     * Construye una asignación aleatoria con el sorteo indicado
+     * @param sorteo El sorteo con el que se eligen los empleados. Si es reproducible, la asignación también lo es
+     */
+    public AsignacionAleatoria( Sorteo<Empleado> sorteo )
+    {
+        this.sorteo = sorteo;
+    }
+
+    @Override
+    public void asignar( Empleado[] empleados, int[] carga, int[] destino )
+    {
+        sorteo.llenarPosiciones( destino, empleados.length );
+        for( int posicion : destino )
+        {
+            carga[ posicion ]++;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+import java.util.Arrays;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+
+/**
+ * Asigna cada surtidor al empleado que en ese momento atiende menos surtidores. Si hay empates, se elige el empleado que aparece primero.
+ * 
+ * Es el mismo cálculo de la asignación ponderada (ver MonticuloCargas.asignarPorCargaRelativa) cuando todos los empleados tienen el mismo peso.
+ */
+public class AsignacionMenosCargado implements EstrategiaAsignacion
+{
+    @Override
+    public void asignar( Empleado[] empleados, int[] carga, int[] destino )
+    {
+        double[] pesos = new double[empleados.length];
+        Arrays.fill( pesos, 1 );
+        MonticuloCargas.asignarPorCargaRelativa( pesos, carga, destino );
+    }
+}
@@ -0,0 +1,65 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+import java.util.Map;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+
+/**
+ * Asigna cada surtidor al empleado que quedaría con la menor carga relativa a su peso, de forma que la cantidad de surtidores de cada empleado termina siendo
+ * proporcional a su peso.
+ * 
+ * Los empleados se organizan en un montículo según su carga relativa, así que cada asignación toma tiempo logarítmico en la cantidad de empleados.
+ */
+public class AsignacionPonderada implements EstrategiaAsignacion
+{
+    /**
+     * El peso de cada empleado según su nombre
+     */
+    private Map<String, Double> pesos;
+
+    /**
+     * El peso que se usa para los empleados que no aparecen en el mapa de pesos
+     */
+    private double pesoPorDefecto;
+
+    /**
+     * Construye una asignación ponderada
+     * @param pesos El peso de cada empleado según su nombre. Un empleado con el doble de peso recibe el doble de surtidores y uno con peso 0 no recibe ninguno
+     * @param pesoPorDefecto El peso de los empleados que no están en el mapa. Debe ser positivo
+     * @throws IllegalArgumentException Si el peso por defecto no es positivo o si algún peso del mapa es negativo
+     */
+    public AsignacionPonderada( Map<String, Double> pesos, double pesoPorDefecto )
+    {
+        if( !( pesoPorDefecto > 0 ) )
+            throw new IllegalArgumentException( "El peso por defecto debe ser positivo" );
+        for( Map.Entry<String, Double> peso : pesos.entrySet( ) )
+        {
+            if( peso.getValue( ) == null || !( peso.getValue( ) >= 0 ) )
+                throw new IllegalArgumentException( "El peso del empleado " + peso.getKey( ) + " no puede ser negativo" );
+        }
+        this.pesos = pesos;
+        this.pesoPorDefecto = pesoPorDefecto;
+    }
+
+    /**
+     * Retorna el peso de un empleado
+     * @param empleado El empleado
+     * @return El peso del empleado, o el peso por defecto si no tiene uno
+     */
+    private double getPeso( Empleado empleado )
+    {
+        Double peso = pesos.get( empleado.getNombre( ) );
+        return peso == null ? pesoPorDefecto : peso.doubleValue( );
+    }
+
+    @Override
+    public void asignar( Empleado[] empleados, int[] carga, int[] destino )
+    {
+        double[] pesosEmpleados = new double[empleados.length];
+        for( int i = 0; i < empleados.length; i++ )
+        {
+            pesosEmpleados[ i ] = getPeso( empleados[ i ] );
+        }
+        MonticuloCargas.asignarPorCargaRelativa( pesosEmpleados, carga, destino );
+    }
+}
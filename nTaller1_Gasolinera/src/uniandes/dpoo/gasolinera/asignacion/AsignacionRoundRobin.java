@@ -0,0 +1,34 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+
+/**
+ * Asigna los empleados a los surtidores por turnos: el primer surtidor al primer empleado, el segundo al segundo, y así sucesivamente volviendo a empezar cuando se
+ * acaban los empleados.
+ */
+public class AsignacionRoundRobin implements EstrategiaAsignacion
+{
+    /**
+     * La posición del empleado al que le toca el siguiente surtidor. Se conserva entre asignaciones para que los turnos continúen donde iban.
+     */
+    private int siguiente;
+
+    public AsignacionRoundRobin( )
+    {
+        this.siguiente = 0;
+    }
+
+    @Override
+    public void asignar( Empleado[] empleados, int[] carga, int[] destino )
+    {
+        int cantidad = empleados.length;
+        int actual = siguiente % cantidad;
+        for( int i = 0; i < destino.length; i++ )
+        {
+            destino[ i ] = actual;
+            carga[ actual ]++;
+            actual = actual + 1 == cantidad ? 0 : actual + 1;
+        }
+        siguiente = actual;
+    }
+}
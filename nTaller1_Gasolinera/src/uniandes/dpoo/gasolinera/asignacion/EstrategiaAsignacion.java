@@ -0,0 +1,20 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+
+/**
+ * Una estrategia que decide qué empleado atiende cada surtidor de una gasolinera.
+ */
+public interface EstrategiaAsignacion
+{
+    /**
+     * Decide qué empleado atenderá cada uno de los surtidores que se están asignando.
+     * 
+     * La carga de cada empleado es la cantidad de surtidores que ya atiende sin contar los que se están asignando. Al terminar, la carga debe quedar actualizada con los
+     * surtidores asignados.
+     * @param empleados Los empleados entre los que se hace la asignación. No puede estar vacío
+     * @param carga La cantidad de surtidores que atiende cada empleado. Tiene la misma longitud que el arreglo de empleados
+     * @param destino El arreglo donde quedará, para cada surtidor que se está asignando, la posición del empleado elegido dentro del arreglo de empleados
+     */
+    public void asignar( Empleado[] empleados, int[] carga, int[] destino );
+}
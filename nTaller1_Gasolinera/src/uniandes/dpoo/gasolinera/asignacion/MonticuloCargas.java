@@ -0,0 +1,137 @@
+package uniandes.dpoo.gasolinera.asignacion;
+
+/**
+ * Un montículo binario de mínimos sobre arreglos primitivos, donde cada elemento es la posición de un empleado y su prioridad es su carga.
+ * 
+ * Evita crear un objeto por cada empleado, lo cual importa cuando se asignan cientos de miles de surtidores.
+ */
+class MonticuloCargas
+{
+    /**
+     * Las posiciones de los empleados, organizadas como montículo
+     */
+    private int[] elementos;
+
+    /**
+     * La prioridad de cada elemento del montículo
+     */
+    private double[] prioridades;
+
+    /**
+     * La cantidad de elementos en el montículo
+     */
+    private int cantidad;
+
+    MonticuloCargas( int capacidad )
+    {
+        elementos = new int[capacidad];
+        prioridades = new double[capacidad];
+        cantidad = 0;
+    }
+
+    /**
+     * Asigna cada surtidor al empleado que quedaría con la menor carga relativa a su peso. Los empleados con peso 0 nunca reciben surtidores, así que no entran al
+     * montículo. Es la parte común de AsignacionPonderada y AsignacionMenosCargado
+     * @param pesos El peso de cada empleado. Ninguno puede ser negativo
+     * @param carga La cantidad de surtidores que atiende cada empleado. Queda actualizada con los surtidores asignados
+     * @param destino El arreglo donde queda la posición del empleado elegido para cada surtidor
+     * @throws IllegalArgumentException Si ningún empleado tiene peso positivo
+     */
+    static void asignarPorCargaRelativa( double[] pesos, int[] carga, int[] destino )
+    {
+        MonticuloCargas monticulo = new MonticuloCargas( pesos.length );
+        for( int i = 0; i < pesos.length; i++ )
+        {
+            if( pesos[ i ] > 0 )
+                monticulo.agregar( i, ( carga[ i ] + 1 ) / pesos[ i ] );
+        }
+        if( monticulo.estaVacio( ) )
+            throw new IllegalArgumentException( "Al menos un empleado debe tener peso positivo" );
+
+        for( int i = 0; i < destino.length; i++ )
+        {
+            int elegido = monticulo.getMinimo( );
+            destino[ i ] = elegido;
+            carga[ elegido ]++;
+            monticulo.cambiarPrioridadMinimo( ( carga[ elegido ] + 1 ) / pesos[ elegido ] );
+        }
+    }
+
+    boolean estaVacio( )
+    {
+        return cantidad == 0;
+    }
+
+    void agregar( int elemento, double prioridad )
+    {
+        elementos[ cantidad ] = elemento;
+        prioridades[ cantidad ] = prioridad;
+        cantidad++;
+        subir( cantidad - 1 );
+    }
+
+    int getMinimo( )
+    {
+        return elementos[ 0 ];
+    }
+
+    /**
+     * Cambia la prioridad del elemento mínimo y reorganiza el montículo
+     * @param prioridad La nueva prioridad, que no puede ser menor a la actual
+     */
+    void cambiarPrioridadMinimo( double prioridad )
+    {
+        prioridades[ 0 ] = prioridad;
+        bajar( 0 );
+    }
+
+    /**
+     * Indica si el elemento en la posición a debe ir antes que el de la posición b. Los empates se resuelven con la posición del empleado.
+     */
+    private boolean antes( int a, int b )
+    {
+        if( prioridades[ a ] != prioridades[ b ] )
+            return prioridades[ a ] < prioridades[ b ];
+        return elementos[ a ] < elementos[ b ];
+    }
+
+    private void subir( int posicion )
+    {
+        while( posicion > 0 )
+        {
+            int padre = ( posicion - 1 ) / 2;
+            if( !antes( posicion, padre ) )
+                return;
+            intercambiar( posicion, padre );
+            posicion = padre;
+        }
+    }
+
+    private void bajar( int posicion )
+    {
+        while( true )
+        {
+            int menor = posicion;
+            int izquierdo = 2 * posicion + 1;
+            int derecho = izquierdo + 1;
+            if( izquierdo < cantidad && antes( izquierdo, menor ) )
+                menor = izquierdo;
+            if( derecho < cantidad && antes( derecho, menor ) )
+                menor = derecho;
+            if( menor == posicion )
+                return;
+            intercambiar( posicion, menor );
+            posicion = menor;
+        }
+    }
+
+    private void intercambiar( int a, int b )
+    {
+        int elemento = elementos[ a ];
+        elementos[ a ] = elementos[ b ];
+        elementos[ b ] = elemento;
+        double prioridad = prioridades[ a ];
+        prioridades[ a ] = prioridades[ b ];
+        prioridades[ b ] = prioridad;
+    }
+}
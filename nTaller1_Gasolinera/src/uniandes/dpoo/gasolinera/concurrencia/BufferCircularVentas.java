@@ -0,0 +1,207 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Un buffer circular de ventas para un solo tipo de gasolina, con varios threads que publican ventas y un único thread que las consume.
+ *
+ * Todas las posiciones se crean al construir el buffer y se guardan en arreglos primitivos, así que publicar una venta no crea ningún objeto. Cada venta recibe un
+ * número de secuencia: un productor reserva su secuencia con una sola operación atómica, llena la posición correspondiente y la marca como publicada. El consumidor
+ * recorre las secuencias en orden y sólo procesa las que ya están publicadas.
+ *
+ * Cuando el buffer se cierra ya no se reservan más secuencias, así que el consumidor sabe exactamente cuántas ventas le faltan. Si el consumidor abandona el buffer (por
+ * ejemplo porque su thread murió), los productores que esperan espacio fallan en lugar de esperar para siempre.
+ */
+class BufferCircularVentas
+{
+    /**
+     * El bit de la siguiente secuencia reservada que indica que el buffer está cerrado
+     */
+    private static final long CERRADO = 1L << 62;
+
+    /**
+     * La cantidad de vueltas que un productor espera activamente por espacio antes de empezar a ceder el procesador
+     */
+    private static final int VUELTAS_ACTIVAS = 100;
+
+    /**
+     * La cantidad de vueltas que un productor cede el procesador antes de empezar a dormirse mientras espera espacio
+     */
+    private static final int VUELTAS_CEDIENDO = 1000;
+
+    /**
+     * La cantidad de posiciones del buffer. Es una potencia de 2 para que la posición de una secuencia se calcule con una máscara
+     */
+    private final int capacidad;
+
+    /**
+     * La máscara para calcular la posición de una secuencia
+     */
+    private final int mascara;
+
+    /**
+     * La cantidad (o valor, si es una venta por precio) solicitada en cada posición
+     */
+    private final double[] valores;
+
+    /**
+     * El número del surtidor de cada posición
+     */
+    private final int[] surtidores;
+
+    /**
+     * Indica si la venta de cada posición es por precio
+     */
+    private final boolean[] porPrecio;
+
+    /**
+     * La secuencia que está publicada en cada posición. Una posición está lista para el consumidor cuando su valor es igual a la secuencia que el consumidor espera.
+     */
+    private final AtomicLongArray publicadas;
+
+    /**
+     * La siguiente secuencia que se le va a entregar a un productor, con el bit CERRADO si ya no se entregan más
+     */
+    private final AtomicLong siguienteReservada = new AtomicLong( );
+
+    /**
+     * La cantidad de secuencias que el consumidor ya terminó de procesar. Un productor no puede reutilizar una posición hasta que el consumidor la libere.
+     */
+    private final AtomicLong consumidas = new AtomicLong( );
+
+    /**
+     * Indica si el consumidor dejó de procesar el buffer
+     */
+    private volatile boolean abandonado;
+
+    /**
+     * Construye un buffer vacío
+     * @param capacidadMinima La cantidad mínima de posiciones. Se redondea a la siguiente potencia de 2
+     */
+    BufferCircularVentas( int capacidadMinima )
+    {
+        int c = Integer.highestOneBit( Math.max( 2, capacidadMinima - 1 ) ) << 1;
+        capacidad = c;
+        mascara = c - 1;
+        valores = new double[c];
+        surtidores = new int[c];
+        porPrecio = new boolean[c];
+        publicadas = new AtomicLongArray( c );
+        for( int i = 0; i < c; i++ )
+        {
+            publicadas.set( i, -1 );
+        }
+    }
+
+    /**
+     * Reserva una secuencia, esperando si el buffer está lleno, y publica una venta en su posición
+     * @param valor La cantidad de galones o el valor solicitado
+     * @param numeroSurtidor El número del surtidor
+     * @param esPorPrecio Indica si la venta es por precio
+     * @return La secuencia de la venta
+     * @throws IllegalStateException Si el buffer está cerrado, o si el consumidor lo abandonó mientras se esperaba espacio
+     */
+    long publicar( double valor, int numeroSurtidor, boolean esPorPrecio )
+    {
+        long secuencia;
+        do
+        {
+            secuencia = siguienteReservada.get( );
+            if( ( secuencia & CERRADO ) != 0 || abandonado )
+                throw new IllegalStateException( "El buffer de ventas está cerrado" );
+        } while( !siguienteReservada.compareAndSet( secuencia, secuencia + 1 ) );
+
+        // Si el buffer está lleno, se espera a que el consumidor libere la posición: primero activamente, luego cediendo el procesador y al final durmiendo
+        for( int vueltas = 0; secuencia - consumidas.get( ) >= capacidad; vueltas++ )
+        {
+            if( abandonado )
+                throw new IllegalStateException( "El consumidor del buffer de ventas ya no está procesando ventas" );
+            if( vueltas < VUELTAS_ACTIVAS )
+                Thread.onSpinWait( );
+            else if( vueltas < VUELTAS_CEDIENDO )
+                Thread.yield( );
+            else
+                LockSupport.parkNanos( this, 50_000 );
+        }
+
+        int posicion = ( int ) ( secuencia & mascara );
+        valores[ posicion ] = valor;
+        surtidores[ posicion ] = numeroSurtidor;
+        porPrecio[ posicion ] = esPorPrecio;
+
+        // Una escritura volatile (y no lazySet) para que la lectura posterior de si el consumidor está dormido no se adelante a la publicación
+        publicadas.set( posicion, secuencia );
+        return secuencia;
+    }
+
+    /**
+     * Indica si la venta con la secuencia dada ya está publicada
+     */
+    boolean estaPublicada( long secuencia )
+    {
+        return publicadas.get( ( int ) ( secuencia & mascara ) ) == secuencia;
+    }
+
+    double getValor( long secuencia )
+    {
+        return valores[ ( int ) ( secuencia & mascara ) ];
+    }
+
+    int getSurtidor( long secuencia )
+    {
+        return surtidores[ ( int ) ( secuencia & mascara ) ];
+    }
+
+    boolean esPorPrecio( long secuencia )
+    {
+        return porPrecio[ ( int ) ( secuencia & mascara ) ];
+    }
+
+    /**
+     * Marca como procesadas todas las secuencias anteriores a la indicada, liberando sus posiciones
+     * @param cantidad La cantidad total de secuencias procesadas
+     */
+    void liberarHasta( long cantidad )
+    {
+        consumidas.lazySet( cantidad );
+    }
+
+    /**
+     * Retorna la cantidad de ventas que se han procesado
+     */
+    long getConsumidas( )
+    {
+        return consumidas.get( );
+    }
+
+    /**
+     * Retorna la cantidad de ventas que se han reservado (publicadas o a punto de publicarse). Una vez cerrado el buffer ya no cambia
+     */
+    long getReservadas( )
+    {
+        return siguienteReservada.get( ) & ~CERRADO;
+    }
+
+    boolean estaCerrado( )
+    {
+        return ( siguienteReservada.get( ) & CERRADO ) != 0;
+    }
+
+    /**
+     * Deja de entregar secuencias. Las que ya se entregaron se siguen publicando y procesando normalmente
+     */
+    void cerrar( )
+    {
+        siguienteReservada.getAndUpdate( s -> s | CERRADO );
+    }
+
+    /**
+     * Indica que el consumidor ya no va a procesar más ventas: los productores que estén esperando espacio o que intenten publicar fallan
+     */
+    void abandonar( )
+    {
+        abandonado = true;
+    }
+}
@@ -0,0 +1,395 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+
+import uniandes.dpoo.gasolinera.exceptions.VentaRechazadaException;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+
+/**
+ * Recibe ventas de forma asíncrona y las procesa sobre una gasolinera, con una cola de tamaño limitado por cada tipo de gasolina.
+ *
+ * Cada tipo de gasolina tiene su propia cola y su propio thread que procesa las ventas en el orden en el que llegaron, así que las ventas de un tipo de gasolina muy
+ * solicitado no hacen esperar a las de los demás. Cuando una cola se llena, se aplica la política de saturación configurada en lugar de crear más threads o dejar que la
+ * cola crezca sin límite: así, bajo sobrecarga, el tiempo de respuesta es predecible.
+ */
+public class DespachadorVentas
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * El tiempo máximo en nanosegundos que un thread de procesamiento se queda dormido con la cola vacía antes de volver a revisar si el despachador se cerró
+     */
+    private static final long ESPERA_COLA_VACIA_NANOS = TimeUnit.MILLISECONDS.toNanos( 100 );
+
+    /**
+     * La gasolinera donde se hacen las ventas
+     */
+    private Gasolinera gasolinera;
+
+    /**
+     * La cola de ventas pendientes de cada tipo de gasolina, según su identificador
+     */
+    private ArrayBlockingQueue<SolicitudVenta>[] colas;
+
+    /**
+     * El candado de cada tipo de gasolina que se tiene mientras se saca una venta de su cola y se hace. Así las ventas de un tipo se hacen una a la vez y en el orden de
+     * la cola, aunque algunas las haga el thread que las envió. Nadie lo tiene mientras espera a que lleguen ventas
+     */
+    private ReentrantLock[] turnos;
+
+    /**
+     * Indica, para cada tipo de gasolina, si su thread de procesamiento está dormido esperando ventas (1) o no (0). Quien pone una venta en la cola sólo lo despierta
+     * si está dormido
+     */
+    private AtomicIntegerArray dormidos;
+
+    /**
+     * La cantidad máxima de ventas que pueden estar esperando en la cola de cada tipo de gasolina
+     */
+    private int capacidadPorTipo;
+
+    /**
+     * Los threads que procesan las ventas de cada tipo de gasolina
+     */
+    private Thread[] procesadores;
+
+    /**
+     * Lo que se hace con una venta cuando la cola de su tipo está llena
+     */
+    private PoliticaSaturacion politica;
+
+    /**
+     * El tiempo máximo en nanosegundos que se espera por espacio en una cola cuando la política es ESPERAR
+     */
+    private long esperaMaximaNanos;
+
+    /**
+     * La mayor cantidad de ventas que ha habido en la cola de cada tipo de gasolina
+     */
+    private AtomicIntegerArray profundidadesMaximas;
+
+    /**
+     * La cantidad de ventas rechazadas de cada tipo de gasolina
+     */
+    private AtomicLongArray rechazadas;
+
+    /**
+     * La cantidad de ventas procesadas de cada tipo de gasolina (incluyendo las que se hicieron en el thread que las envió)
+     */
+    private AtomicLongArray procesadas;
+
+    /**
+     * Indica si el despachador ya no recibe más ventas
+     */
+    private volatile boolean cerrado;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un despachador y arranca los threads que procesan las ventas
+     * @param gasolinera La gasolinera donde se harán las ventas
+     * @param capacidadPorTipo La cantidad máxima de ventas que pueden estar esperando en la cola de cada tipo de gasolina
+     * @param politica Lo que se hace con una venta cuando la cola de su tipo está llena
+     * @param esperaMaxima El tiempo máximo que se espera por espacio en la cola cuando la política es ESPERAR
+     * @param unidad La unidad en la que está expresada la espera máxima
+     */
+    @SuppressWarnings("unchecked")
+    public DespachadorVentas( Gasolinera gasolinera, int capacidadPorTipo, PoliticaSaturacion politica, long esperaMaxima, TimeUnit unidad )
+    {
+        this.gasolinera = gasolinera;
+        this.politica = politica;
+        this.esperaMaximaNanos = unidad.toNanos( esperaMaxima );
+
+        int cantidadTipos = gasolinera.getCantidadTiposGasolina( );
+        this.capacidadPorTipo = capacidadPorTipo;
+        this.colas = ( ArrayBlockingQueue<SolicitudVenta>[] )new ArrayBlockingQueue<?>[cantidadTipos];
+        this.turnos = new ReentrantLock[cantidadTipos];
+        this.dormidos = new AtomicIntegerArray( cantidadTipos );
+        this.procesadores = new Thread[cantidadTipos];
+        this.profundidadesMaximas = new AtomicIntegerArray( cantidadTipos );
+        this.rechazadas = new AtomicLongArray( cantidadTipos );
+        this.procesadas = new AtomicLongArray( cantidadTipos );
+
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            colas[ id ] = new ArrayBlockingQueue<SolicitudVenta>( capacidadPorTipo );
+            turnos[ id ] = new ReentrantLock( );
+            final int idTipo = id;
+            procesadores[ id ] = new Thread( ( ) -> procesar( idTipo ), "ventas-" + gasolinera.getTipoGasolina( id ).getNombre( ) );
+            procesadores[ id ].setDaemon( true );
+            procesadores[ id ].start( );
+        }
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Envía una venta por cantidad de galones para que se procese de forma asíncrona
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @return Un futuro que se completa con el precio de la venta, o con una VentaRechazadaException si la venta no se pudo recibir
+     */
+    public CompletableFuture<Integer> enviarVentaPorCantidad( int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        return enviar( new SolicitudVenta( idTipoGasolina, false, cantidadSolicitada, numeroSurtidor ) );
+    }
+
+    /**
+     * Envía una venta por precio para que se procese de forma asíncrona
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @return Un futuro que se completa con el precio de la venta, o con una VentaRechazadaException si la venta no se pudo recibir
+     */
+    public CompletableFuture<Integer> enviarVentaPorPrecio( int idTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        return enviar( new SolicitudVenta( idTipoGasolina, true, valorSolicitado, numeroSurtidor ) );
+    }
+
+    /**
+     * Pone una venta en la cola de su tipo de gasolina, aplicando la política de saturación si la cola está llena
+     * @param solicitud La venta
+     * @return El futuro de la venta
+     */
+    private CompletableFuture<Integer> enviar( SolicitudVenta solicitud )
+    {
+        int idTipo = solicitud.idTipoGasolina;
+        ArrayBlockingQueue<SolicitudVenta> cola = colas[ idTipo ];
+
+        boolean recibida = !cerrado && cola.offer( solicitud );
+        if( !recibida && !cerrado )
+        {
+            if( politica == PoliticaSaturacion.ESPERAR )
+            {
+                try
+                {
+                    recibida = cola.offer( solicitud, esperaMaximaNanos, TimeUnit.NANOSECONDS );
+                }
+                catch( InterruptedException e )
+                {
+                    Thread.currentThread( ).interrupt( );
+                }
+            }
+            else if( politica == PoliticaSaturacion.EJECUTAR_EN_LLAMADOR )
+            {
+                recibida = ayudarHastaRecibir( solicitud );
+            }
+        }
+
+        // Si el despachador se cerró mientras la venta entraba a la cola, puede que nadie la vaya a procesar. Si sigue en la cola se retira y se rechaza; si no, ya la
+        // sacó un thread de procesamiento o el cierre, que completarán su futuro
+        if( recibida && cerrado && cola.remove( solicitud ) )
+            recibida = false;
+
+        if( recibida )
+        {
+            if( dormidos.get( idTipo ) == 1 )
+                LockSupport.unpark( procesadores[ idTipo ] );
+            profundidadesMaximas.accumulateAndGet( idTipo, cola.size( ), Math::max );
+        }
+        else
+        {
+            rechazadas.incrementAndGet( idTipo );
+            String nombreTipo = gasolinera.getTipoGasolina( idTipo ).getNombre( );
+            solicitud.resultado.completeExceptionally( new VentaRechazadaException( nombreTipo, capacidadPorTipo ) );
+        }
+        return solicitud.resultado;
+    }
+
+    /**
+     * Hace ventas de la cola en el thread que envía una venta, hasta que haya espacio para esa venta en la cola. Las ventas de la cola se hacen en orden y con el
+     * candado del tipo de gasolina, así que la venta enviada no se adelanta a las que ya estaban esperando. Si otro thread tiene el candado, el thread que envía la
+     * venta se bloquea hasta que lo suelte, que es como mucho lo que dura una venta.
+     * @param solicitud La venta que se quiere poner en la cola
+     * @return Retorna true si la venta quedó en la cola, o false si el despachador se cerró antes
+     */
+    private boolean ayudarHastaRecibir( SolicitudVenta solicitud )
+    {
+        int idTipo = solicitud.idTipoGasolina;
+        ArrayBlockingQueue<SolicitudVenta> cola = colas[ idTipo ];
+        while( !cola.offer( solicitud ) )
+        {
+            if( cerrado )
+                return false;
+            ejecutarSiguiente( idTipo );
+        }
+        return true;
+    }
+
+    /**
+     * Saca la venta más antigua de la cola de un tipo de gasolina y la hace, con el candado del tipo
+     * @param idTipo El identificador del tipo de gasolina
+     * @return Retorna true si había una venta en la cola, o false si estaba vacía
+     */
+    private boolean ejecutarSiguiente( int idTipo )
+    {
+        ReentrantLock turno = turnos[ idTipo ];
+        turno.lock( );
+        try
+        {
+            SolicitudVenta masAntigua = colas[ idTipo ].poll( );
+            if( masAntigua == null )
+                return false;
+            ejecutar( masAntigua );
+            return true;
+        }
+        finally
+        {
+            turno.unlock( );
+        }
+    }
+
+    /**
+     * El ciclo de un thread de procesamiento: hace en orden las ventas de la cola de su tipo de gasolina, y cuando la cola queda vacía se duerme sin tener el candado
+     * hasta que llegue otra venta
+     * @param idTipo El identificador del tipo de gasolina que le corresponde al thread
+     */
+    private void procesar( int idTipo )
+    {
+        ArrayBlockingQueue<SolicitudVenta> cola = colas[ idTipo ];
+        while( !cerrado || !cola.isEmpty( ) )
+        {
+            if( ejecutarSiguiente( idTipo ) )
+                continue;
+
+            // Se anuncia que se va a dormir antes de revisar la cola: así, quien pone una venta después de esa revisión ve el anuncio y lo despierta
+            dormidos.set( idTipo, 1 );
+            if( cola.isEmpty( ) && !cerrado )
+                LockSupport.parkNanos( this, ESPERA_COLA_VACIA_NANOS );
+            dormidos.set( idTipo, 0 );
+            if( Thread.currentThread( ).isInterrupted( ) )
+                return;
+        }
+    }
+
+    /**
+     * Hace una venta y completa su futuro. Cualquier error de la venta, incluso un Error, termina en el futuro y no afecta al thread que la hizo
+     * @param solicitud La venta
+     */
+    private void ejecutar( SolicitudVenta solicitud )
+    {
+        try
+        {
+            int precio;
+            if( solicitud.porPrecio )
+                precio = gasolinera.venderGasolinaPorPrecio( solicitud.idTipoGasolina, ( int )solicitud.valor, solicitud.numeroSurtidor );
+            else
+                precio = gasolinera.venderGasolinaPorCantidad( solicitud.idTipoGasolina, solicitud.valor, solicitud.numeroSurtidor );
+            procesadas.incrementAndGet( solicitud.idTipoGasolina );
+            solicitud.resultado.complete( precio );
+        }
+        catch( Throwable e )
+        {
+            solicitud.resultado.completeExceptionally( e );
+        }
+    }
+
+    /**
+     * Retorna la cantidad de ventas de un tipo de gasolina que están esperando a ser procesadas
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de ventas en la cola
+     */
+    public int getProfundidad( int idTipoGasolina )
+    {
+        return colas[ idTipoGasolina ].size( );
+    }
+
+    /**
+     * Retorna la mayor cantidad de ventas de un tipo de gasolina que ha habido en la cola al mismo tiempo
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La profundidad máxima de la cola
+     */
+    public int getProfundidadMaxima( int idTipoGasolina )
+    {
+        return profundidadesMaximas.get( idTipoGasolina );
+    }
+
+    public long getRechazadas( int idTipoGasolina )
+    {
+        return rechazadas.get( idTipoGasolina );
+    }
+
+    public long getProcesadas( int idTipoGasolina )
+    {
+        return procesadas.get( idTipoGasolina );
+    }
+
+    /**
+     * Deja de recibir ventas. Las ventas que ya estaban en las colas se terminan de procesar.
+     * @param espera El tiempo máximo que se espera a que se terminen de procesar las ventas pendientes
+     * @param unidad La unidad en la que está expresada la espera
+     * @return Retorna true si todas las ventas pendientes se procesaron dentro del tiempo de espera
+     * @throws InterruptedException Se lanza esta excepción si el thread se interrumpe mientras espera
+     */
+    public boolean cerrar( long espera, TimeUnit unidad ) throws InterruptedException
+    {
+        cerrado = true;
+        for( Thread procesador : procesadores )
+        {
+            LockSupport.unpark( procesador );
+        }
+        long limite = System.nanoTime( ) + unidad.toNanos( espera );
+        for( Thread procesador : procesadores )
+        {
+            long restante = limite - System.nanoTime( );
+            if( restante > 0 )
+                TimeUnit.NANOSECONDS.timedJoin( procesador, restante );
+            if( procesador.isAlive( ) )
+                return false;
+        }
+
+        // Una venta que se envió justo mientras se cerraba pudo quedar en una cola sin thread que la procese
+        for( int id = 0; id < colas.length; id++ )
+        {
+            SolicitudVenta pendiente = colas[ id ].poll( );
+            while( pendiente != null )
+            {
+                rechazadas.incrementAndGet( id );
+                pendiente.resultado.completeExceptionally( new VentaRechazadaException( gasolinera.getTipoGasolina( id ).getNombre( ), capacidadPorTipo ) );
+                pendiente = colas[ id ].poll( );
+            }
+        }
+        return true;
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Una venta que está esperando a ser procesada
+     */
+    private static class SolicitudVenta
+    {
+        private final int idTipoGasolina;
+
+        private final boolean porPrecio;
+
+        private final double valor;
+
+        private final int numeroSurtidor;
+
+        private final CompletableFuture<Integer> resultado = new CompletableFuture<Integer>( );
+
+        SolicitudVenta( int idTipoGasolina, boolean porPrecio, double valor, int numeroSurtidor )
+        {
+            this.idTipoGasolina = idTipoGasolina;
+            this.porPrecio = porPrecio;
+            this.valor = valor;
+            this.numeroSurtidor = numeroSurtidor;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+/**
+ * Recibe el resultado de cada venta que procesa un ProcesadorVentasUnEscritor
+ */
+public interface OyenteVentasProcesadas
+{
+    /**
+     * Se llama desde el thread escritor de un tipo de gasolina después de aplicar una venta
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param secuencia La secuencia de la venta dentro de su tipo de gasolina
+     * @param precio El precio de la venta, o -1 si la venta falló
+     */
+    public void ventaProcesada( int idTipoGasolina, long secuencia, int precio );
+}
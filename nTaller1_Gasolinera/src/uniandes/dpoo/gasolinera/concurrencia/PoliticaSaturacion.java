@@ -0,0 +1,23 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+/**
+ * Lo que se hace con una venta cuando la cola de su tipo de gasolina está llena
+ */
+public enum PoliticaSaturacion
+{
+    /**
+     * La venta se rechaza inmediatamente
+     */
+    RECHAZAR,
+
+    /**
+     * Se espera a que haya espacio en la cola, hasta el tiempo máximo configurado. Si no se libera espacio, la venta se rechaza
+     */
+    ESPERAR,
+
+    /**
+     * El thread que envió la venta hace las ventas más antiguas de la cola, en orden, hasta que haya espacio para la suya. Así el que envía ventas más rápido de lo que se
+     * procesan queda ocupado y deja de enviar, sin que su venta se adelante a las que ya estaban esperando
+     */
+    EJECUTAR_EN_LLAMADOR
+}
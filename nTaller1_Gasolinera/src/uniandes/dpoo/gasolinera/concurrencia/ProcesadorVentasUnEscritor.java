@@ -0,0 +1,313 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+
+/**
+ * Procesa las ventas de una gasolinera con un único thread escritor por cada tipo de gasolina.
+ *
+ * Las ventas se publican en un buffer circular preasignado de su tipo de gasolina, y el thread de ese tipo las aplica en orden sobre el TipoGasolina, el Surtidor y el
+ * Empleado correspondientes. Como el inventario de cada tipo sólo lo modifica su thread, las ventas de un tipo de gasolina muy solicitado no compiten por el candado
+ * del inventario: los productores sólo compiten por una operación atómica para reservar su posición en el buffer. Además, el consumidor aplica cada lote de ventas en
+ * una sola sección de escritura de la gasolinera, así que el costo de coordinarse con las instantáneas se paga una vez por lote.
+ *
+ * El thread consumidor procesa en un solo lote todas las ventas que encuentre publicadas, y cuando no hay ventas se duerme. Los productores sólo lo despiertan si está
+ * dormido, así que bajo carga no hay llamadas al sistema para despertarlo.
+ *
+ * Mientras se usa este modo, las ventas del mismo tipo de gasolina no deberían hacerse también directamente sobre la gasolinera.
+ */
+public class ProcesadorVentasUnEscritor
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La cantidad de vueltas que el consumidor espera activamente antes de dormirse cuando no hay ventas
+     */
+    private static final int VUELTAS_ANTES_DE_DORMIR = 200;
+
+    /**
+     * La cantidad máxima de ventas que el consumidor aplica en una sola sección de escritura. Limita lo que puede tener que esperar una instantánea
+     */
+    private static final int TAMANO_LOTE = 256;
+
+    /**
+     * La gasolinera donde se hacen las ventas
+     */
+    private Gasolinera gasolinera;
+
+    /**
+     * El buffer de cada tipo de gasolina, según su identificador
+     */
+    private BufferCircularVentas[] buffers;
+
+    /**
+     * El thread consumidor de cada tipo de gasolina
+     */
+    private Thread[] consumidores;
+
+    /**
+     * Indica, para cada tipo de gasolina, si su consumidor está dormido esperando ventas (1) o no (0)
+     */
+    private AtomicIntegerArray dormidos;
+
+    /**
+     * La cantidad de ventas de cada tipo de gasolina que fallaron al procesarse
+     */
+    private AtomicLongArray fallidas;
+
+    /**
+     * El que recibe el precio de cada venta procesada, o null si nadie lo necesita
+     */
+    private OyenteVentasProcesadas oyente;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye el procesador y arranca un thread consumidor por cada tipo de gasolina
+     * @param gasolinera La gasolinera donde se harán las ventas
+     * @param capacidadPorTipo La cantidad mínima de posiciones del buffer de cada tipo de gasolina
+     * @param oyente El que recibe el precio de cada venta procesada. Se llama desde el thread consumidor, así que debe ser rápido. Sus errores no detienen al
+     *        consumidor. Puede ser null
+     */
+    public ProcesadorVentasUnEscritor( Gasolinera gasolinera, int capacidadPorTipo, OyenteVentasProcesadas oyente )
+    {
+        this.gasolinera = gasolinera;
+        this.oyente = oyente;
+
+        int cantidadTipos = gasolinera.getCantidadTiposGasolina( );
+        buffers = new BufferCircularVentas[cantidadTipos];
+        consumidores = new Thread[cantidadTipos];
+        dormidos = new AtomicIntegerArray( cantidadTipos );
+        fallidas = new AtomicLongArray( cantidadTipos );
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            buffers[ id ] = new BufferCircularVentas( capacidadPorTipo );
+            final int idTipo = id;
+            consumidores[ id ] = new Thread( ( ) -> consumir( idTipo ), "escritor-" + gasolinera.getTipoGasolina( id ).getNombre( ) );
+            consumidores[ id ].setDaemon( true );
+            consumidores[ id ].start( );
+        }
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Publica una venta por cantidad de galones. Si el buffer del tipo de gasolina está lleno, espera a que haya espacio.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @return La secuencia de la venta dentro de su tipo de gasolina
+     * @throws IllegalStateException Si el procesador está cerrado, o si el consumidor del tipo de gasolina dejó de procesar ventas
+     */
+    public long publicarVentaPorCantidad( int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        long secuencia = buffers[ idTipoGasolina ].publicar( cantidadSolicitada, numeroSurtidor, false );
+        despertar( idTipoGasolina );
+        return secuencia;
+    }
+
+    /**
+     * Publica una venta por precio. Si el buffer del tipo de gasolina está lleno, espera a que haya espacio.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @return La secuencia de la venta dentro de su tipo de gasolina
+     * @throws IllegalStateException Si el procesador está cerrado, o si el consumidor del tipo de gasolina dejó de procesar ventas
+     */
+    public long publicarVentaPorPrecio( int idTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        long secuencia = buffers[ idTipoGasolina ].publicar( valorSolicitado, numeroSurtidor, true );
+        despertar( idTipoGasolina );
+        return secuencia;
+    }
+
+    /**
+     * Despierta al consumidor de un tipo de gasolina, sólo si está dormido
+     */
+    private void despertar( int idTipo )
+    {
+        if( dormidos.get( idTipo ) == 1 && dormidos.compareAndSet( idTipo, 1, 0 ) )
+            LockSupport.unpark( consumidores[ idTipo ] );
+    }
+
+    /**
+     * El ciclo del thread consumidor de un tipo de gasolina. Si el ciclo termina por cualquier razón, el buffer queda abandonado para que los productores no esperen
+     * para siempre
+     * @param idTipo El identificador del tipo de gasolina
+     */
+    private void consumir( int idTipo )
+    {
+        BufferCircularVentas buffer = buffers[ idTipo ];
+        double[] valores = new double[TAMANO_LOTE];
+        int[] surtidores = new int[TAMANO_LOTE];
+        boolean[] porPrecio = new boolean[TAMANO_LOTE];
+        int[] precios = new int[TAMANO_LOTE];
+        long siguiente = 0;
+        int vueltasSinVentas = 0;
+
+        try
+        {
+            while( !buffer.estaCerrado( ) || siguiente < buffer.getReservadas( ) )
+            {
+                // Sacar en un lote las ventas publicadas en orden
+                int enLote = 0;
+                while( enLote < TAMANO_LOTE && buffer.estaPublicada( siguiente + enLote ) )
+                {
+                    long secuencia = siguiente + enLote;
+                    valores[ enLote ] = buffer.getValor( secuencia );
+                    surtidores[ enLote ] = buffer.getSurtidor( secuencia );
+                    porPrecio[ enLote ] = buffer.esPorPrecio( secuencia );
+                    enLote++;
+                }
+
+                if( enLote > 0 )
+                {
+                    aplicar( idTipo, siguiente, enLote, valores, surtidores, porPrecio, precios );
+                    siguiente += enLote;
+                    buffer.liberarHasta( siguiente );
+                    vueltasSinVentas = 0;
+                }
+                else if( vueltasSinVentas < VUELTAS_ANTES_DE_DORMIR )
+                {
+                    vueltasSinVentas++;
+                    Thread.onSpinWait( );
+                }
+                else
+                {
+                    // Antes de dormirse se anuncia, y se vuelve a revisar por si llegó una venta en ese momento
+                    dormidos.set( idTipo, 1 );
+                    if( !buffer.estaPublicada( siguiente ) && !buffer.estaCerrado( ) )
+                        LockSupport.parkNanos( this, TimeUnit.MILLISECONDS.toNanos( 10 ) );
+                    dormidos.set( idTipo, 0 );
+                    vueltasSinVentas = 0;
+                }
+            }
+        }
+        finally
+        {
+            buffer.abandonar( );
+        }
+    }
+
+    /**
+     * Aplica un lote de ventas sobre la gasolinera, en una sola sección de escritura (ver Gasolinera.venderLote). Las ventas que fallan (por ejemplo porque el surtidor
+     * no existe) se cuentan como fallidas y se le informan al oyente con un precio de -1.
+     *
+     * Ningún error, ni de las ventas ni del oyente, termina el thread consumidor: se le entrega al manejador de excepciones del thread y el consumidor sigue con la
+     * siguiente venta.
+     */
+    private void aplicar( int idTipo, long primeraSecuencia, int cantidad, double[] valores, int[] surtidores, boolean[] porPrecio, int[] precios )
+    {
+        Arrays.fill( precios, 0, cantidad, -1 );
+        try
+        {
+            fallidas.addAndGet( idTipo, gasolinera.venderLote( idTipo, valores, surtidores, porPrecio, cantidad, precios ) );
+        }
+        catch( Throwable e )
+        {
+            // Las ventas que no se alcanzaron a hacer quedaron con precio -1
+            int sinHacer = 0;
+            for( int i = 0; i < cantidad; i++ )
+            {
+                if( precios[ i ] < 0 )
+                    sinHacer++;
+            }
+            fallidas.addAndGet( idTipo, sinHacer );
+            informarError( e );
+        }
+
+        if( oyente != null )
+        {
+            for( int i = 0; i < cantidad; i++ )
+            {
+                try
+                {
+                    oyente.ventaProcesada( idTipo, primeraSecuencia + i, precios[ i ] );
+                }
+                catch( Throwable e )
+                {
+                    informarError( e );
+                }
+            }
+        }
+    }
+
+    /**
+     * Le entrega un error al manejador de excepciones del thread actual sin terminar el thread
+     */
+    private static void informarError( Throwable error )
+    {
+        Thread actual = Thread.currentThread( );
+        try
+        {
+            actual.getUncaughtExceptionHandler( ).uncaughtException( actual, error );
+        }
+        catch( Throwable e )
+        {
+            // Si el manejador también falla no hay a quién más informarle
+        }
+    }
+
+    /**
+     * Retorna la cantidad de ventas de un tipo de gasolina que ya se procesaron
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de ventas procesadas
+     */
+    public long getProcesadas( int idTipoGasolina )
+    {
+        return buffers[ idTipoGasolina ].getConsumidas( );
+    }
+
+    public long getFallidas( int idTipoGasolina )
+    {
+        return fallidas.get( idTipoGasolina );
+    }
+
+    /**
+     * Retorna la cantidad de ventas de un tipo de gasolina que están publicadas pero no se han procesado
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de ventas pendientes
+     */
+    public long getPendientes( int idTipoGasolina )
+    {
+        return buffers[ idTipoGasolina ].getReservadas( ) - buffers[ idTipoGasolina ].getConsumidas( );
+    }
+
+    /**
+     * Deja de aceptar ventas y espera a que se procesen todas las que ya estaban publicadas. Una venta que se intente publicar después falla con
+     * IllegalStateException
+     * @param espera El tiempo máximo de espera
+     * @param unidad La unidad en la que está expresada la espera
+     * @return Retorna true si todas las ventas se procesaron dentro del tiempo de espera
+     * @throws InterruptedException Se lanza esta excepción si el thread se interrumpe mientras espera
+     */
+    public boolean cerrar( long espera, TimeUnit unidad ) throws InterruptedException
+    {
+        for( BufferCircularVentas buffer : buffers )
+        {
+            buffer.cerrar( );
+        }
+        long limite = System.nanoTime( ) + unidad.toNanos( espera );
+        for( Thread consumidor : consumidores )
+        {
+            LockSupport.unpark( consumidor );
+            long restante = limite - System.nanoTime( );
+            if( restante > 0 )
+                TimeUnit.NANOSECONDS.timedJoin( consumidor, restante );
+            if( consumidor.isAlive( ) )
+                return false;
+        }
+        return true;
+    }
+}
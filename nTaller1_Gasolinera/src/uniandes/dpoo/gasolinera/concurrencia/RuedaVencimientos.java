@@ -0,0 +1,212 @@
+package uniandes.dpoo.gasolinera.concurrencia;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Una rueda de temporizadores para vencer elementos cuando pasa su plazo, por ejemplo reservas que nadie confirmó.
+ *
+ * El tiempo se divide en ranuras de igual duración, y cada elemento se guarda en la ranura que corresponde a su vencimiento, dando vueltas a la rueda si el vencimiento
+ * está lejos. Agregar un elemento es una inserción en una cola sin candados (dos, en el caso raro de que una revisión pase por su ranura al mismo tiempo); revisar los vencimientos sólo recorre las ranuras por las que pasó el tiempo desde la
+ * última revisión, así que el costo no depende de cuántos elementos haya en total. Los elementos que se resuelven antes de vencer no se sacan de la rueda: quien los
+ * vence debe ignorar los que ya no estén pendientes.
+ *
+ * Sólo un thread revisa la rueda a la vez, pero los demás no lo esperan: si otro thread ya está revisando, avanzar retorna de inmediato y deja los vencimientos a
+ * cargo de ese thread. La acción con cada elemento vencido se ejecuta después de soltar la revisión, así que puede tardar o llamar de nuevo a la rueda sin detener a
+ * nadie.
+ * @param <T> El tipo de los elementos
+ */
+public class RuedaVencimientos<T>
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La duración de cada ranura en nanosegundos
+     */
+    private final long nanosPorRanura;
+
+    /**
+     * La máscara para calcular la ranura de un turno. La cantidad de ranuras es una potencia de 2
+     */
+    private final int mascara;
+
+    /**
+     * Los elementos de cada ranura con su vencimiento
+     */
+    private final ConcurrentLinkedQueue<Entrada<T>>[] ranuras;
+
+    /**
+     * El instante que corresponde al turno 0
+     */
+    private final long origen;
+
+    /**
+     * El primer turno que todavía puede tener elementos sin revisar
+     */
+    private volatile long siguienteTurno;
+
+    /**
+     * Indica si algún thread está revisando las ranuras
+     */
+    private final AtomicBoolean avanzando = new AtomicBoolean( );
+
+    /**
+     * Los elementos que se sacaron de una ranura y todavía no vencen. Sólo lo usa el thread que está revisando las ranuras
+     */
+    private final List<Entrada<T>> pendientes = new ArrayList<Entrada<T>>( );
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye una rueda vacía
+     * @param cantidadRanuras La cantidad mínima de ranuras. Se redondea a la siguiente potencia de 2
+     * @param nanosPorRanura La duración de cada ranura en nanosegundos
+     * @param ahora El instante actual, en la misma escala de System.nanoTime
+     */
+    @SuppressWarnings("unchecked")
+    public RuedaVencimientos( int cantidadRanuras, long nanosPorRanura, long ahora )
+    {
+        if( cantidadRanuras < 1 || nanosPorRanura < 1 )
+            throw new IllegalArgumentException( "La rueda debe tener al menos una ranura de duración positiva" );
+        int capacidad = Integer.highestOneBit( cantidadRanuras );
+        if( capacidad < cantidadRanuras )
+            capacidad <<= 1;
+        this.nanosPorRanura = nanosPorRanura;
+        this.mascara = capacidad - 1;
+        this.ranuras = ( ConcurrentLinkedQueue<Entrada<T>>[] )new ConcurrentLinkedQueue<?>[capacidad];
+        for( int i = 0; i < capacidad; i++ )
+        {
+            ranuras[ i ] = new ConcurrentLinkedQueue<Entrada<T>>( );
+        }
+        this.origen = ahora;
+        this.siguienteTurno = 0;
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    private long turno( long instante )
+    {
+        return Math.floorDiv( instante - origen, nanosPorRanura );
+    }
+
+    /**
+     * Agrega un elemento a la rueda. Se puede llamar desde varios threads al mismo tiempo.
+     * @param elemento El elemento
+     * @param vencimiento El instante en el que vence, en la misma escala de System.nanoTime
+     */
+    public void agregar( T elemento, long vencimiento )
+    {
+        // Si el turno del vencimiento ya se revisó, el elemento va en la primera ranura que falta por revisar
+        Entrada<T> entrada = new Entrada<T>( elemento, vencimiento );
+        long turnoEntrada = Math.max( turno( vencimiento ), siguienteTurno );
+        ranuras[ ( int ) ( turnoEntrada & mascara ) ].add( entrada );
+
+        // Una revisión que empezó mientras tanto pudo pasar por la ranura sin ver la entrada, que quedaría ahí hasta la siguiente vuelta. Como la revisión avanza
+        // siguienteTurno antes de recorrer las ranuras, en ese caso aquí se ve el turno nuevo y la entrada se mueve a la ranura actual. Si ya no está en la ranura, fue
+        // la revisión la que la sacó
+        long siguiente = siguienteTurno;
+        while( turnoEntrada < siguiente && ranuras[ ( int ) ( turnoEntrada & mascara ) ].remove( entrada ) )
+        {
+            turnoEntrada = siguiente;
+            ranuras[ ( int ) ( turnoEntrada & mascara ) ].add( entrada );
+            siguiente = siguienteTurno;
+        }
+    }
+
+    /**
+     * Revisa las ranuras por las que pasó el tiempo desde la última revisión y vence los elementos cuyo plazo ya pasó. Si otro thread ya está revisando la rueda, no hace
+     * nada: los elementos vencidos quedan a cargo de ese thread o de la siguiente revisión.
+     * @param ahora El instante actual, en la misma escala de System.nanoTime
+     * @param alVencer La acción que se ejecuta con cada elemento vencido, después de terminar la revisión
+     * @return La cantidad de elementos vencidos
+     */
+    public int avanzar( long ahora, Consumer<T> alVencer )
+    {
+        if( turno( ahora ) < siguienteTurno || !avanzando.compareAndSet( false, true ) )
+            return 0;
+        List<T> vencidos;
+        try
+        {
+            vencidos = revisar( ahora );
+        }
+        finally
+        {
+            avanzando.set( false );
+        }
+
+        for( T elemento : vencidos )
+        {
+            alVencer.accept( elemento );
+        }
+        return vencidos.size( );
+    }
+
+    /**
+     * Saca de las ranuras los elementos vencidos. Sólo se llama desde el thread que está revisando la rueda
+     * @param ahora El instante actual
+     * @return Los elementos vencidos
+     */
+    private List<T> revisar( long ahora )
+    {
+        long turnoActual = turno( ahora );
+        long primero = siguienteTurno;
+        // Si pasó más de una vuelta, basta con revisar cada ranura una vez
+        if( turnoActual - primero > mascara )
+            primero = turnoActual - mascara;
+        // La ranura actual puede recibir elementos que vencen más adelante en este mismo turno, así que se vuelve a revisar la próxima vez. El turno se publica antes de
+        // recorrer las ranuras, para que agregar mueva los elementos que lleguen a una ranura por la que ya pasó la revisión
+        siguienteTurno = turnoActual;
+
+        List<T> vencidos = new ArrayList<T>( );
+        for( long t = primero; t <= turnoActual; t++ )
+        {
+            ConcurrentLinkedQueue<Entrada<T>> ranura = ranuras[ ( int ) ( t & mascara ) ];
+            Entrada<T> entrada = ranura.poll( );
+            while( entrada != null )
+            {
+                if( entrada.vencimiento - ahora <= 0 )
+                {
+                    vencidos.add( entrada.elemento );
+                }
+                else
+                {
+                    // Vence en una vuelta posterior de la rueda
+                    pendientes.add( entrada );
+                }
+                entrada = ranura.poll( );
+            }
+            ranura.addAll( pendientes );
+            pendientes.clear( );
+        }
+        return vencidos;
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Un elemento de la rueda con su vencimiento
+     */
+    private static class Entrada<T>
+    {
+        private final T elemento;
+
+        private final long vencimiento;
+
+        Entrada( T elemento, long vencimiento )
+        {
+            this.elemento = elemento;
+            this.vencimiento = vencimiento;
+        }
+    }
+}
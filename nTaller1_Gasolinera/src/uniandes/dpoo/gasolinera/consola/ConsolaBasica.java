@@ -15,6 +15,11 @@ import uniandes.dpoo.gasolinera.logica.TipoGasolina;
  */
 public abstract class ConsolaBasica
 {
+    /**
+     * La salida que comparten todas las consolas de la aplicación. Como todas escriben en System.out, compartir el buffer garantiza que los mensajes salgan en orden.
+     */
+    protected static final SalidaConsola salida = new SalidaConsola( System.out );
+
     /**
      * Le pide al usuario que ingrese una cadena de caracteres
      * @param mensaje El mensaje con el que se solicita la información
@@ -24,14 +29,15 @@ public abstract class ConsolaBasica
     {
         try
         {
-            System.out.print( mensaje + ": " );
+            salida.print( mensaje + ": " );
+            salida.flush( );
             BufferedReader reader = new BufferedReader( new InputStreamReader( System.in ) );
             String input = reader.readLine( );
             return input;
         }
         catch( IOException e )
         {
-            System.out.println( "Error leyendo de la consola" );
+            salida.println( "Error leyendo de la consola" );
         }
         return "error";
     }
@@ -45,7 +51,8 @@ public abstract class ConsolaBasica
     {
         try
         {
-            System.out.print( mensaje + " (Responda 'si' o 'no' ) " );
+            salida.print( mensaje + " (Responda 'si' o 'no' ) " );
+            salida.flush( );
             BufferedReader reader = new BufferedReader( new InputStreamReader( System.in ) );
             String input = reader.readLine( ).toLowerCase( );
             boolean respuesta = false;
@@ -56,7 +63,7 @@ public abstract class ConsolaBasica
         }
         catch( IOException e )
         {
-            System.out.println( "Error leyendo de la consola" );
+            salida.println( "Error leyendo de la consola" );
         }
         return false;
     }
@@ -73,7 +80,8 @@ public abstract class ConsolaBasica
         {
             try
             {
-                System.out.print( mensaje + ": " );
+                salida.print( mensaje + ": " );
+                salida.flush( );
                 BufferedReader reader = new BufferedReader( new InputStreamReader( System.in ) );
                 String input = reader.readLine( );
                 int numero = Integer.parseInt( input );
@@ -81,11 +89,11 @@ public abstract class ConsolaBasica
             }
             catch( NumberFormatException nfe )
             {
-                System.out.println( "El valor digitado no es un entero" );
+                salida.println( "El valor digitado no es un entero" );
             }
             catch( IOException e )
             {
-                System.out.println( "Error leyendo de la consola" );
+                salida.println( "Error leyendo de la consola" );
             }
         }
         return valorResultado;
@@ -103,7 +111,8 @@ public abstract class ConsolaBasica
         {
             try
             {
-                System.out.print( mensaje + ": " );
+                salida.print( mensaje + ": " );
+                salida.flush( );
                 BufferedReader reader = new BufferedReader( new InputStreamReader( System.in ) );
                 String input = reader.readLine( );
                 double numero = Double.parseDouble( input );
@@ -111,11 +120,11 @@ public abstract class ConsolaBasica
             }
             catch( NumberFormatException nfe )
             {
-                System.out.println( "El valor digitado no es un entero" );
+                salida.println( "El valor digitado no es un entero" );
             }
             catch( IOException e )
             {
-                System.out.println( "Error leyendo de la consola" );
+                salida.println( "Error leyendo de la consola" );
             }
         }
         return valorResultado;
@@ -135,10 +144,10 @@ public abstract class ConsolaBasica
             opciones[ pos ] = iterator.next( ).toString( );
         }
 
-        System.out.println( "Seleccione una de las siguientes opciones:" );
+        salida.println( "Seleccione una de las siguientes opciones:" );
         for( int i = 1; i <= opciones.length; i++ )
         {
-            System.out.println( " " + i + ". " + opciones[ i - 1 ] );
+            salida.println( " " + i + ". " + opciones[ i - 1 ] );
         }
 
         String opcion = pedirCadenaAlUsuario( "\nEscriba el número que corresponde a la opción deseada" );
@@ -149,13 +158,13 @@ public abstract class ConsolaBasica
                 return opciones[ opcionSeleccionada - 1 ];
             else
             {
-                System.out.println( "Esa no es una opción válida. Digite solamente números entre 1 y " + opciones.length );
+                salida.println( "Esa no es una opción válida. Digite solamente números entre 1 y " + opciones.length );
                 return pedirOpcionAlUsuario( coleccionOpciones );
             }
         }
         catch( NumberFormatException nfe )
         {
-            System.out.println( "Esa no es una opción válida. Digite solamente números." );
+            salida.println( "Esa no es una opción válida. Digite solamente números." );
             return pedirOpcionAlUsuario( coleccionOpciones );
         }
     }
@@ -168,13 +177,13 @@ public abstract class ConsolaBasica
      */
     protected int mostrarMenu( String nombreMenu, String[] opciones )
     {
-        System.out.println( "\n---------------------" );
-        System.out.println( nombreMenu );
-        System.out.println( "---------------------" );
+        salida.println( "\n---------------------" );
+        salida.println( nombreMenu );
+        salida.println( "---------------------" );
 
         for( int i = 1; i <= opciones.length; i++ )
         {
-            System.out.println( " " + i + ". " + opciones[ i - 1 ] );
+            salida.println( " " + i + ". " + opciones[ i - 1 ] );
         }
         String opcion = pedirCadenaAlUsuario( "Escoja la opción deseada" );
         try
@@ -184,13 +193,13 @@ public abstract class ConsolaBasica
                 return opcionSeleccionada;
             else
             {
-                System.out.println( "Esa no es una opción válida. Digite solamente números entre 1 y " + opciones.length );
+                salida.println( "Esa no es una opción válida. Digite solamente números entre 1 y " + opciones.length );
                 return mostrarMenu( nombreMenu, opciones );
             }
         }
         catch( NumberFormatException nfe )
         {
-            System.out.println( "Esa no es una opción válida. Digite solamente números." );
+            salida.println( "Esa no es una opción válida. Digite solamente números." );
             return mostrarMenu( nombreMenu, opciones );
         }
     }
@@ -204,8 +213,8 @@ public abstract class ConsolaBasica
     protected void mostrarEstadoActual( int cantidadSurtidores, Collection<TipoGasolina> tiposGasolina, String[] nombresEmpleados )
     {
         mostrarInformacionBasica( cantidadSurtidores, tiposGasolina );
-        System.out.println( "Los empleados son: " + Arrays.toString( nombresEmpleados ) );
-        System.out.println( "******************\n" );
+        salida.println( "Los empleados son: " + Arrays.toString( nombresEmpleados ) );
+        salida.println( "******************\n" );
     }
 
     /**
@@ -215,14 +224,45 @@ public abstract class ConsolaBasica
      * @param empleados
      */
     protected void mostrarEstadoActual( int cantidadSurtidores, Collection<TipoGasolina> tiposGasolina, Collection<Empleado> empleados )
+    {
+        if( salida.getNivelDetalle( ) == SalidaConsola.NivelDetalle.RESUMIDO )
+        {
+            mostrarEstadoResumido( cantidadSurtidores, tiposGasolina, empleados );
+            return;
+        }
+
+        mostrarInformacionBasica( cantidadSurtidores, tiposGasolina );
+        salida.println( "Los empleados son: " );
+        int maximo = salida.getMaximoEmpleadosListados( );
+        int listados = 0;
+        for( Iterator<Empleado> iterator = empleados.iterator( ); iterator.hasNext( ) && listados < maximo; listados++ )
+        {
+            Empleado empleado = iterator.next( );
+            salida.println( "   - " + empleado.getNombre( ) + " tiene " + empleado.getCantidadDinero( ) + " pesos" );
+        }
+        if( empleados.size( ) > listados )
+        {
+            salida.println( "   ... y " + ( empleados.size( ) - listados ) + " empleados más" );
+        }
+        salida.println( "******************\n" );
+    }
+
+    /**
+     * Muestra la información actual de una gasolinera, pero en lugar de listar los empleados sólo muestra cuántos son y cuánto dinero han recibido en total
+     * @param cantidadSurtidores
+     * @param tiposGasolina
+     * @param empleados
+     */
+    protected void mostrarEstadoResumido( int cantidadSurtidores, Collection<TipoGasolina> tiposGasolina, Collection<Empleado> empleados )
     {
         mostrarInformacionBasica( cantidadSurtidores, tiposGasolina );
-        System.out.println( "Los empleados son: " );
+        long dineroTotal = 0;
         for( Empleado empleado : empleados )
         {
-            System.out.println( "   - " + empleado.getNombre( ) + " tiene " + empleado.getCantidadDinero( ) + " pesos" );
+            dineroTotal += empleado.getCantidadDinero( );
         }
-        System.out.println( "******************\n" );
+        salida.println( "Hay " + empleados.size( ) + " empleados, que en total tienen " + dineroTotal + " pesos" );
+        salida.println( "******************\n" );
     }
 
     /**
@@ -232,14 +272,14 @@ public abstract class ConsolaBasica
      */
     private void mostrarInformacionBasica( int cantidadSurtidores, Collection<TipoGasolina> tiposGasolina )
     {
-        System.out.println( "\n******************" );
-        System.out.println( "ESTADO ACTUAL" );
-        System.out.println( "La gasolinera tiene actualmente " + cantidadSurtidores + ( cantidadSurtidores > 1 ? " surtidores" : " surtidor" ) );
-        System.out.println( "Los tipos de gasolina disponible son:" );
+        salida.println( "\n******************" );
+        salida.println( "ESTADO ACTUAL" );
+        salida.println( "La gasolinera tiene actualmente " + cantidadSurtidores + ( cantidadSurtidores > 1 ? " surtidores" : " surtidor" ) );
+        salida.println( "Los tipos de gasolina disponible son:" );
         for( TipoGasolina tipo : tiposGasolina )
         {
             String galonesDisponibles = String.format( "%.2f", tipo.getCantidadDisponible( ) );
-            System.out.println( "   - " + tipo.getNombre( ) + ": " + tipo.getPrecioPorGalon( ) + " por galón, " + galonesDisponibles + " galones disponibles" );
+            salida.println( "   - " + tipo.getNombre( ) + ": " + tipo.getPrecioPorGalon( ) + " por galón, " + galonesDisponibles + " galones disponibles" );
         }
     }
 
@@ -62,12 +62,12 @@ public class ConsolaCrearGasolinera extends ConsolaBasica
                 boolean todoOk = true;
                 if( this.nombresEmpleados.size( ) == 0 )
                 {
-                    System.out.println( "No se puede crear una gasolinera sin empleados" );
+                    salida.println( "No se puede crear una gasolinera sin empleados" );
                     todoOk = false;
                 }
                 if( this.tiposGasolina.size( ) == 0 )
                 {
-                    System.out.println( "No se puede crear una gasolinera sin tipos de gasolina" );
+                    salida.println( "No se puede crear una gasolinera sin tipos de gasolina" );
                     todoOk = false;
                 }
 
@@ -101,7 +101,7 @@ public class ConsolaCrearGasolinera extends ConsolaBasica
 
         if( !nombreValido )
         {
-            System.out.println( "No puede haber dos tipos de gasolina con el mismo nombre" );
+            salida.println( "No puede haber dos tipos de gasolina con el mismo nombre" );
         }
         else
         {
@@ -127,11 +127,11 @@ public class ConsolaCrearGasolinera extends ConsolaBasica
      */
     private void cambiarCantidadSurtidores( )
     {
-        System.out.println( "Actualmente hay " + cantidadSurtidores + " surtidores en la gasolinera." );
+        salida.println( "Actualmente hay " + cantidadSurtidores + " surtidores en la gasolinera." );
         int cantidad = pedirEnteroAlUsuario( "¿Cuántos surtidores quiere que haya?" );
         if( cantidad < 1 )
         {
-            System.out.println( "La cantidad de surtidores no puede ser menor a 1" );
+            salida.println( "La cantidad de surtidores no puede ser menor a 1" );
         }
         else
         {
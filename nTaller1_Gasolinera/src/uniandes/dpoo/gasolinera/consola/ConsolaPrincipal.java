@@ -48,7 +48,8 @@ public class ConsolaPrincipal extends ConsolaBasica
         }
         else if( opcionSeleccionada == 5 )
         {
-            System.out.println( "Saliendo ..." );
+            salida.println( "Saliendo ..." );
+            salida.flush( );
             System.exit( 0 );
         }
         mostrarMenuPrincipal( );
@@ -66,7 +67,7 @@ public class ConsolaPrincipal extends ConsolaBasica
         }
         else
         {
-            System.out.println( "No hay en este momento una gasolinera que pueda usarse" );
+            salida.println( "No hay en este momento una gasolinera que pueda usarse" );
         }
     }
 
@@ -82,31 +83,31 @@ public class ConsolaPrincipal extends ConsolaBasica
 
             if( !archivo.exists( ) )
             {
-                System.out.println( "El archivo indicado no existe" );
+                salida.println( "El archivo indicado no existe" );
             }
             else
             {
                 try
                 {
                     laGasolinera = Gasolinera.cargarEstado( archivo );
-                    System.out.println( "Se cargó la gasolinera a partir del archivo " + archivo.getAbsolutePath( ) );
+                    salida.println( "Se cargó la gasolinera a partir del archivo " + archivo.getAbsolutePath( ) );
                 }
                 catch( NumberFormatException e )
                 {
-                    System.out.println( "Hubo un error leyendo el archivo: hay números con un formato incorrecto" );
-                    System.out.println( e.getMessage( ) );
+                    salida.println( "Hubo un error leyendo el archivo: hay números con un formato incorrecto" );
+                    salida.println( e.getMessage( ) );
                     e.printStackTrace( );
                 }
                 catch( FileNotFoundException e )
                 {
-                    System.out.println( "No se encontró el archivo indicado" );
-                    System.out.println( e.getMessage( ) );
+                    salida.println( "No se encontró el archivo indicado" );
+                    salida.println( e.getMessage( ) );
                     e.printStackTrace( );
                 }
                 catch( IOException e )
                 {
-                    System.out.println( "No se pudo leer el archivo indicado" );
-                    System.out.println( e.getMessage( ) );
+                    salida.println( "No se pudo leer el archivo indicado" );
+                    salida.println( e.getMessage( ) );
                     e.printStackTrace( );
                 }
             }
@@ -121,7 +122,7 @@ public class ConsolaPrincipal extends ConsolaBasica
     {
         if( laGasolinera == null )
         {
-            System.out.println( "No hay ninguna gasolinera para guardar" );
+            salida.println( "No hay ninguna gasolinera para guardar" );
         }
         else
         {
@@ -140,12 +141,12 @@ public class ConsolaPrincipal extends ConsolaBasica
                     try
                     {
                         laGasolinera.guardarEstado( archivo );
-                        System.out.println( "El estado actual de la gasolinera fue salvado en el archivo " + archivo.getAbsolutePath( ) );
+                        salida.println( "El estado actual de la gasolinera fue salvado en el archivo " + archivo.getAbsolutePath( ) );
                     }
                     catch( IOException e )
                     {
-                        System.out.println( "Hubo problemas guardando la información en el archivo" );
-                        System.out.println( e.getMessage( ) );
+                        salida.println( "Hubo problemas guardando la información en el archivo" );
+                        salida.println( e.getMessage( ) );
                         e.printStackTrace( );
                     }
                 }
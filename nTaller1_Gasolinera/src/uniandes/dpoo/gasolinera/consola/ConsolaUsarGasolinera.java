@@ -1,7 +1,13 @@
 package uniandes.dpoo.gasolinera.consola;
 
+import java.io.IOException;
+import java.util.Arrays;
+
+import uniandes.dpoo.gasolinera.logica.CierreTurno;
 import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
 import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+import uniandes.dpoo.gasolinera.metricas.MetricasGasolinera;
 
 /**
  * Dentro de esta clase está la lógica necesaria para permitirle a los usuarios usar una gasolinera.
@@ -11,7 +17,8 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
     /**
      * Opciones que se mostrarán en el menú para usar una gasolinera
      */
-    private final String[] opcionesUsarGasolinera = new String[]{ "Vender gasolina por volumen", "Vender gasolina por precio", "Regresar" };
+    private final String[] opcionesUsarGasolinera = new String[]{ "Vender gasolina por volumen", "Vender gasolina por precio", "Cambiar el precio de un tipo de gasolina",
+            "Registrar una entrega de gasolina", "Cerrar el turno", "Cambiar el nivel de detalle del estado", "Ver las métricas de operación", "Regresar" };
 
     /**
      * La gasolinera sobre la que se realizarán las operaciones
@@ -38,7 +45,10 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
 
         while( !regresar )
         {
-            mostrarEstadoActual( laGasolinera.getCantidadSurtidores( ), laGasolinera.getTiposGasolina( ), laGasolinera.getEmpleados( ) );
+            if( salida.debeMostrarEstado( ) )
+            {
+                mostrarEstadoActual( laGasolinera.getCantidadSurtidores( ), laGasolinera.getTiposGasolina( ), laGasolinera.getEmpleados( ) );
+            }
 
             int opcionSeleccionada = mostrarMenu( "Opciones de la Gasolinera", opcionesUsarGasolinera );
             if( opcionSeleccionada == 1 )
@@ -50,12 +60,165 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
                 venderGasolinaPorPrecio( );
             }
             else if( opcionSeleccionada == 3 )
+            {
+                cambiarPrecio( );
+            }
+            else if( opcionSeleccionada == 4 )
+            {
+                registrarEntrega( );
+            }
+            else if( opcionSeleccionada == 5 )
+            {
+                cerrarTurno( );
+            }
+            else if( opcionSeleccionada == 6 )
+            {
+                cambiarNivelDetalle( );
+            }
+            else if( opcionSeleccionada == 7 )
+            {
+                mostrarMetricas( );
+            }
+            else if( opcionSeleccionada == 8 )
             {
                 regresar = true;
             }
         }
     }
 
+    /**
+     * Le pregunta al usuario el tipo de gasolina y su nuevo precio por galón, y lo cambia sin detener las ventas
+     */
+    private void cambiarPrecio( )
+    {
+        String nombreTipoGasolina = pedirOpcionAlUsuario( laGasolinera.getTiposGasolina( ) );
+        if( nombreTipoGasolina != null )
+        {
+            TipoGasolina tipo = laGasolinera.getTipoGasolina( nombreTipoGasolina );
+            salida.println( "El precio por galón para la gasolina " + tipo.getNombre( ) + " es " + tipo.getPrecioPorGalon( ) + " (versión " + tipo.getVersionPrecio( ) + ")" );
+
+            int nuevoPrecio = pedirEnteroAlUsuario( "Indique el nuevo precio por galón. Debe ser un número entero positivo y mayor a 0" );
+            if( nuevoPrecio <= 0 )
+            {
+                salida.println( "El número debe ser estrictamente positivo." );
+            }
+            else
+            {
+                int version = laGasolinera.cambiarPrecio( nombreTipoGasolina, nuevoPrecio );
+                salida.println( "El nuevo precio de la gasolina " + tipo.getNombre( ) + " es " + nuevoPrecio + " (versión " + version + ")" );
+            }
+        }
+    }
+
+    /**
+     * Le pregunta al usuario el tipo de gasolina y la cantidad de galones que llegaron en una entrega, y los agrega al inventario
+     */
+    private void registrarEntrega( )
+    {
+        String nombreTipoGasolina = pedirOpcionAlUsuario( laGasolinera.getTiposGasolina( ) );
+        if( nombreTipoGasolina != null )
+        {
+            double galones = pedirNumeroAlUsuario( "Indique la cantidad de galones recibidos. Debe ser un número positivo y mayor a 0" );
+            if( galones <= 0 )
+            {
+                salida.println( "El número debe ser estrictamente positivo." );
+            }
+            else
+            {
+                double disponible = laGasolinera.recargarGasolina( nombreTipoGasolina, galones );
+                salida.println( "Ahora hay " + disponible + " galones de gasolina " + nombreTipoGasolina );
+            }
+        }
+    }
+
+    /**
+     * Cierra el turno actual y muestra el dinero que recogió cada empleado durante el turno
+     */
+    private void cerrarTurno( )
+    {
+        CierreTurno cierre;
+        try
+        {
+            cierre = laGasolinera.cerrarTurno( );
+        }
+        catch( IOException e )
+        {
+            salida.println( "No se pudo guardar el turno, así que sigue abierto: " + e.getMessage( ) );
+            return;
+        }
+        InstantaneaGasolinera ventas = cierre.getVentas( );
+        salida.println( "Se cerró el turno " + cierre.getNumero( ) + ". Los empleados recogieron " + cierre.getTotalDinero( ) + " en total" );
+
+        int empleadosListados = Math.min( ventas.getCantidadEmpleados( ), salida.getMaximoEmpleadosListados( ) );
+        for( int id = 0; id < empleadosListados; id++ )
+        {
+            salida.println( "  " + ventas.getNombreEmpleado( id ) + ": " + ventas.getCantidadDinero( id ) );
+        }
+        if( empleadosListados < ventas.getCantidadEmpleados( ) )
+        {
+            salida.println( "  ... y " + ( ventas.getCantidadEmpleados( ) - empleadosListados ) + " empleados más" );
+        }
+    }
+
+    /**
+     * Le pregunta al usuario con qué nivel de detalle y cada cuántas operaciones quiere que se muestre el estado de la gasolinera.
+     * 
+     * En sesiones con muchas ventas seguidas conviene usar el nivel SILENCIOSO, para que la salida no sea más costosa que las ventas.
+     */
+    private void cambiarNivelDetalle( )
+    {
+        salida.println( "Actualmente el estado se muestra con nivel " + salida.getNivelDetalle( ) + " cada " + salida.getIntervaloEstado( ) + " operaciones." );
+        String nombreNivel = pedirOpcionAlUsuario( Arrays.asList( SalidaConsola.NivelDetalle.values( ) ) );
+        salida.cambiarNivelDetalle( SalidaConsola.NivelDetalle.valueOf( nombreNivel ) );
+
+        if( salida.getNivelDetalle( ) != SalidaConsola.NivelDetalle.SILENCIOSO )
+        {
+            int intervalo = pedirEnteroAlUsuario( "¿Cada cuántas operaciones quiere que se muestre el estado? Debe ser un entero mayor a 0" );
+            if( intervalo < 1 )
+            {
+                salida.println( "El número debe ser estrictamente positivo." );
+            }
+            else
+            {
+                salida.cambiarIntervaloEstado( intervalo );
+            }
+        }
+    }
+
+    /**
+     * Muestra las métricas de operación de la gasolinera. Si no estaban activadas, las activa para que se empiecen a registrar desde ahora.
+     */
+    private void mostrarMetricas( )
+    {
+        MetricasGasolinera metricas = laGasolinera.getMetricas( );
+        if( metricas == null )
+        {
+            laGasolinera.activarMetricas( );
+            salida.println( "Las métricas no estaban activadas. Se registrarán a partir de ahora." );
+            return;
+        }
+
+        salida.println( "Ventas: " + metricas.getLatenciaVentas( ) );
+        salida.println( "Guardar estado: " + metricas.getLatenciaGuardar( ) );
+        salida.println( "Cargar estado: " + metricas.getLatenciaCargar( ) );
+        for( int id = 0; id < metricas.getCantidadTiposGasolina( ); id++ )
+        {
+            salida.println( String.format( "  %s: %d ventas, %.1f%% parciales, %d entregas (%.1f galones)", laGasolinera.getTipoGasolina( id ).getNombre( ),
+                    metricas.getVentasPorTipo( id ), metricas.getTasaParcialesPorTipo( id ) * 100, metricas.getEntregasPorTipo( id ), metricas.getGalonesEntregadosPorTipo( id ) ) );
+        }
+
+        // En gasolineras con muchos surtidores sólo se listan los primeros, igual que con los empleados en el estado
+        int surtidoresListados = Math.min( metricas.getCantidadSurtidores( ), salida.getMaximoEmpleadosListados( ) );
+        for( int i = 0; i < surtidoresListados; i++ )
+        {
+            salida.println( String.format( "  Surtidor %d: %d ventas, %.1f%% parciales", i, metricas.getVentasPorSurtidor( i ), metricas.getTasaParcialesPorSurtidor( i ) * 100 ) );
+        }
+        if( surtidoresListados < metricas.getCantidadSurtidores( ) )
+        {
+            salida.println( "  ... y " + ( metricas.getCantidadSurtidores( ) - surtidoresListados ) + " surtidores más" );
+        }
+    }
+
     /**
      * Dentro de este método se llevan a cabo todos los pasos para vender gasolina dada la cantidad que quiere pagar el comprador.
      * 
@@ -68,7 +231,7 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
         int surtidor = pedirEnteroAlUsuario( "Indique el surtidor donde se va a realizar la venta. Debe ser un entero entre 0 y " + ( cantidadSurtidores - 1 ) );
         if( surtidor < 0 || surtidor >= cantidadSurtidores )
         {
-            System.out.println( "El número del surtidor no es válido" );
+            salida.println( "El número del surtidor no es válido" );
         }
         else
         {
@@ -76,23 +239,23 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
             if( nombreTipoGasolina != null )
             {
                 TipoGasolina tipo = laGasolinera.getTipoGasolina( nombreTipoGasolina );
-                System.out.println( "El precio por galón para la gasolina " + tipo.getNombre( ) + " es " + tipo.getPrecioPorGalon( ) );
+                salida.println( "El precio por galón para la gasolina " + tipo.getNombre( ) + " es " + tipo.getPrecioPorGalon( ) );
 
                 int precio = pedirEnteroAlUsuario( "Indique cuánto quiere pagar por la gasolina. Debe ser un número entero positivo y mayor a 0" );
                 if( precio <= 0 )
                 {
-                    System.out.println( "El número debe ser estrictamente positivo." );
+                    salida.println( "El número debe ser estrictamente positivo." );
                 }
                 else
                 {
                     int precioReal = laGasolinera.venderGasolinaPorPrecio( nombreTipoGasolina, precio, surtidor );
                     if( precioReal == precio )
                     {
-                        System.out.println( "Se realizó una venta por " + precio + " pesos" );
+                        salida.println( "Se realizó una venta por " + precio + " pesos" );
                     }
                     else
                     {
-                        System.out.println( "No había suficiente inventario del tipo de gasolina indicado, así que la venta se hizo sólo por " + precioReal + " pesos" );
+                        salida.println( "No había suficiente inventario del tipo de gasolina indicado, así que la venta se hizo sólo por " + precioReal + " pesos" );
                     }
                 }
             }
@@ -111,7 +274,7 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
         int surtidor = pedirEnteroAlUsuario( "Indique el surtidor donde se va a realizar la venta. Debe ser un entero entre 0 y " + ( cantidadSurtidores - 1 ) );
         if( surtidor < 0 || surtidor >= cantidadSurtidores )
         {
-            System.out.println( "El número del surtidor no es válido" );
+            salida.println( "El número del surtidor no es válido" );
         }
         else
         {
@@ -119,17 +282,17 @@ public class ConsolaUsarGasolinera extends ConsolaBasica
             if( nombreTipoGasolina != null )
             {
                 TipoGasolina tipo = laGasolinera.getTipoGasolina( nombreTipoGasolina );
-                System.out.println( "El precio por galón para la gasolina " + tipo.getNombre( ) + " es " + tipo.getPrecioPorGalon( ) );
+                salida.println( "El precio por galón para la gasolina " + tipo.getNombre( ) + " es " + tipo.getPrecioPorGalon( ) );
 
                 double cantidadGasolina = pedirNumeroAlUsuario( "Indique cuántos galores quiere comprar. Debe ser un número positivo y mayor a 0" );
                 if( cantidadGasolina <= 0 )
                 {
-                    System.out.println( "El número debe ser estrictamente positivo." );
+                    salida.println( "El número debe ser estrictamente positivo." );
                 }
                 else
                 {
                     int precioVenta = laGasolinera.venderGasolinaPorCantidad( nombreTipoGasolina, cantidadGasolina, surtidor );
-                    System.out.println( "Se realizó una venta por " + precioVenta + " pesos" );
+                    salida.println( "Se realizó una venta por " + precioVenta + " pesos" );
                 }
             }
         }
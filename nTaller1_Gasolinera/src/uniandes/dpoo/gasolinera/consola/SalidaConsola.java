@@ -0,0 +1,158 @@
+package uniandes.dpoo.gasolinera.consola;
+
+import java.io.BufferedWriter;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.Charset;
+
+/**
+ * Esta clase centraliza la salida de las consolas de la aplicación.
+ *
+ * Todo lo que se imprime queda en un buffer grande que sólo se envía a la consola cuando se le va a pedir algo al usuario, es decir una vez por interacción. Además,
+ * esta clase decide con qué nivel de detalle y con qué frecuencia se vuelve a mostrar el estado de la gasolinera.
+ */
+public class SalidaConsola
+{
+    /**
+     * Los niveles de detalle con los que se puede mostrar el estado de la gasolinera
+     */
+    public enum NivelDetalle
+    {
+        /**
+         * Se muestran todos los tipos de gasolina y los empleados (hasta el máximo configurado)
+         */
+        COMPLETO,
+
+        /**
+         * Se muestran los tipos de gasolina y sólo un resumen de los empleados
+         */
+        RESUMIDO,
+
+        /**
+         * No se muestra el estado de la gasolinera
+         */
+        SILENCIOSO
+    }
+
+    /**
+     * El tamaño en caracteres del buffer de salida
+     */
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    /**
+     * El writer a través del cual se escribe en la consola
+     */
+    private PrintWriter writer;
+
+    /**
+     * El nivel de detalle con el que se muestra el estado de la gasolinera
+     */
+    private NivelDetalle nivelDetalle;
+
+    /**
+     * Cada cuántas interacciones se vuelve a mostrar el estado de la gasolinera. Con 1 se muestra en todas las interacciones.
+     */
+    private int intervaloEstado;
+
+    /**
+     * La cantidad máxima de empleados que se listan cuando el nivel de detalle es COMPLETO
+     */
+    private int maximoEmpleadosListados;
+
+    /**
+     * La cantidad de interacciones que han pasado desde la última vez que se mostró el estado
+     */
+    private int interaccionesSinEstado;
+
+    /**
+     * Construye una nueva salida que escribe en el flujo indicado, mostrando el estado completo en todas las interacciones
+     * @param flujo El flujo donde se escribirá. Normalmente es System.out
+     */
+    public SalidaConsola( OutputStream flujo )
+    {
+        this.writer = new PrintWriter( new BufferedWriter( new OutputStreamWriter( flujo, Charset.defaultCharset( ) ), TAMANO_BUFFER ), false );
+        this.nivelDetalle = NivelDetalle.COMPLETO;
+        this.intervaloEstado = 1;
+        this.maximoEmpleadosListados = 50;
+        this.interaccionesSinEstado = Integer.MAX_VALUE;
+    }
+
+    public NivelDetalle getNivelDetalle( )
+    {
+        return nivelDetalle;
+    }
+
+    public void cambiarNivelDetalle( NivelDetalle nivelDetalle )
+    {
+        this.nivelDetalle = nivelDetalle;
+        this.interaccionesSinEstado = Integer.MAX_VALUE;
+    }
+
+    public int getIntervaloEstado( )
+    {
+        return intervaloEstado;
+    }
+
+    /**
+     * Cambia cada cuántas interacciones se vuelve a mostrar el estado de la gasolinera
+     * @param intervaloEstado La cantidad de interacciones. Si es menor a 1, se usa 1.
+     */
+    public void cambiarIntervaloEstado( int intervaloEstado )
+    {
+        this.intervaloEstado = Math.max( 1, intervaloEstado );
+    }
+
+    public int getMaximoEmpleadosListados( )
+    {
+        return maximoEmpleadosListados;
+    }
+
+    public void cambiarMaximoEmpleadosListados( int maximoEmpleadosListados )
+    {
+        this.maximoEmpleadosListados = Math.max( 0, maximoEmpleadosListados );
+    }
+
+    /**
+     * Indica si en la interacción actual debe mostrarse el estado de la gasolinera, de acuerdo con el nivel de detalle y el intervalo configurados.
+     *
+     * Cada llamado a este método cuenta como una interacción.
+     * @return Retorna true si debe mostrarse el estado
+     */
+    public boolean debeMostrarEstado( )
+    {
+        if( nivelDetalle == NivelDetalle.SILENCIOSO )
+            return false;
+
+        if( interaccionesSinEstado >= intervaloEstado - 1 )
+        {
+            interaccionesSinEstado = 0;
+            return true;
+        }
+        interaccionesSinEstado++;
+        return false;
+    }
+
+    public void print( String texto )
+    {
+        writer.print( texto );
+    }
+
+    public void println( String texto )
+    {
+        writer.println( texto );
+    }
+
+    public void println( )
+    {
+        writer.println( );
+    }
+
+    /**
+     * Envía a la consola todo lo que esté acumulado en el buffer. Debe llamarse antes de esperar una respuesta del usuario.
+     */
+    public void flush( )
+    {
+        writer.flush( );
+    }
+}
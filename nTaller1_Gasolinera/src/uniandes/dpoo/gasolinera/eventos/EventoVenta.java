@@ -0,0 +1,129 @@
+package uniandes.dpoo.gasolinera.eventos;
+
+/**
+ * Describe una venta de gasolina que ya se hizo. Los eventos son inmutables, así que se pueden entregar a varios suscriptores sin copiarlos.
+ */
+public class EventoVenta
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * El número del surtidor donde se hizo la venta
+     */
+    private final int numeroSurtidor;
+
+    /**
+     * El identificador del tipo de gasolina vendido
+     */
+    private final int idTipoGasolina;
+
+    /**
+     * El nombre del tipo de gasolina vendido
+     */
+    private final String nombreTipoGasolina;
+
+    /**
+     * La cantidad de galones que se le entregaron al cliente
+     */
+    private final double galones;
+
+    /**
+     * El precio de la venta
+     */
+    private final int precio;
+
+    /**
+     * El precio por galón con el que se hizo la venta
+     */
+    private final int precioPorGalon;
+
+    /**
+     * La versión del precio por galón con el que se hizo la venta
+     */
+    private final int versionPrecio;
+
+    /**
+     * El nombre del empleado que recibió el dinero de la venta
+     */
+    private final String nombreEmpleado;
+
+    /**
+     * El momento de la venta, en milisegundos desde el 1 de enero de 1970
+     */
+    private final long instante;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    public EventoVenta( int numeroSurtidor, int idTipoGasolina, String nombreTipoGasolina, double galones, int precio, int precioPorGalon, int versionPrecio, String nombreEmpleado,
+            long instante )
+    {
+        this.numeroSurtidor = numeroSurtidor;
+        this.idTipoGasolina = idTipoGasolina;
+        this.nombreTipoGasolina = nombreTipoGasolina;
+        this.galones = galones;
+        this.precio = precio;
+        this.precioPorGalon = precioPorGalon;
+        this.versionPrecio = versionPrecio;
+        this.nombreEmpleado = nombreEmpleado;
+        this.instante = instante;
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    public int getNumeroSurtidor( )
+    {
+        return numeroSurtidor;
+    }
+
+    public int getIdTipoGasolina( )
+    {
+        return idTipoGasolina;
+    }
+
+    public String getNombreTipoGasolina( )
+    {
+        return nombreTipoGasolina;
+    }
+
+    public double getGalones( )
+    {
+        return galones;
+    }
+
+    public int getPrecio( )
+    {
+        return precio;
+    }
+
+    public int getPrecioPorGalon( )
+    {
+        return precioPorGalon;
+    }
+
+    public int getVersionPrecio( )
+    {
+        return versionPrecio;
+    }
+
+    public String getNombreEmpleado( )
+    {
+        return nombreEmpleado;
+    }
+
+    public long getInstante( )
+    {
+        return instante;
+    }
+
+    @Override
+    public String toString( )
+    {
+        return "Venta en el surtidor " + numeroSurtidor + ": " + galones + " galones de " + nombreTipoGasolina + " por " + precio + " (" + nombreEmpleado + ")";
+    }
+}
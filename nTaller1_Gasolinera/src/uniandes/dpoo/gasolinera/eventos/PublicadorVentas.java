@@ -0,0 +1,137 @@
+package uniandes.dpoo.gasolinera.eventos;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.SubmissionPublisher;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Publica los eventos de las ventas de una gasolinera para los sistemas que los necesitan (fidelización, contabilidad, telemetría de los tanques, etc.).
+ *
+ * Cada suscriptor tiene su propio buffer de tamaño limitado y recibe los eventos en otro thread, a medida que los pide con Flow.Subscription.request. Publicar un
+ * evento nunca espera: si el buffer de un suscriptor está lleno porque ese suscriptor es lento, el evento se descarta sólo para él y se cuenta como descartado. Así,
+ * un suscriptor lento no demora las ventas ni a los demás suscriptores. Un suscriptor que no puede perder eventos sin saberlo (por ejemplo, un archivo histórico)
+ * implementa SuscriptorSinPerdidas, y el publicador le avisa cada evento que descarta para él.
+ */
+public class PublicadorVentas implements Flow.Publisher<EventoVenta>, AutoCloseable
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * El publicador que maneja los buffers y la entrega de los eventos a cada suscriptor
+     */
+    private final SubmissionPublisher<EventoVenta> publicador;
+
+    /**
+     * La cantidad de eventos que no se le entregaron a algún suscriptor porque su buffer estaba lleno
+     */
+    private final LongAdder descartados = new LongAdder( );
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un publicador que entrega los eventos usando el pool común de threads
+     * @param capacidadPorSuscriptor La cantidad máxima de eventos que pueden estar esperando a cada suscriptor
+     */
+    public PublicadorVentas( int capacidadPorSuscriptor )
+    {
+        this( ForkJoinPool.commonPool( ), capacidadPorSuscriptor );
+    }
+
+    /**
+     * Construye un publicador
+     * @param ejecutor El ejecutor con el que se les entregan los eventos a los suscriptores
+     * @param capacidadPorSuscriptor La cantidad máxima de eventos que pueden estar esperando a cada suscriptor
+     */
+    public PublicadorVentas( Executor ejecutor, int capacidadPorSuscriptor )
+    {
+        this.publicador = new SubmissionPublisher<EventoVenta>( ejecutor, capacidadPorSuscriptor );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    @Override
+    public void subscribe( Flow.Subscriber<? super EventoVenta> suscriptor )
+    {
+        publicador.subscribe( suscriptor );
+    }
+
+    /**
+     * Indica si hay algún suscriptor. Permite no construir el evento de una venta cuando nadie lo va a recibir
+     * @return Retorna true si hay al menos un suscriptor
+     */
+    public boolean tieneSuscriptores( )
+    {
+        return publicador.hasSubscribers( );
+    }
+
+    /**
+     * Publica un evento para todos los suscriptores, sin esperar. Los suscriptores que tengan el buffer lleno no lo reciben (a los que implementan SuscriptorSinPerdidas se
+     * les avisa), y si el publicador ya se cerró no lo recibe nadie.
+     * @param evento El evento de la venta
+     */
+    public void publicar( EventoVenta evento )
+    {
+        try
+        {
+            publicador.offer( evento, ( suscriptor, descartado ) -> {
+                descartados.increment( );
+                if( suscriptor instanceof SuscriptorSinPerdidas )
+                    ( ( SuscriptorSinPerdidas )suscriptor ).descartado( descartado );
+                return false;
+            } );
+        }
+        catch( IllegalStateException e )
+        {
+            // El publicador se cerró mientras se hacía la venta: el evento simplemente no se publica
+        }
+    }
+
+    /**
+     * Retorna la cantidad de eventos que no se le entregaron a algún suscriptor porque su buffer estaba lleno. Si un evento se descartó para dos suscriptores, cuenta dos
+     * veces.
+     * @return La cantidad de eventos descartados
+     */
+    public long getDescartados( )
+    {
+        return descartados.sum( );
+    }
+
+    public int getCantidadSuscriptores( )
+    {
+        return publicador.getNumberOfSubscribers( );
+    }
+
+    /**
+     * Deja de publicar eventos. Los suscriptores reciben onComplete después de los eventos que ya tenían en su buffer.
+     */
+    @Override
+    public void close( )
+    {
+        publicador.close( );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Un suscriptor que necesita saber cuándo se descarta un evento para él porque su buffer estaba lleno, para no dar por completos unos datos a los que les faltan
+     * ventas
+     */
+    public interface SuscriptorSinPerdidas extends Flow.Subscriber<EventoVenta>
+    {
+        /**
+         * Avisa que un evento no se le entregó al suscriptor. Se llama desde el thread que publica el evento, así que no debe bloquearse
+         * @param evento El evento descartado
+         */
+        void descartado( EventoVenta evento );
+    }
+}
@@ -0,0 +1,29 @@
+package uniandes.dpoo.gasolinera.exceptions;
+
+@SuppressWarnings("serial")
+public class VentaRechazadaException extends Exception
+{
+
+    private String tipoGasolina;
+    private int ventasEnEspera;
+
+    public VentaRechazadaException( String tipoGasolina, int ventasEnEspera )
+    {
+        super( );
+        this.tipoGasolina = tipoGasolina;
+        this.ventasEnEspera = ventasEnEspera;
+    }
+
+    @Override
+    public String getMessage( )
+    {
+        String m = "No se pudo recibir la venta de gasolina del tipo " + tipoGasolina + ".\n";
+        m += "Ya hay " + ventasEnEspera + " ventas de ese tipo esperando a ser procesadas";
+        return m;
+    }
+
+    public int getVentasEnEspera( )
+    {
+        return ventasEnEspera;
+    }
+}
@@ -0,0 +1,67 @@
+package uniandes.dpoo.gasolinera.exportacion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe registros en CSV (RFC 4180, con saltos de línea '\n'): la primera línea de cada tabla tiene los nombres de las columnas y cada registro es una línea con sus
+ * campos separados por comas.
+ */
+public class EscritorCsv extends EscritorRegistros
+{
+    public EscritorCsv( OutputStream destino )
+    {
+        super( destino );
+    }
+
+    @Override
+    public void iniciarTabla( String... nombresColumnas ) throws IOException
+    {
+        super.iniciarTabla( nombresColumnas );
+        for( int i = 0; i < nombresColumnas.length; i++ )
+        {
+            if( i > 0 )
+                salida.escribirAscii( ',' );
+            salida.escribirCampoCsv( nombresColumnas[ i ] );
+        }
+        salida.escribirAscii( '\n' );
+    }
+
+    @Override
+    public void escribirCampo( String valor ) throws IOException
+    {
+        separar( );
+        salida.escribirCampoCsv( valor );
+    }
+
+    @Override
+    public void escribirCampo( long valor ) throws IOException
+    {
+        separar( );
+        salida.escribirEntero( valor );
+    }
+
+    /**
+     * Escribe el siguiente campo del registro actual. NaN y los infinitos no son números de CSV, así que se escriben como un campo vacío
+     */
+    @Override
+    public void escribirCampo( double valor ) throws IOException
+    {
+        separar( );
+        if( Double.isFinite( valor ) )
+            salida.escribirDecimal( valor );
+    }
+
+    @Override
+    public void terminarRegistro( ) throws IOException
+    {
+        super.terminarRegistro( );
+        salida.escribirAscii( '\n' );
+    }
+
+    private void separar( ) throws IOException
+    {
+        if( siguienteCampo( ) > 0 )
+            salida.escribirAscii( ',' );
+    }
+}
@@ -0,0 +1,65 @@
+package uniandes.dpoo.gasolinera.exportacion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe registros en JSON por líneas: cada registro es un objeto JSON en su propia línea, con un atributo por columna. Las tablas no tienen encabezado, así que
+ * normalmente cada tabla se escribe en su propio flujo.
+ */
+public class EscritorJsonl extends EscritorRegistros
+{
+    public EscritorJsonl( OutputStream destino )
+    {
+        super( destino );
+    }
+
+    @Override
+    public void escribirCampo( String valor ) throws IOException
+    {
+        iniciarAtributo( );
+        salida.escribirCadenaJson( valor );
+    }
+
+    @Override
+    public void escribirCampo( long valor ) throws IOException
+    {
+        iniciarAtributo( );
+        salida.escribirEntero( valor );
+    }
+
+    /**
+     * Escribe el siguiente campo del registro actual. Como JSON no tiene NaN ni infinitos, esos valores se escriben como null
+     */
+    @Override
+    public void escribirCampo( double valor ) throws IOException
+    {
+        iniciarAtributo( );
+        if( Double.isFinite( valor ) )
+            salida.escribirDecimal( valor );
+        else
+            salida.escribir( "null" );
+    }
+
+    @Override
+    public void terminarRegistro( ) throws IOException
+    {
+        boolean vacio = campo == 0;
+        super.terminarRegistro( );
+        if( vacio )
+            salida.escribirAscii( '{' );
+        salida.escribirAscii( '}' );
+        salida.escribirAscii( '\n' );
+    }
+
+    /**
+     * Escribe lo que va antes del valor de un campo: la apertura del objeto o la coma, y el nombre de la columna
+     */
+    private void iniciarAtributo( ) throws IOException
+    {
+        int posicion = siguienteCampo( );
+        salida.escribirAscii( posicion == 0 ? '{' : ',' );
+        salida.escribirCadenaJson( columnas[ posicion ] );
+        salida.escribirAscii( ':' );
+    }
+}
@@ -0,0 +1,118 @@
+package uniandes.dpoo.gasolinera.exportacion;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Escribe registros planos (una tabla con columnas) en un formato de texto para extracción de datos, como CSV (EscritorCsv) o JSON por líneas (EscritorJsonl).
+ *
+ * Primero se indican las columnas de la tabla con iniciarTabla y luego, por cada registro, los valores de sus campos en el orden de las columnas, terminando con
+ * terminarRegistro. Todo se escribe en un buffer que se reutiliza (ver SalidaTexto), así que la memoria no depende de la cantidad de registros. Los datos quedan en el
+ * flujo después de llamar vaciar; el escritor no cierra el flujo.
+ */
+public abstract class EscritorRegistros implements Flushable
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La salida donde se escriben los registros
+     */
+    final SalidaTexto salida;
+
+    /**
+     * Los nombres de las columnas de la tabla actual
+     */
+    String[] columnas;
+
+    /**
+     * La posición del siguiente campo del registro actual
+     */
+    int campo;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un escritor
+     * @param destino El flujo donde se escriben los registros
+     */
+    EscritorRegistros( OutputStream destino )
+    {
+        this.salida = new SalidaTexto( destino );
+        this.columnas = new String[0];
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Empieza una tabla nueva. Los registros que se escriban después tienen estas columnas
+     * @param nombresColumnas Los nombres de las columnas. El arreglo no se copia
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public void iniciarTabla( String... nombresColumnas ) throws IOException
+    {
+        columnas = nombresColumnas;
+        campo = 0;
+    }
+
+    /**
+     * Escribe el siguiente campo del registro actual
+     * @param valor El texto del campo
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public abstract void escribirCampo( String valor ) throws IOException;
+
+    /**
+     * Escribe el siguiente campo del registro actual
+     * @param valor El número del campo
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public abstract void escribirCampo( long valor ) throws IOException;
+
+    /**
+     * Escribe el siguiente campo del registro actual, con hasta tres decimales si el número cabe en milésimas. NaN y los infinitos se escriben como un valor vacío del
+     * formato, nunca como texto
+     * @param valor El número del campo
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public abstract void escribirCampo( double valor ) throws IOException;
+
+    /**
+     * Termina el registro actual. El siguiente campo que se escriba es el primero de otro registro
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo o si el registro no tiene un campo por cada columna
+     */
+    public void terminarRegistro( ) throws IOException
+    {
+        if( campo != columnas.length )
+            throw new IOException( "El registro tiene " + campo + " campos pero la tabla tiene " + columnas.length + " columnas" );
+        campo = 0;
+    }
+
+    /**
+     * Envía al flujo todo lo que se ha escrito
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    @Override
+    public void flush( ) throws IOException
+    {
+        salida.vaciar( );
+    }
+
+    /**
+     * Revisa que el registro actual todavía tenga columnas libres y avanza al siguiente campo
+     * @return La posición del campo que se va a escribir
+     * @throws IOException Si el registro ya tiene un campo por cada columna
+     */
+    int siguienteCampo( ) throws IOException
+    {
+        if( campo >= columnas.length )
+            throw new IOException( "El registro tiene más campos que columnas" );
+        return campo++;
+    }
+}
@@ -0,0 +1,272 @@
+package uniandes.dpoo.gasolinera.exportacion;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.historial.ArchivoVentas;
+import uniandes.dpoo.gasolinera.logica.Empleado;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+import uniandes.dpoo.gasolinera.logica.Surtidor;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+/**
+ * Exporta los registros de una gasolinera y su historial de ventas como tablas planas, para los extractos diarios de análisis de datos.
+ *
+ * Cada método escribe una tabla recorriendo directamente el almacén de la gasolinera o los segmentos del archivo de ventas, registro por registro, a través de un
+ * EscritorRegistros. No se construye ninguna instantánea ni ninguna lista intermedia, así que la memoria que se usa no depende de la cantidad de surtidores, empleados o
+ * ventas. A cambio, los valores de los surtidores y de los empleados se leen uno por uno mientras la gasolinera sigue vendiendo: cada registro es correcto, pero una
+ * venta que ocurra durante la exportación puede aparecer en el surtidor y no en el empleado.
+ *
+ * Si se necesita un extracto consistente, cada tabla también se puede exportar desde una instantánea: la de Gasolinera.tomarInstantanea( ) o las ventas del cierre de un
+ * turno (CierreTurno.getVentas( )). Todas las tablas que se exporten desde la misma instantánea cuadran entre sí. Exportar la gasolinera después de cerrar el turno no
+ * sirve para eso, porque el cierre deja sus contadores en cero.
+ */
+public final class ExportadorGasolinera
+{
+    /**
+     * Las columnas de la tabla de tipos de gasolina
+     */
+    private static final String[] COLUMNAS_TIPOS = new String[]{ "id", "nombre", "precio_por_galon", "version_precio", "cantidad_disponible", "cantidad_reservada" };
+
+    /**
+     * Las columnas de la tabla de empleados
+     */
+    private static final String[] COLUMNAS_EMPLEADOS = new String[]{ "id", "nombre", "dinero" };
+
+    /**
+     * Las columnas de la tabla de ventas
+     */
+    private static final String[] COLUMNAS_VENTAS = new String[]{ "instante", "surtidor", "tipo_gasolina", "galones", "precio", "precio_por_galon", "version_precio",
+            "empleado" };
+
+    private ExportadorGasolinera( )
+    {
+    }
+
+    // ************************************************************************
+    // Métodos estáticos
+    // ************************************************************************
+
+    /**
+     * Exporta los tipos de gasolina, en el orden de sus identificadores
+     * @param gasolinera La gasolinera
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarTiposGasolina( Gasolinera gasolinera, EscritorRegistros escritor ) throws IOException
+    {
+        escritor.iniciarTabla( COLUMNAS_TIPOS );
+        int cantidad = gasolinera.getCantidadTiposGasolina( );
+        for( int id = 0; id < cantidad; id++ )
+        {
+            TipoGasolina tipo = gasolinera.getTipoGasolina( id );
+            long precioVersionado = tipo.getPrecioVersionado( );
+            escritor.escribirCampo( id );
+            escritor.escribirCampo( tipo.getNombre( ) );
+            escritor.escribirCampo( TipoGasolina.precioDe( precioVersionado ) );
+            escritor.escribirCampo( TipoGasolina.versionDe( precioVersionado ) );
+            escritor.escribirCampo( tipo.getCantidadDisponible( ) );
+            escritor.escribirCampo( tipo.getCantidadReservada( ) );
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta los tipos de gasolina de una instantánea, en el orden de sus identificadores
+     * @param estado La instantánea
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarTiposGasolina( InstantaneaGasolinera estado, EscritorRegistros escritor ) throws IOException
+    {
+        escritor.iniciarTabla( COLUMNAS_TIPOS );
+        int cantidad = estado.getCantidadTiposGasolina( );
+        for( int id = 0; id < cantidad; id++ )
+        {
+            escritor.escribirCampo( id );
+            escritor.escribirCampo( estado.getNombreTipoGasolina( id ) );
+            escritor.escribirCampo( estado.getPrecioPorGalon( id ) );
+            escritor.escribirCampo( estado.getVersionPrecio( id ) );
+            escritor.escribirCampo( estado.getCantidadDisponible( id ) );
+            escritor.escribirCampo( estado.getCantidadReservada( id ) );
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta los empleados, en el orden de sus identificadores
+     * @param gasolinera La gasolinera
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarEmpleados( Gasolinera gasolinera, EscritorRegistros escritor ) throws IOException
+    {
+        escritor.iniciarTabla( COLUMNAS_EMPLEADOS );
+        int cantidad = gasolinera.getCantidadEmpleados( );
+        for( int id = 0; id < cantidad; id++ )
+        {
+            Empleado empleado = gasolinera.getEmpleado( id );
+            escritor.escribirCampo( id );
+            escritor.escribirCampo( empleado.getNombre( ) );
+            escritor.escribirCampo( empleado.getCantidadDinero( ) );
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta los empleados de una instantánea, en el orden de sus identificadores
+     * @param estado La instantánea
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarEmpleados( InstantaneaGasolinera estado, EscritorRegistros escritor ) throws IOException
+    {
+        escritor.iniciarTabla( COLUMNAS_EMPLEADOS );
+        int cantidad = estado.getCantidadEmpleados( );
+        for( int id = 0; id < cantidad; id++ )
+        {
+            escritor.escribirCampo( id );
+            escritor.escribirCampo( estado.getNombreEmpleado( id ) );
+            escritor.escribirCampo( estado.getCantidadDinero( id ) );
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta los surtidores, en el orden de sus números. Además del número y del empleado asignado, la tabla tiene una columna con los galones vendidos de cada tipo de
+     * gasolina, cuyo nombre es el del tipo
+     * @param gasolinera La gasolinera
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarSurtidores( Gasolinera gasolinera, EscritorRegistros escritor ) throws IOException
+    {
+        int cantidadTipos = gasolinera.getCantidadTiposGasolina( );
+        String[] columnas = new String[2 + cantidadTipos];
+        columnas[ 0 ] = "numero";
+        columnas[ 1 ] = "empleado";
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            columnas[ 2 + id ] = gasolinera.getTipoGasolina( id ).getNombre( );
+        }
+        escritor.iniciarTabla( columnas );
+
+        int cantidad = gasolinera.getCantidadSurtidores( );
+        for( int i = 0; i < cantidad; i++ )
+        {
+            Surtidor surtidor = gasolinera.getSurtidor( i );
+            escritor.escribirCampo( i );
+            escritor.escribirCampo( surtidor.getEmpleadoAsignado( ).getNombre( ) );
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                escritor.escribirCampo( surtidor.getGalonesVendidos( id ) );
+            }
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta los surtidores de una instantánea, con las mismas columnas que exportarSurtidores( Gasolinera, EscritorRegistros ). La instantánea está guardada por
+     * columnas, así que cada registro lee un valor de cada columna
+     * @param estado La instantánea
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static int exportarSurtidores( InstantaneaGasolinera estado, EscritorRegistros escritor ) throws IOException
+    {
+        int cantidadTipos = estado.getCantidadTiposGasolina( );
+        String[] columnas = new String[2 + cantidadTipos];
+        columnas[ 0 ] = "numero";
+        columnas[ 1 ] = "empleado";
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            columnas[ 2 + id ] = estado.getNombreTipoGasolina( id );
+        }
+        escritor.iniciarTabla( columnas );
+
+        int cantidad = estado.getCantidadSurtidores( );
+        for( int i = 0; i < cantidad; i++ )
+        {
+            escritor.escribirCampo( i );
+            escritor.escribirCampo( estado.getNombreEmpleado( estado.getEmpleadoAsignado( i ) ) );
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                escritor.escribirCampo( estado.getGalonesVendidos( i, id ) );
+            }
+            escritor.terminarRegistro( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Exporta las ventas de un rango de tiempo del archivo de ventas, incluyendo las que todavía no se han escrito en un segmento. Las ventas de cada segmento se
+     * exportan en orden de instante, y los segmentos en el orden en que se escribieron.
+     *
+     * Antes de exportar se escriben las ventas pendientes en un segmento (ver ArchivoVentas.sincronizar), así que se recorren desde el disco como las demás en lugar de
+     * copiarlas y ordenarlas en memoria. Sólo se copian las pocas ventas que lleguen mientras se exporta.
+     * @param archivo El archivo de ventas
+     * @param desde El primer instante del rango, incluido, en milisegundos desde el 1 de enero de 1970
+     * @param hasta El último instante del rango, excluido
+     * @param escritor El escritor donde se exporta la tabla
+     * @return La cantidad de registros exportados
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo las ventas pendientes en un segmento, leyendo el archivo o escribiendo
+     */
+    public static int exportarVentas( ArchivoVentas archivo, long desde, long hasta, EscritorRegistros escritor ) throws IOException
+    {
+        archivo.sincronizar( );
+        escritor.iniciarTabla( COLUMNAS_VENTAS );
+        int cantidad;
+        try
+        {
+            cantidad = archivo.recorrer( desde, hasta, -1, -1, venta -> escribirVenta( venta, escritor ) );
+        }
+        catch( UncheckedIOException e )
+        {
+            throw e.getCause( );
+        }
+        escritor.flush( );
+        return cantidad;
+    }
+
+    /**
+     * Escribe el registro de una venta. Los errores de escritura se lanzan como UncheckedIOException, porque la venta se escribe desde la acción de un recorrido
+     */
+    private static void escribirVenta( EventoVenta venta, EscritorRegistros escritor )
+    {
+        try
+        {
+            escritor.escribirCampo( venta.getInstante( ) );
+            escritor.escribirCampo( venta.getNumeroSurtidor( ) );
+            escritor.escribirCampo( venta.getNombreTipoGasolina( ) );
+            escritor.escribirCampo( venta.getGalones( ) );
+            escritor.escribirCampo( venta.getPrecio( ) );
+            escritor.escribirCampo( venta.getPrecioPorGalon( ) );
+            escritor.escribirCampo( venta.getVersionPrecio( ) );
+            escritor.escribirCampo( venta.getNombreEmpleado( ) == null ? "" : venta.getNombreEmpleado( ) );
+            escritor.terminarRegistro( );
+        }
+        catch( IOException e )
+        {
+            throw new UncheckedIOException( e );
+        }
+    }
+}
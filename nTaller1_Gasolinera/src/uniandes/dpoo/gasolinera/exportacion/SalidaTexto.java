@@ -0,0 +1,251 @@
+package uniandes.dpoo.gasolinera.exportacion;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import uniandes.dpoo.gasolinera.utils.CodificacionEnteros;
+
+/**
+ * Escribe texto en UTF-8 sobre un flujo a través de un buffer de bytes que se reutiliza.
+ *
+ * Los textos se codifican carácter por carácter directamente en el buffer y los números se convierten a dígitos en el mismo buffer, así que escribir un registro no
+ * crea objetos. Los galones que caben en milésimas (casi todos) se escriben con hasta tres decimales; los demás se escriben con Double.toString, que sí crea un String
+ * pequeño. NaN y los infinitos no se escriben: cada formato decide cómo representarlos. En cualquier caso la memoria que se usa es sólo la del buffer, sin importar
+ * cuántos registros se escriban.
+ */
+final class SalidaTexto
+{
+    /**
+     * El tamaño del buffer en bytes
+     */
+    private static final int TAMANO_BUFFER = 64 * 1024;
+
+    /**
+     * El flujo donde se escribe
+     */
+    private final OutputStream destino;
+
+    /**
+     * Los bytes que todavía no se han enviado al flujo
+     */
+    private final byte[] buffer = new byte[TAMANO_BUFFER];
+
+    /**
+     * La cantidad de bytes ocupados en el buffer
+     */
+    private int posicion;
+
+    SalidaTexto( OutputStream destino )
+    {
+        this.destino = destino;
+    }
+
+    /**
+     * Escribe un carácter ASCII
+     * @param c El carácter. Debe ser menor a 128
+     */
+    void escribirAscii( char c ) throws IOException
+    {
+        if( posicion == buffer.length )
+            vaciarBuffer( );
+        buffer[ posicion++ ] = ( byte )c;
+    }
+
+    /**
+     * Escribe un texto sin ninguna transformación
+     */
+    void escribir( String texto ) throws IOException
+    {
+        for( int i = 0; i < texto.length( ); i++ )
+        {
+            i = escribirCaracter( texto, i );
+        }
+    }
+
+    /**
+     * Escribe un texto como campo de CSV (RFC 4180): si tiene comas, comillas o saltos de línea se encierra entre comillas y las comillas internas se duplican
+     */
+    void escribirCampoCsv( String texto ) throws IOException
+    {
+        boolean comillas = false;
+        for( int i = 0; i < texto.length( ) && !comillas; i++ )
+        {
+            char c = texto.charAt( i );
+            comillas = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if( !comillas )
+        {
+            escribir( texto );
+            return;
+        }
+
+        escribirAscii( '"' );
+        for( int i = 0; i < texto.length( ); i++ )
+        {
+            if( texto.charAt( i ) == '"' )
+                escribirAscii( '"' );
+            i = escribirCaracter( texto, i );
+        }
+        escribirAscii( '"' );
+    }
+
+    /**
+     * Escribe un texto como cadena de JSON, entre comillas y con los caracteres de control, las comillas y las barras escapados
+     */
+    void escribirCadenaJson( String texto ) throws IOException
+    {
+        escribirAscii( '"' );
+        for( int i = 0; i < texto.length( ); i++ )
+        {
+            char c = texto.charAt( i );
+            if( c == '"' || c == '\\' )
+            {
+                escribirAscii( '\\' );
+                escribirAscii( c );
+            }
+            else if( c == '\n' )
+            {
+                escribirAscii( '\\' );
+                escribirAscii( 'n' );
+            }
+            else if( c < 0x20 )
+            {
+                escribirAscii( '\\' );
+                escribirAscii( 'u' );
+                escribirAscii( '0' );
+                escribirAscii( '0' );
+                escribirAscii( Character.forDigit( c >> 4, 16 ) );
+                escribirAscii( Character.forDigit( c & 0xF, 16 ) );
+            }
+            else
+            {
+                i = escribirCaracter( texto, i );
+            }
+        }
+        escribirAscii( '"' );
+    }
+
+    /**
+     * Escribe un entero en base 10
+     */
+    void escribirEntero( long valor ) throws IOException
+    {
+        if( valor == Long.MIN_VALUE )
+        {
+            escribir( Long.toString( valor ) );
+            return;
+        }
+        if( valor < 0 )
+        {
+            escribirAscii( '-' );
+            valor = -valor;
+        }
+        if( buffer.length - posicion < 19 )
+            vaciarBuffer( );
+
+        // Los dígitos se escriben al revés y luego se invierten en el buffer
+        int inicio = posicion;
+        do
+        {
+            buffer[ posicion++ ] = ( byte ) ( '0' + valor % 10 );
+            valor /= 10;
+        } while( valor != 0 );
+        for( int i = inicio, j = posicion - 1; i < j; i++, j-- )
+        {
+            byte b = buffer[ i ];
+            buffer[ i ] = buffer[ j ];
+            buffer[ j ] = b;
+        }
+    }
+
+    /**
+     * Escribe una cantidad de galones en base 10. Si la cantidad cabe en milésimas se escribe con hasta tres decimales, sin ceros sobrantes
+     * @param valor La cantidad. Debe ser finita
+     * @throws IllegalArgumentException Si la cantidad es NaN o infinita, porque ni CSV ni JSON tienen un número que la represente
+     */
+    void escribirDecimal( double valor ) throws IOException
+    {
+        if( !Double.isFinite( valor ) )
+            throw new IllegalArgumentException( "No se puede escribir " + valor + " como número" );
+        if( !CodificacionEnteros.cabeEnMilesimas( valor ) )
+        {
+            escribir( Double.toString( valor ) );
+            return;
+        }
+
+        long milesimas = CodificacionEnteros.aMilesimas( valor );
+        if( milesimas < 0 )
+        {
+            escribirAscii( '-' );
+            milesimas = -milesimas;
+        }
+        escribirEntero( milesimas / CodificacionEnteros.MILESIMAS );
+        int decimales = ( int ) ( milesimas % CodificacionEnteros.MILESIMAS );
+        if( decimales != 0 )
+        {
+            escribirAscii( '.' );
+            for( int divisor = CodificacionEnteros.MILESIMAS / 10; decimales != 0; divisor /= 10 )
+            {
+                escribirAscii( ( char ) ( '0' + decimales / divisor ) );
+                decimales %= divisor;
+            }
+        }
+    }
+
+    /**
+     * Envía al flujo los bytes del buffer y vacía el flujo
+     */
+    void vaciar( ) throws IOException
+    {
+        vaciarBuffer( );
+        destino.flush( );
+    }
+
+    /**
+     * Codifica en UTF-8 el carácter de un texto que está en una posición
+     * @return La posición del último char que se usó: la misma posición, o la siguiente si el carácter es un par sustituto
+     */
+    private int escribirCaracter( String texto, int i ) throws IOException
+    {
+        if( buffer.length - posicion < 4 )
+            vaciarBuffer( );
+
+        char c = texto.charAt( i );
+        if( c < 0x80 )
+        {
+            buffer[ posicion++ ] = ( byte )c;
+        }
+        else if( c < 0x800 )
+        {
+            buffer[ posicion++ ] = ( byte ) ( 0xC0 | c >> 6 );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | c & 0x3F );
+        }
+        else if( Character.isHighSurrogate( c ) && i + 1 < texto.length( ) && Character.isLowSurrogate( texto.charAt( i + 1 ) ) )
+        {
+            int punto = Character.toCodePoint( c, texto.charAt( i + 1 ) );
+            buffer[ posicion++ ] = ( byte ) ( 0xF0 | punto >> 18 );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | punto >> 12 & 0x3F );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | punto >> 6 & 0x3F );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | punto & 0x3F );
+            return i + 1;
+        }
+        else if( Character.isSurrogate( c ) )
+        {
+            // Un sustituto sin pareja no se puede codificar: se reemplaza por '?', como hace String.getBytes
+            buffer[ posicion++ ] = ( byte )'?';
+        }
+        else
+        {
+            buffer[ posicion++ ] = ( byte ) ( 0xE0 | c >> 12 );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | c >> 6 & 0x3F );
+            buffer[ posicion++ ] = ( byte ) ( 0x80 | c & 0x3F );
+        }
+        return i;
+    }
+
+    private void vaciarBuffer( ) throws IOException
+    {
+        destino.write( buffer, 0, posicion );
+        posicion = 0;
+    }
+}
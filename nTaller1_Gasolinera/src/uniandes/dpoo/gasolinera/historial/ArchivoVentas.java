@@ -0,0 +1,386 @@
+package uniandes.dpoo.gasolinera.historial;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.eventos.PublicadorVentas;
+
+/**
+ * Un archivo histórico de ventas en disco, que permite consultar las ventas de un rango de tiempo, de un surtidor y de un tipo de gasolina.
+ *
+ * Las ventas se guardan en segmentos particionados por tiempo: las ventas de cada periodo (por ejemplo, cada hora) se acumulan en memoria y, cuando llega una venta del
+ * periodo siguiente, se ordenan y se escriben en un segmento inmutable (ver SegmentoVentas). Una consulta descarta los segmentos que no se cruzan con el rango o que no
+ * tienen el surtidor o el tipo de gasolina pedidos, y en los demás sólo recorre los bloques del rango, leyendo directamente del archivo mapeado en memoria. Los
+ * segmentos guardan las ventas codificadas por columnas y, si se pide, comprimidas con Deflater.
+ *
+ * El archivo se puede suscribir a los eventos de venta de una gasolinera (Gasolinera.activarEventosVenta), así que las ventas no esperan a que se escriba el archivo.
+ * Los eventos que el publicador descarta porque el buffer del suscriptor está lleno no quedan en el archivo, así que la capacidad del buffer debe alcanzar para los picos
+ * de ventas. El archivo recuerda el rango de tiempo de los eventos descartados, y una consulta que se cruza con ese rango falla en lugar de retornar un resultado
+ * incompleto. Una venta que llega tarde, cuando su periodo ya se escribió, queda en el segmento del periodo actual; las consultas la encuentran igual, porque cada segmento
+ * guarda el rango real de sus instantes.
+ */
+public class ArchivoVentas implements PublicadorVentas.SuscriptorSinPerdidas, AutoCloseable
+{
+    /**
+     * La extensión de los archivos de los segmentos
+     */
+    public static final String EXTENSION = ".ventas";
+
+    /**
+     * La cantidad de registros por bloque del índice disperso de cada segmento
+     */
+    private static final int REGISTROS_POR_BLOQUE = 256;
+
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * El directorio donde están los segmentos
+     */
+    private final File directorio;
+
+    /**
+     * La duración de cada periodo en milisegundos
+     */
+    private final long duracionPeriodo;
+
+    /**
+     * Indica si los segmentos nuevos se comprimen con Deflater
+     */
+    private final boolean comprimir;
+
+    /**
+     * Los segmentos escritos, en el orden en que se escribieron. Cuando se escribe un segmento se reemplaza el arreglo completo, así que las consultas lo pueden recorrer
+     * sin candado
+     */
+    private volatile SegmentoVentas[] segmentos;
+
+    /**
+     * Las ventas que todavía no se han escrito en un segmento
+     */
+    private final List<EventoVenta> pendientes = new ArrayList<EventoVenta>( );
+
+    /**
+     * El periodo más reciente de las ventas que se han agregado, o Long.MIN_VALUE si no se ha agregado ninguna
+     */
+    private long periodoActual = Long.MIN_VALUE;
+
+    /**
+     * El número del siguiente segmento
+     */
+    private int siguienteSegmento;
+
+    /**
+     * La suscripción a los eventos de venta, o null si el archivo no está suscrito
+     */
+    private volatile Flow.Subscription suscripcion;
+
+    /**
+     * El último error que hubo escribiendo un segmento con las ventas recibidas de la suscripción, o null si no ha habido errores
+     */
+    private volatile IOException errorEscritura;
+
+    /**
+     * La cantidad de eventos de venta que el publicador descartó para este archivo
+     */
+    private final LongAdder descartadas = new LongAdder( );
+
+    /**
+     * El instante más antiguo de los eventos descartados, o Long.MAX_VALUE si no se ha descartado ninguno
+     */
+    private final AtomicLong primerDescartado = new AtomicLong( Long.MAX_VALUE );
+
+    /**
+     * El instante más reciente de los eventos descartados, o Long.MIN_VALUE si no se ha descartado ninguno
+     */
+    private final AtomicLong ultimoDescartado = new AtomicLong( Long.MIN_VALUE );
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Abre el archivo de ventas de un directorio. Si el directorio no existe se crea, y si ya tiene segmentos se abren para consultarlos
+     * @param directorio El directorio de los segmentos
+     * @param duracionPeriodo La duración del periodo de cada segmento
+     * @param unidad La unidad de la duración
+     * @throws IOException Se lanza esta excepción si el directorio no se puede crear o si algún segmento está dañado
+     */
+    public ArchivoVentas( File directorio, long duracionPeriodo, TimeUnit unidad ) throws IOException
+    {
+        this( directorio, duracionPeriodo, unidad, false );
+    }
+
+    /**
+     * Abre el archivo de ventas de un directorio, indicando si los segmentos nuevos se comprimen. Los segmentos que ya existían se abren como estén, comprimidos o no
+     * @param directorio El directorio de los segmentos
+     * @param duracionPeriodo La duración del periodo de cada segmento
+     * @param unidad La unidad de la duración
+     * @param comprimir Indica si los bloques de los segmentos nuevos se comprimen con Deflater, además de la codificación por columnas. Ocupan menos espacio en el disco,
+     *        pero cada consulta debe descomprimir los bloques que recorre
+     * @throws IOException Se lanza esta excepción si el directorio no se puede crear o si algún segmento está dañado
+     */
+    public ArchivoVentas( File directorio, long duracionPeriodo, TimeUnit unidad, boolean comprimir ) throws IOException
+    {
+        if( duracionPeriodo < 1 || unidad.toMillis( duracionPeriodo ) < 1 )
+            throw new IllegalArgumentException( "La duración de los periodos debe ser de al menos un milisegundo" );
+        if( !directorio.isDirectory( ) && !directorio.mkdirs( ) )
+            throw new IOException( "No se pudo crear el directorio " + directorio );
+        this.directorio = directorio;
+        this.duracionPeriodo = unidad.toMillis( duracionPeriodo );
+        this.comprimir = comprimir;
+
+        File[] archivos = directorio.listFiles( ( dir, nombre ) -> nombre.endsWith( EXTENSION ) );
+        Arrays.sort( archivos, Comparator.comparing( File::getName ) );
+        SegmentoVentas[] existentes = new SegmentoVentas[archivos.length];
+        for( int i = 0; i < archivos.length; i++ )
+        {
+            existentes[ i ] = SegmentoVentas.abrir( archivos[ i ] );
+            siguienteSegmento = Math.max( siguienteSegmento, numeroSegmento( archivos[ i ] ) + 1 );
+        }
+        this.segmentos = existentes;
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    public File getDirectorio( )
+    {
+        return directorio;
+    }
+
+    /**
+     * Retorna la cantidad de segmentos escritos en el disco
+     */
+    public int getCantidadSegmentos( )
+    {
+        return segmentos.length;
+    }
+
+    /**
+     * Retorna la cantidad de ventas que todavía no se han escrito en un segmento
+     */
+    public synchronized int getCantidadPendientes( )
+    {
+        return pendientes.size( );
+    }
+
+    /**
+     * Agrega una venta al archivo. Si la venta es de un periodo posterior al de las ventas pendientes, primero se escriben las pendientes en un segmento
+     * @param venta La venta
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo el segmento anterior. En ese caso las ventas pendientes se conservan, y la venta
+     *         también queda pendiente: se escribirá en el mismo segmento que ellas cuando se vuelva a intentar
+     */
+    public synchronized void agregar( EventoVenta venta ) throws IOException
+    {
+        long periodo = Math.floorDiv( venta.getInstante( ), duracionPeriodo );
+        try
+        {
+            if( periodo > periodoActual )
+            {
+                if( !pendientes.isEmpty( ) )
+                    escribirPendientes( );
+                periodoActual = periodo;
+            }
+        }
+        finally
+        {
+            pendientes.add( venta );
+        }
+    }
+
+    /**
+     * Escribe las ventas pendientes en un segmento, aunque su periodo no haya terminado
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo el segmento. En ese caso las ventas pendientes se conservan
+     */
+    public synchronized void sincronizar( ) throws IOException
+    {
+        if( !pendientes.isEmpty( ) )
+            escribirPendientes( );
+    }
+
+    /**
+     * Ordena las ventas pendientes por instante, las escribe en un segmento nuevo y lo agrega a los segmentos que se consultan. Se debe llamar con el candado del archivo
+     */
+    private void escribirPendientes( ) throws IOException
+    {
+        pendientes.sort( Comparator.comparingLong( EventoVenta::getInstante ) );
+        File archivo = new File( directorio, String.format( "segmento-%08d%s", siguienteSegmento, EXTENSION ) );
+        SegmentoVentas.escribir( archivo, pendientes, REGISTROS_POR_BLOQUE, comprimir );
+        SegmentoVentas nuevo = SegmentoVentas.abrir( archivo );
+        siguienteSegmento++;
+
+        SegmentoVentas[] actuales = segmentos;
+        SegmentoVentas[] nuevos = Arrays.copyOf( actuales, actuales.length + 1 );
+        nuevos[ actuales.length ] = nuevo;
+        segmentos = nuevos;
+        pendientes.clear( );
+    }
+
+    /**
+     * Recorre las ventas que cumplen una consulta, incluyendo las que todavía no se han escrito en un segmento. Las ventas de cada segmento se recorren en orden de
+     * instante, y los segmentos en el orden en que se escribieron.
+     * @param desde El primer instante del rango, incluido, en milisegundos desde el 1 de enero de 1970
+     * @param hasta El último instante del rango, excluido
+     * @param numeroSurtidor El número del surtidor, o -1 para cualquier surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina, o -1 para cualquier tipo
+     * @param accion La acción que se ejecuta con cada venta
+     * @return La cantidad de ventas que cumplieron la consulta
+     * @throws IllegalStateException Si el publicador descartó eventos de venta de ese rango, de forma que el archivo no las tiene todas
+     */
+    public int recorrer( long desde, long hasta, int numeroSurtidor, int idTipoGasolina, Consumer<EventoVenta> accion )
+    {
+        if( desde <= ultimoDescartado.get( ) && primerDescartado.get( ) < hasta )
+            throw new IllegalStateException( "El archivo no tiene todas las ventas del rango: se descartaron " + descartadas.sum( ) + " eventos de venta entre los instantes "
+                    + primerDescartado.get( ) + " y " + ultimoDescartado.get( ) + " porque el buffer de la suscripción estaba lleno" );
+
+        List<EventoVenta> copiaPendientes;
+        SegmentoVentas[] escritos;
+        synchronized( this )
+        {
+            escritos = segmentos;
+            copiaPendientes = new ArrayList<EventoVenta>( pendientes );
+        }
+
+        int encontradas = 0;
+        for( SegmentoVentas segmento : escritos )
+        {
+            encontradas += segmento.recorrer( desde, hasta, numeroSurtidor, idTipoGasolina, accion );
+        }
+        copiaPendientes.sort( Comparator.comparingLong( EventoVenta::getInstante ) );
+        for( EventoVenta venta : copiaPendientes )
+        {
+            if( venta.getInstante( ) >= desde && venta.getInstante( ) < hasta && ( numeroSurtidor < 0 || venta.getNumeroSurtidor( ) == numeroSurtidor )
+                    && ( idTipoGasolina < 0 || venta.getIdTipoGasolina( ) == idTipoGasolina ) )
+            {
+                accion.accept( venta );
+                encontradas++;
+            }
+        }
+        return encontradas;
+    }
+
+    /**
+     * Consulta las ventas de un rango de tiempo, de un surtidor y de un tipo de gasolina
+     * @param desde El primer instante del rango, incluido, en milisegundos desde el 1 de enero de 1970
+     * @param hasta El último instante del rango, excluido
+     * @param numeroSurtidor El número del surtidor, o -1 para cualquier surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina, o -1 para cualquier tipo
+     * @return Las ventas que cumplen la consulta
+     * @throws IllegalStateException Si el publicador descartó eventos de venta de ese rango, de forma que el archivo no las tiene todas
+     */
+    public List<EventoVenta> consultar( long desde, long hasta, int numeroSurtidor, int idTipoGasolina )
+    {
+        List<EventoVenta> ventas = new ArrayList<EventoVenta>( );
+        recorrer( desde, hasta, numeroSurtidor, idTipoGasolina, ventas::add );
+        return ventas;
+    }
+
+    /**
+     * Retorna el último error que hubo escribiendo las ventas recibidas de la suscripción
+     * @return El error, o null si no ha habido errores
+     */
+    public IOException getErrorEscritura( )
+    {
+        return errorEscritura;
+    }
+
+    /**
+     * Retorna la cantidad de eventos de venta que el publicador descartó para este archivo porque el buffer de la suscripción estaba lleno
+     * @return La cantidad de ventas que faltan en el archivo
+     */
+    public long getVentasDescartadas( )
+    {
+        return descartadas.sum( );
+    }
+
+    @Override
+    public void descartado( EventoVenta venta )
+    {
+        primerDescartado.accumulateAndGet( venta.getInstante( ), Math::min );
+        ultimoDescartado.accumulateAndGet( venta.getInstante( ), Math::max );
+        descartadas.increment( );
+    }
+
+    @Override
+    public void onSubscribe( Flow.Subscription nuevaSuscripcion )
+    {
+        suscripcion = nuevaSuscripcion;
+        nuevaSuscripcion.request( Long.MAX_VALUE );
+    }
+
+    @Override
+    public void onNext( EventoVenta venta )
+    {
+        try
+        {
+            agregar( venta );
+        }
+        catch( IOException e )
+        {
+            // La venta queda pendiente y se vuelve a intentar escribir con la siguiente
+            errorEscritura = e;
+        }
+    }
+
+    @Override
+    public void onError( Throwable error )
+    {
+        suscripcion = null;
+    }
+
+    @Override
+    public void onComplete( )
+    {
+        suscripcion = null;
+        try
+        {
+            sincronizar( );
+        }
+        catch( IOException e )
+        {
+            errorEscritura = e;
+        }
+    }
+
+    /**
+     * Cancela la suscripción, si la hay, y escribe las ventas pendientes en un segmento
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo el segmento
+     */
+    @Override
+    public void close( ) throws IOException
+    {
+        Flow.Subscription actual = suscripcion;
+        if( actual != null )
+        {
+            actual.cancel( );
+            suscripcion = null;
+        }
+        sincronizar( );
+    }
+
+    private static int numeroSegmento( File archivo )
+    {
+        String nombre = archivo.getName( );
+        try
+        {
+            return Integer.parseInt( nombre.substring( nombre.indexOf( '-' ) + 1, nombre.length( ) - EXTENSION.length( ) ) );
+        }
+        catch( NumberFormatException | StringIndexOutOfBoundsException e )
+        {
+            return -1;
+        }
+    }
+}
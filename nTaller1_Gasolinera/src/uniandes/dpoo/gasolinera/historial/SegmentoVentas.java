@@ -0,0 +1,787 @@
+package uniandes.dpoo.gasolinera.historial;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.utils.CodificacionEnteros;
+
+/**
+ * Un segmento del archivo de ventas: un archivo inmutable con las ventas de un periodo, ordenadas por instante.
+ *
+ * Las ventas se guardan en bloques. Para cada bloque se guarda el instante de su primera venta (el índice disperso), así que una consulta por rango de tiempo busca el
+ * primer bloque con una búsqueda binaria y sólo decodifica los bloques que caen en el rango. Además el segmento tiene un mapa de bits con los surtidores y otro con los
+ * tipos de gasolina que aparecen en sus ventas, para descartar el segmento completo sin leer ningún bloque. Los bloques se leen directamente del archivo mapeado en
+ * memoria.
+ *
+ * Dentro de un bloque las ventas se guardan por columnas, cada una con la codificación que le sirve (ver CodificacionEnteros): los instantes como diferencias con el
+ * anterior, que casi siempre ocupan uno o dos bytes; los surtidores, los tipos de gasolina y los empleados como enteros variables (los empleados son su posición en el
+ * diccionario del catálogo); los galones como milésimas si no se pierde precisión; y el precio por galón y su versión como diferencias con la venta anterior, que casi
+ * siempre son 0. Opcionalmente cada bloque se comprime además con Deflater.
+ *
+ * El contenido del archivo, con todos los números de tamaño fijo en orden little-endian, es:
+ *
+ * 1. Encabezado de 48 bytes: MAGIA, VERSION, cantidad de registros y registros por bloque (int), instante mínimo e instante máximo (long), tamaño del catálogo, palabras
+ * del mapa de surtidores, palabras del mapa de tipos y opciones (int). La única opción es COMPRIMIDO
+ *
+ * 2. Catálogo, escrito con DataOutputStream: la cantidad de tipos de gasolina y el nombre de cada uno según su identificador (vacío si no aparece en el segmento), y la
+ * cantidad de empleados y sus nombres
+ *
+ * 3. Alineados a 8 bytes: el mapa de bits de surtidores y el de tipos (long), y por cada bloque el instante de su primera venta y la posición del bloque en el archivo
+ * (long)
+ *
+ * 4. Los bloques. Cada bloque tiene las columnas instantes (diferencias en zigzag), surtidores, tipos, empleados (enteros variables), galones (un byte con el modo, y
+ * luego milésimas en zigzag o double), precios (zigzag), precios por galón y versiones (diferencias en zigzag). Si el segmento está comprimido, el bloque es el tamaño de
+ * las columnas sin comprimir (int) seguido de las columnas comprimidas con Deflater
+ *
+ * Los segmentos de la versión anterior (VERSION_REGISTROS_FIJOS) se siguen leyendo, para que los directorios que ya existían se puedan abrir. En esa versión el índice
+ * sólo tiene el instante de la primera venta de cada bloque, los 4 bytes de opciones no se usan, y en lugar de los bloques están los registros: cada uno tiene
+ * TAMANO_REGISTRO bytes con el instante (long), los galones (double), el surtidor, el tipo de gasolina, el empleado, el precio, el precio por galón y la versión del
+ * precio (int). Los segmentos nuevos siempre se escriben en la versión actual
+ */
+class SegmentoVentas
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Los primeros cuatro bytes de un segmento: "GASV" en ASCII
+     */
+    static final int MAGIA = 0x47415356;
+
+    /**
+     * La versión del formato
+     */
+    static final int VERSION = 2;
+
+    /**
+     * La versión anterior del formato, con registros de tamaño fijo en lugar de bloques por columnas
+     */
+    static final int VERSION_REGISTROS_FIJOS = 1;
+
+    /**
+     * El tamaño en bytes de cada registro de venta de la versión VERSION_REGISTROS_FIJOS
+     */
+    static final int TAMANO_REGISTRO = 40;
+
+    /**
+     * La opción que indica que los bloques están comprimidos con Deflater
+     */
+    static final int COMPRIMIDO = 1;
+
+    /**
+     * El tamaño en bytes del encabezado del segmento
+     */
+    private static final int TAMANO_ENCABEZADO = 48;
+
+    /**
+     * El tamaño en bytes de cada entrada del índice disperso
+     */
+    private static final int TAMANO_ENTRADA_INDICE = 2 * Long.BYTES;
+
+    /**
+     * Los modos de la columna de galones de un bloque
+     */
+    private static final int GALONES_MILESIMAS = 0;
+
+    private static final int GALONES_DOUBLE = 1;
+
+    /**
+     * El archivo del segmento
+     */
+    private final File archivo;
+
+    /**
+     * El buffer mapeado sobre el archivo completo
+     */
+    private final MappedByteBuffer memoria;
+
+    private final int cantidadRegistros;
+
+    private final int registrosPorBloque;
+
+    private final long instanteMinimo;
+
+    private final long instanteMaximo;
+
+    /**
+     * Indica si los bloques están comprimidos con Deflater
+     */
+    private final boolean comprimido;
+
+    /**
+     * Los nombres de los tipos de gasolina, según su identificador
+     */
+    private final String[] nombresTipos;
+
+    /**
+     * Los nombres de los empleados, según su posición en el catálogo
+     */
+    private final String[] nombresEmpleados;
+
+    /**
+     * El mapa de bits de los surtidores que aparecen en el segmento
+     */
+    private final long[] surtidores;
+
+    /**
+     * El mapa de bits de los tipos de gasolina que aparecen en el segmento
+     */
+    private final long[] tipos;
+
+    /**
+     * La posición del índice disperso en el archivo
+     */
+    private final int inicioIndice;
+
+    /**
+     * El tamaño en bytes de cada entrada del índice disperso, que depende de la versión
+     */
+    private final int tamanoEntradaIndice;
+
+    /**
+     * La posición del primer registro en el archivo, o -1 si el segmento no es de la versión VERSION_REGISTROS_FIJOS
+     */
+    private final int inicioRegistros;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    private SegmentoVentas( File archivo, MappedByteBuffer memoria, int cantidadRegistros, int registrosPorBloque, long instanteMinimo, long instanteMaximo,
+                            boolean comprimido, String[] nombresTipos, String[] nombresEmpleados, long[] surtidores, long[] tipos, int inicioIndice, int tamanoEntradaIndice,
+                            int inicioRegistros )
+    {
+        this.archivo = archivo;
+        this.memoria = memoria;
+        this.cantidadRegistros = cantidadRegistros;
+        this.registrosPorBloque = registrosPorBloque;
+        this.instanteMinimo = instanteMinimo;
+        this.instanteMaximo = instanteMaximo;
+        this.comprimido = comprimido;
+        this.nombresTipos = nombresTipos;
+        this.nombresEmpleados = nombresEmpleados;
+        this.surtidores = surtidores;
+        this.tipos = tipos;
+        this.inicioIndice = inicioIndice;
+        this.tamanoEntradaIndice = tamanoEntradaIndice;
+        this.inicioRegistros = inicioRegistros;
+    }
+
+    /**
+     * Escribe un segmento con unas ventas. El segmento se escribe en un archivo temporal que luego se renombra, así que el archivo final nunca queda a medias
+     * @param archivo El archivo del segmento
+     * @param ventas Las ventas, ordenadas por instante. No puede estar vacía
+     * @param registrosPorBloque La cantidad de registros de cada bloque del índice disperso
+     * @param comprimir Indica si los bloques se comprimen con Deflater
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo el archivo
+     */
+    static void escribir( File archivo, List<EventoVenta> ventas, int registrosPorBloque, boolean comprimir ) throws IOException
+    {
+        int cantidadRegistros = ventas.size( );
+        int cantidadBloques = ( cantidadRegistros + registrosPorBloque - 1 ) / registrosPorBloque;
+
+        // Construir el catálogo, el diccionario de empleados y los mapas de bits
+        String[] nombresTipos = new String[0];
+        Map<String, Integer> posicionesEmpleados = new HashMap<String, Integer>( );
+        ByteArrayOutputStream bytesEmpleados = new ByteArrayOutputStream( );
+        DataOutputStream catalogoEmpleados = new DataOutputStream( bytesEmpleados );
+        int[] empleados = new int[cantidadRegistros];
+        long[] surtidores = new long[0];
+        long[] tipos = new long[0];
+        for( int i = 0; i < cantidadRegistros; i++ )
+        {
+            EventoVenta venta = ventas.get( i );
+            int idTipo = venta.getIdTipoGasolina( );
+            if( idTipo >= nombresTipos.length )
+                nombresTipos = Arrays.copyOf( nombresTipos, idTipo + 1 );
+            nombresTipos[ idTipo ] = venta.getNombreTipoGasolina( );
+            surtidores = marcar( surtidores, venta.getNumeroSurtidor( ) );
+            tipos = marcar( tipos, idTipo );
+
+            String nombreEmpleado = venta.getNombreEmpleado( ) == null ? "" : venta.getNombreEmpleado( );
+            Integer posicion = posicionesEmpleados.get( nombreEmpleado );
+            if( posicion == null )
+            {
+                posicion = posicionesEmpleados.size( );
+                posicionesEmpleados.put( nombreEmpleado, posicion );
+                catalogoEmpleados.writeUTF( nombreEmpleado );
+            }
+            empleados[ i ] = posicion;
+        }
+        catalogoEmpleados.close( );
+
+        ByteArrayOutputStream bytesCatalogo = new ByteArrayOutputStream( );
+        DataOutputStream catalogo = new DataOutputStream( bytesCatalogo );
+        catalogo.writeInt( nombresTipos.length );
+        for( String nombre : nombresTipos )
+        {
+            catalogo.writeUTF( nombre == null ? "" : nombre );
+        }
+        catalogo.writeInt( posicionesEmpleados.size( ) );
+        bytesEmpleados.writeTo( catalogo );
+        catalogo.close( );
+        byte[] contenidoCatalogo = bytesCatalogo.toByteArray( );
+
+        // Codificar los bloques
+        long inicioMapas = alinear( TAMANO_ENCABEZADO + ( long )contenidoCatalogo.length );
+        long inicioIndice = inicioMapas + ( long )( surtidores.length + tipos.length ) * Long.BYTES;
+        long inicioBloques = inicioIndice + ( long )cantidadBloques * TAMANO_ENTRADA_INDICE;
+        ByteArrayOutputStream bloques = new ByteArrayOutputStream( );
+        long[] posicionesBloques = new long[cantidadBloques];
+        ByteArrayOutputStream columnas = new ByteArrayOutputStream( );
+        Deflater compresor = comprimir ? new Deflater( ) : null;
+        try
+        {
+            for( int b = 0; b < cantidadBloques; b++ )
+            {
+                posicionesBloques[ b ] = inicioBloques + bloques.size( );
+                int primero = b * registrosPorBloque;
+                int ultimo = Math.min( cantidadRegistros, primero + registrosPorBloque );
+                columnas.reset( );
+                codificarBloque( columnas, ventas, empleados, primero, ultimo );
+                if( compresor == null )
+                {
+                    columnas.writeTo( bloques );
+                }
+                else
+                {
+                    escribirInt( bloques, columnas.size( ) );
+                    comprimirColumnas( compresor, columnas.toByteArray( ), bloques );
+                }
+            }
+        }
+        finally
+        {
+            if( compresor != null )
+                compresor.end( );
+        }
+
+        long tamano = inicioBloques + bloques.size( );
+        if( tamano > Integer.MAX_VALUE )
+            throw new IOException( "Un segmento con " + cantidadRegistros + " ventas no cabe en un archivo mapeado" );
+
+        ByteBuffer encabezado = ByteBuffer.allocate( ( int )inicioBloques ).order( ByteOrder.LITTLE_ENDIAN );
+        encabezado.putInt( 0, MAGIA );
+        encabezado.putInt( 4, VERSION );
+        encabezado.putInt( 8, cantidadRegistros );
+        encabezado.putInt( 12, registrosPorBloque );
+        encabezado.putLong( 16, ventas.get( 0 ).getInstante( ) );
+        encabezado.putLong( 24, ventas.get( cantidadRegistros - 1 ).getInstante( ) );
+        encabezado.putInt( 32, contenidoCatalogo.length );
+        encabezado.putInt( 36, surtidores.length );
+        encabezado.putInt( 40, tipos.length );
+        encabezado.putInt( 44, comprimir ? COMPRIMIDO : 0 );
+        encabezado.put( TAMANO_ENCABEZADO, contenidoCatalogo );
+
+        int posicion = ( int )inicioMapas;
+        for( long palabra : surtidores )
+        {
+            encabezado.putLong( posicion, palabra );
+            posicion += Long.BYTES;
+        }
+        for( long palabra : tipos )
+        {
+            encabezado.putLong( posicion, palabra );
+            posicion += Long.BYTES;
+        }
+        for( int b = 0; b < cantidadBloques; b++ )
+        {
+            int entrada = ( int )inicioIndice + b * TAMANO_ENTRADA_INDICE;
+            encabezado.putLong( entrada, ventas.get( b * registrosPorBloque ).getInstante( ) );
+            encabezado.putLong( entrada + Long.BYTES, posicionesBloques[ b ] );
+        }
+
+        File temporal = new File( archivo.getPath( ) + ".tmp" );
+        try( RandomAccessFile acceso = new RandomAccessFile( temporal, "rw" ); FileChannel canal = acceso.getChannel( ) )
+        {
+            acceso.setLength( 0 );
+            ByteBuffer[] contenido = new ByteBuffer[]{ encabezado, ByteBuffer.wrap( bloques.toByteArray( ) ) };
+            while( contenido[ 1 ].hasRemaining( ) )
+            {
+                canal.write( contenido );
+            }
+            canal.force( true );
+        }
+        Files.move( temporal.toPath( ), archivo.toPath( ), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Codifica por columnas las ventas de un bloque
+     * @param salida El flujo donde se escriben las columnas
+     * @param ventas Todas las ventas del segmento
+     * @param empleados La posición en el diccionario del empleado de cada venta
+     * @param primero La posición de la primera venta del bloque
+     * @param ultimo La posición siguiente a la última venta del bloque
+     */
+    private static void codificarBloque( ByteArrayOutputStream salida, List<EventoVenta> ventas, int[] empleados, int primero, int ultimo ) throws IOException
+    {
+        // El primer instante está en el índice, así que la primera diferencia es 0
+        long instanteAnterior = ventas.get( primero ).getInstante( );
+        for( int i = primero; i < ultimo; i++ )
+        {
+            long instante = ventas.get( i ).getInstante( );
+            CodificacionEnteros.escribirZigzag( salida, instante - instanteAnterior );
+            instanteAnterior = instante;
+        }
+        for( int i = primero; i < ultimo; i++ )
+        {
+            CodificacionEnteros.escribirVarint( salida, ventas.get( i ).getNumeroSurtidor( ) );
+        }
+        for( int i = primero; i < ultimo; i++ )
+        {
+            CodificacionEnteros.escribirVarint( salida, ventas.get( i ).getIdTipoGasolina( ) );
+        }
+        for( int i = primero; i < ultimo; i++ )
+        {
+            CodificacionEnteros.escribirVarint( salida, empleados[ i ] );
+        }
+
+        boolean milesimas = true;
+        for( int i = primero; i < ultimo && milesimas; i++ )
+        {
+            milesimas = CodificacionEnteros.cabeEnMilesimas( ventas.get( i ).getGalones( ) );
+        }
+        salida.write( milesimas ? GALONES_MILESIMAS : GALONES_DOUBLE );
+        for( int i = primero; i < ultimo; i++ )
+        {
+            double galones = ventas.get( i ).getGalones( );
+            if( milesimas )
+                CodificacionEnteros.escribirZigzag( salida, CodificacionEnteros.aMilesimas( galones ) );
+            else
+                escribirLong( salida, Double.doubleToRawLongBits( galones ) );
+        }
+
+        for( int i = primero; i < ultimo; i++ )
+        {
+            CodificacionEnteros.escribirZigzag( salida, ventas.get( i ).getPrecio( ) );
+        }
+        long precioAnterior = 0;
+        for( int i = primero; i < ultimo; i++ )
+        {
+            int precioPorGalon = ventas.get( i ).getPrecioPorGalon( );
+            CodificacionEnteros.escribirZigzag( salida, precioPorGalon - precioAnterior );
+            precioAnterior = precioPorGalon;
+        }
+        long versionAnterior = 0;
+        for( int i = primero; i < ultimo; i++ )
+        {
+            int version = ventas.get( i ).getVersionPrecio( );
+            CodificacionEnteros.escribirZigzag( salida, version - versionAnterior );
+            versionAnterior = version;
+        }
+    }
+
+    /**
+     * Comprime un arreglo de bytes completo y escribe el resultado en un flujo
+     */
+    private static void comprimirColumnas( Deflater compresor, byte[] datos, ByteArrayOutputStream salida )
+    {
+        compresor.reset( );
+        compresor.setInput( datos );
+        compresor.finish( );
+        byte[] buffer = new byte[Math.max( 64, datos.length / 2 )];
+        while( !compresor.finished( ) )
+        {
+            int escritos = compresor.deflate( buffer );
+            salida.write( buffer, 0, escritos );
+        }
+    }
+
+    private static void escribirInt( ByteArrayOutputStream salida, int valor )
+    {
+        for( int i = 0; i < Integer.BYTES; i++ )
+        {
+            salida.write( valor >>> ( 8 * i ) );
+        }
+    }
+
+    private static void escribirLong( ByteArrayOutputStream salida, long valor )
+    {
+        for( int i = 0; i < Long.BYTES; i++ )
+        {
+            salida.write( ( int ) ( valor >>> ( 8 * i ) ) );
+        }
+    }
+
+    /**
+     * Abre un segmento de la versión actual o de la versión VERSION_REGISTROS_FIJOS. Sólo se leen el encabezado, el catálogo y los mapas de bits: el índice y los
+     * bloques (o los registros) se quedan en el archivo mapeado
+     * @param archivo El archivo del segmento
+     * @return El segmento
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer o no es un segmento de ventas
+     */
+    static SegmentoVentas abrir( File archivo ) throws IOException
+    {
+        MappedByteBuffer memoria;
+        try( RandomAccessFile acceso = new RandomAccessFile( archivo, "r" ); FileChannel canal = acceso.getChannel( ) )
+        {
+            long tamanoArchivo = canal.size( );
+            if( tamanoArchivo < TAMANO_ENCABEZADO || tamanoArchivo > Integer.MAX_VALUE )
+                throw new IOException( "El archivo " + archivo + " no es un segmento de ventas" );
+            memoria = canal.map( FileChannel.MapMode.READ_ONLY, 0, tamanoArchivo );
+        }
+        memoria.order( ByteOrder.LITTLE_ENDIAN );
+
+        if( memoria.getInt( 0 ) != MAGIA )
+            throw new IOException( "El archivo " + archivo + " no es un segmento de ventas" );
+        int version = memoria.getInt( 4 );
+        if( version != VERSION && version != VERSION_REGISTROS_FIJOS )
+            throw new IOException( "La versión " + version + " del formato de segmentos no está soportada" );
+        boolean registrosFijos = version == VERSION_REGISTROS_FIJOS;
+        int cantidadRegistros = memoria.getInt( 8 );
+        int registrosPorBloque = memoria.getInt( 12 );
+        int tamanoCatalogo = memoria.getInt( 32 );
+        int palabrasSurtidores = memoria.getInt( 36 );
+        int palabrasTipos = memoria.getInt( 40 );
+        int opciones = registrosFijos ? 0 : memoria.getInt( 44 );
+        if( cantidadRegistros < 1 || registrosPorBloque < 1 || tamanoCatalogo < 0 || palabrasSurtidores < 0 || palabrasTipos < 0 )
+            throw new IOException( "El encabezado del segmento " + archivo + " está dañado" );
+
+        long inicioMapas = alinear( TAMANO_ENCABEZADO + ( long )tamanoCatalogo );
+        long inicioIndice = inicioMapas + ( long )( palabrasSurtidores + palabrasTipos ) * Long.BYTES;
+        int cantidadBloques = ( cantidadRegistros + registrosPorBloque - 1 ) / registrosPorBloque;
+        int tamanoEntradaIndice = registrosFijos ? Long.BYTES : TAMANO_ENTRADA_INDICE;
+        long inicioRegistros = inicioIndice + ( long )cantidadBloques * tamanoEntradaIndice;
+        long tamanoMinimo = registrosFijos ? inicioRegistros + ( long )cantidadRegistros * TAMANO_REGISTRO : inicioRegistros;
+        if( tamanoMinimo > memoria.capacity( ) )
+            throw new IOException( "El segmento " + archivo + " está incompleto" );
+
+        byte[] contenidoCatalogo = new byte[tamanoCatalogo];
+        memoria.get( TAMANO_ENCABEZADO, contenidoCatalogo );
+        DataInputStream catalogo = new DataInputStream( new ByteArrayInputStream( contenidoCatalogo ) );
+        String[] nombresTipos = new String[catalogo.readInt( )];
+        for( int id = 0; id < nombresTipos.length; id++ )
+        {
+            nombresTipos[ id ] = catalogo.readUTF( );
+        }
+        String[] nombresEmpleados = new String[catalogo.readInt( )];
+        for( int i = 0; i < nombresEmpleados.length; i++ )
+        {
+            nombresEmpleados[ i ] = catalogo.readUTF( );
+        }
+
+        long[] surtidores = new long[palabrasSurtidores];
+        long[] tipos = new long[palabrasTipos];
+        memoria.slice( ( int )inicioMapas, palabrasSurtidores * Long.BYTES ).order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer( ).get( surtidores );
+        memoria.slice( ( int )inicioMapas + palabrasSurtidores * Long.BYTES, palabrasTipos * Long.BYTES ).order( ByteOrder.LITTLE_ENDIAN ).asLongBuffer( ).get( tipos );
+
+        return new SegmentoVentas( archivo, memoria, cantidadRegistros, registrosPorBloque, memoria.getLong( 16 ), memoria.getLong( 24 ), ( opciones & COMPRIMIDO ) != 0,
+                nombresTipos, nombresEmpleados, surtidores, tipos, ( int )inicioIndice, tamanoEntradaIndice, registrosFijos ? ( int )inicioRegistros : -1 );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    File getArchivo( )
+    {
+        return archivo;
+    }
+
+    int getCantidadRegistros( )
+    {
+        return cantidadRegistros;
+    }
+
+    long getInstanteMinimo( )
+    {
+        return instanteMinimo;
+    }
+
+    long getInstanteMaximo( )
+    {
+        return instanteMaximo;
+    }
+
+    boolean isComprimido( )
+    {
+        return comprimido;
+    }
+
+    /**
+     * Indica si el segmento puede tener ventas que cumplan una consulta, usando sólo el rango de instantes y los mapas de bits
+     * @param desde El primer instante del rango, incluido
+     * @param hasta El último instante del rango, excluido
+     * @param numeroSurtidor El número del surtidor, o -1 para cualquier surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina, o -1 para cualquier tipo
+     * @return Retorna false si es seguro que ninguna venta del segmento cumple la consulta
+     */
+    boolean puedeContener( long desde, long hasta, int numeroSurtidor, int idTipoGasolina )
+    {
+        if( instanteMinimo >= hasta || instanteMaximo < desde )
+            return false;
+        if( numeroSurtidor >= 0 && !marcado( surtidores, numeroSurtidor ) )
+            return false;
+        return idTipoGasolina < 0 || marcado( tipos, idTipoGasolina );
+    }
+
+    /**
+     * Recorre las ventas del segmento que cumplen una consulta, en orden de instante. Sólo se decodifican los bloques que se cruzan con el rango
+     * @param desde El primer instante del rango, incluido
+     * @param hasta El último instante del rango, excluido
+     * @param numeroSurtidor El número del surtidor, o -1 para cualquier surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina, o -1 para cualquier tipo
+     * @param accion La acción que se ejecuta con cada venta
+     * @return La cantidad de ventas que cumplieron la consulta
+     */
+    int recorrer( long desde, long hasta, int numeroSurtidor, int idTipoGasolina, Consumer<EventoVenta> accion )
+    {
+        if( !puedeContener( desde, hasta, numeroSurtidor, idTipoGasolina ) )
+            return 0;
+        if( inicioRegistros >= 0 )
+            return recorrerRegistros( desde, hasta, numeroSurtidor, idTipoGasolina, accion );
+
+        int cantidadBloques = ( cantidadRegistros + registrosPorBloque - 1 ) / registrosPorBloque;
+        Bloque bloque = new Bloque( registrosPorBloque );
+        Inflater descompresor = comprimido ? new Inflater( ) : null;
+        int encontradas = 0;
+        try
+        {
+            for( int b = primerBloque( desde ); b < cantidadBloques; b++ )
+            {
+                long primerInstante = memoria.getLong( inicioIndice + b * TAMANO_ENTRADA_INDICE );
+                if( primerInstante >= hasta )
+                    break;
+                int cantidad = Math.min( registrosPorBloque, cantidadRegistros - b * registrosPorBloque );
+                bloque.decodificar( datosBloque( b, cantidadBloques, descompresor ), cantidad, primerInstante );
+
+                for( int i = 0; i < cantidad; i++ )
+                {
+                    long instante = bloque.instantes[ i ];
+                    if( instante >= hasta )
+                        return encontradas;
+                    if( instante < desde || ( numeroSurtidor >= 0 && bloque.surtidores[ i ] != numeroSurtidor )
+                            || ( idTipoGasolina >= 0 && bloque.tipos[ i ] != idTipoGasolina ) )
+                        continue;
+                    int idTipo = bloque.tipos[ i ];
+                    accion.accept( new EventoVenta( bloque.surtidores[ i ], idTipo, nombresTipos[ idTipo ], bloque.galones[ i ], bloque.precios[ i ],
+                            bloque.preciosPorGalon[ i ], bloque.versiones[ i ], nombresEmpleados[ bloque.empleados[ i ] ], instante ) );
+                    encontradas++;
+                }
+            }
+            return encontradas;
+        }
+        finally
+        {
+            if( descompresor != null )
+                descompresor.end( );
+        }
+    }
+
+    /**
+     * Recorre las ventas de un segmento de la versión VERSION_REGISTROS_FIJOS que cumplen una consulta, leyendo los registros directamente del archivo mapeado
+     */
+    private int recorrerRegistros( long desde, long hasta, int numeroSurtidor, int idTipoGasolina, Consumer<EventoVenta> accion )
+    {
+        int encontradas = 0;
+        for( int i = primerBloque( desde ) * registrosPorBloque; i < cantidadRegistros; i++ )
+        {
+            int registro = inicioRegistros + i * TAMANO_REGISTRO;
+            long instante = memoria.getLong( registro );
+            if( instante >= hasta )
+                break;
+            if( instante < desde )
+                continue;
+            int surtidor = memoria.getInt( registro + 16 );
+            int idTipo = memoria.getInt( registro + 20 );
+            if( ( numeroSurtidor >= 0 && surtidor != numeroSurtidor ) || ( idTipoGasolina >= 0 && idTipo != idTipoGasolina ) )
+                continue;
+            accion.accept( new EventoVenta( surtidor, idTipo, nombresTipos[ idTipo ], memoria.getDouble( registro + 8 ), memoria.getInt( registro + 28 ),
+                    memoria.getInt( registro + 32 ), memoria.getInt( registro + 36 ), nombresEmpleados[ memoria.getInt( registro + 24 ) ], instante ) );
+            encontradas++;
+        }
+        return encontradas;
+    }
+
+    /**
+     * Retorna las columnas de un bloque, listas para decodificar: una vista sobre el archivo mapeado o, si el segmento está comprimido, las columnas descomprimidas
+     */
+    private ByteBuffer datosBloque( int bloque, int cantidadBloques, Inflater descompresor )
+    {
+        int inicio = ( int )memoria.getLong( inicioIndice + bloque * TAMANO_ENTRADA_INDICE + Long.BYTES );
+        int fin = bloque + 1 < cantidadBloques ? ( int )memoria.getLong( inicioIndice + ( bloque + 1 ) * TAMANO_ENTRADA_INDICE + Long.BYTES ) : memoria.capacity( );
+        if( descompresor == null )
+            return memoria.slice( inicio, fin - inicio );
+
+        byte[] columnas = new byte[memoria.getInt( inicio )];
+        descompresor.reset( );
+        descompresor.setInput( memoria.slice( inicio + Integer.BYTES, fin - inicio - Integer.BYTES ) );
+        try
+        {
+            int leidos = 0;
+            while( leidos < columnas.length && !descompresor.finished( ) )
+            {
+                int n = descompresor.inflate( columnas, leidos, columnas.length - leidos );
+                if( n == 0 && ( descompresor.needsInput( ) || descompresor.needsDictionary( ) ) )
+                    throw new IllegalStateException( "El bloque " + bloque + " del segmento " + archivo + " está incompleto" );
+                leidos += n;
+            }
+        }
+        catch( DataFormatException e )
+        {
+            throw new IllegalStateException( "El bloque " + bloque + " del segmento " + archivo + " está dañado", e );
+        }
+        return ByteBuffer.wrap( columnas );
+    }
+
+    /**
+     * Busca en el índice disperso el primer bloque que puede tener ventas desde un instante: el último bloque que empieza antes de ese instante, porque las ventas de los
+     * bloques anteriores son todas anteriores a su primera venta
+     * @param desde El instante
+     * @return La posición del bloque
+     */
+    private int primerBloque( long desde )
+    {
+        int bajo = 0;
+        int alto = ( cantidadRegistros + registrosPorBloque - 1 ) / registrosPorBloque - 1;
+        while( bajo < alto )
+        {
+            int medio = ( bajo + alto + 1 ) >>> 1;
+            if( memoria.getLong( inicioIndice + medio * tamanoEntradaIndice ) < desde )
+                bajo = medio;
+            else
+                alto = medio - 1;
+        }
+        return bajo;
+    }
+
+    private static long[] marcar( long[] mapa, int posicion )
+    {
+        int palabra = posicion >>> 6;
+        if( palabra >= mapa.length )
+            mapa = Arrays.copyOf( mapa, palabra + 1 );
+        mapa[ palabra ] |= 1L << posicion;
+        return mapa;
+    }
+
+    private static boolean marcado( long[] mapa, int posicion )
+    {
+        int palabra = posicion >>> 6;
+        return palabra < mapa.length && ( mapa[ palabra ] & ( 1L << posicion ) ) != 0;
+    }
+
+    private static long alinear( long posicion )
+    {
+        return ( posicion + 7 ) & ~7L;
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Las columnas decodificadas de un bloque. Una consulta reutiliza los mismos arreglos para todos los bloques que recorre
+     */
+    private static class Bloque
+    {
+        private final long[] instantes;
+
+        private final int[] surtidores;
+
+        private final int[] tipos;
+
+        private final int[] empleados;
+
+        private final double[] galones;
+
+        private final int[] precios;
+
+        private final int[] preciosPorGalon;
+
+        private final int[] versiones;
+
+        Bloque( int registrosPorBloque )
+        {
+            instantes = new long[registrosPorBloque];
+            surtidores = new int[registrosPorBloque];
+            tipos = new int[registrosPorBloque];
+            empleados = new int[registrosPorBloque];
+            galones = new double[registrosPorBloque];
+            precios = new int[registrosPorBloque];
+            preciosPorGalon = new int[registrosPorBloque];
+            versiones = new int[registrosPorBloque];
+        }
+
+        /**
+         * Decodifica las columnas de un bloque
+         * @param datos Las columnas codificadas, desde la posición actual del buffer
+         * @param cantidad La cantidad de ventas del bloque
+         * @param primerInstante El instante de la primera venta, que está en el índice
+         */
+        void decodificar( ByteBuffer datos, int cantidad, long primerInstante )
+        {
+            long instante = primerInstante;
+            for( int i = 0; i < cantidad; i++ )
+            {
+                instante += CodificacionEnteros.leerZigzag( datos );
+                instantes[ i ] = instante;
+            }
+            for( int i = 0; i < cantidad; i++ )
+            {
+                surtidores[ i ] = ( int )CodificacionEnteros.leerVarint( datos );
+            }
+            for( int i = 0; i < cantidad; i++ )
+            {
+                tipos[ i ] = ( int )CodificacionEnteros.leerVarint( datos );
+            }
+            for( int i = 0; i < cantidad; i++ )
+            {
+                empleados[ i ] = ( int )CodificacionEnteros.leerVarint( datos );
+            }
+
+            if( datos.get( ) == GALONES_MILESIMAS )
+            {
+                for( int i = 0; i < cantidad; i++ )
+                {
+                    galones[ i ] = CodificacionEnteros.aGalones( CodificacionEnteros.leerZigzag( datos ) );
+                }
+            }
+            else
+            {
+                datos.order( ByteOrder.LITTLE_ENDIAN );
+                for( int i = 0; i < cantidad; i++ )
+                {
+                    galones[ i ] = datos.getDouble( );
+                }
+            }
+
+            for( int i = 0; i < cantidad; i++ )
+            {
+                precios[ i ] = ( int )CodificacionEnteros.leerZigzag( datos );
+            }
+            int precioPorGalon = 0;
+            for( int i = 0; i < cantidad; i++ )
+            {
+                precioPorGalon += ( int )CodificacionEnteros.leerZigzag( datos );
+                preciosPorGalon[ i ] = precioPorGalon;
+            }
+            int version = 0;
+            for( int i = 0; i < cantidad; i++ )
+            {
+                version += ( int )CodificacionEnteros.leerZigzag( datos );
+                versiones[ i ] = version;
+            }
+        }
+    }
+}
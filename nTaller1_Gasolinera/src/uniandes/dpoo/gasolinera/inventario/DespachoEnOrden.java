@@ -0,0 +1,16 @@
+package uniandes.dpoo.gasolinera.inventario;
+
+import uniandes.dpoo.gasolinera.logica.Tanque;
+
+/**
+ * Saca la gasolina de los tanques en orden: sólo se usa el segundo tanque cuando el primero está vacío u ocupado, y así sucesivamente. Sirve cuando se quiere vaciar
+ * un tanque por completo antes de limpiarlo o recargarlo.
+ */
+public class DespachoEnOrden implements PoliticaDespacho
+{
+    @Override
+    public int primerTanque( Tanque[] tanques )
+    {
+        return 0;
+    }
+}
@@ -0,0 +1,26 @@
+package uniandes.dpoo.gasolinera.inventario;
+
+import uniandes.dpoo.gasolinera.logica.Tanque;
+
+/**
+ * Empieza cada venta por el tanque que tiene más gasolina, de modo que los tanques se vacían de forma pareja y casi todas las ventas salen de un solo tanque.
+ */
+public class DespachoMasLleno implements PoliticaDespacho
+{
+    @Override
+    public int primerTanque( Tanque[] tanques )
+    {
+        int elegido = 0;
+        double mayor = tanques[ 0 ].getCantidad( );
+        for( int i = 1; i < tanques.length; i++ )
+        {
+            double cantidad = tanques[ i ].getCantidad( );
+            if( cantidad > mayor )
+            {
+                elegido = i;
+                mayor = cantidad;
+            }
+        }
+        return elegido;
+    }
+}
@@ -0,0 +1,16 @@
+package uniandes.dpoo.gasolinera.inventario;
+
+import uniandes.dpoo.gasolinera.logica.Tanque;
+
+/**
+ * Reparte las ventas entre los tanques según el thread que hace la venta: cada thread empieza siempre por el mismo tanque, y threads distintos empiezan por tanques
+ * distintos. Así las ventas simultáneas casi nunca compiten por el mismo tanque.
+ */
+public class DespachoRepartido implements PoliticaDespacho
+{
+    @Override
+    public int primerTanque( Tanque[] tanques )
+    {
+        return ( int ) ( Thread.currentThread( ).getId( ) % tanques.length );
+    }
+}
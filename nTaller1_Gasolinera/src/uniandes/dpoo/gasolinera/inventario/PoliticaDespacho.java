@@ -0,0 +1,19 @@
+package uniandes.dpoo.gasolinera.inventario;
+
+import uniandes.dpoo.gasolinera.logica.Tanque;
+
+/**
+ * Una política que decide de qué tanque empieza a sacar gasolina cada venta de un tipo de gasolina con varios tanques.
+ *
+ * La venta recorre los tanques en orden circular a partir del que indique la política. En la primera vuelta se salta los tanques que estén ocupados por otra venta,
+ * así que siempre saca primero de los tanques disponibles más rápido.
+ */
+public interface PoliticaDespacho
+{
+    /**
+     * Decide el tanque por el que empieza una venta. Se llama en cada venta, así que no debería crear objetos ni usar candados.
+     * @param tanques Los tanques del tipo de gasolina. Tiene al menos un tanque
+     * @return La posición del primer tanque dentro del arreglo
+     */
+    public int primerTanque( Tanque[] tanques );
+}
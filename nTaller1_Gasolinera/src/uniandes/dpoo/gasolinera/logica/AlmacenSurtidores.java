@@ -0,0 +1,292 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import uniandes.dpoo.gasolinera.precios.TablaPrecios;
+
+/**
+ * Guarda el estado de todos los surtidores de una gasolinera: los galones vendidos de cada tipo de gasolina en cada surtidor y el empleado asignado a cada uno. Los
+ * objetos Surtidor son sólo vistas sobre una posición del almacén, que se crean cuando se necesitan.
+ *
+ * Los empleados se guardan por su identificador, que es su posición en el arreglo de empleados del almacén. Las subclases deciden dónde están los contadores: en
+ * arreglos del heap (AlmacenSurtidoresMemoria) o en un archivo mapeado en memoria (AlmacenSurtidoresMapeado). En ambos casos las posiciones se leen y se modifican de
+ * forma atómica, así que se pueden hacer ventas en varios threads al mismo tiempo.
+ */
+abstract class AlmacenSurtidores
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La tabla de símbolos con los nombres de los tipos de gasolina
+     */
+    private final TablaSimbolos simbolosTipos;
+
+    /**
+     * Los tipos de gasolina, cada uno en la posición de su identificador
+     */
+    private final TipoGasolina[] tiposGasolina;
+
+    /**
+     * Los empleados que se han asignado a algún surtidor, cada uno en la posición de su identificador. Cuando se asigna un empleado nuevo se reemplaza el arreglo
+     * completo, así que las lecturas nunca ven un arreglo a medio llenar.
+     */
+    private volatile Empleado[] empleadosPorId;
+
+    /**
+     * El identificador de cada empleado. Sólo se usa al asignar empleados, con el candado del almacén
+     */
+    private final Map<Empleado, Integer> idsEmpleados;
+
+    /**
+     * Indica si ya no se pueden registrar empleados nuevos, porque el almacén es de una gasolinera y sólo acepta a sus empleados. Se protege con el candado del almacén
+     */
+    private boolean empleadosCerrados;
+
+    /**
+     * La tabla con la que se ajustan los precios de las ventas, o null si se cobra el precio base. Se reemplaza completa cuando cambian las reglas
+     */
+    private volatile TablaPrecios tablaPrecios;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un almacén
+     * @param simbolosTipos La tabla con los nombres de los tipos de gasolina
+     * @param tiposGasolina Los tipos de gasolina, cada uno en la posición de su identificador en la tabla. El arreglo se comparte, no se copia
+     * @param empleadosPorId Los empleados que se conocen de antemano. El identificador de cada uno es su posición en el arreglo
+     */
+    AlmacenSurtidores( TablaSimbolos simbolosTipos, TipoGasolina[] tiposGasolina, Empleado[] empleadosPorId )
+    {
+        this.simbolosTipos = simbolosTipos;
+        this.tiposGasolina = tiposGasolina;
+        this.empleadosPorId = empleadosPorId.clone( );
+        this.idsEmpleados = new IdentityHashMap<Empleado, Integer>( empleadosPorId.length );
+        for( int id = 0; id < empleadosPorId.length; id++ )
+        {
+            idsEmpleados.put( empleadosPorId[ id ], id );
+        }
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Retorna el identificador de un empleado, asignándole uno nuevo si no lo tenía
+     * @param empleado El empleado
+     * @return El identificador del empleado
+     * @throws IllegalArgumentException Si el empleado no está registrado y ya no se pueden registrar empleados (ver cerrarEmpleados)
+     */
+    synchronized int registrarEmpleado( Empleado empleado )
+    {
+        int id = buscarEmpleado( empleado );
+        if( id >= 0 )
+            return id;
+        if( empleadosCerrados )
+            throw new IllegalArgumentException( "El empleado " + empleado.getNombre( ) + " no trabaja en la gasolinera" );
+
+        Empleado[] actuales = empleadosPorId;
+        Empleado[] nuevos = Arrays.copyOf( actuales, actuales.length + 1 );
+        nuevos[ actuales.length ] = empleado;
+        idsEmpleados.put( empleado, actuales.length );
+        empleadosPorId = nuevos;
+        return actuales.length;
+    }
+
+    /**
+     * Hace que el almacén sólo acepte a los empleados que ya tiene registrados. Una gasolinera lo llama al construirse, para que sus surtidores sólo se puedan asignar a
+     * empleados que estén en su tabla de empleados
+     */
+    synchronized void cerrarEmpleados( )
+    {
+        empleadosCerrados = true;
+    }
+
+    /**
+     * Retorna el identificador de un empleado
+     * @param empleado El empleado
+     * @return El identificador, o -1 si el empleado no está registrado en el almacén
+     */
+    synchronized int buscarEmpleado( Empleado empleado )
+    {
+        Integer id = idsEmpleados.get( empleado );
+        return id == null ? -1 : id;
+    }
+
+    TablaSimbolos getSimbolosTipos( )
+    {
+        return simbolosTipos;
+    }
+
+    TipoGasolina[] getTiposGasolina( )
+    {
+        return tiposGasolina;
+    }
+
+    /**
+     * Retorna la cantidad de empleados registrados en el almacén, incluyendo los que se registraron al asignarlos a un surtidor
+     */
+    int getCantidadEmpleados( )
+    {
+        return empleadosPorId.length;
+    }
+
+    /**
+     * Retorna el empleado que tiene un identificador en el almacén
+     */
+    Empleado getEmpleado( int idEmpleado )
+    {
+        return empleadosPorId[ idEmpleado ];
+    }
+
+    TablaPrecios getTablaPrecios( )
+    {
+        return tablaPrecios;
+    }
+
+    void cambiarTablaPrecios( TablaPrecios nuevaTabla )
+    {
+        tablaPrecios = nuevaTabla;
+    }
+
+    /**
+     * Calcula el precio por galón de una venta aplicando la tabla de precios
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param precioBase El precio por galón del tipo de gasolina, sin ajustes
+     * @param galones La cantidad de galones de la venta
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio por galón ajustado, o el precio base si no hay tabla de precios
+     */
+    int precioPorGalon( int idTipoGasolina, int precioBase, double galones, int nivelFidelidad )
+    {
+        TablaPrecios tabla = tablaPrecios;
+        if( tabla == null )
+            return precioBase;
+        return tabla.precioPorGalon( idTipoGasolina, precioBase, galones, nivelFidelidad );
+    }
+
+    /**
+     * Calcula el precio por galón de una venta en la que el cliente dice cuánto quiere pagar
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param precioBase El precio por galón del tipo de gasolina, sin ajustes
+     * @param valor El valor que quiere pagar el cliente
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio por galón ajustado, o el precio base si no hay tabla de precios
+     */
+    int precioPorGalonParaValor( int idTipoGasolina, int precioBase, int valor, int nivelFidelidad )
+    {
+        TablaPrecios tabla = tablaPrecios;
+        if( tabla == null )
+            return precioBase;
+        return tabla.precioPorGalonParaValor( idTipoGasolina, precioBase, valor, nivelFidelidad );
+    }
+
+    /**
+     * Libera el espacio que no se está usando. Por defecto no hace nada
+     */
+    void compactar( )
+    {
+    }
+
+    /**
+     * Se asegura de que el estado del almacén quede guardado de forma permanente. Por defecto no hace nada, porque el estado sólo está en memoria
+     */
+    void sincronizar( )
+    {
+    }
+
+    abstract int getCantidadSurtidores( );
+
+    /**
+     * Revisa que exista un surtidor
+     * @param numeroSurtidor El número del surtidor
+     * @throws IndexOutOfBoundsException Si el surtidor no existe
+     */
+    void verificarSurtidor( int numeroSurtidor )
+    {
+        if( numeroSurtidor < 0 || numeroSurtidor >= getCantidadSurtidores( ) )
+            throw new IndexOutOfBoundsException( "El surtidor " + numeroSurtidor + " no existe" );
+    }
+
+    abstract double getGalonesVendidos( int numeroSurtidor, int idTipoGasolina );
+
+    abstract void cambiarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad );
+
+    /**
+     * Suma de forma atómica una cantidad a los galones vendidos de un tipo de gasolina en un surtidor
+     * @param numeroSurtidor El número del surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param cantidad La cantidad de galones que se suma
+     */
+    abstract void sumarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad );
+
+    /**
+     * Retorna el identificador del empleado asignado a un surtidor
+     */
+    abstract int getIdEmpleadoAsignado( int numeroSurtidor );
+
+    /**
+     * Cambia de forma atómica el identificador del empleado asignado a un surtidor
+     */
+    abstract void cambiarIdEmpleadoAsignado( int numeroSurtidor, int idEmpleado );
+
+    Empleado getEmpleadoAsignado( int numeroSurtidor )
+    {
+        return empleadosPorId[ getIdEmpleadoAsignado( numeroSurtidor ) ];
+    }
+
+    void asignarEmpleado( int numeroSurtidor, Empleado empleado )
+    {
+        cambiarIdEmpleadoAsignado( numeroSurtidor, registrarEmpleado( empleado ) );
+    }
+
+    /**
+     * Registra una venta en un surtidor: le entrega el dinero al empleado y suma los galones vendidos
+     * @param numeroSurtidor El número del surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina que se vendió
+     * @param cantidadEntregada La cantidad de galones que se le entregaron al cliente
+     * @param precioPorGalon El precio por galón con el que se hizo la venta
+     * @param empleado El empleado que recibe el dinero
+     * @return El precio de la compra, redondeado al entero más cercano
+     */
+    int venderGasolina( int numeroSurtidor, int idTipoGasolina, double cantidadEntregada, int precioPorGalon, Empleado empleado )
+    {
+        int precio = ( int )Math.round( precioPorGalon * cantidadEntregada );
+        empleado.agregarDinero( precio );
+        sumarGalonesVendidos( numeroSurtidor, idTipoGasolina, cantidadEntregada );
+        return precio;
+    }
+
+    /**
+     * Suma los galones vendidos de un tipo de gasolina en todos los surtidores, recorriendo su columna de forma secuencial. Si hay ventas al mismo tiempo, el total
+     * puede no incluirlas; para un total consistente se debe usar una instantánea.
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return El total de galones
+     */
+    abstract double getTotalGalonesVendidos( int idTipoGasolina );
+
+    /**
+     * Copia una parte de la columna de galones de un tipo de gasolina, sin ninguna coordinación con las ventas. Quien la llama se encarga de validar la copia (ver
+     * ControlVersiones)
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param desde El primer surtidor que se copia
+     * @param hasta El surtidor siguiente al último que se copia
+     * @param destino El arreglo donde se copia
+     * @param posicion La posición del destino donde se copia el primer surtidor
+     */
+    abstract void copiarGalones( int idTipoGasolina, int desde, int hasta, double[] destino, int posicion );
+
+    /**
+     * Copia una parte de la columna de empleados asignados, sin ninguna coordinación con las ventas
+     * @param desde El primer surtidor que se copia
+     * @param hasta El surtidor siguiente al último que se copia
+     * @param destino El arreglo donde se copia. Cada surtidor queda en su misma posición
+     */
+    abstract void copiarEmpleados( int desde, int hasta, int[] destino );
+}
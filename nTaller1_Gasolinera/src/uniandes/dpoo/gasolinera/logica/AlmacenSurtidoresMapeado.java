@@ -0,0 +1,852 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import uniandes.dpoo.gasolinera.exceptions.GasolinaInsuficienteException;
+
+/**
+ * Un almacén de surtidores que guarda los contadores fuera del heap, en un archivo mapeado en memoria.
+ *
+ * Los galones vendidos de cada surtidor, el empleado asignado a cada surtidor, el dinero de cada empleado y el precio y la cantidad disponible de cada tipo de gasolina
+ * están en posiciones fijas del archivo, y se leen y se modifican directamente con operaciones atómicas (VarHandle) sobre el buffer mapeado. Así el recolector de basura no
+ * tiene que recorrer ni copiar esos contadores, y el estado sobrevive a un reinicio del programa sin ningún paso de carga: al abrir el archivo sólo se lee el catálogo
+ * de nombres. Lo que se modifica queda en el archivo aunque el programa termine de forma abrupta; para que también sobreviva a una caída del sistema operativo se debe
+ * llamar a sincronizar.
+ *
+ * El contenido del archivo, con todos los números en orden little-endian, es:
+ *
+ * 1. Encabezado de 32 bytes: MAGIA, VERSION, cantidad de tipos de gasolina, cantidad de empleados, cantidad de surtidores y tamaño del catálogo, todos como int, y 8
+ * bytes reservados
+ *
+ * 2. Catálogo, escrito con DataOutputStream: el nombre de cada tipo de gasolina y el nombre de cada empleado
+ *
+ * 3. Contadores, alineados a 8 bytes: el precio de cada tipo empacado con su versión (long, ver TipoGasolina.empacarPrecio), la cantidad disponible de cada tipo
+ * (double), el dinero de cada empleado (int), el empleado asignado a cada surtidor (int) y una columna de galones vendidos (double) por cada tipo de gasolina
+ *
+ * El archivo se mapea en regiones de TAMANO_REGION bytes, cada una en su propio buffer, así que puede pasar de 2 GB. Ningún contador queda partido entre dos regiones
+ * porque las regiones empiezan en posiciones múltiplo de 8. La cantidad de surtidores y de empleados queda fija al crear el archivo, así que a un surtidor sólo se le
+ * pueden asignar empleados que estén en el archivo.
+ *
+ * El archivo guarda el inventario de cada tipo de gasolina, incluyendo la gasolina apartada en reservas. Las reservas abiertas sólo están en memoria: si el programa
+ * termina, la gasolina reservada sigue en el inventario del archivo, igual que cuando se guarda una gasolinera con reservas abiertas.
+ */
+class AlmacenSurtidoresMapeado extends AlmacenSurtidores
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Los primeros cuatro bytes de un archivo mapeado: "GASM" en ASCII
+     */
+    static final int MAGIA = 0x4741534D;
+
+    /**
+     * La versión del formato. En la versión 1 los precios estaban en el catálogo y no había región de precios, así que esos archivos no se pueden abrir
+     */
+    static final int VERSION = 2;
+
+    /**
+     * El tamaño en bytes del encabezado del archivo
+     */
+    private static final int TAMANO_ENCABEZADO = 32;
+
+    /**
+     * La cantidad de bits de una posición dentro de una región del archivo. Las regiones son de 1 GB
+     */
+    private static final int BITS_REGION = 30;
+
+    /**
+     * El tamaño en bytes de cada región del archivo, salvo la última que puede ser más pequeña
+     */
+    private static final long TAMANO_REGION = 1L << BITS_REGION;
+
+    /**
+     * Permite hacer operaciones atómicas sobre los int del buffer mapeado
+     */
+    private static final VarHandle INTS = MethodHandles.byteBufferViewVarHandle( int[].class, ByteOrder.LITTLE_ENDIAN );
+
+    /**
+     * Permite hacer operaciones atómicas sobre los long del buffer mapeado
+     */
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle( long[].class, ByteOrder.LITTLE_ENDIAN );
+
+    /**
+     * Permite hacer operaciones atómicas sobre los double del buffer mapeado
+     */
+    private static final VarHandle DOUBLES = MethodHandles.byteBufferViewVarHandle( double[].class, ByteOrder.LITTLE_ENDIAN );
+
+    /**
+     * Las regiones mapeadas del archivo
+     */
+    private final Regiones memoria;
+
+    /**
+     * La cantidad de surtidores en el archivo
+     */
+    private final int cantidadSurtidores;
+
+    /**
+     * Las posiciones de los contadores en el archivo
+     */
+    private final Disposicion disposicion;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un almacén sobre un archivo ya mapeado y validado
+     * @param memoria Las regiones mapeadas del archivo
+     * @param disposicion Las posiciones de los contadores
+     * @param simbolosTipos La tabla con los nombres de los tipos de gasolina
+     * @param tiposGasolina Los tipos de gasolina del archivo
+     * @param empleadosPorId Los empleados del archivo
+     * @param cantidadSurtidores La cantidad de surtidores del archivo
+     */
+    private AlmacenSurtidoresMapeado( Regiones memoria, Disposicion disposicion, TablaSimbolos simbolosTipos, TipoGasolina[] tiposGasolina, Empleado[] empleadosPorId,
+            int cantidadSurtidores )
+    {
+        super( simbolosTipos, tiposGasolina, empleadosPorId );
+        this.memoria = memoria;
+        this.disposicion = disposicion;
+        this.cantidadSurtidores = cantidadSurtidores;
+    }
+
+    /**
+     * Crea un archivo mapeado con el estado de una instantánea. Si el archivo ya existe, se sobreescribe.
+     *
+     * La marca del formato se escribe al final, así que si la escritura se interrumpe el archivo no se puede abrir por error.
+     * @param archivo El archivo que se crea
+     * @param estado El estado que se guarda en el archivo
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo el archivo, si el estado no cabe en un archivo mapeado o si algún surtidor tiene asignado
+     *         un empleado que no es de la gasolinera
+     */
+    static void crear( File archivo, InstantaneaGasolinera estado ) throws IOException
+    {
+        int cantidadTipos = estado.getCantidadTiposGasolina( );
+        int cantidadEmpleados = estado.getCantidadEmpleados( );
+        int cantidadSurtidores = estado.getCantidadSurtidores( );
+
+        ByteArrayOutputStream bytesCatalogo = new ByteArrayOutputStream( );
+        DataOutputStream catalogo = new DataOutputStream( bytesCatalogo );
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            catalogo.writeUTF( estado.getNombreTipoGasolina( id ) );
+        }
+        for( int id = 0; id < cantidadEmpleados; id++ )
+        {
+            catalogo.writeUTF( estado.getNombreEmpleado( id ) );
+        }
+        catalogo.close( );
+        byte[] contenidoCatalogo = bytesCatalogo.toByteArray( );
+
+        Disposicion disposicion = new Disposicion( contenidoCatalogo.length, cantidadTipos, cantidadEmpleados, cantidadSurtidores );
+        try( RandomAccessFile acceso = new RandomAccessFile( archivo, "rw" ); FileChannel canal = acceso.getChannel( ) )
+        {
+            acceso.setLength( 0 );
+            acceso.setLength( disposicion.tamano );
+            Regiones memoria = new Regiones( canal, disposicion.tamano );
+
+            memoria.putInt( 4, VERSION );
+            memoria.putInt( 8, cantidadTipos );
+            memoria.putInt( 12, cantidadEmpleados );
+            memoria.putInt( 16, cantidadSurtidores );
+            memoria.putInt( 20, contenidoCatalogo.length );
+            memoria.escribir( TAMANO_ENCABEZADO, contenidoCatalogo );
+
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                memoria.putLong( disposicion.inicioPrecios + id * ( long )Long.BYTES, TipoGasolina.empacarPrecio( estado.getPrecioPorGalon( id ), estado.getVersionPrecio( id ) ) );
+                memoria.putDouble( disposicion.inicioDisponibles + id * ( long )Double.BYTES, estado.getCantidadEnInventario( id ) );
+            }
+            for( int id = 0; id < cantidadEmpleados; id++ )
+            {
+                memoria.putInt( disposicion.inicioDinero + id * ( long )Integer.BYTES, estado.getCantidadDinero( id ) );
+            }
+            for( int i = 0; i < cantidadSurtidores; i++ )
+            {
+                int idEmpleado = estado.getEmpleadoAsignado( i );
+                if( idEmpleado < 0 || idEmpleado >= cantidadEmpleados )
+                    throw new IOException( "El surtidor " + i + " tiene asignado un empleado que no es de la gasolinera" );
+                memoria.putInt( disposicion.inicioAsignados + i * ( long )Integer.BYTES, idEmpleado );
+            }
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                long inicioColumna = disposicion.inicioGalones( id );
+                for( int i = 0; i < cantidadSurtidores; i++ )
+                {
+                    memoria.putDouble( inicioColumna + i * ( long )Double.BYTES, estado.getGalonesVendidos( i, id ) );
+                }
+            }
+            memoria.forzar( );
+
+            memoria.putInt( 0, MAGIA );
+            memoria.forzar( );
+        }
+    }
+
+    /**
+     * Abre un archivo mapeado. Sólo se lee el catálogo de nombres: los contadores se quedan en el archivo, y los tipos de gasolina y los empleados que se retornan en el
+     * almacén leen y modifican directamente sus posiciones en el archivo.
+     * @param archivo El archivo que se abre
+     * @return El almacén con los surtidores del archivo
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer, no es un archivo mapeado de gasolinera o está incompleto
+     */
+    static AlmacenSurtidoresMapeado abrir( File archivo ) throws IOException
+    {
+        Regiones memoria;
+        try( RandomAccessFile acceso = new RandomAccessFile( archivo, "rw" ); FileChannel canal = acceso.getChannel( ) )
+        {
+            long tamanoArchivo = canal.size( );
+            if( tamanoArchivo < TAMANO_ENCABEZADO )
+                throw new IOException( "El archivo " + archivo + " no es un archivo mapeado de gasolinera" );
+            // El mapeo sigue siendo válido después de cerrar el canal
+            memoria = new Regiones( canal, tamanoArchivo );
+        }
+
+        if( memoria.getInt( 0 ) != MAGIA )
+            throw new IOException( "El archivo " + archivo + " no es un archivo mapeado de gasolinera" );
+        int version = memoria.getInt( 4 );
+        if( version == 1 )
+            throw new IOException( "El archivo " + archivo + " tiene la versión 1 del formato mapeado, que guardaba los precios en el catálogo. Se debe volver a crear con "
+                    + "guardarEstadoMapeado" );
+        if( version != VERSION )
+            throw new IOException( "La versión " + version + " del formato mapeado no está soportada" );
+        int cantidadTipos = memoria.getInt( 8 );
+        int cantidadEmpleados = memoria.getInt( 12 );
+        int cantidadSurtidores = memoria.getInt( 16 );
+        int tamanoCatalogo = memoria.getInt( 20 );
+        if( cantidadTipos < 0 || cantidadEmpleados < 0 || cantidadSurtidores < 0 || tamanoCatalogo < 0 || tamanoCatalogo > memoria.getTamano( ) - TAMANO_ENCABEZADO )
+            throw new IOException( "El encabezado del archivo " + archivo + " está dañado" );
+
+        Disposicion disposicion = new Disposicion( tamanoCatalogo, cantidadTipos, cantidadEmpleados, cantidadSurtidores );
+        if( disposicion.tamano > memoria.getTamano( ) )
+            throw new IOException( "El archivo " + archivo + " está incompleto" );
+
+        // Leer el catálogo y construir los tipos de gasolina y los empleados sobre sus posiciones del archivo
+        byte[] contenidoCatalogo = new byte[tamanoCatalogo];
+        memoria.leer( TAMANO_ENCABEZADO, contenidoCatalogo );
+        DataInputStream catalogo = new DataInputStream( new ByteArrayInputStream( contenidoCatalogo ) );
+
+        TablaSimbolos simbolosTipos = new TablaSimbolos( );
+        TipoGasolina[] tiposPorId = new TipoGasolina[cantidadTipos];
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            String nombre = catalogo.readUTF( );
+            if( simbolosTipos.registrar( nombre ) != id )
+                throw new IOException( "El tipo de gasolina " + nombre + " está repetido en el archivo" );
+            long posicionPrecio = disposicion.inicioPrecios + id * ( long )Long.BYTES;
+            long posicionInventario = disposicion.inicioDisponibles + id * ( long )Double.BYTES;
+            tiposPorId[ id ] = new TipoGasolinaMapeado( nombre, memoria.region( posicionPrecio ), Regiones.desplazamiento( posicionPrecio ), memoria.region( posicionInventario ),
+                    Regiones.desplazamiento( posicionInventario ) );
+        }
+        Empleado[] empleadosPorId = new Empleado[cantidadEmpleados];
+        for( int id = 0; id < cantidadEmpleados; id++ )
+        {
+            long posicionDinero = disposicion.inicioDinero + id * ( long )Integer.BYTES;
+            empleadosPorId[ id ] = new EmpleadoMapeado( catalogo.readUTF( ), memoria.region( posicionDinero ), Regiones.desplazamiento( posicionDinero ) );
+        }
+
+        for( int i = 0; i < cantidadSurtidores; i++ )
+        {
+            int idEmpleado = memoria.getInt( disposicion.inicioAsignados + i * ( long )Integer.BYTES );
+            if( idEmpleado < 0 || idEmpleado >= cantidadEmpleados )
+                throw new IOException( "El surtidor " + i + " tiene asignado un empleado que no existe" );
+        }
+
+        return new AlmacenSurtidoresMapeado( memoria, disposicion, simbolosTipos, tiposPorId, empleadosPorId, cantidadSurtidores );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Retorna el identificador de un empleado. En un archivo mapeado no se pueden agregar empleados
+     * @param empleado El empleado
+     * @return El identificador del empleado
+     * @throws IllegalArgumentException Si el empleado no está en el archivo
+     */
+    @Override
+    int registrarEmpleado( Empleado empleado )
+    {
+        int id = buscarEmpleado( empleado );
+        if( id < 0 )
+            throw new IllegalArgumentException( "El empleado " + empleado.getNombre( ) + " no está en el archivo de la gasolinera" );
+        return id;
+    }
+
+    /**
+     * Fuerza que todos los cambios del buffer mapeado se escriban en el disco
+     */
+    @Override
+    void sincronizar( )
+    {
+        memoria.forzar( );
+    }
+
+    @Override
+    int getCantidadSurtidores( )
+    {
+        return cantidadSurtidores;
+    }
+
+    /**
+     * Retorna la posición en el archivo de los galones vendidos de un tipo de gasolina en un surtidor
+     */
+    private long posicionGalones( int numeroSurtidor, int idTipoGasolina )
+    {
+        return disposicion.inicioGalones( idTipoGasolina ) + numeroSurtidor * ( long )Double.BYTES;
+    }
+
+    /**
+     * Retorna la posición en el archivo del empleado asignado a un surtidor
+     */
+    private long posicionAsignado( int numeroSurtidor )
+    {
+        return disposicion.inicioAsignados + numeroSurtidor * ( long )Integer.BYTES;
+    }
+
+    @Override
+    double getGalonesVendidos( int numeroSurtidor, int idTipoGasolina )
+    {
+        long posicion = posicionGalones( numeroSurtidor, idTipoGasolina );
+        return ( double )DOUBLES.getVolatile( memoria.region( posicion ), Regiones.desplazamiento( posicion ) );
+    }
+
+    @Override
+    void cambiarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad )
+    {
+        long posicion = posicionGalones( numeroSurtidor, idTipoGasolina );
+        DOUBLES.setVolatile( memoria.region( posicion ), Regiones.desplazamiento( posicion ), cantidad );
+    }
+
+    @Override
+    void sumarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad )
+    {
+        long posicion = posicionGalones( numeroSurtidor, idTipoGasolina );
+        MappedByteBuffer region = memoria.region( posicion );
+        int desplazamiento = Regiones.desplazamiento( posicion );
+        double cantidadAnterior;
+        do
+        {
+            cantidadAnterior = ( double )DOUBLES.getVolatile( region, desplazamiento );
+        } while( !DOUBLES.compareAndSet( region, desplazamiento, cantidadAnterior, cantidadAnterior + cantidad ) );
+    }
+
+    @Override
+    int getIdEmpleadoAsignado( int numeroSurtidor )
+    {
+        long posicion = posicionAsignado( numeroSurtidor );
+        return ( int )INTS.getVolatile( memoria.region( posicion ), Regiones.desplazamiento( posicion ) );
+    }
+
+    @Override
+    void cambiarIdEmpleadoAsignado( int numeroSurtidor, int idEmpleado )
+    {
+        long posicion = posicionAsignado( numeroSurtidor );
+        INTS.setVolatile( memoria.region( posicion ), Regiones.desplazamiento( posicion ), idEmpleado );
+    }
+
+    @Override
+    double getTotalGalonesVendidos( int idTipoGasolina )
+    {
+        return memoria.sumarDoubles( disposicion.inicioGalones( idTipoGasolina ), cantidadSurtidores );
+    }
+
+    @Override
+    void copiarGalones( int idTipoGasolina, int desde, int hasta, double[] destino, int posicion )
+    {
+        memoria.copiarDoubles( posicionGalones( desde, idTipoGasolina ), destino, posicion, hasta - desde );
+    }
+
+    @Override
+    void copiarEmpleados( int desde, int hasta, int[] destino )
+    {
+        memoria.copiarInts( posicionAsignado( desde ), destino, desde, hasta - desde );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Las posiciones de las regiones de contadores dentro del archivo. Todas las regiones empiezan en posiciones múltiplo de 8, para que las operaciones atómicas
+     * sobre los double estén alineadas.
+     */
+    private static class Disposicion
+    {
+        private final long inicioPrecios;
+
+        private final long inicioDisponibles;
+
+        private final long inicioDinero;
+
+        private final long inicioAsignados;
+
+        private final long inicioColumnasGalones;
+
+        private final long tamanoColumnaGalones;
+
+        /**
+         * El tamaño total del archivo
+         */
+        private final long tamano;
+
+        /**
+         * Calcula las posiciones de los contadores
+         * @throws IOException Si el tamaño del archivo resultante no se puede representar
+         */
+        Disposicion( int tamanoCatalogo, int cantidadTipos, int cantidadEmpleados, int cantidadSurtidores ) throws IOException
+        {
+            long precios = alinear( TAMANO_ENCABEZADO + ( long )tamanoCatalogo );
+            long disponibles = precios + ( long )cantidadTipos * Long.BYTES;
+            long dinero = disponibles + ( long )cantidadTipos * Double.BYTES;
+            long asignados = alinear( dinero + ( long )cantidadEmpleados * Integer.BYTES );
+            long galones = alinear( asignados + ( long )cantidadSurtidores * Integer.BYTES );
+            long total;
+            try
+            {
+                total = Math.addExact( galones, Math.multiplyExact( ( long )cantidadTipos * cantidadSurtidores, Double.BYTES ) );
+            }
+            catch( ArithmeticException e )
+            {
+                throw new IOException( "Una gasolinera con " + cantidadSurtidores + " surtidores y " + cantidadTipos + " tipos de gasolina no cabe en un archivo mapeado" );
+            }
+
+            this.inicioPrecios = precios;
+            this.inicioDisponibles = disponibles;
+            this.inicioDinero = dinero;
+            this.inicioAsignados = asignados;
+            this.inicioColumnasGalones = galones;
+            this.tamanoColumnaGalones = ( long )cantidadSurtidores * Double.BYTES;
+            this.tamano = total;
+        }
+
+        long inicioGalones( int idTipoGasolina )
+        {
+            return inicioColumnasGalones + idTipoGasolina * tamanoColumnaGalones;
+        }
+
+        private static long alinear( long posicion )
+        {
+            return ( posicion + 7 ) & ~7L;
+        }
+    }
+
+    /**
+     * Las regiones en las que se mapea el archivo. La región de una posición son sus bits altos y la posición dentro de la región son sus BITS_REGION bits bajos
+     */
+    private static class Regiones
+    {
+        private final MappedByteBuffer[] buffers;
+
+        private final long tamano;
+
+        /**
+         * Mapea un archivo completo, región por región
+         * @param canal El canal del archivo, abierto para lectura y escritura
+         * @param tamano El tamaño del archivo
+         * @throws IOException Si no se pudo mapear alguna región
+         */
+        Regiones( FileChannel canal, long tamano ) throws IOException
+        {
+            this.tamano = tamano;
+            buffers = new MappedByteBuffer[( int ) ( ( tamano + TAMANO_REGION - 1 ) >>> BITS_REGION )];
+            for( int i = 0; i < buffers.length; i++ )
+            {
+                long inicio = ( long )i << BITS_REGION;
+                buffers[ i ] = canal.map( FileChannel.MapMode.READ_WRITE, inicio, Math.min( TAMANO_REGION, tamano - inicio ) );
+                buffers[ i ].order( ByteOrder.LITTLE_ENDIAN );
+            }
+        }
+
+        long getTamano( )
+        {
+            return tamano;
+        }
+
+        /**
+         * Retorna el buffer de la región donde está una posición del archivo
+         */
+        MappedByteBuffer region( long posicion )
+        {
+            return buffers[ ( int ) ( posicion >>> BITS_REGION ) ];
+        }
+
+        /**
+         * Retorna la posición dentro de su región de una posición del archivo
+         */
+        static int desplazamiento( long posicion )
+        {
+            return ( int ) ( posicion & ( TAMANO_REGION - 1 ) );
+        }
+
+        int getInt( long posicion )
+        {
+            return region( posicion ).getInt( desplazamiento( posicion ) );
+        }
+
+        void putInt( long posicion, int valor )
+        {
+            region( posicion ).putInt( desplazamiento( posicion ), valor );
+        }
+
+        void putLong( long posicion, long valor )
+        {
+            region( posicion ).putLong( desplazamiento( posicion ), valor );
+        }
+
+        void putDouble( long posicion, double valor )
+        {
+            region( posicion ).putDouble( desplazamiento( posicion ), valor );
+        }
+
+        /**
+         * Lee bytes del archivo, aunque estén en varias regiones
+         * @param posicion La posición del primer byte
+         * @param destino El arreglo donde quedan los bytes, que se llena completo
+         */
+        void leer( long posicion, byte[] destino )
+        {
+            int leidos = 0;
+            while( leidos < destino.length )
+            {
+                MappedByteBuffer region = region( posicion + leidos );
+                int desplazamiento = desplazamiento( posicion + leidos );
+                int cantidad = Math.min( destino.length - leidos, region.capacity( ) - desplazamiento );
+                region.get( desplazamiento, destino, leidos, cantidad );
+                leidos += cantidad;
+            }
+        }
+
+        /**
+         * Escribe bytes en el archivo, aunque queden en varias regiones
+         * @param posicion La posición del primer byte
+         * @param contenido Los bytes que se escriben
+         */
+        void escribir( long posicion, byte[] contenido )
+        {
+            int escritos = 0;
+            while( escritos < contenido.length )
+            {
+                MappedByteBuffer region = region( posicion + escritos );
+                int desplazamiento = desplazamiento( posicion + escritos );
+                int cantidad = Math.min( contenido.length - escritos, region.capacity( ) - desplazamiento );
+                region.put( desplazamiento, contenido, escritos, cantidad );
+                escritos += cantidad;
+            }
+        }
+
+        /**
+         * Copia una secuencia de double del archivo, tramo por tramo si cruza de una región a otra
+         * @param posicion La posición del primer double
+         * @param destino El arreglo donde se copian
+         * @param inicio La posición del arreglo donde se copia el primero
+         * @param cantidad La cantidad de double que se copian
+         */
+        void copiarDoubles( long posicion, double[] destino, int inicio, int cantidad )
+        {
+            while( cantidad > 0 )
+            {
+                DoubleBuffer tramo = tramo( posicion, cantidad, Double.BYTES ).asDoubleBuffer( );
+                int copiados = tramo.remaining( );
+                tramo.get( destino, inicio, copiados );
+                posicion += copiados * ( long )Double.BYTES;
+                inicio += copiados;
+                cantidad -= copiados;
+            }
+        }
+
+        /**
+         * Copia una secuencia de int del archivo, tramo por tramo si cruza de una región a otra
+         * @param posicion La posición del primer int
+         * @param destino El arreglo donde se copian
+         * @param inicio La posición del arreglo donde se copia el primero
+         * @param cantidad La cantidad de int que se copian
+         */
+        void copiarInts( long posicion, int[] destino, int inicio, int cantidad )
+        {
+            while( cantidad > 0 )
+            {
+                IntBuffer tramo = tramo( posicion, cantidad, Integer.BYTES ).asIntBuffer( );
+                int copiados = tramo.remaining( );
+                tramo.get( destino, inicio, copiados );
+                posicion += copiados * ( long )Integer.BYTES;
+                inicio += copiados;
+                cantidad -= copiados;
+            }
+        }
+
+        /**
+         * Suma una secuencia de double del archivo
+         * @param posicion La posición del primer double
+         * @param cantidad La cantidad de double que se suman
+         * @return La suma
+         */
+        double sumarDoubles( long posicion, int cantidad )
+        {
+            double total = 0;
+            while( cantidad > 0 )
+            {
+                DoubleBuffer tramo = tramo( posicion, cantidad, Double.BYTES ).asDoubleBuffer( );
+                int sumados = tramo.remaining( );
+                for( int i = 0; i < sumados; i++ )
+                {
+                    total += tramo.get( i );
+                }
+                posicion += sumados * ( long )Double.BYTES;
+                cantidad -= sumados;
+            }
+            return total;
+        }
+
+        /**
+         * Retorna la parte de una secuencia de valores que está en la región de su primer valor
+         * @param posicion La posición del primer valor
+         * @param cantidad La cantidad de valores de la secuencia
+         * @param tamanoValor El tamaño en bytes de cada valor
+         * @return Un buffer sobre los valores de la secuencia que están en esa región, en orden little-endian
+         */
+        private ByteBuffer tramo( long posicion, int cantidad, int tamanoValor )
+        {
+            MappedByteBuffer region = region( posicion );
+            int desplazamiento = desplazamiento( posicion );
+            int enRegion = Math.min( cantidad, ( region.capacity( ) - desplazamiento ) / tamanoValor );
+            return region.slice( desplazamiento, enRegion * tamanoValor ).order( ByteOrder.LITTLE_ENDIAN );
+        }
+
+        /**
+         * Fuerza que todos los cambios de todas las regiones se escriban en el disco
+         */
+        void forzar( )
+        {
+            for( MappedByteBuffer buffer : buffers )
+            {
+                buffer.force( );
+            }
+        }
+    }
+
+    /**
+     * Un tipo de gasolina cuyo precio y cantidad en inventario están en el archivo mapeado. En el archivo todo el inventario de un tipo está en un solo tanque, así que
+     * los despachos y las recargas se sincronizan sobre el tipo de gasolina.
+     *
+     * La gasolina reservada no sale del inventario del archivo: se lleva la cuenta en memoria y se descuenta de la cantidad disponible. Así, si el programa termina con
+     * reservas abiertas, esa gasolina no se pierde.
+     */
+    private static class TipoGasolinaMapeado extends TipoGasolina
+    {
+        private final MappedByteBuffer regionPrecio;
+
+        private final int posicionPrecio;
+
+        private final MappedByteBuffer regionInventario;
+
+        private final int posicionInventario;
+
+        /**
+         * La cantidad de galones apartados en reservas abiertas. Sólo se modifica con el candado del tipo de gasolina
+         */
+        private volatile double cantidadReservada;
+
+        /**
+         * El único tanque del tipo de gasolina, que lee y modifica el inventario del archivo
+         */
+        private final Tanque tanque;
+
+        TipoGasolinaMapeado( String nombre, MappedByteBuffer regionPrecio, int posicionPrecio, MappedByteBuffer regionInventario, int posicionInventario )
+        {
+            super( nombre, 0, 0 );
+            this.regionPrecio = regionPrecio;
+            this.posicionPrecio = posicionPrecio;
+            this.regionInventario = regionInventario;
+            this.posicionInventario = posicionInventario;
+            this.tanque = new TanqueMapeado( this );
+        }
+
+        @Override
+        public long getPrecioVersionado( )
+        {
+            return ( long )LONGS.getVolatile( regionPrecio, posicionPrecio );
+        }
+
+        @Override
+        boolean compararYCambiarPrecioVersionado( long esperado, long nuevo )
+        {
+            return LONGS.compareAndSet( regionPrecio, posicionPrecio, esperado, nuevo );
+        }
+
+        /**
+         * Retorna la cantidad de galones en el inventario del archivo, incluyendo la gasolina reservada
+         */
+        private double getCantidadEnInventario( )
+        {
+            return ( double )DOUBLES.getVolatile( regionInventario, posicionInventario );
+        }
+
+        private void cambiarCantidadEnInventario( double cantidad )
+        {
+            DOUBLES.setVolatile( regionInventario, posicionInventario, cantidad );
+        }
+
+        @Override
+        public double getCantidadDisponible( )
+        {
+            return getCantidadEnInventario( ) - cantidadReservada;
+        }
+
+        @Override
+        public synchronized void despacharGasolina( double cantidadSolicitada ) throws GasolinaInsuficienteException
+        {
+            double cantidadDisponible = getCantidadDisponible( );
+            if( cantidadSolicitada > cantidadDisponible )
+                throw new GasolinaInsuficienteException( getNombre( ), cantidadDisponible, cantidadSolicitada );
+            cambiarCantidadEnInventario( getCantidadEnInventario( ) - cantidadSolicitada );
+        }
+
+        @Override
+        public synchronized double despacharDisponible( double cantidadSolicitada )
+        {
+            double cantidadEntregada = Math.max( 0, Math.min( cantidadSolicitada, getCantidadDisponible( ) ) );
+            cambiarCantidadEnInventario( getCantidadEnInventario( ) - cantidadEntregada );
+            return cantidadEntregada;
+        }
+
+        @Override
+        public synchronized double recargar( double cantidadRecibida )
+        {
+            verificarRecarga( cantidadRecibida );
+            cambiarCantidadEnInventario( getCantidadEnInventario( ) + cantidadRecibida );
+            return getCantidadDisponible( );
+        }
+
+        @Override
+        public double recargarTanque( int numeroTanque, double cantidadRecibida )
+        {
+            // En el archivo cada tipo de gasolina tiene un solo tanque
+            if( numeroTanque != 0 )
+                throw new IndexOutOfBoundsException( "El tanque " + numeroTanque + " no existe" );
+            return recargar( cantidadRecibida );
+        }
+
+        @Override
+        public int getCantidadTanques( )
+        {
+            return 1;
+        }
+
+        @Override
+        public Tanque getTanque( int numeroTanque )
+        {
+            if( numeroTanque != 0 )
+                throw new IndexOutOfBoundsException( "El tanque " + numeroTanque + " no existe" );
+            return tanque;
+        }
+
+        /**
+         * Aparta gasolina para una venta prepagada. La gasolina sigue en el inventario del archivo pero deja de estar disponible
+         */
+        @Override
+        public synchronized double reservar( double cantidadSolicitada )
+        {
+            double cantidadReservadaAhora = Math.max( 0, Math.min( cantidadSolicitada, getCantidadDisponible( ) ) );
+            cantidadReservada += cantidadReservadaAhora;
+            return cantidadReservadaAhora;
+        }
+
+        @Override
+        public synchronized void confirmarReserva( double galonesReservados, double galonesEntregados )
+        {
+            if( galonesEntregados < 0 || galonesEntregados > galonesReservados )
+                throw new IllegalArgumentException( "No se pueden entregar " + galonesEntregados + " galones de gasolina " + getNombre( ) + " con una reserva de "
+                        + galonesReservados );
+            cantidadReservada -= galonesReservados;
+            if( galonesEntregados > 0 )
+                cambiarCantidadEnInventario( getCantidadEnInventario( ) - galonesEntregados );
+        }
+
+        @Override
+        public double getCantidadReservada( )
+        {
+            return cantidadReservada;
+        }
+    }
+
+    /**
+     * El tanque de un tipo de gasolina mapeado. Su contenido es la gasolina disponible del tipo, que está en el archivo, y se modifica con el candado del tipo de
+     * gasolina
+     */
+    private static class TanqueMapeado extends Tanque
+    {
+        private final TipoGasolinaMapeado tipo;
+
+        TanqueMapeado( TipoGasolinaMapeado tipo )
+        {
+            super( 0, 0 );
+            this.tipo = tipo;
+        }
+
+        @Override
+        public double getCantidad( )
+        {
+            return tipo.getCantidadDisponible( );
+        }
+
+        @Override
+        double sacar( double cantidadMaxima )
+        {
+            return tipo.despacharDisponible( cantidadMaxima );
+        }
+
+        @Override
+        double agregar( double cantidadRecibida )
+        {
+            return tipo.recargar( cantidadRecibida );
+        }
+    }
+
+    /**
+     * Un empleado cuyo dinero está en el archivo mapeado
+     */
+    private static class EmpleadoMapeado extends Empleado
+    {
+        private final MappedByteBuffer memoria;
+
+        private final int posicion;
+
+        EmpleadoMapeado( String nombre, MappedByteBuffer memoria, int posicion )
+        {
+            super( nombre );
+            this.memoria = memoria;
+            this.posicion = posicion;
+        }
+
+        @Override
+        public int getCantidadDinero( )
+        {
+            return ( int )INTS.getVolatile( memoria, posicion );
+        }
+
+        @Override
+        public void agregarDinero( int dinero )
+        {
+            INTS.getAndAdd( memoria, posicion, dinero );
+        }
+    }
+}
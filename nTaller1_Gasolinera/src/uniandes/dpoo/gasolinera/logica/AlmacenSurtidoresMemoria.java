@@ -0,0 +1,173 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+
+/**
+ * Un almacén de surtidores que guarda el estado en el heap, por columnas: un arreglo de galones vendidos por cada tipo de gasolina y un arreglo con el identificador
+ * del empleado asignado a cada surtidor.
+ *
+ * Así, un surtidor no ocupa más memoria que sus posiciones en los arreglos (4 bytes más 8 por tipo de gasolina), y recorrer todos los surtidores para un tipo de
+ * gasolina lee memoria contigua.
+ *
+ * Agregar surtidores sólo se puede hacer mientras se construye el almacén, antes de compartirlo con otros threads.
+ */
+class AlmacenSurtidoresMemoria extends AlmacenSurtidores
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Permite hacer operaciones atómicas sobre las posiciones de las columnas de galones
+     */
+    private static final VarHandle GALONES = MethodHandles.arrayElementVarHandle( double[].class );
+
+    /**
+     * Permite hacer operaciones atómicas sobre las posiciones de la columna de empleados
+     */
+    private static final VarHandle EMPLEADOS = MethodHandles.arrayElementVarHandle( int[].class );
+
+    /**
+     * La cantidad de surtidores en el almacén
+     */
+    private int cantidadSurtidores;
+
+    /**
+     * Los galones vendidos: galones[ t ][ s ] es la cantidad del tipo de gasolina t vendida en el surtidor s
+     */
+    private double[][] galones;
+
+    /**
+     * El identificador del empleado asignado a cada surtidor
+     */
+    private int[] empleados;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un almacén sin surtidores
+     * @param simbolosTipos La tabla con los nombres de los tipos de gasolina
+     * @param tiposGasolina Los tipos de gasolina, cada uno en la posición de su identificador en la tabla. El arreglo se comparte, no se copia
+     * @param empleadosPorId Los empleados que se conocen de antemano. El identificador de cada uno es su posición en el arreglo
+     * @param capacidad La cantidad de surtidores para la que se reserva espacio
+     */
+    AlmacenSurtidoresMemoria( TablaSimbolos simbolosTipos, TipoGasolina[] tiposGasolina, Empleado[] empleadosPorId, int capacidad )
+    {
+        super( simbolosTipos, tiposGasolina, empleadosPorId );
+        int capacidadInicial = Math.max( 1, capacidad );
+        this.galones = new double[tiposGasolina.length][capacidadInicial];
+        this.empleados = new int[capacidadInicial];
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Agrega un surtidor sin galones vendidos. Sólo se debe usar mientras se construye el almacén
+     * @param empleado El empleado asignado al surtidor
+     * @return El número del nuevo surtidor
+     * @throws IllegalStateException Si el almacén ya tiene la cantidad máxima de surtidores
+     */
+    int agregarSurtidor( Empleado empleado )
+    {
+        if( cantidadSurtidores == empleados.length )
+        {
+            if( empleados.length == Integer.MAX_VALUE )
+                throw new IllegalStateException( "El almacén no puede tener más de " + Integer.MAX_VALUE + " surtidores" );
+            int nuevaCapacidad = ( int )Math.min( empleados.length * 2L, Integer.MAX_VALUE );
+            empleados = Arrays.copyOf( empleados, nuevaCapacidad );
+            for( int t = 0; t < galones.length; t++ )
+            {
+                galones[ t ] = Arrays.copyOf( galones[ t ], nuevaCapacidad );
+            }
+        }
+        empleados[ cantidadSurtidores ] = registrarEmpleado( empleado );
+        return cantidadSurtidores++;
+    }
+
+    /**
+     * Libera el espacio que se reservó para surtidores que no se agregaron. Sólo se debe usar mientras se construye el almacén
+     */
+    @Override
+    void compactar( )
+    {
+        if( cantidadSurtidores < empleados.length )
+        {
+            empleados = Arrays.copyOf( empleados, cantidadSurtidores );
+            for( int t = 0; t < galones.length; t++ )
+            {
+                galones[ t ] = Arrays.copyOf( galones[ t ], cantidadSurtidores );
+            }
+        }
+    }
+
+    @Override
+    int getCantidadSurtidores( )
+    {
+        return cantidadSurtidores;
+    }
+
+    @Override
+    double getGalonesVendidos( int numeroSurtidor, int idTipoGasolina )
+    {
+        return ( double )GALONES.getVolatile( galones[ idTipoGasolina ], numeroSurtidor );
+    }
+
+    @Override
+    void cambiarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad )
+    {
+        GALONES.setVolatile( galones[ idTipoGasolina ], numeroSurtidor, cantidad );
+    }
+
+    @Override
+    void sumarGalonesVendidos( int numeroSurtidor, int idTipoGasolina, double cantidad )
+    {
+        double[] columna = galones[ idTipoGasolina ];
+        double cantidadAnterior;
+        do
+        {
+            cantidadAnterior = ( double )GALONES.getVolatile( columna, numeroSurtidor );
+        } while( !GALONES.compareAndSet( columna, numeroSurtidor, cantidadAnterior, cantidadAnterior + cantidad ) );
+    }
+
+    @Override
+    int getIdEmpleadoAsignado( int numeroSurtidor )
+    {
+        return ( int )EMPLEADOS.getVolatile( empleados, numeroSurtidor );
+    }
+
+    @Override
+    void cambiarIdEmpleadoAsignado( int numeroSurtidor, int idEmpleado )
+    {
+        EMPLEADOS.setVolatile( empleados, numeroSurtidor, idEmpleado );
+    }
+
+    @Override
+    double getTotalGalonesVendidos( int idTipoGasolina )
+    {
+        double[] columna = galones[ idTipoGasolina ];
+        double total = 0;
+        for( int s = 0; s < cantidadSurtidores; s++ )
+        {
+            total += columna[ s ];
+        }
+        return total;
+    }
+
+    @Override
+    void copiarGalones( int idTipoGasolina, int desde, int hasta, double[] destino, int posicion )
+    {
+        System.arraycopy( galones[ idTipoGasolina ], desde, destino, posicion, hasta - desde );
+    }
+
+    @Override
+    void copiarEmpleados( int desde, int hasta, int[] destino )
+    {
+        System.arraycopy( empleados, desde, destino, desde, hasta - desde );
+    }
+}
@@ -0,0 +1,316 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntSupplier;
+
+/**
+ * Recuerda el resultado de las ventas más recientes según su identificador, para que una venta que se repite (por ejemplo porque un terminal volvió a enviarla después
+ * de un error de red) retorne el resultado original en lugar de venderse otra vez.
+ *
+ * La cache tiene una capacidad máxima: cuando se llena, se olvida la venta terminada más antigua. Además, una venta terminada se olvida cuando ha pasado cierto tiempo
+ * desde que se registró. Una venta que todavía está en curso nunca se olvida, ni por capacidad ni por tiempo, porque un reintento la haría dos veces: por eso la cache
+ * puede recordar, además de su capacidad, las ventas que estén en curso en ese momento. Si dos threads intentan la misma venta al mismo tiempo, sólo uno la hace y el
+ * otro espera su resultado.
+ *
+ * Junto con cada identificador se recuerdan los parámetros de la venta: si un identificador se repite con parámetros distintos no es un reintento sino un error del
+ * terminal, y se rechaza en lugar de retornar el resultado de otra venta.
+ *
+ * Las búsquedas no usan candados. Los registros nuevos y los que se olvidan se agregan y se retiran con el candado del orden de llegada, así que la capacidad se
+ * respeta exactamente.
+ */
+public class CacheVentas
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Las ventas registradas según su identificador. Sólo se modifica con el candado de orden
+     */
+    private final ConcurrentHashMap<Long, Registro> registros;
+
+    /**
+     * Los registros de las ventas en el orden en el que se registraron, para saber cuál es la más antigua. Puede tener registros que ya se retiraron de la cache, que
+     * se descartan cuando llegan al principio
+     */
+    private final ArrayDeque<Registro> orden;
+
+    /**
+     * La cantidad máxima de ventas terminadas que se recuerdan
+     */
+    private final int capacidad;
+
+    /**
+     * El tiempo en nanosegundos durante el cual se recuerda una venta
+     */
+    private final long duracionNanos;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye una cache vacía
+     * @param capacidad La cantidad máxima de ventas que se recuerdan. Debe ser positiva
+     * @param duracion El tiempo durante el cual se recuerda una venta
+     * @param unidad La unidad en la que está expresada la duración
+     */
+    public CacheVentas( int capacidad, long duracion, TimeUnit unidad )
+    {
+        if( capacidad < 1 )
+            throw new IllegalArgumentException( "La capacidad de la cache debe ser positiva" );
+        this.registros = new ConcurrentHashMap<Long, Registro>( capacidad * 2 );
+        this.orden = new ArrayDeque<Registro>( capacidad );
+        this.capacidad = capacidad;
+        this.duracionNanos = unidad.toNanos( duracion );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Retorna la cantidad de ventas que la cache recuerda en este momento (incluyendo las que ya vencieron pero no se han retirado)
+     * @return La cantidad de ventas
+     */
+    public int getCantidad( )
+    {
+        return registros.size( );
+    }
+
+    /**
+     * Ejecuta una venta sin parámetros que comparar, a menos que ya se haya hecho una venta con el mismo identificador
+     * @param idVenta El identificador de la venta
+     * @param venta La venta que se ejecuta si el identificador es nuevo. Retorna el precio de la venta
+     * @return El precio de la venta, sea el de esta ejecución o el de la original
+     */
+    public int venderUnaVez( long idVenta, IntSupplier venta )
+    {
+        return venderUnaVez( idVenta, false, -1, 0, -1, ( idTipoGasolina, valor, numeroSurtidor ) -> venta.getAsInt( ) );
+    }
+
+    /**
+     * Ejecuta una venta, a menos que ya se haya hecho una venta con el mismo identificador; en ese caso retorna el resultado de esa venta sin ejecutar nada.
+     *
+     * Si la venta lanza una excepción, no queda registrada y la excepción se propaga, de forma que un reintento vuelva a ejecutarla.
+     * @param idVenta El identificador de la venta
+     * @param porPrecio Indica si la venta es por precio o por cantidad de galones
+     * @param idTipoGasolina El identificador del tipo de gasolina de la venta
+     * @param valor La cantidad de galones solicitada, o el valor solicitado si la venta es por precio
+     * @param numeroSurtidor El número del surtidor de la venta
+     * @param venta La venta que se ejecuta con esos parámetros si el identificador es nuevo
+     * @return El precio de la venta, sea el de esta ejecución o el de la original
+     * @throws IllegalArgumentException Si ya se hizo una venta con el mismo identificador pero con otros parámetros
+     */
+    public int venderUnaVez( long idVenta, boolean porPrecio, int idTipoGasolina, double valor, int numeroSurtidor, Venta venta )
+    {
+        while( true )
+        {
+            long ahora = System.nanoTime( );
+            Registro existente = registros.get( idVenta );
+            if( existente != null )
+            {
+                if( existente.estaVencido( ahora, duracionNanos ) )
+                {
+                    retirar( existente );
+                    continue;
+                }
+                if( !existente.tieneParametros( porPrecio, idTipoGasolina, valor, numeroSurtidor ) )
+                    throw new IllegalArgumentException( "La venta " + idVenta + " ya se hizo con otros parámetros" );
+                if( existente.esperarResultado( ) )
+                    return existente.precio;
+                // La venta original falló: se intenta de nuevo
+                continue;
+            }
+
+            Registro nuevo = new Registro( idVenta, ahora, porPrecio, idTipoGasolina, valor, numeroSurtidor );
+            if( !registrar( nuevo ) )
+                continue;
+
+            try
+            {
+                int precio = venta.vender( idTipoGasolina, valor, numeroSurtidor );
+                nuevo.completar( precio );
+                return precio;
+            }
+            catch( RuntimeException | Error e )
+            {
+                retirar( nuevo );
+                nuevo.fallar( );
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Agrega el registro de una venta nueva, si su identificador no está registrado, y olvida las ventas terminadas más antiguas que sobren
+     * @param nuevo El registro de la venta nueva
+     * @return Retorna true si el registro quedó en la cache, o false si otro thread registró el mismo identificador antes
+     */
+    private boolean registrar( Registro nuevo )
+    {
+        synchronized( orden )
+        {
+            if( registros.putIfAbsent( nuevo.idVenta, nuevo ) != null )
+                return false;
+            orden.addLast( nuevo );
+
+            // Las ventas en curso que se encuentren se apartan y luego vuelven al principio, en el mismo orden
+            List<Registro> enCurso = null;
+            while( registros.size( ) > capacidad && !orden.isEmpty( ) )
+            {
+                Registro masAntiguo = orden.pollFirst( );
+                if( registros.get( masAntiguo.idVenta ) != masAntiguo )
+                    continue;
+                if( masAntiguo.estaEnCurso( ) )
+                {
+                    if( enCurso == null )
+                        enCurso = new ArrayList<Registro>( );
+                    enCurso.add( masAntiguo );
+                    continue;
+                }
+                registros.remove( masAntiguo.idVenta );
+            }
+            for( int i = enCurso == null ? -1 : enCurso.size( ) - 1; i >= 0; i-- )
+            {
+                orden.addFirst( enCurso.get( i ) );
+            }
+
+            // Los registros que se retiraron por vencimiento o por fallar siguen en el orden hasta llegar al principio: si se acumulan, se descartan de una vez
+            if( orden.size( ) > 2 * capacidad )
+                orden.removeIf( registro -> registros.get( registro.idVenta ) != registro );
+            return true;
+        }
+    }
+
+    /**
+     * Retira el registro de una venta, si sigue en la cache
+     * @param registro El registro que se retira
+     */
+    private void retirar( Registro registro )
+    {
+        synchronized( orden )
+        {
+            registros.remove( registro.idVenta, registro );
+        }
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Una venta que la cache ejecuta cuando su identificador es nuevo. Recibe los parámetros con los que se registró la venta, para que quien llama a la cache no tenga
+     * que crear un objeto nuevo por cada venta
+     */
+    public interface Venta
+    {
+        /**
+         * Hace la venta
+         * @param idTipoGasolina El identificador del tipo de gasolina de la venta
+         * @param valor La cantidad de galones solicitada, o el valor solicitado si la venta es por precio
+         * @param numeroSurtidor El número del surtidor de la venta
+         * @return El precio de la venta
+         */
+        int vender( int idTipoGasolina, double valor, int numeroSurtidor );
+    }
+
+    /**
+     * El registro de una venta: cuándo se hizo, con qué parámetros y su resultado
+     */
+    private static class Registro
+    {
+        private static final int EN_CURSO = 0;
+        private static final int COMPLETA = 1;
+        private static final int FALLIDA = 2;
+
+        private final long idVenta;
+
+        private final long instante;
+
+        private final boolean porPrecio;
+
+        private final int idTipoGasolina;
+
+        private final double valor;
+
+        private final int numeroSurtidor;
+
+        private volatile int estado = EN_CURSO;
+
+        private int precio;
+
+        Registro( long idVenta, long instante, boolean porPrecio, int idTipoGasolina, double valor, int numeroSurtidor )
+        {
+            this.idVenta = idVenta;
+            this.instante = instante;
+            this.porPrecio = porPrecio;
+            this.idTipoGasolina = idTipoGasolina;
+            this.valor = valor;
+            this.numeroSurtidor = numeroSurtidor;
+        }
+
+        boolean tieneParametros( boolean porPrecio, int idTipoGasolina, double valor, int numeroSurtidor )
+        {
+            return this.porPrecio == porPrecio && this.idTipoGasolina == idTipoGasolina && Double.compare( this.valor, valor ) == 0 && this.numeroSurtidor == numeroSurtidor;
+        }
+
+        boolean estaEnCurso( )
+        {
+            return estado == EN_CURSO;
+        }
+
+        /**
+         * Indica si la venta ya se puede olvidar por tiempo. Una venta en curso nunca vence
+         */
+        boolean estaVencido( long ahora, long duracionNanos )
+        {
+            return estado != EN_CURSO && ahora - instante > duracionNanos;
+        }
+
+        synchronized void completar( int precio )
+        {
+            this.precio = precio;
+            this.estado = COMPLETA;
+            notifyAll( );
+        }
+
+        synchronized void fallar( )
+        {
+            this.estado = FALLIDA;
+            notifyAll( );
+        }
+
+        /**
+         * Espera a que termine la venta
+         * @return Retorna true si la venta se completó y false si falló
+         */
+        boolean esperarResultado( )
+        {
+            if( estado == COMPLETA )
+                return true;
+            synchronized( this )
+            {
+                boolean interrumpido = false;
+                while( estado == EN_CURSO )
+                {
+                    try
+                    {
+                        wait( );
+                    }
+                    catch( InterruptedException e )
+                    {
+                        interrumpido = true;
+                    }
+                }
+                if( interrumpido )
+                    Thread.currentThread( ).interrupt( );
+                return estado == COMPLETA;
+            }
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package uniandes.dpoo.gasolinera.logica;
+
+/**
+ * El cierre de un turno de la gasolinera: los galones que se vendieron en cada surtidor y el dinero que recogió cada empleado desde el cierre anterior.
+ *
+ * Los valores del turno están en una instantánea, así que corresponden a un mismo momento: cada venta queda completa en este turno o completa en el siguiente. El
+ * inventario y los precios de la instantánea son los que había al cerrar el turno.
+ */
+public class CierreTurno
+{
+    /**
+     * El número del turno. El primer turno que se cierra es el 1
+     */
+    private final int numero;
+
+    /**
+     * El momento en el que se cerró el turno, en milisegundos desde la época (como System.currentTimeMillis)
+     */
+    private final long momento;
+
+    /**
+     * Los contadores del turno: los galones vendidos de cada surtidor y el dinero de cada empleado sólo incluyen las ventas del turno
+     */
+    private final InstantaneaGasolinera ventas;
+
+    CierreTurno( int numero, long momento, InstantaneaGasolinera ventas )
+    {
+        this.numero = numero;
+        this.momento = momento;
+        this.ventas = ventas;
+    }
+
+    public int getNumero( )
+    {
+        return numero;
+    }
+
+    public long getMomento( )
+    {
+        return momento;
+    }
+
+    /**
+     * Retorna el estado con el que se cerró el turno. Los galones vendidos y el dinero de los empleados sólo incluyen las ventas del turno
+     * @return La instantánea del turno
+     */
+    public InstantaneaGasolinera getVentas( )
+    {
+        return ventas;
+    }
+
+    /**
+     * Retorna el dinero que recogieron todos los empleados durante el turno
+     * @return El total de dinero
+     */
+    public long getTotalDinero( )
+    {
+        return ventas.getTotalDinero( );
+    }
+}
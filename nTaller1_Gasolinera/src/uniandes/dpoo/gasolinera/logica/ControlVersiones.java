@@ -0,0 +1,202 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Supplier;
+
+/**
+ * Coordina las lecturas consistentes del estado de una gasolinera con las ventas que lo modifican.
+ *
+ * Las ventas (escrituras) nunca esperan entre ellas: cada una se anuncia al empezar y al terminar. Para que las ventas de distintos threads no compitan por los mismos
+ * contadores, los anuncios se cuentan en franjas: cada thread usa la franja que le corresponde, cada una en su propia línea de caché, y la versión del estado es la suma
+ * de las escrituras terminadas en todas las franjas.
+ *
+ * Una lectura es optimista: copia el estado sin bloquear a nadie y al final revisa que ninguna escritura haya empezado mientras tanto; si alguna lo hizo, descarta lo que
+ * copió y vuelve a intentar. Si después de varios intentos no logra una copia limpia, hace la copia con copia en escritura (ver CopiaPorBloques): espera a que terminen
+ * las escrituras en curso y desde ese momento cada escritura preserva los bloques que va a modificar. Las escrituras nunca esperan a que termine la copia completa.
+ */
+class ControlVersiones
+{
+    /**
+     * La cantidad de lecturas optimistas que se intentan antes de hacer la copia en escritura
+     */
+    private static final int INTENTOS_OPTIMISTAS = 16;
+
+    /**
+     * La cantidad de posiciones del arreglo de contadores que ocupa cada franja, para que cada franja quede en su propia línea de caché (incluso con la precarga de la
+     * línea vecina)
+     */
+    private static final int RELLENO = 16;
+
+    /**
+     * La cantidad de franjas. Es una potencia de 2 mayor o igual al doble de la cantidad de procesadores
+     */
+    private static final int FRANJAS = Integer.highestOneBit( Math.max( 1, Runtime.getRuntime( ).availableProcessors( ) * 4 - 1 ) );
+
+    /**
+     * Los contadores de las franjas: en la posición franja * RELLENO está la cantidad de escrituras que han empezado en la franja, y en la siguiente la cantidad de
+     * escrituras que han terminado
+     */
+    private final AtomicLongArray contadores = new AtomicLongArray( FRANJAS * RELLENO );
+
+    /**
+     * La copia en escritura que se está haciendo, o null si no hay ninguna
+     */
+    private volatile CopiaPorBloques<?> copiaEnCurso;
+
+    /**
+     * Anuncia que va a empezar una escritura. Si se está preparando una copia en escritura, espera a que esté lista (es decir, a que terminen las escrituras que ya
+     * estaban en curso).
+     * @return La copia en escritura que está en curso, o null si no hay ninguna. Si no es null, la escritura debe preservar los bloques que va a modificar antes de
+     *         modificarlos
+     */
+    CopiaPorBloques<?> iniciarEscritura( )
+    {
+        int franja = franjaActual( );
+        while( true )
+        {
+            contadores.incrementAndGet( franja );
+            CopiaPorBloques<?> copia = copiaEnCurso;
+            if( copia == null || copia.estaLista( ) )
+                return copia;
+
+            // La copia todavía espera a las escrituras anteriores: se retira el anuncio para no hacerla esperar a esta. Como la escritura no alcanzó a modificar
+            // nada, retirarlo no cambia el estado
+            contadores.decrementAndGet( franja );
+            copia.esperarLista( );
+        }
+    }
+
+    /**
+     * Anuncia que terminó una escritura que había empezado con iniciarEscritura. Se debe llamar desde el mismo thread
+     */
+    void terminarEscritura( )
+    {
+        contadores.incrementAndGet( franjaActual( ) + 1 );
+    }
+
+    /**
+     * Retorna la versión actual, es decir la cantidad de escrituras terminadas
+     * @return La versión
+     */
+    long getVersion( )
+    {
+        return sumar( 1 );
+    }
+
+    /**
+     * Indica si no ha habido escrituras desde que se obtuvo una versión estable y no hay ninguna en curso
+     * @param versionLeida La versión que se había obtenido
+     * @return Retorna true si el estado sigue igual al de esa versión
+     */
+    boolean sinCambiosDesde( long versionLeida )
+    {
+        // Cada escritura empieza antes de terminar, así que si no ha empezado ninguna tampoco hay ninguna en curso. Los anuncios retirados no cuentan, pero tampoco
+        // modificaron nada
+        return sumar( 0 ) == versionLeida;
+    }
+
+    /**
+     * Hace una lectura consistente: el resultado corresponde a un estado en el que no había escrituras a medias.
+     * @param nuevaCopia Crea la copia del estado. Se llama una sola vez por lectura
+     * @return El resultado de una copia que no se cruzó con ninguna escritura
+     */
+    synchronized <T> T leer( Supplier<? extends CopiaPorBloques<T>> nuevaCopia )
+    {
+        CopiaPorBloques<T> copia = nuevaCopia.get( );
+        for( int intento = 0; intento < INTENTOS_OPTIMISTAS; intento++ )
+        {
+            long versionInicial = versionEstable( );
+            if( versionInicial >= 0 )
+            {
+                copia.copiarTodo( );
+                // Las lecturas del estado no pueden quedar después de la validación
+                VarHandle.acquireFence( );
+                if( sumar( 0 ) == versionInicial )
+                    return copia.construir( versionInicial );
+            }
+            Thread.onSpinWait( );
+        }
+        return leerConCopiaEnEscritura( copia );
+    }
+
+    /**
+     * Hace una copia en escritura: anuncia la copia, espera a que terminen las escrituras que no la vieron, y copia los bloques que las nuevas escrituras no hayan
+     * preservado
+     */
+    private <T> T leerConCopiaEnEscritura( CopiaPorBloques<T> copia )
+    {
+        copiaEnCurso = copia;
+        try
+        {
+            // Las escrituras que empiecen desde aquí ven la copia y retiran su anuncio hasta que esté lista; las anteriores siguen anunciadas, así que basta esperar a
+            // que en cada franja las terminadas alcancen a las iniciadas
+            for( int f = 0; f < FRANJAS; f++ )
+            {
+                for( int intento = 0; !franjaSinEscrituras( f ); intento++ )
+                {
+                    if( intento < 100 )
+                        Thread.onSpinWait( );
+                    else
+                        Thread.yield( );
+                }
+            }
+
+            // Desde ahora ninguna escritura modifica un bloque sin preservarlo, así que la copia corresponde a este momento
+            long version = getVersion( );
+            copia.marcarLista( );
+            copia.preservarTodos( );
+            return copia.construir( version );
+        }
+        finally
+        {
+            copiaEnCurso = null;
+        }
+    }
+
+    /**
+     * Indica si una franja no tiene escrituras en curso
+     * @param franja El número de la franja
+     */
+    private boolean franjaSinEscrituras( int franja )
+    {
+        long terminadas = contadores.get( franja * RELLENO + 1 );
+        return contadores.get( franja * RELLENO ) == terminadas;
+    }
+
+    /**
+     * Retorna la versión actual si no hay ninguna escritura en curso
+     * @return La versión, o -1 si hay escrituras en curso
+     */
+    private long versionEstable( )
+    {
+        // Las terminadas se leen antes que las iniciadas: si una escritura estaba en curso o empezó entre las dos lecturas, las sumas no coinciden
+        long terminadas = sumar( 1 );
+        long iniciadas = sumar( 0 );
+        return iniciadas == terminadas ? terminadas : -1;
+    }
+
+    /**
+     * Suma un contador de todas las franjas
+     * @param desplazamiento 0 para las escrituras iniciadas o 1 para las terminadas
+     */
+    private long sumar( int desplazamiento )
+    {
+        long suma = 0;
+        for( int f = 0; f < FRANJAS; f++ )
+        {
+            suma += contadores.get( f * RELLENO + desplazamiento );
+        }
+        return suma;
+    }
+
+    /**
+     * Retorna la posición en el arreglo de contadores de la franja del thread actual
+     */
+    private static int franjaActual( )
+    {
+        // Se mezclan los bits del hash para que threads creados seguidos no caigan en franjas vecinas con el mismo patrón
+        int hash = System.identityHashCode( Thread.currentThread( ) ) * 0x9E3779B9;
+        return ( ( hash >>> 16 ) & ( FRANJAS - 1 ) ) * RELLENO;
+    }
+}
@@ -0,0 +1,137 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Una copia de un estado que está dividido en bloques y que se puede hacer mientras otros threads lo modifican (ver ControlVersiones).
+ *
+ * Normalmente la copia se hace completa y luego se valida. Cuando eso no es posible porque las escrituras no dan tregua, la copia se hace con copia en escritura: desde
+ * que la copia está lista, cada escritura preserva los bloques que va a modificar antes de modificarlos, es decir, los copia si nadie los ha copiado todavía. Así cada
+ * bloque se copia exactamente una vez y antes de cualquier modificación, y la copia completa corresponde al momento en que quedó lista. Las escrituras nunca esperan a
+ * que termine la copia: como mucho esperan a que otro thread termine de copiar el bloque que necesitan.
+ * @param <T> El tipo del resultado de la copia
+ */
+abstract class CopiaPorBloques<T>
+{
+    /**
+     * El estado de un bloque que nadie ha copiado
+     */
+    private static final int PENDIENTE = 0;
+
+    /**
+     * El estado de un bloque que algún thread está copiando
+     */
+    private static final int COPIANDO = 1;
+
+    /**
+     * El estado de un bloque que ya quedó copiado
+     */
+    private static final int COPIADO = 2;
+
+    /**
+     * El estado de cada bloque durante una copia en escritura
+     */
+    private final AtomicIntegerArray estados;
+
+    /**
+     * Indica si ya terminaron las escrituras que empezaron antes de la copia en escritura, así que los bloques ya se pueden preservar
+     */
+    private volatile boolean lista;
+
+    /**
+     * Construye una copia
+     * @param cantidadBloques La cantidad de bloques del estado
+     */
+    CopiaPorBloques( int cantidadBloques )
+    {
+        estados = new AtomicIntegerArray( cantidadBloques );
+    }
+
+    int getCantidadBloques( )
+    {
+        return estados.length( );
+    }
+
+    /**
+     * Copia un bloque del estado, sin ninguna coordinación con las escrituras
+     * @param bloque El número del bloque
+     */
+    abstract void copiarBloque( int bloque );
+
+    /**
+     * Construye el resultado con todos los bloques copiados
+     * @param version La versión del estado que se copió
+     * @return El resultado de la copia
+     */
+    abstract T construir( long version );
+
+    /**
+     * Copia todos los bloques, sin ninguna coordinación con las escrituras
+     */
+    void copiarTodo( )
+    {
+        for( int bloque = 0; bloque < estados.length( ); bloque++ )
+        {
+            copiarBloque( bloque );
+        }
+    }
+
+    /**
+     * Se asegura de que un bloque quede copiado antes de modificarlo. Si otro thread lo está copiando, espera a que termine: como los bloques son pequeños la espera es
+     * corta, pero si se alarga el thread cede el procesador en vez de seguir girando
+     * @param bloque El número del bloque
+     */
+    void preservar( int bloque )
+    {
+        if( estados.get( bloque ) == COPIADO )
+            return;
+        if( estados.compareAndSet( bloque, PENDIENTE, COPIANDO ) )
+        {
+            copiarBloque( bloque );
+            estados.set( bloque, COPIADO );
+            return;
+        }
+        for( int intento = 0; estados.get( bloque ) != COPIADO; intento++ )
+        {
+            if( intento < 100 )
+                Thread.onSpinWait( );
+            else
+                Thread.yield( );
+        }
+    }
+
+    /**
+     * Se asegura de que todos los bloques queden copiados
+     */
+    void preservarTodos( )
+    {
+        for( int bloque = 0; bloque < estados.length( ); bloque++ )
+        {
+            preservar( bloque );
+        }
+    }
+
+    boolean estaLista( )
+    {
+        return lista;
+    }
+
+    void marcarLista( )
+    {
+        lista = true;
+    }
+
+    /**
+     * Espera a que la copia quede lista. Sólo hay que esperar a que terminen las escrituras que ya estaban en curso cuando empezó la copia en escritura
+     */
+    void esperarLista( )
+    {
+        for( int intento = 0; !lista; intento++ )
+        {
+            if( intento < 100 )
+                Thread.onSpinWait( );
+            else
+                Thread.yield( );
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package uniandes.dpoo.gasolinera.logica;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 /**
  * Esta clase representa a un empleado de la gasolinería que recauda el dinero producto de las ventas
  */
@@ -11,9 +13,9 @@ public class Empleado
     private String nombre;
 
     /**
-     * La cantidad de dinero que ha recogido el empleado
+     * La cantidad de dinero que ha recogido el empleado. Es atómica porque el empleado puede recibir dinero de ventas en varios surtidores al mismo tiempo.
      */
-    private int cantidadDinero;
+    private final AtomicInteger cantidadDinero;
 
     /**
      * Construye un nuevo empleado con el nombre dado e inicializa la cantidad de dinero en 0
@@ -22,7 +24,7 @@ public class Empleado
     public Empleado( String nombre )
     {
         this.nombre = nombre;
-        this.cantidadDinero = 0;
+        this.cantidadDinero = new AtomicInteger( 0 );
     }
 
     public String getNombre( )
@@ -32,7 +34,7 @@ public class Empleado
 
     public int getCantidadDinero( )
     {
-        return cantidadDinero;
+        return cantidadDinero.get( );
     }
 
     /**
@@ -41,6 +43,6 @@ public class Empleado
      */
     public void agregarDinero( int dinero )
     {
-        this.cantidadDinero += dinero;
+        this.cantidadDinero.addAndGet( dinero );
     }
 }
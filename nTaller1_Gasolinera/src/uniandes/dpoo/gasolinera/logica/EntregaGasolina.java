@@ -0,0 +1,39 @@
+package uniandes.dpoo.gasolinera.logica;
+
+/**
+ * Una entrega de gasolina de un proveedor: una cantidad de galones de un tipo de gasolina que se agrega al inventario de la gasolinera
+ */
+public class EntregaGasolina
+{
+    /**
+     * El nombre del tipo de gasolina que se entregó
+     */
+    private final String nombreTipoGasolina;
+
+    /**
+     * La cantidad de galones entregados
+     */
+    private final double galones;
+
+    public EntregaGasolina( String nombreTipoGasolina, double galones )
+    {
+        this.nombreTipoGasolina = nombreTipoGasolina;
+        this.galones = galones;
+    }
+
+    public String getNombreTipoGasolina( )
+    {
+        return nombreTipoGasolina;
+    }
+
+    public double getGalones( )
+    {
+        return galones;
+    }
+
+    @Override
+    public String toString( )
+    {
+        return nombreTipoGasolina + ": " + galones + " galones";
+    }
+}
@@ -0,0 +1,66 @@
+package uniandes.dpoo.gasolinera.logica;
+
+/**
+ * Las constantes del formato binario en el que se puede guardar el estado de una gasolinera.
+ *
+ * El formato binario guarda la misma información que el formato de texto, pero los surtidores se identifican con números en lugar de nombres y cada número se guarda
+ * en binario, así que se escribe y se lee mucho más rápido. Todos los números están en orden big-endian (el de DataOutputStream) y los nombres en UTF-8 modificado
+ * (el de DataOutputStream.writeUTF). El contenido es:
+ *
+ * 1. Encabezado: MAGIA, VERSION, cantidad de tipos de gasolina, cantidad de empleados y cantidad de surtidores, todos como int
+ *
+ * 2. Por cada tipo de gasolina, en el orden de sus identificadores: nombre, precio por galón (int) y cantidad disponible (double)
+ *
+ * 3. Por cada empleado, en el orden de sus identificadores: nombre y cantidad de dinero (int)
+ *
+ * 4. Por cada surtidor: el identificador del empleado asignado (int) y los galones vendidos de cada tipo de gasolina (un double por tipo)
+ *
+ * Como los registros de los surtidores tienen tamaño fijo, se pueden escribir en paralelo, cada uno en su posición del archivo.
+ *
+ * La versión VERSION_COLUMNAS guarda lo mismo por columnas y con números compactos (ver CodificacionEnteros). Después de MAGIA y la versión hay un int con las
+ * opciones; si incluye COMPRIMIDO, el resto del archivo está comprimido con Deflater. El contenido es: las tres cantidades como varint; por cada tipo de gasolina el
+ * nombre, el precio en zigzag y la cantidad disponible (double); por cada empleado el nombre y el dinero en zigzag; la columna de empleados asignados a los surtidores
+ * como varint; y por cada tipo de gasolina la columna de galones vendidos en los surtidores, precedida por un boolean que indica si los galones están en milésimas
+ * (zigzag) o como double.
+ */
+public final class FormatoBinario
+{
+    /**
+     * Los primeros cuatro bytes de un archivo en formato binario: "GASB" en ASCII
+     */
+    public static final int MAGIA = 0x47415342;
+
+    /**
+     * La versión del formato
+     */
+    public static final int VERSION = 1;
+
+    /**
+     * La versión del formato por columnas
+     */
+    public static final int VERSION_COLUMNAS = 2;
+
+    /**
+     * La opción del formato por columnas que indica que el contenido está comprimido con Deflater
+     */
+    public static final int COMPRIMIDO = 1;
+
+    /**
+     * La extensión que se usa para los archivos en formato binario
+     */
+    public static final String EXTENSION = ".gasb";
+
+    private FormatoBinario( )
+    {
+    }
+
+    /**
+     * Calcula el tamaño en bytes del registro de un surtidor
+     * @param cantidadTiposGasolina La cantidad de tipos de gasolina de la gasolinera
+     * @return El tamaño del registro
+     */
+    public static int tamanoRegistroSurtidor( int cantidadTiposGasolina )
+    {
+        return Integer.BYTES + cantidadTiposGasolina * Double.BYTES;
+    }
+}
@@ -1,18 +1,54 @@
 package uniandes.dpoo.gasolinera.logica;
 
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.HashMap;
-import java.util.LinkedList;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
-import uniandes.dpoo.gasolinera.exceptions.GasolinaInsuficienteException;
+import jdk.jfr.EventType;
+
+import uniandes.dpoo.gasolinera.asignacion.AsignacionAleatoria;
+import uniandes.dpoo.gasolinera.asignacion.EstrategiaAsignacion;
+import uniandes.dpoo.gasolinera.concurrencia.RuedaVencimientos;
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.eventos.PublicadorVentas;
+import uniandes.dpoo.gasolinera.metricas.EventoEntregaJfr;
+import uniandes.dpoo.gasolinera.metricas.EventoInstantaneaJfr;
+import uniandes.dpoo.gasolinera.metricas.EventoPersistenciaJfr;
+import uniandes.dpoo.gasolinera.metricas.EventoVentaJfr;
+import uniandes.dpoo.gasolinera.metricas.EventoVentaParcialJfr;
+import uniandes.dpoo.gasolinera.metricas.MetricasGasolinera;
+import uniandes.dpoo.gasolinera.precios.ReglasPrecios;
+import uniandes.dpoo.gasolinera.precios.TablaPrecios;
+import uniandes.dpoo.gasolinera.reportes.ReporteCierre;
+import uniandes.dpoo.gasolinera.utils.CodificacionEnteros;
 import uniandes.dpoo.gasolinera.utils.Sorteo;
 
 /**
@@ -20,14 +56,58 @@ import uniandes.dpoo.gasolinera.utils.Sorteo;
  */
 public class Gasolinera
 {
+    /**
+     * La cantidad de ventas con identificador que se recuerdan por defecto para detectar ventas repetidas
+     */
+    private static final int CAPACIDAD_CACHE_VENTAS = 10000;
+
+    /**
+     * Los minutos durante los cuales se recuerda por defecto una venta con identificador
+     */
+    private static final long DURACION_CACHE_VENTAS_MINUTOS = 10;
+
+    /**
+     * Los minutos que dura por defecto una reserva de gasolina antes de vencerse
+     */
+    private static final long DURACION_RESERVAS_MINUTOS = 15;
+
+    /**
+     * La cantidad de ranuras de la rueda que vence las reservas, y la duración de cada ranura. Con una ranura por segundo, la rueda da una vuelta cada 17 minutos
+     */
+    private static final int RANURAS_VENCIMIENTOS = 1024;
+
+    private static final long NANOS_POR_RANURA_VENCIMIENTOS = TimeUnit.SECONDS.toNanos( 1 );
+
+    /**
+     * La cantidad de turnos cerrados que se conservan en memoria. Los anteriores sólo quedan en el directorio de turnos, si se configuró uno
+     */
+    public static final int MAXIMO_CIERRES_EN_MEMORIA = 100;
+
+    /**
+     * El prefijo de los archivos de los turnos cerrados. El nombre completo es el prefijo, el número del turno, un guion, el momento del cierre y la extensión del
+     * formato binario
+     */
+    private static final String PREFIJO_ARCHIVO_TURNO = "turno-";
+
+    /**
+     * La mayor cantidad de veces que Deflater puede reducir un contenido, para revisar las cantidades que se leen de un archivo comprimido
+     */
+    private static final long MAXIMA_EXPANSION_DEFLATE = 1032;
+
+    /**
+     * El tipo del evento de Java Flight Recorder de las ventas. Se consulta antes de crear cada evento, para que las ventas no creen objetos cuando no hay una
+     * grabación que lo pida
+     */
+    private static final EventType TIPO_EVENTO_VENTA = EventType.getEventType( EventoVentaJfr.class );
+
     // ************************************************************************
     // Atributos
     // ************************************************************************
 
     /**
-     * Un arreglo con los surtidores que hay en la gasolinera
+     * El almacén con el estado de todos los surtidores de la gasolinera, guardado por columnas
      */
-    private Surtidor[] surtidores;
+    private AlmacenSurtidores almacen;
 
     /**
      * Un mapa de los tipos de gasolina en venta: las llaves son el nombre del tipo de gasolina
@@ -39,6 +119,95 @@ public class Gasolinera
      */
     private Map<String, Empleado> empleados;
 
+    /**
+     * La tabla de símbolos con los nombres de los tipos de gasolina. Todos los surtidores de la gasolinera comparten esta tabla
+     */
+    private TablaSimbolos simbolosTipos;
+
+    /**
+     * Los tipos de gasolina en venta, cada uno en la posición de su identificador en la tabla de símbolos
+     */
+    private TipoGasolina[] tiposPorId;
+
+    /**
+     * La tabla de símbolos con los nombres de los empleados
+     */
+    private TablaSimbolos simbolosEmpleados;
+
+    /**
+     * Los empleados de la gasolinera, cada uno en la posición de su identificador en la tabla de símbolos
+     */
+    private Empleado[] empleadosPorId;
+
+    /**
+     * Coordina las ventas con las lecturas consistentes del estado de la gasolinera
+     */
+    private final ControlVersiones control = new ControlVersiones( );
+
+    /**
+     * La última instantánea que se tomó. Si desde entonces no ha cambiado el estado, se reutiliza en lugar de tomar una nueva
+     */
+    private volatile InstantaneaGasolinera ultimaInstantanea;
+
+    /**
+     * La cache con los resultados de las ventas recientes que se hicieron con un identificador de venta
+     */
+    private volatile CacheVentas cacheVentas = new CacheVentas( CAPACIDAD_CACHE_VENTAS, DURACION_CACHE_VENTAS_MINUTOS, TimeUnit.MINUTES );
+
+    /**
+     * Las ventas que ejecuta la cache de ventas cuando un identificador es nuevo. Se crean una sola vez para que las ventas con identificador no creen una lambda cada una
+     */
+    private final CacheVentas.Venta ventaPorCantidad = ( idTipoGasolina, valor, numeroSurtidor ) -> venderGasolinaPorCantidad( idTipoGasolina, valor, numeroSurtidor );
+
+    private final CacheVentas.Venta ventaPorPrecio = ( idTipoGasolina, valor, numeroSurtidor ) -> venderGasolinaPorPrecio( idTipoGasolina, ( int )valor, numeroSurtidor );
+
+    /**
+     * El publicador de los eventos de las ventas, o null si los eventos no están activados
+     */
+    private volatile PublicadorVentas publicadorVentas;
+
+    /**
+     * Las métricas de operación de la gasolinera, o null si no están activadas. Cuando no están activadas, las ventas sólo pagan la lectura de este atributo
+     */
+    private volatile MetricasGasolinera metricas;
+
+    /**
+     * Las reservas de gasolina abiertas, según su identificador
+     */
+    private final Map<Long, ReservaGasolina> reservas = new ConcurrentHashMap<Long, ReservaGasolina>( );
+
+    /**
+     * El identificador de la siguiente reserva
+     */
+    private final AtomicLong siguienteReserva = new AtomicLong( 1 );
+
+    /**
+     * La duración de las reservas en nanosegundos
+     */
+    private volatile long duracionReservas = TimeUnit.MINUTES.toNanos( DURACION_RESERVAS_MINUTOS );
+
+    /**
+     * La rueda con los vencimientos de las reservas
+     */
+    private final RuedaVencimientos<ReservaGasolina> vencimientos = new RuedaVencimientos<ReservaGasolina>( RANURAS_VENCIMIENTOS, NANOS_POR_RANURA_VENCIMIENTOS,
+            System.nanoTime( ) );
+
+    /**
+     * Los últimos turnos que se han cerrado, del más antiguo al más reciente, como mucho MAXIMO_CIERRES_EN_MEMORIA. Su candado también evita que se cierren dos turnos al
+     * mismo tiempo, y protege el número del último turno y el directorio de turnos
+     */
+    private final ArrayDeque<CierreTurno> cierresTurno = new ArrayDeque<CierreTurno>( );
+
+    /**
+     * El número del último turno cerrado, o 0 si no se ha cerrado ninguno
+     */
+    private int ultimoTurno;
+
+    /**
+     * El directorio donde se escribe cada turno antes de cerrarlo, o null si los turnos sólo quedan en memoria
+     */
+    private File directorioTurnos;
+
     // ************************************************************************
     // Constructores
     // ************************************************************************
@@ -54,62 +223,124 @@ public class Gasolinera
      */
     public Gasolinera( int cantidadSurtidores, List<TipoGasolina> listaTiposGasolina, String[] nombresEmpleados )
     {
-        // Guardar los tipos de gasolina en un mapa organizado con el nombre
+        this( cantidadSurtidores, listaTiposGasolina, nombresEmpleados, new AsignacionAleatoria( ) );
+    }
+
+    /**
+     * Construye una nueva gasolinera con la información entregada, asignando los empleados a los surtidores con un sorteo reproducible.
+     * 
+     * Dos gasolineras construidas con la misma información y la misma semilla tendrán los mismos empleados en los mismos surtidores.
+     * 
+     * @param cantidadSurtidores La cantidad de surtidores en la gasolinera
+     * @param listaTiposGasolina Una lista de TipoGasolina con la información de cada tipo en venta en la gasolinería
+     * @param nombresEmpleados Un arreglo con los nombres de los empleados que trabajan en la gasolinera
+     * @param semilla La semilla del sorteo de empleados
+     */
+    public Gasolinera( int cantidadSurtidores, List<TipoGasolina> listaTiposGasolina, String[] nombresEmpleados, long semilla )
+    {
+        this( cantidadSurtidores, listaTiposGasolina, nombresEmpleados, new AsignacionAleatoria( new Sorteo<Empleado>( semilla ) ) );
+    }
+
+    /**
+     * Construye una nueva gasolinera con la información entregada, usando la estrategia indicada para asignar los empleados a los surtidores
+     * @param cantidadSurtidores La cantidad de surtidores en la gasolinera
+     * @param listaTiposGasolina Una lista de TipoGasolina con la información de cada tipo en venta en la gasolinería
+     * @param nombresEmpleados Un arreglo con los nombres de los empleados que trabajan en la gasolinera. Las estrategias que dependen del orden (como la asignación por
+     *        turnos) recorren los empleados en el orden de este arreglo.
+     * @param estrategia La estrategia para asignar los empleados a los surtidores
+     */
+    public Gasolinera( int cantidadSurtidores, List<TipoGasolina> listaTiposGasolina, String[] nombresEmpleados, EstrategiaAsignacion estrategia )
+    {
+        // Guardar los tipos de gasolina en un mapa organizado con el nombre y asignarles sus identificadores
         this.tiposGasolina = new HashMap<String, TipoGasolina>( );
         for( TipoGasolina tipo : listaTiposGasolina )
         {
             this.tiposGasolina.put( tipo.getNombre( ), tipo );
         }
+        registrarTiposGasolina( );
 
-        // Construir los empleados de la gasolinera partiendo con los nombres
-        this.empleados = new HashMap<String, Empleado>( );
+        // Construir los empleados de la gasolinera partiendo con los nombres, conservando el orden en el que vienen
+        this.empleados = new LinkedHashMap<String, Empleado>( );
         for( String nombre : nombresEmpleados )
         {
             this.empleados.put( nombre, new Empleado( nombre ) );
         }
+        registrarEmpleados( );
 
-        // Construir los surtidores de la gasolinera usando los tipos de gasolina y asignarle empleados aleatoriamente
-        this.surtidores = new Surtidor[cantidadSurtidores];
+        // Asignar de una vez los empleados de todos los surtidores: el arreglo de empleados se construye una sola vez
+        Empleado[] arregloEmpleados = empleados.values( ).toArray( new Empleado[empleados.size( )] );
+        int[] seleccionados = new int[cantidadSurtidores];
+        estrategia.asignar( arregloEmpleados, new int[arregloEmpleados.length], seleccionados );
+
+        // Construir los surtidores de la gasolinera usando los tipos de gasolina y los empleados asignados
+        AlmacenSurtidoresMemoria almacenNuevo = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, empleadosPorId, cantidadSurtidores );
         for( int i = 0; i < cantidadSurtidores; i++ )
         {
-            Empleado[] dummy = new Empleado[]{}; // Este arreglo se usa únicamente para indicarle el tipo genérico al método toArray de Collection
-            Empleado seleccionado = Sorteo.seleccionarAlAzar( empleados.values( ).toArray( dummy ) );
-            this.surtidores[ i ] = new Surtidor( tiposGasolina, seleccionado );
+            almacenNuevo.agregarSurtidor( arregloEmpleados[ seleccionados[ i ] ] );
         }
-
+        almacenNuevo.cerrarEmpleados( );
+        this.almacen = almacenNuevo;
     }
 
     /**
      * Construye una nueva gasolinera con la información entregada.
      * 
-     * Este constructor asume que los objetos están correctamente enlazados: los tipos de gasolina en los surtidores son los mismos que estarán en la gasolinera, y los
-     * empleados asignados a los surtidores son los mismos que estarán en la gasolinera.
+     * Este constructor asume que los objetos están correctamente enlazados: el almacén usa la misma tabla de símbolos y el mismo arreglo de tipos de gasolina que
+     * estarán en la gasolinera, y sus empleados tienen los mismos identificadores que tendrán en la gasolinera (es decir, están en el mismo orden que en la colección de
+     * empleados).
      * 
-     * @param surtidores Los surtidores de la gasolinera
-     * @param tiposGasolina Una coleción de TipoGasolina con la información de cada tipo en venta en la gasolinería
+     * @param almacen El almacén con los surtidores de la gasolinera
+     * @param simbolosTipos La tabla de símbolos con los nombres de los tipos de gasolina
+     * @param tiposPorId Los tipos de gasolina en venta, cada uno en la posición de su identificador
      * @param empleados Una colección con los empleados que trabajan en la gasolinera
      */
-    private Gasolinera( List<Surtidor> surtidores, Collection<TipoGasolina> tiposGasolina, Collection<Empleado> empleados )
+    private Gasolinera( AlmacenSurtidores almacen, TablaSimbolos simbolosTipos, TipoGasolina[] tiposPorId, Collection<Empleado> empleados )
     {
         // Guardar los tipos de gasolina en un mapa organizado con el nombre
+        this.simbolosTipos = simbolosTipos;
+        this.tiposPorId = tiposPorId;
         this.tiposGasolina = new HashMap<String, TipoGasolina>( );
-        for( TipoGasolina tipo : tiposGasolina )
+        for( TipoGasolina tipo : tiposPorId )
         {
             this.tiposGasolina.put( tipo.getNombre( ), tipo );
         }
 
         // Construir el mapa de los empleados de la gasolinera
-        this.empleados = new HashMap<String, Empleado>( );
+        this.empleados = new LinkedHashMap<String, Empleado>( );
         for( Empleado empleado : empleados )
         {
             this.empleados.put( empleado.getNombre( ), empleado );
         }
+        registrarEmpleados( );
+
+        almacen.compactar( );
+        almacen.cerrarEmpleados( );
+        this.almacen = almacen;
+    }
+
+    /**
+     * Construye la tabla de símbolos de los tipos de gasolina a partir del mapa de tipos
+     */
+    private void registrarTiposGasolina( )
+    {
+        simbolosTipos = new TablaSimbolos( );
+        tiposPorId = new TipoGasolina[tiposGasolina.size( )];
+        for( TipoGasolina tipo : tiposGasolina.values( ) )
+        {
+            tiposPorId[ simbolosTipos.registrar( tipo.getNombre( ) ) ] = tipo;
+        }
+    }
 
-        // Organizar los surtidores de la gasolinera en el arreglo de surtidores
-        this.surtidores = new Surtidor[surtidores.size( )];
-        for( int i = 0; i < surtidores.size( ); i++ )
+    /**
+     * Construye la tabla de símbolos de los empleados a partir del mapa de empleados
+     */
+    private void registrarEmpleados( )
+    {
+        simbolosEmpleados = new TablaSimbolos( );
+        empleadosPorId = new Empleado[empleados.size( )];
+        for( Empleado empleado : empleados.values( ) )
         {
-            this.surtidores[ i ] = surtidores.get( i );
+            empleadosPorId[ simbolosEmpleados.registrar( empleado.getNombre( ) ) ] = empleado;
         }
     }
 
@@ -123,12 +354,29 @@ public class Gasolinera
      */
     public int getCantidadSurtidores( )
     {
-        return surtidores.length;
+        return almacen.getCantidadSurtidores( );
     }
 
+    /**
+     * Retorna un surtidor de la gasolinera. El objeto que se retorna es una vista sobre el almacén de surtidores, así que refleja los cambios hechos por cualquier otra vía
+     * @param numSurtidor El número del surtidor
+     * @return El surtidor
+     */
     public Surtidor getSurtidor( int numSurtidor )
     {
-        return surtidores[ numSurtidor ];
+        almacen.verificarSurtidor( numSurtidor );
+        return new Surtidor( almacen, numSurtidor );
+    }
+
+    /**
+     * Retorna el total de galones de un tipo de gasolina vendidos en todos los surtidores. Recorre la columna de ese tipo en el almacén de surtidores, así que es rápido
+     * aun con millones de surtidores, pero no es consistente con las ventas que se estén haciendo al mismo tiempo: para eso se debe usar una instantánea.
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones
+     */
+    public double getTotalGalonesVendidos( int idTipoGasolina )
+    {
+        return almacen.getTotalGalonesVendidos( idTipoGasolina );
     }
 
     public TipoGasolina getTipoGasolina( String nombreTipoGasolina )
@@ -136,6 +384,36 @@ public class Gasolinera
         return tiposGasolina.get( nombreTipoGasolina );
     }
 
+    /**
+     * Retorna el tipo de gasolina que tiene un identificador
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return El tipo de gasolina
+     */
+    public TipoGasolina getTipoGasolina( int idTipoGasolina )
+    {
+        return tiposPorId[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna el identificador de un tipo de gasolina. Los identificadores van desde 0 hasta la cantidad de tipos de gasolina menos 1, y no cambian mientras exista la
+     * gasolinera.
+     * @param nombreTipoGasolina El nombre del tipo de gasolina
+     * @return El identificador, o -1 si el tipo de gasolina no existe
+     */
+    public int getIdTipoGasolina( String nombreTipoGasolina )
+    {
+        return simbolosTipos.getId( nombreTipoGasolina );
+    }
+
+    /**
+     * Retorna la cantidad de tipos de gasolina en venta
+     * @return La cantidad de tipos de gasolina
+     */
+    public int getCantidadTiposGasolina( )
+    {
+        return tiposPorId.length;
+    }
+
     public Collection<TipoGasolina> getTiposGasolina( )
     {
         return tiposGasolina.values( );
@@ -146,162 +424,1280 @@ public class Gasolinera
         return empleados.get( nombreEmpleado );
     }
 
+    /**
+     * Retorna el empleado que tiene un identificador
+     * @param idEmpleado El identificador del empleado
+     * @return El empleado
+     */
+    public Empleado getEmpleado( int idEmpleado )
+    {
+        return empleadosPorId[ idEmpleado ];
+    }
+
+    /**
+     * Retorna el identificador de un empleado. Los identificadores van desde 0 hasta la cantidad de empleados menos 1.
+     * @param nombreEmpleado El nombre del empleado
+     * @return El identificador, o -1 si el empleado no existe
+     */
+    public int getIdEmpleado( String nombreEmpleado )
+    {
+        return simbolosEmpleados.getId( nombreEmpleado );
+    }
+
+    /**
+     * Retorna la cantidad de empleados de la gasolinera
+     * @return La cantidad de empleados
+     */
+    public int getCantidadEmpleados( )
+    {
+        return empleadosPorId.length;
+    }
+
     public Collection<Empleado> getEmpleados( )
     {
         return empleados.values( );
     }
 
     /**
-     * Le vende a un cliente una cierta cantidad de gasolina, dada la cantidad de gasolina que quiere el cliente.
+     * Vuelve a asignar los empleados de todos los surtidores usando la estrategia indicada.
      * 
-     * Si en la gasolinera no hay la cantidad suficiente del tipo de gasolina, le vende todo lo que haya de esa gasolina.
+     * Las ventas no se detienen mientras se hace la reasignación: cada surtidor cambia de empleado de forma atómica, y las ventas que ya habían empezado en un surtidor le
+     * entregan el dinero al empleado anterior.
+     * @param estrategia La estrategia de asignación
+     */
+    public void reasignarEmpleados( EstrategiaAsignacion estrategia )
+    {
+        int[] numerosSurtidores = new int[almacen.getCantidadSurtidores( )];
+        for( int i = 0; i < numerosSurtidores.length; i++ )
+        {
+            numerosSurtidores[ i ] = i;
+        }
+        reasignarSurtidores( numerosSurtidores, estrategia );
+    }
+
+    /**
+     * Vuelve a asignar los empleados de algunos surtidores usando la estrategia indicada. Los demás surtidores conservan su empleado, y cuentan como carga de ese empleado
+     * para las estrategias que tienen en cuenta la carga.
      * 
-     * Después de realizada la transacción, debe haber quedado actualizado el inventario de gasolina (en el TipoGasolina), la cantidad entregada en el surtidor y la cantidad
-     * de dinero que tiene el empleado que atiende en el surtidor.
-     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
-     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
-     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
-     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es la cantidad solicitada)
+     * Las ventas no se detienen mientras se hace la reasignación.
+     * @param numerosSurtidores Los números de los surtidores que se van a reasignar. No debe tener repetidos
+     * @param estrategia La estrategia de asignación
      */
-    public int venderGasolinaPorCantidad( String nombreTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    public void reasignarSurtidores( int[] numerosSurtidores, EstrategiaAsignacion estrategia )
     {
-        Surtidor elSurtidor = surtidores[ numeroSurtidor ];
-        TipoGasolina tipo = tiposGasolina.get( nombreTipoGasolina );
+        Empleado[] arregloEmpleados = empleadosPorId;
+        int cantidadSurtidores = almacen.getCantidadSurtidores( );
 
-        double cantidadEntregada = 0;
-        try
+        // La carga inicial son los surtidores que no se reasignan. Los identificadores de los empleados en el almacén son los mismos de la gasolinera
+        boolean[] seReasigna = new boolean[cantidadSurtidores];
+        for( int numero : numerosSurtidores )
         {
-            // Actualizar la cantidad de gasolina disponible de ese tipo
-            tipo.despacharGasolina( cantidadSolicitada );
-            cantidadEntregada = cantidadSolicitada;
+            seReasigna[ numero ] = true;
         }
-        catch( GasolinaInsuficienteException e )
+        int[] carga = new int[arregloEmpleados.length];
+        for( int i = 0; i < cantidadSurtidores; i++ )
         {
-            // System.out.println( e.getMessage( ) );
-            cantidadEntregada = e.getCantidadDisponible( );
-            try
-            {
-                tipo.despacharGasolina( cantidadEntregada );
-            }
-            catch( GasolinaInsuficienteException e1 )
+            int idEmpleado = almacen.getIdEmpleadoAsignado( i );
+            if( !seReasigna[ i ] && idEmpleado < arregloEmpleados.length )
+                carga[ idEmpleado ]++;
+        }
+
+        // Primero se calcula la asignación completa y luego se publica surtidor por surtidor
+        int[] seleccionados = new int[numerosSurtidores.length];
+        estrategia.asignar( arregloEmpleados, carga, seleccionados );
+        CopiaPorBloques<?> copia = control.iniciarEscritura( );
+        try
+        {
+            for( int i = 0; i < numerosSurtidores.length; i++ )
             {
-                // Nunca debería entrar acá
-                e1.printStackTrace( );
+                if( copia != null )
+                    copia.preservar( CopiaEstado.bloqueAsignacion( numerosSurtidores[ i ], tiposPorId.length ) );
+                almacen.asignarEmpleado( numerosSurtidores[ i ], arregloEmpleados[ seleccionados[ i ] ] );
             }
         }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+    }
 
-        int precio = elSurtidor.venderGasolina( nombreTipoGasolina, cantidadEntregada );
-        return precio;
+    /**
+     * Cambia el precio por galón de un tipo de gasolina sin detener las ventas. Las ventas que ya habían leído el precio se terminan con el precio anterior, y las
+     * siguientes usan el nuevo. Las instantáneas que se tomen después del cambio tienen el nuevo precio.
+     * @param nombreTipoGasolina El nombre del tipo de gasolina
+     * @param nuevoPrecio El nuevo precio por galón
+     * @return La versión del nuevo precio
+     */
+    public int cambiarPrecio( String nombreTipoGasolina, int nuevoPrecio )
+    {
+        return cambiarPrecio( simbolosTipos.getId( nombreTipoGasolina ), nuevoPrecio );
     }
 
     /**
-     * Le vende a un cliente una cierta cantidad de gasolina, dado el precio que quiere pagar el cliente.
-     * 
-     * Si en la gasolinera no hay la cantidad suficiente del tipo de gasolina, le vende todo lo que haya de esa gasolina.
-     * 
-     * Después de realizada la transacción, debe haber quedado actualizado el inventario de gasolina (en el TipoGasolina), la cantidad entregada en el surtidor y la cantidad
-     * de dinero que tiene el empleado que atiende en el surtidor.
-     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
-     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
-     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
-     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es el valor solicitado)
+     * Cambia el precio por galón de un tipo de gasolina, identificando el tipo por su identificador
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param nuevoPrecio El nuevo precio por galón
+     * @return La versión del nuevo precio
      */
-    public int venderGasolinaPorPrecio( String nombreTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    public int cambiarPrecio( int idTipoGasolina, int nuevoPrecio )
     {
-        TipoGasolina tipo = tiposGasolina.get( nombreTipoGasolina );
-        double cantidadSolicitada = valorSolicitado / ( double )tipo.getPrecioPorGalon( );
+        // El cambio cuenta como una escritura para que las instantáneas no reutilicen una copia con el precio anterior
+        iniciarEscritura( );
+        try
+        {
+            return tiposPorId[ idTipoGasolina ].cambiarPrecio( nuevoPrecio );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+    }
 
-        return venderGasolinaPorCantidad( nombreTipoGasolina, cantidadSolicitada, numeroSurtidor );
+    /**
+     * Recibe una entrega de gasolina y la agrega al inventario. Se puede llamar mientras se hacen ventas: la recarga y los despachos usan el mismo candado del tipo de
+     * gasolina, así que ninguna actualización se pierde.
+     * @param nombreTipoGasolina El nombre del tipo de gasolina que se recibió
+     * @param galones La cantidad de galones recibidos
+     * @return La cantidad de galones disponibles después de la entrega
+     * @throws IllegalArgumentException Si el tipo de gasolina no existe o la cantidad no es positiva
+     */
+    public double recargarGasolina( String nombreTipoGasolina, double galones )
+    {
+        return recargarGasolina( buscarIdTipoEntrega( nombreTipoGasolina ), galones );
     }
 
     /**
-     * Guarga la información actual de la gasolinera en un archivo.
-     * 
-     * Si el archivo ya existe, se sobreescribe.
-     * @param archivo El archivo donde se guardará la información
-     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo
+     * Recibe una entrega de gasolina, identificando el tipo de gasolina por su identificador
+     * @param idTipoGasolina El identificador del tipo de gasolina que se recibió
+     * @param galones La cantidad de galones recibidos
+     * @return La cantidad de galones disponibles después de la entrega
+     * @throws IllegalArgumentException Si la cantidad no es positiva
      */
-    public void guardarEstado( File archivo ) throws IOException
+    public double recargarGasolina( int idTipoGasolina, double galones )
     {
-        PrintWriter writer = new PrintWriter( archivo );
+        TipoGasolina tipo = tiposPorId[ idTipoGasolina ];
+        double disponible;
+        // La recarga cuenta como una escritura para que las instantáneas no reutilicen una copia con el inventario anterior
+        iniciarEscritura( );
+        try
+        {
+            disponible = tipo.recargar( galones );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+        MetricasGasolinera lasMetricas = metricas;
+        if( lasMetricas != null )
+            lasMetricas.registrarEntrega( idTipoGasolina, galones );
+        EventoEntregaJfr.registrar( tipo.getNombre( ), galones, disponible );
+        return disponible;
+    }
 
-        // Guardar la información de los tipos de gasolina
-        for( TipoGasolina tipo : tiposGasolina.values( ) )
+    /**
+     * Recibe un lote de entregas de gasolina, por ejemplo el reporte diario de un proveedor. Primero se revisan todas las entregas, así que si alguna no es válida no se
+     * recarga ninguna. Las entregas del mismo tipo se suman y cada tipo se recarga una sola vez, y todo el lote queda en una sola escritura: una instantánea ve el lote
+     * completo o no ve ninguna de sus entregas.
+     * @param entregas Las entregas recibidas
+     * @return La cantidad total de galones recibidos
+     * @throws IllegalArgumentException Si alguna entrega tiene un tipo de gasolina que no existe o una cantidad que no es positiva
+     */
+    public double recibirEntregas( Collection<EntregaGasolina> entregas )
+    {
+        int[] idsTipos = new int[entregas.size( )];
+        double[] galonesPorTipo = new double[tiposPorId.length];
+        int posicion = 0;
+        for( EntregaGasolina entrega : entregas )
         {
-            writer.println( "tipo:" + tipo.getNombre( ) + ":" + tipo.getPrecioPorGalon( ) + ":" + tipo.getCantidadDisponible( ) );
+            int idTipo = buscarIdTipoEntrega( entrega.getNombreTipoGasolina( ) );
+            tiposPorId[ idTipo ].verificarRecarga( entrega.getGalones( ) );
+            idsTipos[ posicion++ ] = idTipo;
+            galonesPorTipo[ idTipo ] += entrega.getGalones( );
         }
 
-        // Guardar la información de los surtidores
-        for( int i = 0; i < surtidores.length; i++ )
+        double[] disponibles = new double[tiposPorId.length];
+        iniciarEscritura( );
+        try
         {
-            Surtidor surtidor = surtidores[ i ];
-            writer.print( "surtidor:" + surtidor.getEmpleadoAsignado( ).getNombre( ) );
-            for( TipoGasolina tipo : tiposGasolina.values( ) )
+            for( int id = 0; id < tiposPorId.length; id++ )
             {
-                writer.print( ":" + tipo.getNombre( ) + ":" + surtidor.getGalonesVendidos( tipo.getNombre( ) ) );
+                if( galonesPorTipo[ id ] > 0 )
+                    disponibles[ id ] = tiposPorId[ id ].recargar( galonesPorTipo[ id ] );
             }
-            writer.println( );
         }
-
-        // Guardar la información de los empleados
-        for( Empleado emp : empleados.values( ) )
+        finally
         {
-            writer.println( "empleado:" + emp.getNombre( ) + ":" + emp.getCantidadDinero( ) );
+            control.terminarEscritura( );
         }
 
-        writer.close( );
+        MetricasGasolinera lasMetricas = metricas;
+        double total = 0;
+        posicion = 0;
+        for( EntregaGasolina entrega : entregas )
+        {
+            if( lasMetricas != null )
+                lasMetricas.registrarEntrega( idsTipos[ posicion ], entrega.getGalones( ) );
+            posicion++;
+            total += entrega.getGalones( );
+        }
+        for( int id = 0; id < tiposPorId.length; id++ )
+        {
+            if( galonesPorTipo[ id ] > 0 )
+                EventoEntregaJfr.registrar( tiposPorId[ id ].getNombre( ), galonesPorTipo[ id ], disponibles[ id ] );
+        }
+        return total;
     }
 
     /**
-     * Carga toda la información de una gasolinera a partir de un archivo y retorna una nueva Gasolinera inicializada con esa información
-     * @param archivo El archivo que contiene la información que se va a cargar
-     * @return Una nueva gasolinera con su estado inicializado con la información del archivo
-     * @throws FileNotFoundException Se lanza esta excepción si el archivo no se encuentra
-     * @throws IOException Se lanza esta excepción si el archivo no se puede leer
-     * @throws NumberFormatException Se lanza esta excepción si alguno de los números dentro del archivo tiene el formato equivocado
+     * Recibe las entregas de un archivo de un proveedor. Cada entrega está en una línea con el formato entrega:tipo:galones; las demás líneas se ignoran. El archivo se
+     * procesa como un solo lote (ver recibirEntregas).
+     * @param archivo El archivo con las entregas
+     * @return La cantidad total de galones recibidos
+     * @throws IOException Si el archivo no se puede leer o alguna entrega no es válida
      */
-    public static Gasolinera cargarEstado( File archivo ) throws FileNotFoundException, IOException, NumberFormatException
+    public double recibirEntregas( File archivo ) throws IOException
     {
-        Map<String, TipoGasolina> tipos = new HashMap<String, TipoGasolina>( );
-        Map<String, Empleado> empleados = new HashMap<String, Empleado>( );
-        List<Surtidor> surtidores = new LinkedList<Surtidor>( );
-
-        BufferedReader br = new BufferedReader( new FileReader( archivo ) );
-        String line = br.readLine( );
-        while( line != null )
+        List<EntregaGasolina> entregas = new ArrayList<EntregaGasolina>( );
+        try( BufferedReader br = new BufferedReader( new FileReader( archivo ) ) )
         {
-            String[] partes = line.split( ":" );
-            if( partes[ 0 ].equals( "tipo" ) )
-            {
-                String nombre = partes[ 1 ];
-                int precio = Integer.parseInt( partes[ 2 ] );
-                double cantidad = Double.parseDouble( partes[ 3 ] );
-                tipos.put( nombre, new TipoGasolina( nombre, precio, cantidad ) );
-            }
-            else if( partes[ 0 ].equals( "surtidor" ) )
+            String line = br.readLine( );
+            int numeroLinea = 1;
+            while( line != null )
             {
-                String nombreEmpleado = partes[ 1 ];
-                if( !empleados.containsKey( nombreEmpleado ) )
-                {
-                    empleados.put( nombreEmpleado, new Empleado( nombreEmpleado ) );
-                }
-                Empleado empleadoAsignado = empleados.get( nombreEmpleado );
-                Surtidor nuevoSurtidor = new Surtidor( tipos, empleadoAsignado );
-                for( int pos = 2; pos < partes.length; pos += 2 )
+                String[] partes = line.split( ":" );
+                if( partes[ 0 ].equals( "entrega" ) )
                 {
-                    String tipo = partes[ pos ];
-                    double cantidad = Double.parseDouble( partes[ pos + 1 ] );
-                    nuevoSurtidor.cambiarGalonesVendidos( tipo, cantidad );
+                    if( partes.length != 3 )
+                        throw new IOException( "La entrega de la línea " + numeroLinea + " no tiene el formato entrega:tipo:galones" );
+                    try
+                    {
+                        entregas.add( new EntregaGasolina( partes[ 1 ], Double.parseDouble( partes[ 2 ] ) ) );
+                    }
+                    catch( NumberFormatException e )
+                    {
+                        throw new IOException( "La cantidad de la línea " + numeroLinea + " no es un número: " + partes[ 2 ], e );
+                    }
                 }
-                surtidores.add( nuevoSurtidor );
+                line = br.readLine( );
+                numeroLinea++;
             }
-            else if( partes[ 0 ].equals( "empleado" ) )
-            {
-                String nombreEmpleado = partes[ 1 ];
+        }
+
+        try
+        {
+            return recibirEntregas( entregas );
+        }
+        catch( IllegalArgumentException e )
+        {
+            throw new IOException( "El archivo " + archivo.getName( ) + " tiene una entrega inválida: " + e.getMessage( ), e );
+        }
+    }
+
+    private int buscarIdTipoEntrega( String nombreTipoGasolina )
+    {
+        int idTipo = simbolosTipos.getId( nombreTipoGasolina );
+        if( idTipo < 0 )
+            throw new IllegalArgumentException( "El tipo de gasolina " + nombreTipoGasolina + " no existe" );
+        return idTipo;
+    }
+
+    /**
+     * Cambia las reglas con las que se ajustan los precios de las ventas. Las reglas se compilan en una tabla de precios que reemplaza a la anterior de una sola vez:
+     * cada venta usa la tabla anterior o la nueva, nunca una mezcla.
+     * @param reglas Las reglas de precios, o null para volver a cobrar el precio base
+     * @return La tabla de precios compilada, o null si no hay reglas
+     */
+    public TablaPrecios cambiarReglasPrecios( ReglasPrecios reglas )
+    {
+        TablaPrecios tabla = reglas == null ? null : reglas.compilar( simbolosTipos.getNombres( ) );
+        almacen.cambiarTablaPrecios( tabla );
+        return tabla;
+    }
+
+    /**
+     * Retorna la tabla con la que se ajustan los precios de las ventas
+     * @return La tabla de precios, o null si se cobra el precio base
+     */
+    public TablaPrecios getTablaPrecios( )
+    {
+        return almacen.getTablaPrecios( );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, dada la cantidad de gasolina que quiere el cliente.
+     * 
+     * Si en la gasolinera no hay la cantidad suficiente del tipo de gasolina, le vende todo lo que haya de esa gasolina.
+     * 
+     * Después de realizada la transacción, debe haber quedado actualizado el inventario de gasolina (en el TipoGasolina), la cantidad entregada en el surtidor y la cantidad
+     * de dinero que tiene el empleado que atiende en el surtidor.
+     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es la cantidad solicitada)
+     */
+    public int venderGasolinaPorCantidad( String nombreTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        return venderGasolinaPorCantidad( simbolosTipos.getId( nombreTipoGasolina ), cantidadSolicitada, numeroSurtidor );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, identificando el tipo de gasolina por su identificador. Hace lo mismo que la versión que recibe el nombre del
+     * tipo de gasolina, pero sin buscar el nombre en ningún mapa.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es la cantidad solicitada)
+     */
+    public int venderGasolinaPorCantidad( int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        return venderGasolinaPorCantidadConFidelidad( idTipoGasolina, cantidadSolicitada, numeroSurtidor, 0 );
+    }
+
+    /**
+     * Le vende a un cliente con un nivel de fidelidad una cierta cantidad de gasolina. El precio por galón se ajusta con la tabla de precios de la gasolinera, si tiene
+     * una; el descuento por volumen se decide con la cantidad que realmente se entrega, que es menor a la solicitada si no alcanza la gasolina.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es la cantidad solicitada)
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe en la tabla de precios
+     */
+    public int venderGasolinaPorCantidadConFidelidad( int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor, int nivelFidelidad )
+    {
+        long precioVersionado = tiposPorId[ idTipoGasolina ].getPrecioVersionado( );
+        int precioPorGalon = almacen.precioPorGalon( idTipoGasolina, TipoGasolina.precioDe( precioVersionado ), cantidadSolicitada, nivelFidelidad );
+        return vender( idTipoGasolina, cantidadSolicitada, numeroSurtidor, precioVersionado, precioPorGalon, nivelFidelidad );
+    }
+
+    /**
+     * Hace una venta con un precio ya leído. El precio y su versión se leen una sola vez antes de la venta, así que toda la venta usa el mismo precio aunque cambie
+     * mientras tanto, y la versión que queda registrada en los eventos es la del precio que realmente se cobró.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @param precioVersionado El precio base por galón empacado con su versión (ver TipoGasolina.empacarPrecio)
+     * @param precioPorGalon El precio por galón que se cobra si se entrega toda la cantidad solicitada, ya ajustado con la tabla de precios
+     * @param nivelFidelidad El nivel de fidelidad con el que se vuelve a calcular el precio por galón si se entrega menos de lo solicitado, o -1 si la venta es por
+     *        precio y el precio por galón no cambia
+     * @return El precio de la gasolina que se le vendió al cliente
+     */
+    private int vender( int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor, long precioVersionado, int precioPorGalon, int nivelFidelidad )
+    {
+        almacen.verificarSurtidor( numeroSurtidor );
+        TipoGasolina tipo = tiposPorId[ idTipoGasolina ];
+        int versionPrecio = TipoGasolina.versionDe( precioVersionado );
+
+        Empleado empleado = almacen.getEmpleadoAsignado( numeroSurtidor );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = lasMetricas == null ? 0 : System.nanoTime( );
+        EventoVentaJfr eventoJfr = iniciarEventoVenta( );
+        double cantidadEntregada;
+        int precio;
+
+        iniciarEscritura( numeroSurtidor, idTipoGasolina );
+        try
+        {
+            // Actualizar la cantidad de gasolina disponible de ese tipo: si no alcanza, se entrega todo lo que haya
+            cantidadEntregada = tipo.despacharDisponible( cantidadSolicitada );
+
+            // El descuento por volumen es el de la cantidad entregada: si no alcanzó la gasolina, el tramo puede ser menor. El nivel ya se validó al calcular el precio
+            if( nivelFidelidad >= 0 && cantidadEntregada < cantidadSolicitada )
+                precioPorGalon = almacen.precioPorGalon( idTipoGasolina, TipoGasolina.precioDe( precioVersionado ), cantidadEntregada, nivelFidelidad );
+            precio = almacen.venderGasolina( numeroSurtidor, idTipoGasolina, cantidadEntregada, precioPorGalon, empleado );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+        if( eventoJfr != null )
+            eventoJfr.end( );
+        publicarVenta( idTipoGasolina, numeroSurtidor, cantidadSolicitada, cantidadEntregada, precio, precioPorGalon, versionPrecio, empleado, lasMetricas, inicio, eventoJfr );
+        return precio;
+    }
+
+    /**
+     * Crea y empieza el evento de Java Flight Recorder de una venta, sólo si hay una grabación que lo tenga habilitado
+     * @return El evento ya empezado, o null si el evento no está habilitado
+     */
+    private static EventoVentaJfr iniciarEventoVenta( )
+    {
+        if( !TIPO_EVENTO_VENTA.isEnabled( ) )
+            return null;
+        EventoVentaJfr evento = new EventoVentaJfr( );
+        evento.begin( );
+        return evento;
+    }
+
+    /**
+     * Registra una venta terminada en las métricas, en Java Flight Recorder y en el publicador de eventos. Se llama fuera de la sección de escritura.
+     * @param inicio El momento en nanosegundos desde el que se mide la duración de la venta en las métricas
+     * @param eventoJfr El evento de Java Flight Recorder de la venta, ya terminado, o null si no se está grabando
+     */
+    private void publicarVenta( int idTipoGasolina, int numeroSurtidor, double cantidadSolicitada, double cantidadEntregada, int precio, int precioPorGalon,
+                                int versionPrecio, Empleado empleado, MetricasGasolinera lasMetricas, long inicio, EventoVentaJfr eventoJfr )
+    {
+        TipoGasolina tipo = tiposPorId[ idTipoGasolina ];
+        if( lasMetricas != null )
+            lasMetricas.registrarVenta( idTipoGasolina, numeroSurtidor, cantidadSolicitada, cantidadEntregada, System.nanoTime( ) - inicio );
+        if( eventoJfr != null )
+            eventoJfr.completar( numeroSurtidor, tipo.getNombre( ), cantidadSolicitada, cantidadEntregada, precio, versionPrecio, empleado.getNombre( ) );
+        if( cantidadEntregada < cantidadSolicitada )
+            EventoVentaParcialJfr.registrar( numeroSurtidor, tipo.getNombre( ), cantidadSolicitada, cantidadEntregada );
+
+        // El evento se publica fuera de la sección de escritura, y sólo se construye si alguien lo va a recibir
+        PublicadorVentas publicador = publicadorVentas;
+        if( publicador != null && publicador.tieneSuscriptores( ) )
+            publicador.publicar( new EventoVenta( numeroSurtidor, idTipoGasolina, tipo.getNombre( ), cantidadEntregada, precio, precioPorGalon, versionPrecio, empleado.getNombre( ),
+                    System.currentTimeMillis( ) ) );
+    }
+
+    /**
+     * Autoriza una venta prepagada: aparta del inventario la gasolina que alcanza a pagar el cliente, sin entregarla todavía. La venta se termina con confirmarReserva
+     * cuando la manguera se detiene, o se cancela con liberarReserva. Si no se hace ninguna de las dos antes de que pase la duración de las reservas, la reserva se vence
+     * y la gasolina vuelve al inventario.
+     * 
+     * Como la gasolina reservada sale de los tanques, la suma de las reservas abiertas y las ventas nunca supera el inventario, aunque haya miles de reservas abiertas.
+     * 
+     * Las reservas abiertas no se guardan con el estado de la gasolinera: al guardarla, la gasolina reservada se guarda como disponible.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorPrepagado El valor que pagó el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @return La reserva. Si no hay suficiente gasolina, reserva todo lo que haya y su valor autorizado es menor que el prepagado
+     * @throws IllegalArgumentException Si el valor prepagado no es positivo
+     * @throws IllegalStateException Si no queda gasolina de ese tipo para reservar
+     */
+    public ReservaGasolina reservarGasolina( int idTipoGasolina, int valorPrepagado, int numeroSurtidor )
+    {
+        return reservarGasolina( idTipoGasolina, valorPrepagado, numeroSurtidor, 0 );
+    }
+
+    /**
+     * Autoriza una venta prepagada de un cliente con un nivel de fidelidad (ver reservarGasolina)
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorPrepagado El valor que pagó el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return La reserva
+     * @throws IllegalArgumentException Si el valor prepagado no es positivo o el nivel de fidelidad no existe en la tabla de precios
+     * @throws IllegalStateException Si no queda gasolina de ese tipo para reservar
+     */
+    public ReservaGasolina reservarGasolina( int idTipoGasolina, int valorPrepagado, int numeroSurtidor, int nivelFidelidad )
+    {
+        if( valorPrepagado <= 0 )
+            throw new IllegalArgumentException( "El valor prepagado de una reserva debe ser positivo" );
+        almacen.verificarSurtidor( numeroSurtidor );
+        long ahora = System.nanoTime( );
+        vencerReservas( ahora );
+
+        // Como en las ventas por precio, el precio se lee una sola vez y queda fijo en la reserva
+        long precioVersionado = tiposPorId[ idTipoGasolina ].getPrecioVersionado( );
+        int precioPorGalon = almacen.precioPorGalonParaValor( idTipoGasolina, TipoGasolina.precioDe( precioVersionado ), valorPrepagado, nivelFidelidad );
+        double galonesSolicitados = valorPrepagado / ( double )precioPorGalon;
+
+        double galonesReservados;
+        iniciarEscritura( );
+        try
+        {
+            galonesReservados = tiposPorId[ idTipoGasolina ].reservar( galonesSolicitados );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+        // Una reserva sin gasolina no aparta nada, así que no se abre
+        if( galonesReservados <= 0 )
+            throw new IllegalStateException( "No queda gasolina " + tiposPorId[ idTipoGasolina ].getNombre( ) + " para reservar" );
+
+        ReservaGasolina reserva = new ReservaGasolina( siguienteReserva.getAndIncrement( ), idTipoGasolina, numeroSurtidor, galonesSolicitados, galonesReservados,
+                precioPorGalon, TipoGasolina.versionDe( precioVersionado ), ahora + duracionReservas );
+        reservas.put( reserva.getId( ), reserva );
+        vencimientos.agregar( reserva, reserva.getVencimiento( ) );
+        return reserva;
+    }
+
+    /**
+     * Termina una venta prepagada cuando la manguera se detiene. Se cobra la gasolina entregada con el precio que quedó fijo en la reserva, y lo que sobró de la reserva
+     * vuelve al inventario.
+     * @param idReserva El identificador de la reserva
+     * @param galonesEntregados La cantidad de galones que realmente se entregaron
+     * @return El precio de la gasolina entregada
+     * @throws IllegalStateException Si la reserva no existe o ya se confirmó, se liberó o se venció
+     * @throws IllegalArgumentException Si la cantidad entregada es negativa o mayor a la reservada
+     */
+    public int confirmarReserva( long idReserva, double galonesEntregados )
+    {
+        ReservaGasolina reserva = reservas.get( idReserva );
+        if( reserva == null )
+            throw new IllegalStateException( "La reserva " + idReserva + " no existe o ya no está activa" );
+        if( galonesEntregados < 0 || galonesEntregados > reserva.getGalonesReservados( ) )
+            throw new IllegalArgumentException( "No se pueden entregar " + galonesEntregados + " galones con una reserva de " + reserva.getGalonesReservados( ) );
+        if( !reserva.resolver( ReservaGasolina.EstadoReserva.CONFIRMADA ) )
+            throw new IllegalStateException( "La reserva " + idReserva + " ya no está activa: " + reserva.getEstado( ) );
+        reservas.remove( idReserva );
+
+        int idTipoGasolina = reserva.getIdTipoGasolina( );
+        int numeroSurtidor = reserva.getNumeroSurtidor( );
+        Empleado empleado = almacen.getEmpleadoAsignado( numeroSurtidor );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = lasMetricas == null ? 0 : System.nanoTime( );
+        EventoVentaJfr eventoJfr = iniciarEventoVenta( );
+        int precio;
+
+        iniciarEscritura( numeroSurtidor, idTipoGasolina );
+        try
+        {
+            tiposPorId[ idTipoGasolina ].confirmarReserva( reserva.getGalonesReservados( ), galonesEntregados );
+            precio = almacen.venderGasolina( numeroSurtidor, idTipoGasolina, galonesEntregados, reserva.getPrecioPorGalon( ), empleado );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+        if( eventoJfr != null )
+            eventoJfr.end( );
+        // Una venta prepagada es parcial si al reservar no alcanzó la gasolina, no si el cliente se detuvo antes
+        boolean faltoGasolina = reserva.getGalonesReservados( ) < reserva.getGalonesSolicitados( );
+        double galonesSolicitados = faltoGasolina ? reserva.getGalonesSolicitados( ) : galonesEntregados;
+        publicarVenta( idTipoGasolina, numeroSurtidor, galonesSolicitados, galonesEntregados, precio, reserva.getPrecioPorGalon( ), reserva.getVersionPrecio( ), empleado,
+                lasMetricas, inicio, eventoJfr );
+        return precio;
+    }
+
+    /**
+     * Cancela una venta prepagada sin entregar gasolina: toda la gasolina reservada vuelve al inventario
+     * @param idReserva El identificador de la reserva
+     * @return Retorna true si la reserva estaba activa y se liberó, o false si no existe o ya se había resuelto
+     */
+    public boolean liberarReserva( long idReserva )
+    {
+        ReservaGasolina reserva = reservas.get( idReserva );
+        if( reserva == null || !reserva.resolver( ReservaGasolina.EstadoReserva.LIBERADA ) )
+            return false;
+        devolverReserva( reserva );
+        return true;
+    }
+
+    /**
+     * Vence las reservas cuyo plazo ya pasó. Las reservas también se vencen cada vez que se hace una nueva, así que sólo hace falta llamar este método si se quiere
+     * recuperar la gasolina en momentos sin reservas nuevas (por ejemplo desde un temporizador).
+     * @return La cantidad de reservas que se vencieron
+     */
+    public int vencerReservas( )
+    {
+        return vencerReservas( System.nanoTime( ) );
+    }
+
+    private int vencerReservas( long ahora )
+    {
+        return vencimientos.avanzar( ahora, reserva -> {
+            if( reserva.resolver( ReservaGasolina.EstadoReserva.VENCIDA ) )
+                devolverReserva( reserva );
+        } );
+    }
+
+    /**
+     * Devuelve al inventario la gasolina de una reserva que se liberó o se venció
+     */
+    private void devolverReserva( ReservaGasolina reserva )
+    {
+        reservas.remove( reserva.getId( ) );
+        iniciarEscritura( );
+        try
+        {
+            tiposPorId[ reserva.getIdTipoGasolina( ) ].liberarReserva( reserva.getGalonesReservados( ) );
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+    }
+
+    /**
+     * Retorna una reserva abierta
+     * @param idReserva El identificador de la reserva
+     * @return La reserva, o null si no existe o ya se resolvió
+     */
+    public ReservaGasolina getReserva( long idReserva )
+    {
+        return reservas.get( idReserva );
+    }
+
+    public int getCantidadReservasAbiertas( )
+    {
+        return reservas.size( );
+    }
+
+    /**
+     * Cambia la duración de las reservas que se hagan de ahora en adelante
+     * @param duracion El tiempo que dura cada reserva antes de vencerse
+     * @param unidad La unidad en la que está expresada la duración
+     */
+    public void configurarDuracionReservas( long duracion, TimeUnit unidad )
+    {
+        if( duracion <= 0 )
+            throw new IllegalArgumentException( "La duración de las reservas debe ser positiva" );
+        duracionReservas = unidad.toNanos( duracion );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, dado el precio que quiere pagar el cliente.
+     * 
+     * Si en la gasolinera no hay la cantidad suficiente del tipo de gasolina, le vende todo lo que haya de esa gasolina.
+     * 
+     * Después de realizada la transacción, debe haber quedado actualizado el inventario de gasolina (en el TipoGasolina), la cantidad entregada en el surtidor y la cantidad
+     * de dinero que tiene el empleado que atiende en el surtidor.
+     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es el valor solicitado)
+     */
+    public int venderGasolinaPorPrecio( String nombreTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        return venderGasolinaPorPrecio( simbolosTipos.getId( nombreTipoGasolina ), valorSolicitado, numeroSurtidor );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, dado el precio que quiere pagar el cliente e identificando el tipo de gasolina por su identificador.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es el valor solicitado)
+     */
+    public int venderGasolinaPorPrecio( int idTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        return venderGasolinaPorPrecioConFidelidad( idTipoGasolina, valorSolicitado, numeroSurtidor, 0 );
+    }
+
+    /**
+     * Le vende a un cliente con un nivel de fidelidad una cierta cantidad de gasolina, dado el precio que quiere pagar. El precio por galón se ajusta con la tabla de precios
+     * de la gasolinera, si tiene una.
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio de la gasolina que se le vendió al cliente (no necesariamente es el valor solicitado)
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe en la tabla de precios
+     */
+    public int venderGasolinaPorPrecioConFidelidad( int idTipoGasolina, int valorSolicitado, int numeroSurtidor, int nivelFidelidad )
+    {
+        // El precio se lee una sola vez: la conversión a galones y el cobro usan el mismo precio aunque cambie durante la venta
+        long precioVersionado = tiposPorId[ idTipoGasolina ].getPrecioVersionado( );
+        int precioPorGalon = almacen.precioPorGalonParaValor( idTipoGasolina, TipoGasolina.precioDe( precioVersionado ), valorSolicitado, nivelFidelidad );
+        double cantidadSolicitada = valorSolicitado / ( double )precioPorGalon;
+
+        return vender( idTipoGasolina, cantidadSolicitada, numeroSurtidor, precioVersionado, precioPorGalon, -1 );
+    }
+
+    /**
+     * Hace un lote de ventas de un mismo tipo de gasolina en una sola sección de escritura. Es para un único thread que aplica todas las ventas de un tipo de gasolina
+     * (ver ProcesadorVentasUnEscritor): así el anuncio de la escritura se paga una vez por lote y no una vez por venta.
+     * 
+     * Todas las ventas del lote usan el precio que tenía el tipo de gasolina al empezar el lote. Igual que en las ventas individuales, el descuento por volumen de una
+     * venta por cantidad es el de la cantidad entregada. Una venta que no se puede hacer (por ejemplo porque el surtidor no
+     * existe) queda con precio -1 y no impide las demás.
+     * @param idTipoGasolina El identificador del tipo de gasolina de todas las ventas
+     * @param valores La cantidad de galones solicitada en cada venta, o el valor solicitado si la venta es por precio
+     * @param surtidores El número del surtidor de cada venta
+     * @param porPrecio Indica si cada venta es por precio
+     * @param cantidad La cantidad de ventas del lote, que ocupan las primeras posiciones de los arreglos
+     * @param precios El arreglo donde queda el precio de cada venta, o -1 si la venta falló
+     * @return La cantidad de ventas que fallaron
+     */
+    public int venderLote( int idTipoGasolina, double[] valores, int[] surtidores, boolean[] porPrecio, int cantidad, int[] precios )
+    {
+        TipoGasolina tipo = tiposPorId[ idTipoGasolina ];
+        long precioVersionado = tipo.getPrecioVersionado( );
+        int precioBase = TipoGasolina.precioDe( precioVersionado );
+        int versionPrecio = TipoGasolina.versionDe( precioVersionado );
+        double[] solicitadas = new double[cantidad];
+        double[] entregadas = new double[cantidad];
+        int[] preciosPorGalon = new int[cantidad];
+        Empleado[] empleados = new Empleado[cantidad];
+        EventoVentaJfr[] eventosJfr = TIPO_EVENTO_VENTA.isEnabled( ) ? new EventoVentaJfr[cantidad] : null;
+        MetricasGasolinera lasMetricas = metricas;
+        long[] duraciones = lasMetricas == null ? null : new long[cantidad];
+
+        // Las validaciones y los precios se resuelven antes de la sección de escritura
+        int fallidas = 0;
+        for( int i = 0; i < cantidad; i++ )
+        {
+            long inicio = duraciones == null ? 0 : System.nanoTime( );
+            precios[ i ] = -1;
+            try
+            {
+                almacen.verificarSurtidor( surtidores[ i ] );
+                if( porPrecio[ i ] )
+                {
+                    preciosPorGalon[ i ] = almacen.precioPorGalonParaValor( idTipoGasolina, precioBase, ( int )valores[ i ], 0 );
+                    solicitadas[ i ] = ( int )valores[ i ] / ( double )preciosPorGalon[ i ];
+                }
+                else
+                {
+                    preciosPorGalon[ i ] = almacen.precioPorGalon( idTipoGasolina, precioBase, valores[ i ], 0 );
+                    solicitadas[ i ] = valores[ i ];
+                }
+                empleados[ i ] = almacen.getEmpleadoAsignado( surtidores[ i ] );
+            }
+            catch( RuntimeException e )
+            {
+                empleados[ i ] = null;
+                fallidas++;
+            }
+            if( duraciones != null )
+                duraciones[ i ] = System.nanoTime( ) - inicio;
+        }
+
+        CopiaPorBloques<?> copia = iniciarEscritura( );
+        try
+        {
+            for( int i = 0; i < cantidad; i++ )
+            {
+                if( empleados[ i ] == null )
+                    continue;
+                long inicio = duraciones == null ? 0 : System.nanoTime( );
+                if( eventosJfr != null )
+                    eventosJfr[ i ] = iniciarEventoVenta( );
+                if( copia != null )
+                    copia.preservar( CopiaEstado.bloqueGalones( surtidores[ i ], idTipoGasolina, tiposPorId.length ) );
+                entregadas[ i ] = tipo.despacharDisponible( solicitadas[ i ] );
+                if( !porPrecio[ i ] && entregadas[ i ] < solicitadas[ i ] )
+                    preciosPorGalon[ i ] = almacen.precioPorGalon( idTipoGasolina, precioBase, entregadas[ i ], 0 );
+                precios[ i ] = almacen.venderGasolina( surtidores[ i ], idTipoGasolina, entregadas[ i ], preciosPorGalon[ i ], empleados[ i ] );
+                if( eventosJfr != null && eventosJfr[ i ] != null )
+                    eventosJfr[ i ].end( );
+                if( duraciones != null )
+                    duraciones[ i ] += System.nanoTime( ) - inicio;
+            }
+        }
+        finally
+        {
+            control.terminarEscritura( );
+        }
+
+        // La duración de cada venta es la de sus propios pasos, no la del lote: al publicarla se le suma sólo el tiempo de su publicación
+        for( int i = 0; i < cantidad; i++ )
+        {
+            if( empleados[ i ] != null )
+                publicarVenta( idTipoGasolina, surtidores[ i ], solicitadas[ i ], entregadas[ i ], precios[ i ], preciosPorGalon[ i ], versionPrecio, empleados[ i ],
+                        lasMetricas, duraciones == null ? 0 : System.nanoTime( ) - duraciones[ i ], eventosJfr == null ? null : eventosJfr[ i ] );
+        }
+        return fallidas;
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, a menos que ya se haya hecho una venta con el mismo identificador.
+     * 
+     * Si el identificador ya se había usado recientemente, no se despacha gasolina ni se le entrega dinero a ningún empleado: sólo se retorna el precio de la venta
+     * original. Esto permite que un terminal reintente una venta sin riesgo de venderla dos veces. Un identificador que se repite con otros parámetros se rechaza.
+     * @param idVenta El identificador único de la venta, asignado por el terminal
+     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente, en esta venta o en la original
+     */
+    public int venderGasolinaPorCantidad( long idVenta, String nombreTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        return venderGasolinaPorCantidad( idVenta, simbolosTipos.getId( nombreTipoGasolina ), cantidadSolicitada, numeroSurtidor );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, identificando el tipo de gasolina por su identificador, a menos que ya se haya hecho una venta con el mismo
+     * identificador de venta.
+     * @param idVenta El identificador único de la venta, asignado por el terminal
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param cantidadSolicitada La cantidad en galones que quiere el cliente
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente, en esta venta o en la original
+     */
+    public int venderGasolinaPorCantidad( long idVenta, int idTipoGasolina, double cantidadSolicitada, int numeroSurtidor )
+    {
+        return cacheVentas.venderUnaVez( idVenta, false, idTipoGasolina, cantidadSolicitada, numeroSurtidor, ventaPorCantidad );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, dado el precio que quiere pagar, a menos que ya se haya hecho una venta con el mismo identificador.
+     * @param idVenta El identificador único de la venta, asignado por el terminal
+     * @param nombreTipoGasolina El tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente, en esta venta o en la original
+     */
+    public int venderGasolinaPorPrecio( long idVenta, String nombreTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        return venderGasolinaPorPrecio( idVenta, simbolosTipos.getId( nombreTipoGasolina ), valorSolicitado, numeroSurtidor );
+    }
+
+    /**
+     * Le vende a un cliente una cierta cantidad de gasolina, dado el precio que quiere pagar e identificando el tipo de gasolina por su identificador, a menos que ya se
+     * haya hecho una venta con el mismo identificador de venta.
+     * @param idVenta El identificador único de la venta, asignado por el terminal
+     * @param idTipoGasolina El identificador del tipo de gasolina que quiere el cliente
+     * @param valorSolicitado El precio que quiere pagar el cliente por la gasolina que se le entregue
+     * @param numeroSurtidor El número del surtidor donde están atendiendo al cliente. Los surtidores están numerados desde 0.
+     * @return El precio de la gasolina que se le vendió al cliente, en esta venta o en la original
+     */
+    public int venderGasolinaPorPrecio( long idVenta, int idTipoGasolina, int valorSolicitado, int numeroSurtidor )
+    {
+        return cacheVentas.venderUnaVez( idVenta, true, idTipoGasolina, valorSolicitado, numeroSurtidor, ventaPorPrecio );
+    }
+
+    /**
+     * Cambia la cantidad de ventas con identificador que se recuerdan y durante cuánto tiempo. Las ventas que se recordaban hasta ahora se olvidan.
+     * @param capacidad La cantidad máxima de ventas que se recuerdan
+     * @param duracion El tiempo durante el cual se recuerda cada venta
+     * @param unidad La unidad en la que está expresada la duración
+     */
+    public void configurarDeduplicacion( int capacidad, long duracion, TimeUnit unidad )
+    {
+        cacheVentas = new CacheVentas( capacidad, duracion, unidad );
+    }
+
+    /**
+     * Activa la publicación de los eventos de las ventas. Si ya estaba activada, retorna el publicador que ya existía.
+     * 
+     * Las ventas repetidas que se detectan con el identificador de venta no generan un evento nuevo.
+     * @param capacidadPorSuscriptor La cantidad máxima de eventos que pueden estar esperando a cada suscriptor. Si un suscriptor se atrasa más, pierde los eventos
+     *        siguientes hasta que se ponga al día
+     * @return El publicador al que se pueden suscribir los interesados en las ventas
+     */
+    public synchronized PublicadorVentas activarEventosVenta( int capacidadPorSuscriptor )
+    {
+        if( publicadorVentas == null )
+            publicadorVentas = new PublicadorVentas( capacidadPorSuscriptor );
+        return publicadorVentas;
+    }
+
+    /**
+     * Desactiva la publicación de los eventos de las ventas y cierra el publicador, de forma que los suscriptores reciban onComplete
+     */
+    public synchronized void desactivarEventosVenta( )
+    {
+        if( publicadorVentas != null )
+        {
+            publicadorVentas.close( );
+            publicadorVentas = null;
+        }
+    }
+
+    /**
+     * Retorna el publicador de los eventos de las ventas
+     * @return El publicador, o null si los eventos no están activados
+     */
+    public PublicadorVentas getPublicadorVentas( )
+    {
+        return publicadorVentas;
+    }
+
+    /**
+     * Activa las métricas de operación de la gasolinera. Si ya estaban activadas, retorna las que ya existían.
+     * @return Las métricas, que se pueden consultar en cualquier momento
+     */
+    public synchronized MetricasGasolinera activarMetricas( )
+    {
+        if( metricas == null )
+            metricas = new MetricasGasolinera( tiposPorId.length, almacen.getCantidadSurtidores( ) );
+        return metricas;
+    }
+
+    /**
+     * Desactiva las métricas de operación. Las operaciones que estaban en curso pueden terminar de registrarse en las métricas anteriores.
+     */
+    public synchronized void desactivarMetricas( )
+    {
+        metricas = null;
+    }
+
+    /**
+     * Retorna las métricas de operación de la gasolinera
+     * @return Las métricas, o null si no están activadas
+     */
+    public MetricasGasolinera getMetricas( )
+    {
+        return metricas;
+    }
+
+    /**
+     * Toma una instantánea del estado de la gasolinera: el inventario, los galones vendidos en cada surtidor, el empleado de cada surtidor y el dinero de cada empleado,
+     * todo correspondiente al mismo instante.
+     * 
+     * Tomar la instantánea no detiene las ventas: la copia se hace de forma optimista y se repite si alguna venta la alteró. Si las ventas no dejan terminar una copia
+     * después de varios intentos, se hace una copia en escritura (ver CopiaPorBloques): cada venta copia el bloque de surtidores que va a modificar si todavía no está
+     * copiado, en lugar de esperar a que termine la copia. Si el estado no ha cambiado desde la última instantánea, se retorna esa misma.
+     * 
+     * Sólo se garantiza la consistencia para los cambios hechos a través de la gasolinera, no para los que se hacen directamente sobre los surtidores o los empleados.
+     * @return La instantánea del estado actual
+     */
+    public InstantaneaGasolinera tomarInstantanea( )
+    {
+        EventoInstantaneaJfr eventoJfr = new EventoInstantaneaJfr( );
+        eventoJfr.begin( );
+
+        InstantaneaGasolinera anterior = ultimaInstantanea;
+        if( anterior != null && control.sinCambiosDesde( anterior.getVersion( ) ) )
+        {
+            eventoJfr.completar( anterior.getVersion( ), true, almacen.getCantidadSurtidores( ) );
+            return anterior;
+        }
+
+        InstantaneaGasolinera nueva = control.leer( CopiaEstado::new );
+        ultimaInstantanea = nueva;
+        eventoJfr.completar( nueva.getVersion( ), false, almacen.getCantidadSurtidores( ) );
+        return nueva;
+    }
+
+    /**
+     * Genera el reporte de cierre de turno con los totales por tipo de gasolina, por surtidor y por empleado (ver ReporteCierre para cómo se atribuyen los galones a los
+     * empleados). El reporte se calcula en paralelo sobre una instantánea, así que no detiene las ventas.
+     * @param cantidadMejores La cantidad de surtidores y de empleados que se incluyen en los rankings
+     * @return El reporte de cierre
+     */
+    public ReporteCierre generarReporteCierre( int cantidadMejores )
+    {
+        return ReporteCierre.generar( tomarInstantanea( ), cantidadMejores );
+    }
+
+    /**
+     * Cierra el turno actual: archiva los galones vendidos en cada surtidor y el dinero de cada empleado, y deja todos esos contadores en cero para el turno siguiente.
+     *
+     * Cerrar el turno no detiene las ventas. Primero se toma una instantánea, en la que cada venta quedó completa o no quedó; esa instantánea es el turno que se cierra.
+     * Luego se le resta a cada contador lo que tenía en la instantánea, con las mismas operaciones atómicas de las ventas, así que las ventas que terminaron después de la
+     * instantánea siguen en los contadores y quedan en el turno siguiente. Ninguna venta se pierde ni se cuenta en los dos turnos. La resta cuenta como una escritura, así
+     * que ninguna instantánea la ve a medias.
+     *
+     * Si se configuró un directorio de turnos (ver configurarDirectorioTurnos), el turno se escribe en el disco antes de restar los contadores: si la escritura falla, el
+     * turno no se cierra y los contadores quedan como estaban. En memoria sólo se conservan los últimos MAXIMO_CIERRES_EN_MEMORIA turnos.
+     *
+     * Como con las instantáneas, sólo se garantiza para las ventas hechas a través de la gasolinera. El inventario no cambia al cerrar el turno.
+     * @return El cierre del turno, que también queda en la lista de turnos cerrados
+     * @throws IOException Si no se pudo escribir el turno en el directorio de turnos. En ese caso el turno sigue abierto
+     */
+    public CierreTurno cerrarTurno( ) throws IOException
+    {
+        synchronized( cierresTurno )
+        {
+            InstantaneaGasolinera turno = tomarInstantanea( );
+            CierreTurno cierre = new CierreTurno( ultimoTurno + 1, System.currentTimeMillis( ), turno );
+            if( directorioTurnos != null )
+                escribirCierre( directorioTurnos, cierre );
+
+            CopiaPorBloques<?> copia = control.iniciarEscritura( );
+            if( copia != null )
+                copia.preservarTodos( );
+            try
+            {
+                int cantidadSurtidores = turno.getCantidadSurtidores( );
+                for( int id = 0; id < turno.getCantidadTiposGasolina( ); id++ )
+                {
+                    for( int s = 0; s < cantidadSurtidores; s++ )
+                    {
+                        double galones = turno.getGalonesVendidos( s, id );
+                        if( galones != 0 )
+                            almacen.sumarGalonesVendidos( s, id, -galones );
+                    }
+                }
+                // El almacén sólo acepta a los empleados de la gasolinera (ver AlmacenSurtidores.cerrarEmpleados), así que la instantánea tiene el dinero de todos
+                // los empleados que pueden recibir ventas
+                for( int id = 0; id < turno.getCantidadEmpleados( ); id++ )
+                {
+                    int dinero = turno.getCantidadDinero( id );
+                    if( dinero != 0 )
+                        empleadosPorId[ id ].agregarDinero( -dinero );
+                }
+            }
+            finally
+            {
+                control.terminarEscritura( );
+            }
+
+            ultimoTurno = cierre.getNumero( );
+            cierresTurno.addLast( cierre );
+            if( cierresTurno.size( ) > MAXIMO_CIERRES_EN_MEMORIA )
+                cierresTurno.removeFirst( );
+            return cierre;
+        }
+    }
+
+    /**
+     * Retorna los últimos turnos que se han cerrado. Los turnos anteriores se pueden cargar del directorio de turnos con cargarCierresTurno
+     * @return Una copia de la lista de cierres, del más antiguo al más reciente, con como mucho MAXIMO_CIERRES_EN_MEMORIA cierres
+     */
+    public List<CierreTurno> getCierresTurno( )
+    {
+        synchronized( cierresTurno )
+        {
+            return new ArrayList<CierreTurno>( cierresTurno );
+        }
+    }
+
+    /**
+     * Configura el directorio donde se escribe cada turno al cerrarlo, en el formato binario por columnas. Si el directorio ya tiene turnos, la numeración continúa
+     * después del mayor, así que se puede usar el mismo directorio cada vez que se abre la gasolinera.
+     * @param directorio El directorio de turnos, o null para que los turnos sólo queden en memoria. Si no existe, se crea
+     * @throws IOException Si el directorio no se puede crear o leer
+     */
+    public void configurarDirectorioTurnos( File directorio ) throws IOException
+    {
+        synchronized( cierresTurno )
+        {
+            if( directorio != null )
+            {
+                if( !directorio.isDirectory( ) && !directorio.mkdirs( ) )
+                    throw new IOException( "No se pudo crear el directorio de turnos " + directorio );
+                File[] archivos = directorio.listFiles( );
+                if( archivos == null )
+                    throw new IOException( "No se pudo leer el directorio de turnos " + directorio );
+                for( File archivo : archivos )
+                {
+                    long[] numeroYMomento = leerNombreTurno( archivo );
+                    if( numeroYMomento != null )
+                        ultimoTurno = ( int )Math.max( ultimoTurno, numeroYMomento[ 0 ] );
+                }
+            }
+            directorioTurnos = directorio;
+        }
+    }
+
+    /**
+     * Escribe un turno en el directorio de turnos. El archivo se escribe completo con otro nombre, se fuerza al disco y sólo entonces se le pone su nombre, así que en
+     * el directorio nunca queda un turno a medias
+     */
+    private static void escribirCierre( File directorio, CierreTurno cierre ) throws IOException
+    {
+        File archivo = new File( directorio, PREFIJO_ARCHIVO_TURNO + cierre.getNumero( ) + "-" + cierre.getMomento( ) + FormatoBinario.EXTENSION );
+        File temporal = new File( archivo.getPath( ) + ".tmp" );
+        escribirColumnas( temporal, cierre.getVentas( ), true );
+        try( FileChannel canal = FileChannel.open( temporal.toPath( ), StandardOpenOption.WRITE ) )
+        {
+            canal.force( true );
+        }
+        Files.move( temporal.toPath( ), archivo.toPath( ), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE );
+    }
+
+    /**
+     * Extrae el número y el momento de un turno del nombre de su archivo
+     * @param archivo El archivo
+     * @return Un arreglo con el número y el momento, o null si el archivo no es de un turno
+     */
+    private static long[] leerNombreTurno( File archivo )
+    {
+        String nombre = archivo.getName( );
+        if( !archivo.isFile( ) || !nombre.startsWith( PREFIJO_ARCHIVO_TURNO ) || !nombre.endsWith( FormatoBinario.EXTENSION ) )
+            return null;
+        String[] partes = nombre.substring( PREFIJO_ARCHIVO_TURNO.length( ), nombre.length( ) - FormatoBinario.EXTENSION.length( ) ).split( "-" );
+        try
+        {
+            long numero = Long.parseLong( partes[ 0 ] );
+            return partes.length == 2 && numero > 0 && numero <= Integer.MAX_VALUE ? new long[]{ numero, Long.parseLong( partes[ 1 ] ) } : null;
+        }
+        catch( NumberFormatException e )
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Carga todos los turnos que se escribieron en un directorio de turnos (ver configurarDirectorioTurnos)
+     * @param directorio El directorio de turnos
+     * @return Los cierres de los turnos, ordenados por número
+     * @throws IOException Si el directorio o algún turno no se pueden leer
+     */
+    public static List<CierreTurno> cargarCierresTurno( File directorio ) throws IOException
+    {
+        File[] archivos = directorio.listFiles( );
+        if( archivos == null )
+            throw new IOException( "No se pudo leer el directorio de turnos " + directorio );
+        List<CierreTurno> cierres = new ArrayList<CierreTurno>( );
+        for( File archivo : archivos )
+        {
+            long[] numeroYMomento = leerNombreTurno( archivo );
+            if( numeroYMomento != null )
+                cierres.add( new CierreTurno( ( int )numeroYMomento[ 0 ], numeroYMomento[ 1 ], cargarEstadoBinario( archivo ).tomarInstantanea( ) ) );
+        }
+        cierres.sort( ( a, b ) -> Integer.compare( a.getNumero( ), b.getNumero( ) ) );
+        return cierres;
+    }
+
+    /**
+     * Anuncia una escritura que modifica el inventario, los precios o el dinero de los empleados. Si se está haciendo una copia en escritura del estado, preserva antes
+     * el bloque general.
+     * @return La copia en escritura que está en curso, o null si no hay ninguna. Si la escritura modifica los contadores de algún surtidor debe preservar sus bloques
+     */
+    private CopiaPorBloques<?> iniciarEscritura( )
+    {
+        CopiaPorBloques<?> copia = control.iniciarEscritura( );
+        if( copia != null )
+            copia.preservar( CopiaEstado.BLOQUE_GENERAL );
+        return copia;
+    }
+
+    /**
+     * Anuncia una venta: una escritura que modifica el inventario y el dinero de los empleados, y los galones vendidos de un tipo de gasolina en un surtidor. Si se
+     * está haciendo una copia en escritura del estado, preserva antes el bloque general y el bloque de esos galones.
+     * @param numeroSurtidor El número del surtidor de la venta
+     * @param idTipoGasolina El identificador del tipo de gasolina de la venta
+     * @return La copia en escritura que está en curso, o null si no hay ninguna
+     */
+    private CopiaPorBloques<?> iniciarEscritura( int numeroSurtidor, int idTipoGasolina )
+    {
+        CopiaPorBloques<?> copia = iniciarEscritura( );
+        if( copia != null )
+            copia.preservar( CopiaEstado.bloqueGalones( numeroSurtidor, idTipoGasolina, tiposPorId.length ) );
+        return copia;
+    }
+
+    /**
+     * Revisa que la gasolinera se pueda guardar. Ninguno de los formatos guarda los tanques ni la política de despacho de un tipo de gasolina, sólo su cantidad total, así
+     * que al cargar una gasolinera guardada cada tipo de gasolina queda con un solo tanque. Para no perder esa información sin avisar, no se guardan las gasolineras que
+     * tengan algún tipo de gasolina con varios tanques.
+     * @throws IOException Si algún tipo de gasolina tiene varios tanques
+     */
+    private void verificarTanquesGuardables( ) throws IOException
+    {
+        for( TipoGasolina tipo : tiposPorId )
+        {
+            if( tipo.getCantidadTanques( ) > 1 )
+                throw new IOException( "El tipo de gasolina " + tipo.getNombre( ) + " tiene " + tipo.getCantidadTanques( )
+                        + " tanques, y los formatos de archivo sólo guardan un tanque por tipo" );
+        }
+    }
+
+    /**
+     * Guarga la información actual de la gasolinera en un archivo.
+     * 
+     * Si el archivo ya existe, se sobreescribe. Si las métricas de operación están activadas, la duración queda registrada en ellas.
+     * @param archivo El archivo donde se guardará la información
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo o si algún tipo de gasolina tiene varios tanques
+     */
+    public void guardarEstado( File archivo ) throws IOException
+    {
+        verificarTanquesGuardables( );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = System.nanoTime( );
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        // Se guarda una instantánea para que el archivo sea consistente aunque haya ventas mientras se escribe
+        InstantaneaGasolinera estado = tomarInstantanea( );
+        PrintWriter writer = new PrintWriter( archivo );
+
+        // Guardar la información de los tipos de gasolina
+        for( int id = 0; id < estado.getCantidadTiposGasolina( ); id++ )
+        {
+            writer.println( "tipo:" + estado.getNombreTipoGasolina( id ) + ":" + estado.getPrecioPorGalon( id ) + ":" + estado.getCantidadEnInventario( id ) );
+        }
+
+        // Guardar la información de los surtidores
+        for( int i = 0; i < estado.getCantidadSurtidores( ); i++ )
+        {
+            writer.print( "surtidor:" + estado.getNombreEmpleado( estado.getEmpleadoAsignado( i ) ) );
+            for( int id = 0; id < estado.getCantidadTiposGasolina( ); id++ )
+            {
+                writer.print( ":" + estado.getNombreTipoGasolina( id ) + ":" + estado.getGalonesVendidos( i, id ) );
+            }
+            writer.println( );
+        }
+
+        // Guardar la información de los empleados
+        for( int id = 0; id < estado.getCantidadEmpleados( ); id++ )
+        {
+            writer.println( "empleado:" + estado.getNombreEmpleado( id ) + ":" + estado.getCantidadDinero( id ) );
+        }
+
+        writer.close( );
+        if( lasMetricas != null )
+            lasMetricas.registrarGuardar( System.nanoTime( ) - inicio );
+        eventoJfr.completar( EventoPersistenciaJfr.GUARDAR, archivo.getPath( ), archivo.length( ) );
+    }
+
+    /**
+     * Carga toda la información de una gasolinera a partir de un archivo y retorna una nueva Gasolinera inicializada con esa información
+     * @param archivo El archivo que contiene la información que se va a cargar
+     * @return Una nueva gasolinera con su estado inicializado con la información del archivo
+     * @throws FileNotFoundException Se lanza esta excepción si el archivo no se encuentra
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer
+     * @throws NumberFormatException Se lanza esta excepción si alguno de los números dentro del archivo tiene el formato equivocado
+     */
+    public static Gasolinera cargarEstado( File archivo ) throws FileNotFoundException, IOException, NumberFormatException
+    {
+        return cargarEstado( archivo, false );
+    }
+
+    /**
+     * Carga toda la información de una gasolinera a partir de un archivo y retorna una nueva Gasolinera inicializada con esa información, opcionalmente con las métricas
+     * de operación activadas desde el principio. En ese caso, la duración de la carga queda registrada en las métricas de la nueva gasolinera.
+     * @param archivo El archivo que contiene la información que se va a cargar
+     * @param activarMetricas Indica si se deben activar las métricas de la nueva gasolinera
+     * @return Una nueva gasolinera con su estado inicializado con la información del archivo
+     * @throws FileNotFoundException Se lanza esta excepción si el archivo no se encuentra
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer
+     * @throws NumberFormatException Se lanza esta excepción si alguno de los números dentro del archivo tiene el formato equivocado
+     */
+    public static Gasolinera cargarEstado( File archivo, boolean activarMetricas ) throws FileNotFoundException, IOException, NumberFormatException
+    {
+        long inicio = System.nanoTime( );
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+        TablaSimbolos simbolosTipos = new TablaSimbolos( );
+        List<TipoGasolina> tipos = new ArrayList<TipoGasolina>( );
+        TipoGasolina[] tiposPorId = null;
+        Map<String, Empleado> empleados = new LinkedHashMap<String, Empleado>( );
+        AlmacenSurtidoresMemoria almacen = null;
+
+        BufferedReader br = new BufferedReader( new FileReader( archivo ) );
+        String line = br.readLine( );
+        while( line != null )
+        {
+            String[] partes = line.split( ":" );
+            if( partes[ 0 ].equals( "tipo" ) )
+            {
+                if( almacen != null )
+                {
+                    br.close( );
+                    throw new IOException( "Los tipos de gasolina deben estar antes de los surtidores en el archivo" );
+                }
+                String nombre = partes[ 1 ];
+                int precio = Integer.parseInt( partes[ 2 ] );
+                double cantidad = Double.parseDouble( partes[ 3 ] );
+                TipoGasolina nuevoTipo = new TipoGasolina( nombre, precio, cantidad );
+                int id = simbolosTipos.registrar( nombre );
+                if( id == tipos.size( ) )
+                    tipos.add( nuevoTipo );
+                else
+                    tipos.set( id, nuevoTipo );
+            }
+            else if( partes[ 0 ].equals( "surtidor" ) )
+            {
+                if( almacen == null )
+                {
+                    tiposPorId = tipos.toArray( new TipoGasolina[tipos.size( )] );
+                    almacen = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, empleados.values( ).toArray( new Empleado[empleados.size( )] ), 16 );
+                }
+                String nombreEmpleado = partes[ 1 ];
+                if( !empleados.containsKey( nombreEmpleado ) )
+                {
+                    empleados.put( nombreEmpleado, new Empleado( nombreEmpleado ) );
+                }
+                Empleado empleadoAsignado = empleados.get( nombreEmpleado );
+                int numero = almacen.agregarSurtidor( empleadoAsignado );
+                for( int pos = 2; pos < partes.length; pos += 2 )
+                {
+                    int idTipo = simbolosTipos.getId( partes[ pos ] );
+                    double cantidad = Double.parseDouble( partes[ pos + 1 ] );
+                    if( idTipo >= 0 )
+                        almacen.cambiarGalonesVendidos( numero, idTipo, cantidad );
+                }
+            }
+            else if( partes[ 0 ].equals( "empleado" ) )
+            {
+                String nombreEmpleado = partes[ 1 ];
                 int dinero = Integer.parseInt( partes[ 2 ] );
                 if( !empleados.containsKey( nombreEmpleado ) )
                 {
                     empleados.put( nombreEmpleado, new Empleado( nombreEmpleado ) );
+                    // Los identificadores del almacén deben seguir el mismo orden de los empleados en la gasolinera
+                    if( almacen != null )
+                        almacen.registrarEmpleado( empleados.get( nombreEmpleado ) );
                 }
                 Empleado nuevoEmpleado = empleados.get( nombreEmpleado );
                 nuevoEmpleado.agregarDinero( dinero );
@@ -311,8 +1707,556 @@ public class Gasolinera
         }
         br.close( );
 
-        Gasolinera nuevaGasolinera = new Gasolinera( surtidores, tipos.values( ), empleados.values( ) );
+        if( almacen == null )
+        {
+            tiposPorId = tipos.toArray( new TipoGasolina[tipos.size( )] );
+            almacen = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, empleados.values( ).toArray( new Empleado[empleados.size( )] ), 0 );
+        }
+        Gasolinera nuevaGasolinera = new Gasolinera( almacen, simbolosTipos, tiposPorId, empleados.values( ) );
+        if( activarMetricas )
+            nuevaGasolinera.activarMetricas( ).registrarCargar( System.nanoTime( ) - inicio );
+        eventoJfr.completar( EventoPersistenciaJfr.CARGAR, archivo.getPath( ), archivo.length( ) );
+        return nuevaGasolinera;
+    }
+
+    /**
+     * Guarda la información actual de la gasolinera en un archivo en formato binario (ver FormatoBinario). Si el archivo ya existe, se sobreescribe.
+     * @param archivo El archivo donde se guardará la información
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo o si algún tipo de gasolina tiene varios tanques
+     */
+    public void guardarEstadoBinario( File archivo ) throws IOException
+    {
+        verificarTanquesGuardables( );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = System.nanoTime( );
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        InstantaneaGasolinera estado = tomarInstantanea( );
+        escribirFilas( archivo, estado );
+
+        if( lasMetricas != null )
+            lasMetricas.registrarGuardar( System.nanoTime( ) - inicio );
+        eventoJfr.completar( EventoPersistenciaJfr.GUARDAR, archivo.getPath( ), archivo.length( ) );
+    }
+
+    /**
+     * Guarda la información actual de la gasolinera en un archivo en formato binario por columnas (ver FormatoBinario.VERSION_COLUMNAS), que ocupa mucho menos espacio
+     * que el formato por surtidores. Si el archivo ya existe, se sobreescribe. El archivo se carga con cargarEstadoBinario, igual que el de formato por surtidores.
+     * @param archivo El archivo donde se guardará la información
+     * @param comprimir Indica si además de codificar las columnas se comprime el contenido con Deflater
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo o si algún tipo de gasolina tiene varios tanques
+     */
+    public void guardarEstadoBinario( File archivo, boolean comprimir ) throws IOException
+    {
+        verificarTanquesGuardables( );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = System.nanoTime( );
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        InstantaneaGasolinera estado = tomarInstantanea( );
+        escribirColumnas( archivo, estado, comprimir );
+
+        if( lasMetricas != null )
+            lasMetricas.registrarGuardar( System.nanoTime( ) - inicio );
+        eventoJfr.completar( EventoPersistenciaJfr.GUARDAR, archivo.getPath( ), archivo.length( ) );
+    }
+
+    /**
+     * Escribe una instantánea en el formato binario por surtidores
+     */
+    private static void escribirFilas( File archivo, InstantaneaGasolinera estado ) throws IOException
+    {
+        int cantidadTipos = estado.getCantidadTiposGasolina( );
+        try( DataOutputStream salida = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( archivo ), 1 << 16 ) ) )
+        {
+            salida.writeInt( FormatoBinario.MAGIA );
+            salida.writeInt( FormatoBinario.VERSION );
+            salida.writeInt( cantidadTipos );
+            salida.writeInt( estado.getCantidadEmpleados( ) );
+            salida.writeInt( estado.getCantidadSurtidores( ) );
+
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                salida.writeUTF( estado.getNombreTipoGasolina( id ) );
+                salida.writeInt( estado.getPrecioPorGalon( id ) );
+                salida.writeDouble( estado.getCantidadEnInventario( id ) );
+            }
+            for( int id = 0; id < estado.getCantidadEmpleados( ); id++ )
+            {
+                salida.writeUTF( estado.getNombreEmpleado( id ) );
+                salida.writeInt( estado.getCantidadDinero( id ) );
+            }
+            for( int i = 0; i < estado.getCantidadSurtidores( ); i++ )
+            {
+                salida.writeInt( estado.getEmpleadoAsignado( i ) );
+                for( int id = 0; id < cantidadTipos; id++ )
+                {
+                    salida.writeDouble( estado.getGalonesVendidos( i, id ) );
+                }
+            }
+        }
+    }
+
+    /**
+     * Escribe una instantánea en el formato binario por columnas
+     */
+    private static void escribirColumnas( File archivo, InstantaneaGasolinera estado, boolean comprimir ) throws IOException
+    {
+        int cantidadTipos = estado.getCantidadTiposGasolina( );
+        int cantidadSurtidores = estado.getCantidadSurtidores( );
+        try( DataOutputStream encabezado = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( archivo ), 1 << 16 ) ) )
+        {
+            encabezado.writeInt( FormatoBinario.MAGIA );
+            encabezado.writeInt( FormatoBinario.VERSION_COLUMNAS );
+            encabezado.writeInt( comprimir ? FormatoBinario.COMPRIMIDO : 0 );
+            // El compresor no se libera al cerrar el flujo porque no lo creó el flujo, así que se libera al final
+            Deflater compresor = comprimir ? new Deflater( ) : null;
+            DeflaterOutputStream comprimido = comprimir ? new DeflaterOutputStream( encabezado, compresor, 1 << 16 ) : null;
+            DataOutputStream salida = comprimir ? new DataOutputStream( comprimido ) : encabezado;
+            try
+            {
+                CodificacionEnteros.escribirVarint( salida, cantidadTipos );
+                CodificacionEnteros.escribirVarint( salida, estado.getCantidadEmpleados( ) );
+                CodificacionEnteros.escribirVarint( salida, cantidadSurtidores );
+                for( int id = 0; id < cantidadTipos; id++ )
+                {
+                    salida.writeUTF( estado.getNombreTipoGasolina( id ) );
+                    CodificacionEnteros.escribirZigzag( salida, estado.getPrecioPorGalon( id ) );
+                    salida.writeDouble( estado.getCantidadEnInventario( id ) );
+                }
+                for( int id = 0; id < estado.getCantidadEmpleados( ); id++ )
+                {
+                    salida.writeUTF( estado.getNombreEmpleado( id ) );
+                    CodificacionEnteros.escribirZigzag( salida, estado.getCantidadDinero( id ) );
+                }
+                for( int i = 0; i < cantidadSurtidores; i++ )
+                {
+                    CodificacionEnteros.escribirVarint( salida, estado.getEmpleadoAsignado( i ) );
+                }
+                for( int id = 0; id < cantidadTipos; id++ )
+                {
+                    boolean milesimas = true;
+                    for( int i = 0; i < cantidadSurtidores && milesimas; i++ )
+                    {
+                        milesimas = CodificacionEnteros.cabeEnMilesimas( estado.getGalonesVendidos( i, id ) );
+                    }
+                    salida.writeBoolean( milesimas );
+                    for( int i = 0; i < cantidadSurtidores; i++ )
+                    {
+                        double galones = estado.getGalonesVendidos( i, id );
+                        if( milesimas )
+                            CodificacionEnteros.escribirZigzag( salida, CodificacionEnteros.aMilesimas( galones ) );
+                        else
+                            salida.writeDouble( galones );
+                    }
+                }
+            }
+            finally
+            {
+                if( comprimido != null )
+                {
+                    try
+                    {
+                        comprimido.finish( );
+                        comprimido.flush( );
+                    }
+                    finally
+                    {
+                        compresor.end( );
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Carga toda la información de una gasolinera a partir de un archivo en formato binario (ver FormatoBinario)
+     * @param archivo El archivo que contiene la información que se va a cargar
+     * @return Una nueva gasolinera con su estado inicializado con la información del archivo
+     * @throws FileNotFoundException Se lanza esta excepción si el archivo no se encuentra
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer, no está en formato binario o está incompleto
+     */
+    public static Gasolinera cargarEstadoBinario( File archivo ) throws FileNotFoundException, IOException
+    {
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        Gasolinera nuevaGasolinera;
+        try( DataInputStream entrada = new DataInputStream( new BufferedInputStream( new FileInputStream( archivo ), 1 << 16 ) ) )
+        {
+            if( entrada.readInt( ) != FormatoBinario.MAGIA )
+                throw new IOException( "El archivo " + archivo + " no está en el formato binario de gasolineras" );
+            int version = entrada.readInt( );
+            if( version == FormatoBinario.VERSION_COLUMNAS )
+            {
+                nuevaGasolinera = leerColumnas( entrada, archivo.length( ) );
+                eventoJfr.completar( EventoPersistenciaJfr.CARGAR, archivo.getPath( ), archivo.length( ) );
+                return nuevaGasolinera;
+            }
+            if( version != FormatoBinario.VERSION )
+                throw new IOException( "La versión " + version + " del formato binario no está soportada" );
+            // Cada elemento ocupa al menos un byte, así que ninguna cantidad válida supera el tamaño del archivo
+            long tamano = archivo.length( );
+            int cantidadTipos = leerCantidad( entrada.readInt( ), "tipos de gasolina", tamano );
+            int cantidadEmpleados = leerCantidad( entrada.readInt( ), "empleados", tamano );
+            int cantidadSurtidores = leerCantidad( entrada.readInt( ), "surtidores", tamano );
+            if( ( long )cantidadSurtidores * FormatoBinario.tamanoRegistroSurtidor( cantidadTipos ) > tamano )
+                throw new IOException( "El archivo " + archivo + " es demasiado pequeño para " + cantidadSurtidores + " surtidores" );
+
+            TablaSimbolos simbolosTipos = new TablaSimbolos( );
+            TipoGasolina[] tiposPorId = new TipoGasolina[cantidadTipos];
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                String nombre = entrada.readUTF( );
+                int precio = entrada.readInt( );
+                double cantidad = entrada.readDouble( );
+                if( simbolosTipos.registrar( nombre ) != id )
+                    throw new IOException( "El tipo de gasolina " + nombre + " está repetido en el archivo" );
+                tiposPorId[ id ] = new TipoGasolina( nombre, precio, cantidad );
+            }
+
+            Empleado[] empleadosPorId = new Empleado[cantidadEmpleados];
+            for( int id = 0; id < cantidadEmpleados; id++ )
+            {
+                empleadosPorId[ id ] = new Empleado( entrada.readUTF( ) );
+                empleadosPorId[ id ].agregarDinero( entrada.readInt( ) );
+            }
+
+            AlmacenSurtidoresMemoria almacen = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, empleadosPorId, cantidadSurtidores );
+            for( int i = 0; i < cantidadSurtidores; i++ )
+            {
+                int idEmpleado = entrada.readInt( );
+                if( idEmpleado < 0 || idEmpleado >= cantidadEmpleados )
+                    throw new IOException( "El surtidor " + i + " tiene asignado un empleado que no existe" );
+                int numero = almacen.agregarSurtidor( empleadosPorId[ idEmpleado ] );
+                for( int id = 0; id < cantidadTipos; id++ )
+                {
+                    almacen.cambiarGalonesVendidos( numero, id, entrada.readDouble( ) );
+                }
+            }
+            nuevaGasolinera = new Gasolinera( almacen, simbolosTipos, tiposPorId, Arrays.asList( empleadosPorId ) );
+        }
+
+        eventoJfr.completar( EventoPersistenciaJfr.CARGAR, archivo.getPath( ), archivo.length( ) );
+        return nuevaGasolinera;
+    }
+
+    /**
+     * Revisa una cantidad leída de un archivo antes de usarla para crear arreglos
+     * @param cantidad La cantidad leída
+     * @param que Lo que se está contando, para el mensaje de error
+     * @param maximo La mayor cantidad que puede tener el archivo
+     * @return La cantidad
+     * @throws IOException Si la cantidad es negativa o mayor al máximo, es decir si el archivo está dañado
+     */
+    private static int leerCantidad( long cantidad, String que, long maximo ) throws IOException
+    {
+        if( cantidad < 0 || cantidad > maximo || cantidad > Integer.MAX_VALUE )
+            throw new IOException( "La cantidad de " + que + " del archivo no es válida: " + cantidad );
+        return ( int )cantidad;
+    }
+
+    /**
+     * Lee el contenido de un archivo en el formato binario por columnas, después de la versión
+     * @param entrada El flujo del archivo
+     * @param tamano El tamaño del archivo
+     * @return La gasolinera con el estado del archivo
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer, está dañado o está incompleto
+     */
+    private static Gasolinera leerColumnas( DataInputStream entrada, long tamano ) throws IOException
+    {
+        int opciones = entrada.readInt( );
+        if( ( opciones & FormatoBinario.COMPRIMIDO ) == 0 )
+            return leerContenidoColumnas( entrada, tamano );
+
+        // El descompresor no se libera al cerrar el flujo porque no lo creó el flujo
+        Inflater descompresor = new Inflater( );
+        try
+        {
+            // Deflater no expande el contenido más de 1032 veces, así que ninguna cantidad válida supera ese múltiplo del tamaño del archivo
+            return leerContenidoColumnas( new DataInputStream( new InflaterInputStream( entrada, descompresor, 1 << 16 ) ), tamano * MAXIMA_EXPANSION_DEFLATE );
+        }
+        finally
+        {
+            descompresor.end( );
+        }
+    }
+
+    /**
+     * Lee las columnas de un archivo en el formato binario por columnas
+     * @param columnas El flujo de donde se leen las columnas: el del archivo o uno que las descomprime
+     * @param maximo La mayor cantidad de elementos que pueden tener las columnas, porque cada elemento ocupa al menos un byte
+     * @return La gasolinera con el estado del archivo
+     * @throws IOException Se lanza esta excepción si el archivo no se puede leer, está dañado o está incompleto
+     */
+    private static Gasolinera leerContenidoColumnas( DataInputStream columnas, long maximo ) throws IOException
+    {
+        int cantidadTipos = leerCantidad( CodificacionEnteros.leerVarint( columnas ), "tipos de gasolina", maximo );
+        int cantidadEmpleados = leerCantidad( CodificacionEnteros.leerVarint( columnas ), "empleados", maximo );
+        int cantidadSurtidores = leerCantidad( CodificacionEnteros.leerVarint( columnas ), "surtidores", maximo );
+
+        TablaSimbolos simbolosTipos = new TablaSimbolos( );
+        TipoGasolina[] tiposPorId = new TipoGasolina[cantidadTipos];
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            String nombre = columnas.readUTF( );
+            int precio = ( int )CodificacionEnteros.leerZigzag( columnas );
+            double cantidad = columnas.readDouble( );
+            if( simbolosTipos.registrar( nombre ) != id )
+                throw new IOException( "El tipo de gasolina " + nombre + " está repetido en el archivo" );
+            tiposPorId[ id ] = new TipoGasolina( nombre, precio, cantidad );
+        }
+
+        Empleado[] empleadosPorId = new Empleado[cantidadEmpleados];
+        for( int id = 0; id < cantidadEmpleados; id++ )
+        {
+            empleadosPorId[ id ] = new Empleado( columnas.readUTF( ) );
+            empleadosPorId[ id ].agregarDinero( ( int )CodificacionEnteros.leerZigzag( columnas ) );
+        }
+
+        AlmacenSurtidoresMemoria almacen = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, empleadosPorId, cantidadSurtidores );
+        for( int i = 0; i < cantidadSurtidores; i++ )
+        {
+            long idEmpleado = CodificacionEnteros.leerVarint( columnas );
+            if( idEmpleado < 0 || idEmpleado >= cantidadEmpleados )
+                throw new IOException( "El surtidor " + i + " tiene asignado un empleado que no existe" );
+            almacen.agregarSurtidor( empleadosPorId[ ( int )idEmpleado ] );
+        }
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            boolean milesimas = columnas.readBoolean( );
+            for( int i = 0; i < cantidadSurtidores; i++ )
+            {
+                double galones = milesimas ? CodificacionEnteros.aGalones( CodificacionEnteros.leerZigzag( columnas ) ) : columnas.readDouble( );
+                almacen.cambiarGalonesVendidos( i, id, galones );
+            }
+        }
+        return new Gasolinera( almacen, simbolosTipos, tiposPorId, Arrays.asList( empleadosPorId ) );
+    }
+
+    /**
+     * Guarda la información actual de la gasolinera en un archivo que se puede abrir mapeado en memoria con abrirEstadoMapeado (ver AlmacenSurtidoresMapeado). Si el
+     * archivo ya existe, se sobreescribe.
+     * @param archivo El archivo donde se guardará la información
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo, si la gasolinera es demasiado grande para un archivo mapeado o si algún
+     *         tipo de gasolina tiene varios tanques
+     */
+    public void guardarEstadoMapeado( File archivo ) throws IOException
+    {
+        verificarTanquesGuardables( );
+        MetricasGasolinera lasMetricas = metricas;
+        long inicio = System.nanoTime( );
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        AlmacenSurtidoresMapeado.crear( archivo, tomarInstantanea( ) );
+
+        if( lasMetricas != null )
+            lasMetricas.registrarGuardar( System.nanoTime( ) - inicio );
+        eventoJfr.completar( EventoPersistenciaJfr.GUARDAR, archivo.getPath( ), archivo.length( ) );
+    }
+
+    /**
+     * Abre una gasolinera guardada con guardarEstadoMapeado, dejando sus contadores en el archivo mapeado en memoria.
+     * 
+     * Los galones vendidos en cada surtidor, el empleado de cada surtidor, el dinero de cada empleado y la cantidad disponible de cada tipo de gasolina no se cargan al
+     * heap: las ventas los modifican directamente en el archivo, así que no hay que volver a guardar la gasolinera para conservarlos. A los surtidores de esta gasolinera
+     * sólo se les pueden asignar empleados que estén en el archivo. Las reservas funcionan igual que en una gasolinera en memoria, pero no quedan en el archivo: si el
+     * programa termina con reservas abiertas, la gasolina reservada sigue disponible al volver a abrirlo.
+     * @param archivo El archivo que contiene la gasolinera
+     * @return Una gasolinera que trabaja directamente sobre el archivo
+     * @throws IOException Se lanza esta excepción si el archivo no se puede abrir, no es un archivo mapeado de gasolinera o está incompleto
+     */
+    public static Gasolinera abrirEstadoMapeado( File archivo ) throws IOException
+    {
+        EventoPersistenciaJfr eventoJfr = new EventoPersistenciaJfr( );
+        eventoJfr.begin( );
+
+        AlmacenSurtidoresMapeado almacen = AlmacenSurtidoresMapeado.abrir( archivo );
+        TipoGasolina[] tiposPorId = almacen.getTiposGasolina( );
+        Empleado[] empleadosPorId = new Empleado[almacen.getCantidadEmpleados( )];
+        for( int id = 0; id < empleadosPorId.length; id++ )
+        {
+            empleadosPorId[ id ] = almacen.getEmpleado( id );
+        }
+        Gasolinera nuevaGasolinera = new Gasolinera( almacen, almacen.getSimbolosTipos( ), tiposPorId, Arrays.asList( empleadosPorId ) );
+
+        eventoJfr.completar( EventoPersistenciaJfr.CARGAR, archivo.getPath( ), archivo.length( ) );
         return nuevaGasolinera;
     }
 
+    /**
+     * Si la gasolinera se abrió con abrirEstadoMapeado, fuerza que todos los cambios queden escritos en el disco. Si la gasolinera está en memoria, no hace nada.
+     * 
+     * Sin llamar este método los cambios ya están en el archivo y sobreviven a que el programa termine, pero el sistema operativo decide cuándo los escribe en el disco.
+     */
+    public void sincronizarEstado( )
+    {
+        almacen.sincronizar( );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * La copia del estado de la gasolinera con la que se construye una instantánea. El bloque 0 tiene los precios, el inventario y el dinero de los empleados. Los
+     * surtidores se dividen en rangos de SURTIDORES_POR_BLOQUE, y cada rango tiene un bloque con los empleados asignados seguido de un bloque por tipo de gasolina con
+     * sus galones vendidos. Así un bloque nunca tiene más de SURTIDORES_POR_BLOQUE valores, sin importar cuántos tipos de gasolina haya, y lo que copia una venta
+     * durante una copia en escritura es siempre igual de pequeño.
+     */
+    private class CopiaEstado extends CopiaPorBloques<InstantaneaGasolinera>
+    {
+        /**
+         * El bloque con los valores de los tipos de gasolina y de los empleados
+         */
+        static final int BLOQUE_GENERAL = 0;
+
+        /**
+         * La cantidad de surtidores de cada bloque. Una venta copia como mucho un bloque de galones (8 KB) una vez por instantánea, además del bloque general
+         */
+        static final int SURTIDORES_POR_BLOQUE = 1024;
+
+        private final int cantidadSurtidores;
+
+        private final int cantidadTipos;
+
+        private final Empleado[] empleados;
+
+        private final int[] precios;
+
+        private final int[] versionesPrecios;
+
+        private final double[] disponibles;
+
+        private final double[] reservadas;
+
+        /**
+         * Los galones vendidos, por columnas como en la instantánea
+         */
+        private final double[] galones;
+
+        private final int[] asignados;
+
+        private final int[] dinero;
+
+        CopiaEstado( )
+        {
+            super( cantidadBloques( almacen.getCantidadSurtidores( ), tiposPorId.length ) );
+            cantidadSurtidores = almacen.getCantidadSurtidores( );
+            empleados = empleadosPorId;
+            cantidadTipos = tiposPorId.length;
+            precios = new int[cantidadTipos];
+            versionesPrecios = new int[cantidadTipos];
+            disponibles = new double[cantidadTipos];
+            reservadas = new double[cantidadTipos];
+            galones = new double[cantidadGalones( cantidadSurtidores, cantidadTipos )];
+            asignados = new int[cantidadSurtidores];
+            dinero = new int[empleados.length];
+        }
+
+        /**
+         * Retorna la cantidad de bloques de la copia: el general y, por cada rango de surtidores, el de las asignaciones y uno por tipo de gasolina
+         * @param cantidadSurtidores La cantidad de surtidores de la gasolinera
+         * @param cantidadTipos La cantidad de tipos de gasolina de la gasolinera
+         * @throws IllegalStateException Si la cantidad no cabe en un int
+         */
+        static int cantidadBloques( int cantidadSurtidores, int cantidadTipos )
+        {
+            int rangos = ( int )( ( cantidadSurtidores + ( long )SURTIDORES_POR_BLOQUE - 1 ) / SURTIDORES_POR_BLOQUE );
+            try
+            {
+                return Math.addExact( 1, Math.multiplyExact( rangos, 1 + cantidadTipos ) );
+            }
+            catch( ArithmeticException e )
+            {
+                throw new IllegalStateException( "No se puede copiar el estado de una gasolinera con " + cantidadSurtidores + " surtidores y " + cantidadTipos
+                        + " tipos de gasolina: tiene demasiados bloques" );
+            }
+        }
+
+        /**
+         * Retorna la cantidad de posiciones del arreglo de galones vendidos, una por cada surtidor y tipo de gasolina
+         * @param cantidadSurtidores La cantidad de surtidores de la gasolinera
+         * @param cantidadTipos La cantidad de tipos de gasolina de la gasolinera
+         * @throws IllegalStateException Si los galones vendidos no caben en un arreglo
+         */
+        static int cantidadGalones( int cantidadSurtidores, int cantidadTipos )
+        {
+            try
+            {
+                return Math.multiplyExact( cantidadSurtidores, cantidadTipos );
+            }
+            catch( ArithmeticException e )
+            {
+                throw new IllegalStateException( "No se puede copiar el estado de una gasolinera con " + cantidadSurtidores + " surtidores y " + cantidadTipos
+                        + " tipos de gasolina: los galones vendidos no caben en un arreglo" );
+            }
+        }
+
+        /**
+         * Retorna el bloque donde está el empleado asignado a un surtidor
+         * @param numeroSurtidor El número del surtidor
+         * @param cantidadTipos La cantidad de tipos de gasolina de la gasolinera
+         */
+        static int bloqueAsignacion( int numeroSurtidor, int cantidadTipos )
+        {
+            return 1 + numeroSurtidor / SURTIDORES_POR_BLOQUE * ( 1 + cantidadTipos );
+        }
+
+        /**
+         * Retorna el bloque donde están los galones vendidos de un tipo de gasolina en un surtidor
+         * @param numeroSurtidor El número del surtidor
+         * @param idTipoGasolina El identificador del tipo de gasolina
+         * @param cantidadTipos La cantidad de tipos de gasolina de la gasolinera
+         */
+        static int bloqueGalones( int numeroSurtidor, int idTipoGasolina, int cantidadTipos )
+        {
+            return bloqueAsignacion( numeroSurtidor, cantidadTipos ) + 1 + idTipoGasolina;
+        }
+
+        @Override
+        void copiarBloque( int bloque )
+        {
+            if( bloque == BLOQUE_GENERAL )
+            {
+                for( int id = 0; id < tiposPorId.length; id++ )
+                {
+                    long precioVersionado = tiposPorId[ id ].getPrecioVersionado( );
+                    precios[ id ] = TipoGasolina.precioDe( precioVersionado );
+                    versionesPrecios[ id ] = TipoGasolina.versionDe( precioVersionado );
+                    disponibles[ id ] = tiposPorId[ id ].getCantidadDisponible( );
+                    reservadas[ id ] = tiposPorId[ id ].getCantidadReservada( );
+                }
+                for( int id = 0; id < empleados.length; id++ )
+                {
+                    dinero[ id ] = empleados[ id ].getCantidadDinero( );
+                }
+                return;
+            }
+
+            int rango = ( bloque - 1 ) / ( 1 + cantidadTipos );
+            int posicion = ( bloque - 1 ) % ( 1 + cantidadTipos );
+            int desde = rango * SURTIDORES_POR_BLOQUE;
+            int hasta = Math.min( desde + SURTIDORES_POR_BLOQUE, cantidadSurtidores );
+            if( posicion == 0 )
+            {
+                // El almacén sólo acepta a los empleados de la gasolinera, así que sus identificadores son los mismos
+                almacen.copiarEmpleados( desde, hasta, asignados );
+            }
+            else
+            {
+                int id = posicion - 1;
+                almacen.copiarGalones( id, desde, hasta, galones, id * cantidadSurtidores + desde );
+            }
+        }
+
+        @Override
+        InstantaneaGasolinera construir( long version )
+        {
+            return new InstantaneaGasolinera( version, simbolosTipos, simbolosEmpleados, precios, versionesPrecios, disponibles, reservadas, galones, asignados, dinero );
+        }
+    }
 }
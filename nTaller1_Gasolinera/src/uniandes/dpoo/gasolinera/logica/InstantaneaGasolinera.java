@@ -0,0 +1,226 @@
+package uniandes.dpoo.gasolinera.logica;
+
+/**
+ * Una copia inmutable del estado de una gasolinera en un instante dado.
+ *
+ * Todos los valores de una instantánea (inventario, galones vendidos en cada surtidor y dinero de cada empleado) corresponden al mismo momento: ninguna venta queda
+ * incluida a medias. Los tipos de gasolina y los empleados se identifican con los mismos identificadores que usa la gasolinera.
+ */
+public class InstantaneaGasolinera
+{
+    /**
+     * La versión del estado de la gasolinera, es decir la cantidad de operaciones que la habían modificado cuando se tomó la instantánea
+     */
+    private final long version;
+
+    /**
+     * La tabla con los nombres de los tipos de gasolina
+     */
+    private final TablaSimbolos simbolosTipos;
+
+    /**
+     * La tabla con los nombres de los empleados
+     */
+    private final TablaSimbolos simbolosEmpleados;
+
+    /**
+     * El precio por galón de cada tipo de gasolina, según su identificador
+     */
+    private final int[] preciosPorGalon;
+
+    /**
+     * La versión del precio de cada tipo de gasolina, según su identificador
+     */
+    private final int[] versionesPrecios;
+
+    /**
+     * La cantidad de galones disponibles de cada tipo de gasolina, según su identificador. Es el total de todos los tanques del tipo: la instantánea no guarda cómo está
+     * repartida la gasolina entre los tanques
+     */
+    private final double[] cantidadesDisponibles;
+
+    /**
+     * La cantidad de galones apartados en reservas abiertas de cada tipo de gasolina, según su identificador
+     */
+    private final double[] cantidadesReservadas;
+
+    /**
+     * Los galones vendidos en cada surtidor, por columnas como en el almacén de surtidores: el valor del surtidor s para el tipo t está en la posición
+     * t * cantidadSurtidores + s
+     */
+    private final double[] galonesVendidos;
+
+    /**
+     * El identificador del empleado asignado a cada surtidor
+     */
+    private final int[] empleadosAsignados;
+
+    /**
+     * El dinero que tiene cada empleado, según su identificador
+     */
+    private final int[] dineroEmpleados;
+
+    InstantaneaGasolinera( long version, TablaSimbolos simbolosTipos, TablaSimbolos simbolosEmpleados, int[] preciosPorGalon, int[] versionesPrecios,
+                           double[] cantidadesDisponibles, double[] cantidadesReservadas, double[] galonesVendidos, int[] empleadosAsignados, int[] dineroEmpleados )
+    {
+        this.version = version;
+        this.simbolosTipos = simbolosTipos;
+        this.simbolosEmpleados = simbolosEmpleados;
+        this.preciosPorGalon = preciosPorGalon;
+        this.versionesPrecios = versionesPrecios;
+        this.cantidadesDisponibles = cantidadesDisponibles;
+        this.cantidadesReservadas = cantidadesReservadas;
+        this.galonesVendidos = galonesVendidos;
+        this.empleadosAsignados = empleadosAsignados;
+        this.dineroEmpleados = dineroEmpleados;
+    }
+
+    public long getVersion( )
+    {
+        return version;
+    }
+
+    public int getCantidadSurtidores( )
+    {
+        return empleadosAsignados.length;
+    }
+
+    public int getCantidadTiposGasolina( )
+    {
+        return preciosPorGalon.length;
+    }
+
+    public int getCantidadEmpleados( )
+    {
+        return dineroEmpleados.length;
+    }
+
+    public String getNombreTipoGasolina( int idTipoGasolina )
+    {
+        return simbolosTipos.getNombre( idTipoGasolina );
+    }
+
+    /**
+     * Retorna el identificador de un tipo de gasolina
+     * @param nombreTipoGasolina El nombre del tipo de gasolina
+     * @return El identificador, o -1 si el tipo de gasolina no existe
+     */
+    public int getIdTipoGasolina( String nombreTipoGasolina )
+    {
+        return simbolosTipos.getId( nombreTipoGasolina );
+    }
+
+    public String getNombreEmpleado( int idEmpleado )
+    {
+        return simbolosEmpleados.getNombre( idEmpleado );
+    }
+
+    /**
+     * Retorna el identificador de un empleado
+     * @param nombreEmpleado El nombre del empleado
+     * @return El identificador, o -1 si el empleado no existe
+     */
+    public int getIdEmpleado( String nombreEmpleado )
+    {
+        return simbolosEmpleados.getId( nombreEmpleado );
+    }
+
+    public int getPrecioPorGalon( int idTipoGasolina )
+    {
+        return preciosPorGalon[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna la versión del precio que tenía un tipo de gasolina cuando se tomó la instantánea
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La versión del precio
+     */
+    public int getVersionPrecio( int idTipoGasolina )
+    {
+        return versionesPrecios[ idTipoGasolina ];
+    }
+
+    public double getCantidadDisponible( int idTipoGasolina )
+    {
+        return cantidadesDisponibles[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna la cantidad de galones de un tipo de gasolina que estaban apartados en reservas abiertas. Esa gasolina no cuenta en la cantidad disponible
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones reservados
+     */
+    public double getCantidadReservada( int idTipoGasolina )
+    {
+        return cantidadesReservadas[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna toda la gasolina de un tipo que tiene la gasolinera: la disponible más la apartada en reservas abiertas. Es la cantidad que se guarda en los archivos de
+     * estado: las reservas no se guardan, porque su vencimiento no tiene sentido después de cargar el archivo, así que al cargarlo la gasolina reservada vuelve a estar
+     * disponible
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones
+     */
+    public double getCantidadEnInventario( int idTipoGasolina )
+    {
+        return cantidadesDisponibles[ idTipoGasolina ] + cantidadesReservadas[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna la cantidad de galones de un tipo de gasolina vendidos en un surtidor
+     * @param numeroSurtidor El número del surtidor
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones
+     */
+    public double getGalonesVendidos( int numeroSurtidor, int idTipoGasolina )
+    {
+        return galonesVendidos[ idTipoGasolina * empleadosAsignados.length + numeroSurtidor ];
+    }
+
+    /**
+     * Retorna el identificador del empleado que estaba asignado a un surtidor
+     * @param numeroSurtidor El número del surtidor
+     * @return El identificador del empleado
+     */
+    public int getEmpleadoAsignado( int numeroSurtidor )
+    {
+        return empleadosAsignados[ numeroSurtidor ];
+    }
+
+    public int getCantidadDinero( int idEmpleado )
+    {
+        return dineroEmpleados[ idEmpleado ];
+    }
+
+    /**
+     * Retorna el total de galones de un tipo de gasolina vendidos en todos los surtidores
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones
+     */
+    public double getTotalGalonesVendidos( int idTipoGasolina )
+    {
+        double total = 0;
+        int cantidadSurtidores = empleadosAsignados.length;
+        int inicio = idTipoGasolina * cantidadSurtidores;
+        for( int posicion = inicio; posicion < inicio + cantidadSurtidores; posicion++ )
+        {
+            total += galonesVendidos[ posicion ];
+        }
+        return total;
+    }
+
+    /**
+     * Retorna el total de dinero que tienen todos los empleados
+     * @return La cantidad de dinero
+     */
+    public long getTotalDinero( )
+    {
+        long total = 0;
+        for( int dinero : dineroEmpleados )
+        {
+            total += dinero;
+        }
+        return total;
+    }
+}
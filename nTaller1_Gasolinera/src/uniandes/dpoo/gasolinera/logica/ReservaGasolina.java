@@ -0,0 +1,144 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Una reserva de gasolina para una venta prepagada: cuando el cliente paga se aparta la gasolina del inventario, y cuando la manguera se detiene se confirma la cantidad
+ * que realmente se entregó. Si la reserva no se confirma ni se libera antes de su vencimiento, la gasolinera la vence y devuelve la gasolina al inventario.
+ *
+ * Una reserva sólo se puede resolver una vez: el cambio de estado es atómico, así que si se confirma y se vence al mismo tiempo sólo una de las dos operaciones tiene
+ * efecto.
+ */
+public class ReservaGasolina
+{
+    /**
+     * Los estados de una reserva
+     */
+    public enum EstadoReserva
+    {
+        ACTIVA, CONFIRMADA, LIBERADA, VENCIDA
+    }
+
+    /**
+     * El identificador de la reserva
+     */
+    private final long id;
+
+    /**
+     * El identificador del tipo de gasolina reservado
+     */
+    private final int idTipoGasolina;
+
+    /**
+     * El número del surtidor donde se hace la venta
+     */
+    private final int numeroSurtidor;
+
+    /**
+     * La cantidad de galones que pidió el cliente
+     */
+    private final double galonesSolicitados;
+
+    /**
+     * La cantidad de galones que se apartaron del inventario. Es menor que la solicitada si no había suficiente gasolina
+     */
+    private final double galonesReservados;
+
+    /**
+     * El precio por galón con el que se hace la venta, ya ajustado con la tabla de precios
+     */
+    private final int precioPorGalon;
+
+    /**
+     * La versión del precio base con la que se calculó el precio por galón
+     */
+    private final int versionPrecio;
+
+    /**
+     * El instante en el que vence la reserva, en la escala de System.nanoTime
+     */
+    private final long vencimiento;
+
+    /**
+     * El estado de la reserva
+     */
+    private final AtomicReference<EstadoReserva> estado;
+
+    ReservaGasolina( long id, int idTipoGasolina, int numeroSurtidor, double galonesSolicitados, double galonesReservados, int precioPorGalon, int versionPrecio,
+                     long vencimiento )
+    {
+        this.id = id;
+        this.idTipoGasolina = idTipoGasolina;
+        this.numeroSurtidor = numeroSurtidor;
+        this.galonesSolicitados = galonesSolicitados;
+        this.galonesReservados = galonesReservados;
+        this.precioPorGalon = precioPorGalon;
+        this.versionPrecio = versionPrecio;
+        this.vencimiento = vencimiento;
+        this.estado = new AtomicReference<EstadoReserva>( EstadoReserva.ACTIVA );
+    }
+
+    public long getId( )
+    {
+        return id;
+    }
+
+    public int getIdTipoGasolina( )
+    {
+        return idTipoGasolina;
+    }
+
+    public int getNumeroSurtidor( )
+    {
+        return numeroSurtidor;
+    }
+
+    public double getGalonesSolicitados( )
+    {
+        return galonesSolicitados;
+    }
+
+    public double getGalonesReservados( )
+    {
+        return galonesReservados;
+    }
+
+    public int getPrecioPorGalon( )
+    {
+        return precioPorGalon;
+    }
+
+    public int getVersionPrecio( )
+    {
+        return versionPrecio;
+    }
+
+    /**
+     * Retorna el valor que se autorizó cobrar: el precio de los galones reservados, redondeado al entero más cercano
+     * @return El valor autorizado
+     */
+    public int getValorAutorizado( )
+    {
+        return ( int )Math.round( precioPorGalon * galonesReservados );
+    }
+
+    public long getVencimiento( )
+    {
+        return vencimiento;
+    }
+
+    public EstadoReserva getEstado( )
+    {
+        return estado.get( );
+    }
+
+    /**
+     * Resuelve la reserva si todavía está activa
+     * @param nuevoEstado El estado en el que queda la reserva
+     * @return Retorna true si la reserva estaba activa y quedó en el nuevo estado
+     */
+    boolean resolver( EstadoReserva nuevoEstado )
+    {
+        return estado.compareAndSet( EstadoReserva.ACTIVA, nuevoEstado );
+    }
+}
@@ -1,70 +1,111 @@
 package uniandes.dpoo.gasolinera.logica;
 
-import java.util.HashMap;
 import java.util.Map;
-import java.util.Set;
 
 /**
  * Esta clase representa a un surtidor de gasolina en la gasolinera.
- * 
+ *
  * Todos los surtidores entregan gasolina de los mismos tanques, pero cada surtidor lleva la cuenta de cuánto ha entregado, de cada tipo de gasolina.
  *
+ * Un Surtidor es una vista sobre una posición de un AlmacenSurtidores, que es donde realmente se guardan los galones vendidos y el empleado asignado. Por eso dos
+ * objetos Surtidor con el mismo almacén y el mismo número representan al mismo surtidor, y crear uno cuesta muy poco.
  */
 public class Surtidor
 {
-
     /**
-     * Un mapa donde se lleva la cuenta de los galones de gasolina entregados por tipo de gasolina.
-     * 
-     * La llave del mapa es el nombre del tipo de gasolina, y el valor es la cantidad de galones.
+     * El almacén donde está el estado del surtidor
      */
-    private Map<String, Double> galonesVendidos;
+    private final AlmacenSurtidores almacen;
 
     /**
-     * Un mapa de los tipos de gasolina en venta: las llaves son el nombre del tipo de gasolina
+     * La posición del surtidor en el almacén
      */
-    private Map<String, TipoGasolina> tiposGasolina;
+    private final int numero;
 
     /**
-     * El empleado que está asignado para atender el surtidor
+     * Construye un surtidor independiente, con su propio almacén
+     * @param tiposGasolina Los tipos de gasolina disponibles en el surtidor, según su nombre
+     * @param empleado El empleado asignado al surtidor
      */
-    private Empleado empleadoAsignado;
-
     public Surtidor( Map<String, TipoGasolina> tiposGasolina, Empleado empleado )
     {
-        this.empleadoAsignado = empleado;
-        this.tiposGasolina = tiposGasolina;
-
-        galonesVendidos = new HashMap<String, Double>( );
-        for( String nombreTipo : tiposGasolina.keySet( ) )
+        TablaSimbolos simbolosTipos = new TablaSimbolos( );
+        TipoGasolina[] tiposPorId = new TipoGasolina[tiposGasolina.size( )];
+        for( TipoGasolina tipo : tiposGasolina.values( ) )
         {
-            galonesVendidos.put( nombreTipo, new Double( 0 ) );
+            tiposPorId[ simbolosTipos.registrar( tipo.getNombre( ) ) ] = tipo;
         }
+        AlmacenSurtidoresMemoria almacenPropio = new AlmacenSurtidoresMemoria( simbolosTipos, tiposPorId, new Empleado[0], 1 );
+        this.numero = almacenPropio.agregarSurtidor( empleado );
+        this.almacen = almacenPropio;
+    }
+
+    /**
+     * Construye la vista de un surtidor de un almacén
+     * @param almacen El almacén donde está el estado del surtidor
+     * @param numero La posición del surtidor en el almacén
+     */
+    Surtidor( AlmacenSurtidores almacen, int numero )
+    {
+        this.almacen = almacen;
+        this.numero = numero;
     }
 
     public Empleado getEmpleadoAsignado( )
     {
-        return empleadoAsignado;
+        return almacen.getEmpleadoAsignado( numero );
+    }
+
+    /**
+     * Cambia el empleado que atiende el surtidor. Las ventas que ya habían empezado le entregan el dinero al empleado anterior.
+     * @param empleado El nuevo empleado asignado
+     * @throws IllegalArgumentException Si el surtidor es de una gasolinera y el empleado no es uno de sus empleados (ver Gasolinera.getEmpleado)
+     */
+    public void asignarEmpleado( Empleado empleado )
+    {
+        almacen.asignarEmpleado( numero, empleado );
     }
 
     /**
      * Retorna la cantidad de galones de gasolina vendidos en el surtidor según el tipo de gasolina.
      * @param nombreTipoGasolina El nombre del tipo de gasolina
-     * @return La cantidad de galones, o null si el tipo de gasolina no se ofrece en el surtidor
+     * @return La cantidad de galones
      */
     public double getGalonesVendidos( String nombreTipoGasolina )
     {
-        return galonesVendidos.get( nombreTipoGasolina );
+        return getGalonesVendidos( almacen.getSimbolosTipos( ).getId( nombreTipoGasolina ) );
+    }
+
+    /**
+     * Retorna la cantidad de galones de gasolina vendidos en el surtidor según el tipo de gasolina.
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return La cantidad de galones
+     */
+    public double getGalonesVendidos( int idTipoGasolina )
+    {
+        return almacen.getGalonesVendidos( numero, idTipoGasolina );
     }
 
     /**
-     * Cambia la cantidad de galones vendidos de un cierto tipo de gasolina
+     * Cambia la cantidad de galones vendidos de un cierto tipo de gasolina. Si el tipo de gasolina no se ofrece en el surtidor, no se hace nada.
      * @param nombreTipoGasolina El nombre del tipo de gasolina
      * @param cantidad La nueva cantidad que estará registrada en el surtidor
      */
     public void cambiarGalonesVendidos( String nombreTipoGasolina, double cantidad )
     {
-        galonesVendidos.put( nombreTipoGasolina, cantidad );
+        int id = almacen.getSimbolosTipos( ).getId( nombreTipoGasolina );
+        if( id >= 0 )
+            almacen.cambiarGalonesVendidos( numero, id, cantidad );
+    }
+
+    /**
+     * Cambia la cantidad de galones vendidos de un cierto tipo de gasolina, identificando el tipo por su identificador
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param cantidad La nueva cantidad que estará registrada en el surtidor
+     */
+    public void cambiarGalonesVendidos( int idTipoGasolina, double cantidad )
+    {
+        almacen.cambiarGalonesVendidos( numero, idTipoGasolina, cantidad );
     }
 
     /**
@@ -73,9 +114,7 @@ public class Surtidor
      */
     public String[] getTiposGasolina( )
     {
-        Set<String> conjuntoLlaves = tiposGasolina.keySet( );
-        String[] dummy = new String[]{}; // Este arreglo vacío sirve solo para indicarle el tipo al método toArray de Collection
-        return conjuntoLlaves.toArray( dummy );
+        return almacen.getSimbolosTipos( ).getNombres( );
     }
 
     /**
@@ -85,32 +124,60 @@ public class Surtidor
      */
     public TipoGasolina getTipoGasolina( String nombreTipoGasolina )
     {
-        return tiposGasolina.get( nombreTipoGasolina );
+        int id = almacen.getSimbolosTipos( ).getId( nombreTipoGasolina );
+        return id < 0 ? null : almacen.getTiposGasolina( )[ id ];
     }
 
     /**
      * Este método registra una venta de gasolina en el surtidor. El método debe hacer dos acciones:
-     * 
+     *
      * 1. Calcular el precio de la gasolina vendida y registrar que el empleado tiene esa cantidad de dinero
-     * 
+     *
      * 2. Actualizar la cantidad de gasolina vendida en el surtidor
-     * 
+     *
      * @param nombreTipoGasolina El tipo de gasolina que se vendió
      * @param cantidadEntregada La cantidad de galones de gasolina que se le entregaron al cliente
      * @return El precio de la compra, redondeado al entero más cercano
      */
     public int venderGasolina( String nombreTipoGasolina, double cantidadEntregada )
     {
-        // Calcular el precio de la gasolina vendida y registrar que el empleado tiene esa cantidad de dinero
-        TipoGasolina tipo = tiposGasolina.get( nombreTipoGasolina );
-        int precio = ( int )Math.round( tipo.getPrecioPorGalon( ) * cantidadEntregada );
-        empleadoAsignado.agregarDinero( precio );
+        return venderGasolina( almacen.getSimbolosTipos( ).getId( nombreTipoGasolina ), cantidadEntregada );
+    }
 
-        // Actualizar la cantidad de gasolina vendida en el surtidor
-        double cantidadAnterior = galonesVendidos.get( nombreTipoGasolina );
-        galonesVendidos.put( nombreTipoGasolina, cantidadAnterior + cantidadEntregada );
+    /**
+     * Registra una venta de gasolina en el surtidor, identificando el tipo de gasolina por su identificador en lugar de su nombre
+     * @param idTipoGasolina El identificador del tipo de gasolina que se vendió
+     * @param cantidadEntregada La cantidad de galones de gasolina que se le entregaron al cliente
+     * @return El precio de la compra, redondeado al entero más cercano
+     */
+    public int venderGasolina( int idTipoGasolina, double cantidadEntregada )
+    {
+        return venderGasolina( idTipoGasolina, cantidadEntregada, 0 );
+    }
 
-        return precio;
+    /**
+     * Registra una venta de gasolina en el surtidor a un cliente con un nivel de fidelidad. El precio por galón se ajusta con la tabla de precios de la gasolinera, si
+     * tiene una.
+     * @param idTipoGasolina El identificador del tipo de gasolina que se vendió
+     * @param cantidadEntregada La cantidad de galones de gasolina que se le entregaron al cliente
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio de la compra, redondeado al entero más cercano
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe en la tabla de precios
+     */
+    public int venderGasolina( int idTipoGasolina, double cantidadEntregada, int nivelFidelidad )
+    {
+        // El empleado se lee una sola vez, y recibe el dinero completo aunque lo cambien durante la venta
+        int precioBase = almacen.getTiposGasolina( )[ idTipoGasolina ].getPrecioPorGalon( );
+        int precioPorGalon = almacen.precioPorGalon( idTipoGasolina, precioBase, cantidadEntregada, nivelFidelidad );
+        return almacen.venderGasolina( numero, idTipoGasolina, cantidadEntregada, precioPorGalon, almacen.getEmpleadoAsignado( numero ) );
     }
 
+    /**
+     * Retorna el número del surtidor en su almacén
+     * @return La posición del surtidor
+     */
+    public int getNumero( )
+    {
+        return numero;
+    }
 }
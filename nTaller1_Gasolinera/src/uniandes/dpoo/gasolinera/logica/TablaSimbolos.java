@@ -0,0 +1,97 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Una tabla que le asigna a cada nombre un identificador entero, empezando en 0 y sin dejar huecos.
+ *
+ * La gasolinera usa una tabla para los tipos de gasolina y otra para los empleados. Así, las operaciones frecuentes pueden trabajar con posiciones en arreglos en lugar de
+ * buscar los nombres en mapas. Los nombres se registran cuando se crea o se carga la gasolinera; después de eso la tabla sólo se consulta, y por eso se puede compartir
+ * entre threads.
+ */
+public class TablaSimbolos
+{
+    /**
+     * El identificador de cada nombre registrado
+     */
+    private Map<String, Integer> identificadores;
+
+    /**
+     * Los nombres registrados, en la posición de su identificador
+     */
+    private String[] nombres;
+
+    /**
+     * La cantidad de nombres registrados
+     */
+    private int cantidad;
+
+    /**
+     * Construye una tabla vacía
+     */
+    public TablaSimbolos( )
+    {
+        identificadores = new HashMap<String, Integer>( );
+        nombres = new String[8];
+        cantidad = 0;
+    }
+
+    /**
+     * Registra un nombre en la tabla, si no estaba registrado, y retorna su identificador
+     * @param nombre El nombre que se quiere registrar
+     * @return El identificador del nombre. Si el nombre ya estaba registrado, es el mismo identificador que se le había asignado
+     */
+    public int registrar( String nombre )
+    {
+        Integer id = identificadores.get( nombre );
+        if( id != null )
+            return id;
+
+        if( cantidad == nombres.length )
+            nombres = Arrays.copyOf( nombres, cantidad * 2 );
+        nombres[ cantidad ] = nombre;
+        identificadores.put( nombre, cantidad );
+        return cantidad++;
+    }
+
+    /**
+     * Retorna el identificador de un nombre
+     * @param nombre El nombre buscado
+     * @return El identificador del nombre, o -1 si el nombre no está registrado
+     */
+    public int getId( String nombre )
+    {
+        Integer id = identificadores.get( nombre );
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * Retorna el nombre que tiene un identificador
+     * @param id El identificador. Debe estar entre 0 y getCantidad( ) - 1
+     * @return El nombre con ese identificador
+     */
+    public String getNombre( int id )
+    {
+        return nombres[ id ];
+    }
+
+    /**
+     * Retorna la cantidad de nombres registrados. Los identificadores van desde 0 hasta esta cantidad menos 1.
+     * @return La cantidad de nombres
+     */
+    public int getCantidad( )
+    {
+        return cantidad;
+    }
+
+    /**
+     * Retorna un arreglo nuevo con todos los nombres registrados, cada uno en la posición de su identificador
+     * @return Un arreglo con un elemento por cada nombre
+     */
+    public String[] getNombres( )
+    {
+        return Arrays.copyOf( nombres, cantidad );
+    }
+}
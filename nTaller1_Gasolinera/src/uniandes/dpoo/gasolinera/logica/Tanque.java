@@ -0,0 +1,66 @@
+package uniandes.dpoo.gasolinera.logica;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Un tanque físico donde se guarda parte del inventario de un tipo de gasolina.
+ *
+ * Cada tanque tiene su propio candado, así que las ventas que sacan gasolina de tanques distintos no compiten entre ellas. Sólo el tipo de gasolina al que pertenece el
+ * tanque puede modificar su contenido.
+ */
+public class Tanque
+{
+    /**
+     * La posición del tanque entre los tanques de su tipo de gasolina
+     */
+    private final int numero;
+
+    /**
+     * El candado que protege la cantidad de gasolina del tanque
+     */
+    final ReentrantLock candado = new ReentrantLock( );
+
+    /**
+     * La cantidad de galones que hay en el tanque. Sólo se modifica con el candado; es volatile para que las consultas no lo necesiten.
+     */
+    private volatile double cantidad;
+
+    Tanque( int numero, double cantidad )
+    {
+        this.numero = numero;
+        this.cantidad = cantidad;
+    }
+
+    public int getNumero( )
+    {
+        return numero;
+    }
+
+    public double getCantidad( )
+    {
+        return cantidad;
+    }
+
+    /**
+     * Saca gasolina del tanque. Se debe tener el candado del tanque.
+     * @param cantidadMaxima La cantidad de galones que se quiere sacar
+     * @return La cantidad que se sacó: la solicitada o, si no alcanza, todo lo que había
+     */
+    double sacar( double cantidadMaxima )
+    {
+        double sacada = Math.min( cantidadMaxima, cantidad );
+        cantidad -= sacada;
+        return sacada;
+    }
+
+    /**
+     * Agrega gasolina al tanque. Se debe tener el candado del tanque.
+     * @param cantidadRecibida La cantidad de galones que se agrega
+     * @return La cantidad de galones que quedó en el tanque
+     */
+    double agregar( double cantidadRecibida )
+    {
+        cantidad += cantidadRecibida;
+        return cantidad;
+    }
+}
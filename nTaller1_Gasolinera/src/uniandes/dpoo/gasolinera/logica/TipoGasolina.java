@@ -1,25 +1,69 @@
 package uniandes.dpoo.gasolinera.logica;
 
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.DoubleAdder;
+
 import uniandes.dpoo.gasolinera.exceptions.GasolinaInsuficienteException;
+import uniandes.dpoo.gasolinera.inventario.DespachoRepartido;
+import uniandes.dpoo.gasolinera.inventario.PoliticaDespacho;
 
 /**
  * Encapsula la información sobre un tipo de gasolina disponible en la gasolinera.
  * 
- * Esta clase será la encargada de saber cuánta gasolina de un determinado tipo hay aún disponible en la gasolinera
+ * Esta clase será la encargada de saber cuánta gasolina de un determinado tipo hay aún disponible en la gasolinera. El inventario puede estar repartido en varios
+ * tanques, cada uno con su propio candado; una política de despacho decide de qué tanque empieza a sacar cada venta.
  */
 public class TipoGasolina
 {
     private String nombre;
 
-    private int precioPorGalon;
+    /**
+     * El precio por galón y su versión, empacados en un solo long (ver empacarPrecio). Como los dos cambian juntos con una sola operación atómica, una venta que lee
+     * este valor una vez usa un precio y una versión que corresponden entre sí, sin necesidad de ningún candado.
+     */
+    private final AtomicLong precioVersionado;
+
+    /**
+     * Los tanques donde está el inventario de este tipo de gasolina
+     */
+    private final Tanque[] tanques;
 
-    private double cantidadDisponible;
+    /**
+     * La política que decide por cuál tanque empieza cada venta
+     */
+    private final PoliticaDespacho politica;
+
+    /**
+     * La cantidad de galones apartados en reservas que todavía no se han confirmado ni liberado. Esa gasolina ya salió de los tanques, así que no cuenta en la cantidad
+     * disponible
+     */
+    private final DoubleAdder cantidadReservada = new DoubleAdder( );
 
     public TipoGasolina( String nombre, int precioPorGalon, double cantidadDisponible )
     {
+        this( nombre, precioPorGalon, new double[]{ cantidadDisponible }, new DespachoRepartido( ) );
+    }
+
+    /**
+     * Construye un tipo de gasolina cuyo inventario está repartido en varios tanques. Los archivos de estado sólo guardan un tanque por tipo de gasolina, así que una
+     * gasolinera con un tipo de varios tanques no se puede guardar (ver Gasolinera.guardarEstado)
+     * @param nombre El nombre del tipo de gasolina
+     * @param precioPorGalon El precio por galón
+     * @param cantidadesTanques La cantidad inicial de galones de cada tanque. Debe tener al menos un tanque
+     * @param politica La política que decide por cuál tanque empieza cada venta
+     */
+    public TipoGasolina( String nombre, int precioPorGalon, double[] cantidadesTanques, PoliticaDespacho politica )
+    {
+        if( cantidadesTanques.length == 0 )
+            throw new IllegalArgumentException( "El tipo de gasolina " + nombre + " debe tener al menos un tanque" );
         this.nombre = nombre;
-        this.precioPorGalon = precioPorGalon;
-        this.cantidadDisponible = cantidadDisponible;
+        this.precioVersionado = new AtomicLong( empacarPrecio( precioPorGalon, 0 ) );
+        this.tanques = new Tanque[cantidadesTanques.length];
+        for( int i = 0; i < tanques.length; i++ )
+        {
+            tanques[ i ] = new Tanque( i, cantidadesTanques[ i ] );
+        }
+        this.politica = politica;
     }
 
     public String getNombre( )
@@ -29,25 +73,345 @@ public class TipoGasolina
 
     public int getPrecioPorGalon( )
     {
-        return precioPorGalon;
+        return precioDe( getPrecioVersionado( ) );
+    }
+
+    /**
+     * Retorna la versión del precio actual. La versión empieza en 0 y aumenta en 1 cada vez que cambia el precio
+     * @return La versión del precio
+     */
+    public int getVersionPrecio( )
+    {
+        return versionDe( getPrecioVersionado( ) );
+    }
+
+    /**
+     * Retorna el precio por galón y su versión empacados en un solo valor. Quien necesite el precio y la versión de un mismo momento debe leer este valor una sola vez
+     * y extraer las partes con precioDe y versionDe.
+     * @return El precio empacado con su versión
+     */
+    public long getPrecioVersionado( )
+    {
+        return precioVersionado.get( );
+    }
+
+    /**
+     * Cambia el precio empacado si todavía tiene el valor esperado
+     * @param esperado El valor que se espera que tenga el precio empacado
+     * @param nuevo El nuevo valor
+     * @return Retorna true si se hizo el cambio
+     */
+    boolean compararYCambiarPrecioVersionado( long esperado, long nuevo )
+    {
+        return precioVersionado.compareAndSet( esperado, nuevo );
+    }
+
+    /**
+     * Cambia el precio por galón. El cambio es atómico y no detiene las ventas: las ventas que ya leyeron el precio terminan con el precio anterior y las siguientes
+     * usan el nuevo.
+     * @param nuevoPrecio El nuevo precio por galón
+     * @return La versión del nuevo precio
+     * @throws IllegalArgumentException Si el precio no es positivo. Un precio de 0 haría que las ventas por precio dividieran por cero
+     */
+    public int cambiarPrecio( int nuevoPrecio )
+    {
+        if( nuevoPrecio <= 0 )
+            throw new IllegalArgumentException( "El precio de la gasolina " + nombre + " debe ser positivo" );
+
+        long actual;
+        long nuevo;
+        do
+        {
+            actual = getPrecioVersionado( );
+            nuevo = empacarPrecio( nuevoPrecio, versionDe( actual ) + 1 );
+        } while( !compararYCambiarPrecioVersionado( actual, nuevo ) );
+        return versionDe( nuevo );
+    }
+
+    /**
+     * Empaca un precio y su versión en un solo long: la versión en los 32 bits altos y el precio en los 32 bits bajos
+     * @param precio El precio por galón
+     * @param version La versión del precio
+     * @return El precio empacado
+     */
+    public static long empacarPrecio( int precio, int version )
+    {
+        return ( ( long )version << 32 ) | ( precio & 0xFFFFFFFFL );
     }
 
+    /**
+     * Extrae el precio por galón de un precio empacado
+     */
+    public static int precioDe( long precioVersionado )
+    {
+        return ( int )precioVersionado;
+    }
+
+    /**
+     * Extrae la versión de un precio empacado
+     */
+    public static int versionDe( long precioVersionado )
+    {
+        return ( int ) ( precioVersionado >>> 32 );
+    }
+
+    /**
+     * Retorna la cantidad de galones disponibles sumando todos los tanques. Si hay ventas al mismo tiempo, la suma puede no incluirlas; la gasolinera se encarga de que
+     * sus instantáneas sean consistentes.
+     * @return La cantidad de galones disponibles
+     */
     public double getCantidadDisponible( )
     {
-        return cantidadDisponible;
+        double total = 0;
+        for( Tanque tanque : tanques )
+        {
+            total += tanque.getCantidad( );
+        }
+        return total;
+    }
+
+    public int getCantidadTanques( )
+    {
+        return tanques.length;
+    }
+
+    public Tanque getTanque( int numeroTanque )
+    {
+        return tanques[ numeroTanque ];
+    }
+
+    public PoliticaDespacho getPolitica( )
+    {
+        return politica;
     }
 
+    /**
+     * Despacha la cantidad solicitada, sacándola de uno o varios tanques. Para revisar si alcanza y despachar en un solo paso, toma los candados de todos los tanques.
+     * @param cantidadSolicitada La cantidad de galones solicitada
+     * @throws GasolinaInsuficienteException Si entre todos los tanques no hay la cantidad solicitada. En ese caso no se despacha nada
+     */
     public void despacharGasolina( double cantidadSolicitada ) throws GasolinaInsuficienteException
     {
-        // Verificar si hay suficiente gasolina y lanzar una excepción si no alcanza
-        if( cantidadSolicitada > cantidadDisponible )
+        bloquearTodos( );
+        try
+        {
+            // Verificar si hay suficiente gasolina y lanzar una excepción si no alcanza
+            double cantidadDisponible = getCantidadDisponible( );
+            if( cantidadSolicitada > cantidadDisponible )
+            {
+                GasolinaInsuficienteException ex = new GasolinaInsuficienteException( nombre, cantidadDisponible, cantidadSolicitada );
+                throw ex;
+            }
+
+            // Reducir la cantidad disponible
+            sacarDeTodos( cantidadSolicitada, politica.primerTanque( tanques ) );
+        }
+        finally
+        {
+            desbloquearTodos( );
+        }
+    }
+
+    /**
+     * Despacha la cantidad solicitada o, si no alcanza, toda la gasolina que quede de este tipo.
+     * 
+     * A diferencia de despacharGasolina, la revisión y el despacho se hacen en un solo paso, así que otra venta no puede llevarse la gasolina entre los dos.
+     * 
+     * Los tanques se recorren a partir del que indique la política. Primero se saca de los tanques que no estén ocupados, luego se espera por los ocupados que tengan
+     * gasolina, y sólo si con eso no se completa la cantidad se toman los candados de todos los tanques para sacar lo que quede. Así el resultado es el mismo que con un
+     * solo tanque: la venta se completa si entre todos los tanques hay suficiente gasolina.
+     * @param cantidadSolicitada La cantidad de galones solicitada
+     * @return La cantidad de galones que realmente se despachó
+     */
+    public double despacharDisponible( double cantidadSolicitada )
+    {
+        int cantidadTanques = tanques.length;
+        int primero = politica.primerTanque( tanques );
+        double cantidadEntregada = 0;
+
+        // Primera vuelta: los tanques con gasolina que no estén ocupados por otra venta
+        for( int i = 0; i < cantidadTanques && cantidadEntregada < cantidadSolicitada; i++ )
         {
-            GasolinaInsuficienteException ex = new GasolinaInsuficienteException( nombre, cantidadDisponible, cantidadSolicitada );
-            throw ex;
+            Tanque tanque = tanques[ ( primero + i ) % cantidadTanques ];
+            if( tanque.getCantidad( ) > 0 && tanque.candado.tryLock( ) )
+            {
+                try
+                {
+                    cantidadEntregada += tanque.sacar( cantidadSolicitada - cantidadEntregada );
+                }
+                finally
+                {
+                    tanque.candado.unlock( );
+                }
+            }
         }
 
-        // Reducir la cantidad disponible
-        cantidadDisponible -= cantidadSolicitada;
+        // Segunda vuelta: se espera por los tanques con gasolina que estaban ocupados
+        for( int i = 0; i < cantidadTanques && cantidadEntregada < cantidadSolicitada; i++ )
+        {
+            Tanque tanque = tanques[ ( primero + i ) % cantidadTanques ];
+            if( tanque.getCantidad( ) > 0 )
+            {
+                tanque.candado.lock( );
+                try
+                {
+                    cantidadEntregada += tanque.sacar( cantidadSolicitada - cantidadEntregada );
+                }
+                finally
+                {
+                    tanque.candado.unlock( );
+                }
+            }
+        }
+
+        // Si todavía falta, puede ser que no alcance: se revisan todos los tanques a la vez y se saca lo que quede
+        if( cantidadEntregada < cantidadSolicitada )
+        {
+            bloquearTodos( );
+            try
+            {
+                cantidadEntregada += sacarDeTodos( cantidadSolicitada - cantidadEntregada, primero );
+            }
+            finally
+            {
+                desbloquearTodos( );
+            }
+        }
+        return cantidadEntregada;
+    }
+
+    /**
+     * Saca gasolina de los tanques en orden circular. Se deben tener los candados de todos los tanques.
+     * @param cantidadMaxima La cantidad de galones que se quiere sacar
+     * @param primero La posición del primer tanque del recorrido
+     * @return La cantidad que se sacó
+     */
+    private double sacarDeTodos( double cantidadMaxima, int primero )
+    {
+        double sacada = 0;
+        for( int i = 0; i < tanques.length && sacada < cantidadMaxima; i++ )
+        {
+            sacada += tanques[ ( primero + i ) % tanques.length ].sacar( cantidadMaxima - sacada );
+        }
+        return sacada;
+    }
+
+    /**
+     * Toma los candados de todos los tanques, siempre en el mismo orden para que dos ventas no se bloqueen entre ellas
+     */
+    private void bloquearTodos( )
+    {
+        for( Tanque tanque : tanques )
+        {
+            tanque.candado.lock( );
+        }
+    }
+
+    private void desbloquearTodos( )
+    {
+        for( int i = tanques.length - 1; i >= 0; i-- )
+        {
+            tanques[ i ].candado.unlock( );
+        }
+    }
+
+    /**
+     * Agrega gasolina al inventario, por ejemplo cuando llega un carrotanque. La gasolina se agrega al tanque que tenga menos. Usa el mismo candado que los despachos de
+     * ese tanque, así que se puede llamar mientras se hacen ventas sin que se pierda ninguna de las dos actualizaciones.
+     * @param cantidadRecibida La cantidad de galones recibidos
+     * @return La cantidad de galones disponibles después de la recarga
+     * @throws IllegalArgumentException Si la cantidad no es positiva
+     */
+    public double recargar( double cantidadRecibida )
+    {
+        int elegido = 0;
+        for( int i = 1; i < tanques.length; i++ )
+        {
+            if( tanques[ i ].getCantidad( ) < tanques[ elegido ].getCantidad( ) )
+                elegido = i;
+        }
+        recargarTanque( elegido, cantidadRecibida );
+        return getCantidadDisponible( );
+    }
+
+    /**
+     * Agrega gasolina a un tanque específico
+     * @param numeroTanque La posición del tanque
+     * @param cantidadRecibida La cantidad de galones recibidos
+     * @return La cantidad de galones que quedó en el tanque
+     * @throws IllegalArgumentException Si la cantidad no es positiva
+     */
+    public double recargarTanque( int numeroTanque, double cantidadRecibida )
+    {
+        verificarRecarga( cantidadRecibida );
+        Tanque tanque = tanques[ numeroTanque ];
+        tanque.candado.lock( );
+        try
+        {
+            return tanque.agregar( cantidadRecibida );
+        }
+        finally
+        {
+            tanque.candado.unlock( );
+        }
+    }
+
+    /**
+     * Aparta gasolina para una venta prepagada. La gasolina sale de los tanques igual que en despacharDisponible, así que las reservas abiertas nunca suman más de lo que
+     * había: si no alcanza, se reserva todo lo que quede.
+     * @param cantidadSolicitada La cantidad de galones que se quiere reservar
+     * @return La cantidad de galones que realmente se reservó
+     */
+    public double reservar( double cantidadSolicitada )
+    {
+        double cantidadReservadaAhora = despacharDisponible( cantidadSolicitada );
+        cantidadReservada.add( cantidadReservadaAhora );
+        return cantidadReservadaAhora;
+    }
+
+    /**
+     * Confirma una reserva cuando termina la venta: la gasolina entregada queda despachada y lo que sobró vuelve a los tanques
+     * @param galonesReservados La cantidad de galones que se habían reservado
+     * @param galonesEntregados La cantidad de galones que realmente se entregaron
+     * @throws IllegalArgumentException Si la cantidad entregada es negativa o mayor a la reservada
+     */
+    public void confirmarReserva( double galonesReservados, double galonesEntregados )
+    {
+        if( galonesEntregados < 0 || galonesEntregados > galonesReservados )
+            throw new IllegalArgumentException( "No se pueden entregar " + galonesEntregados + " galones de gasolina " + nombre + " con una reserva de " + galonesReservados );
+        cantidadReservada.add( -galonesReservados );
+        double sobrante = galonesReservados - galonesEntregados;
+        if( sobrante > 0 )
+            recargar( sobrante );
+    }
+
+    /**
+     * Libera una reserva sin entregar nada: toda la gasolina reservada vuelve a los tanques
+     * @param galonesReservados La cantidad de galones que se habían reservado
+     */
+    public void liberarReserva( double galonesReservados )
+    {
+        confirmarReserva( galonesReservados, 0 );
+    }
+
+    /**
+     * Retorna la cantidad de galones apartados en reservas abiertas
+     * @return La cantidad de galones reservados
+     */
+    public double getCantidadReservada( )
+    {
+        return cantidadReservada.sum( );
+    }
+
+    /**
+     * Revisa que una cantidad se pueda recargar
+     * @param cantidadRecibida La cantidad de galones recibidos
+     * @throws IllegalArgumentException Si la cantidad no es positiva
+     */
+    void verificarRecarga( double cantidadRecibida )
+    {
+        if( !( cantidadRecibida > 0 ) || Double.isInfinite( cantidadRecibida ) )
+            throw new IllegalArgumentException( "La cantidad recibida de gasolina " + nombre + " debe ser positiva" );
     }
 
     @Override
@@ -0,0 +1,43 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder que se registra cuando llega una entrega de gasolina y se recarga el inventario de un tipo de gasolina
+ */
+@Name("uniandes.gasolinera.Entrega")
+@Label("Entrega de gasolina")
+@Description("Una recarga del inventario de un tipo de gasolina")
+@Category("Gasolinera")
+@StackTrace(false)
+public class EventoEntregaJfr extends Event
+{
+    @Label("Tipo de gasolina")
+    String tipoGasolina;
+
+    @Label("Galones recibidos")
+    double galonesRecibidos;
+
+    @Label("Galones disponibles")
+    double galonesDisponibles;
+
+    /**
+     * Registra una entrega, si la grabación lo pide
+     */
+    public static void registrar( String tipoGasolina, double galonesRecibidos, double galonesDisponibles )
+    {
+        EventoEntregaJfr evento = new EventoEntregaJfr( );
+        if( evento.shouldCommit( ) )
+        {
+            evento.tipoGasolina = tipoGasolina;
+            evento.galonesRecibidos = galonesRecibidos;
+            evento.galonesDisponibles = galonesDisponibles;
+            evento.commit( );
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder que se registra cada vez que se toma una instantánea del estado de una gasolinera, con su duración
+ */
+@Name("uniandes.gasolinera.Instantanea")
+@Label("Instantánea del estado")
+@Category("Gasolinera")
+public class EventoInstantaneaJfr extends Event
+{
+    @Label("Versión")
+    long version;
+
+    @Label("Reutilizada")
+    boolean reutilizada;
+
+    @Label("Surtidores")
+    int cantidadSurtidores;
+
+    /**
+     * Termina el evento y lo registra, si la grabación lo pide
+     * @param version La versión del estado que tiene la instantánea
+     * @param reutilizada Indica si se retornó la instantánea anterior porque el estado no había cambiado
+     * @param cantidadSurtidores La cantidad de surtidores copiados
+     */
+    public void completar( long version, boolean reutilizada, int cantidadSurtidores )
+    {
+        end( );
+        if( shouldCommit( ) )
+        {
+            this.version = version;
+            this.reutilizada = reutilizada;
+            this.cantidadSurtidores = cantidadSurtidores;
+            commit( );
+        }
+    }
+}
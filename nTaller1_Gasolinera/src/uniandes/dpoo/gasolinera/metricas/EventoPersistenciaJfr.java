@@ -0,0 +1,54 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * Evento de Java Flight Recorder que se registra cada vez que se guarda o se carga el estado de una gasolinera, con su duración y la cantidad de bytes del archivo
+ */
+@Name("uniandes.gasolinera.Persistencia")
+@Label("Guardar o cargar el estado")
+@Category("Gasolinera")
+public class EventoPersistenciaJfr extends Event
+{
+    /**
+     * La operación que se registra al guardar el estado
+     */
+    public static final String GUARDAR = "guardar";
+
+    /**
+     * La operación que se registra al cargar el estado
+     */
+    public static final String CARGAR = "cargar";
+
+    @Label("Operación")
+    String operacion;
+
+    @Label("Archivo")
+    String archivo;
+
+    @Label("Bytes")
+    @DataAmount
+    long bytes;
+
+    /**
+     * Termina el evento y lo registra, si la grabación lo pide
+     * @param operacion GUARDAR o CARGAR
+     * @param archivo La ruta del archivo
+     * @param bytes El tamaño del archivo
+     */
+    public void completar( String operacion, String archivo, long bytes )
+    {
+        end( );
+        if( shouldCommit( ) )
+        {
+            this.operacion = operacion;
+            this.archivo = archivo;
+            this.bytes = bytes;
+            commit( );
+        }
+    }
+}
@@ -0,0 +1,60 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder que se registra por cada venta de gasolina, con su duración.
+ *
+ * No guarda la pila de llamadas, para que registrar el evento sea barato. La gasolinera sólo crea el evento cuando su tipo está habilitado en una grabación (ver
+ * EventType.isEnabled), así que sin grabación las ventas no crean ningún objeto. El evento se termina con end al salir de la sección de escritura y se registra
+ * después con completar.
+ */
+@Name("uniandes.gasolinera.Venta")
+@Label("Venta de gasolina")
+@Category("Gasolinera")
+@StackTrace(false)
+public class EventoVentaJfr extends Event
+{
+    @Label("Surtidor")
+    int numeroSurtidor;
+
+    @Label("Tipo de gasolina")
+    String tipoGasolina;
+
+    @Label("Galones solicitados")
+    double galonesSolicitados;
+
+    @Label("Galones entregados")
+    double galonesEntregados;
+
+    @Label("Precio")
+    int precio;
+
+    @Label("Versión del precio")
+    int versionPrecio;
+
+    @Label("Empleado")
+    String empleado;
+
+    /**
+     * Registra el evento, si la grabación lo pide. Si todavía no se había terminado con end, la duración llega hasta este momento
+     */
+    public void completar( int numeroSurtidor, String tipoGasolina, double galonesSolicitados, double galonesEntregados, int precio, int versionPrecio, String empleado )
+    {
+        if( shouldCommit( ) )
+        {
+            this.numeroSurtidor = numeroSurtidor;
+            this.tipoGasolina = tipoGasolina;
+            this.galonesSolicitados = galonesSolicitados;
+            this.galonesEntregados = galonesEntregados;
+            this.precio = precio;
+            this.versionPrecio = versionPrecio;
+            this.empleado = empleado;
+            commit( );
+        }
+    }
+}
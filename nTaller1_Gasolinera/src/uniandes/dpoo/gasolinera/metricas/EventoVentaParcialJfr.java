@@ -0,0 +1,48 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Evento de Java Flight Recorder que se registra cuando una venta no se puede completar porque no hay suficiente inventario, es decir, en los casos en los que
+ * TipoGasolina.despacharGasolina lanzaría GasolinaInsuficienteException y la gasolinera entrega lo que hay.
+ */
+@Name("uniandes.gasolinera.VentaParcial")
+@Label("Venta parcial")
+@Description("Una venta que entregó menos gasolina de la solicitada por falta de inventario")
+@Category("Gasolinera")
+@StackTrace(false)
+public class EventoVentaParcialJfr extends Event
+{
+    @Label("Surtidor")
+    int numeroSurtidor;
+
+    @Label("Tipo de gasolina")
+    String tipoGasolina;
+
+    @Label("Galones solicitados")
+    double galonesSolicitados;
+
+    @Label("Galones entregados")
+    double galonesEntregados;
+
+    /**
+     * Registra una venta parcial, si la grabación lo pide
+     */
+    public static void registrar( int numeroSurtidor, String tipoGasolina, double galonesSolicitados, double galonesEntregados )
+    {
+        EventoVentaParcialJfr evento = new EventoVentaParcialJfr( );
+        if( evento.shouldCommit( ) )
+        {
+            evento.numeroSurtidor = numeroSurtidor;
+            evento.tipoGasolina = tipoGasolina;
+            evento.galonesSolicitados = galonesSolicitados;
+            evento.galonesEntregados = galonesEntregados;
+            evento.commit( );
+        }
+    }
+}
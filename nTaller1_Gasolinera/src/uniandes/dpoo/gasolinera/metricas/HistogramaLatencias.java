@@ -0,0 +1,178 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Un histograma de duraciones en nanosegundos, con intervalos de tamaño logarítmico-lineal como los de un HdrHistogram.
+ *
+ * Los valores menores a 64 tienen un intervalo propio cada uno. A partir de ahí, cada potencia de 2 se divide en 32 intervalos iguales, así que el error relativo de
+ * cualquier percentil es menor al 3.2% sin importar si la duración es de microsegundos o de minutos. Los intervalos se crean todos al construir el histograma y
+ * registrar un valor sólo incrementa un contador atómico: no hay candados ni se crean objetos.
+ */
+public class HistogramaLatencias
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La cantidad de bits que se usan para dividir cada potencia de 2
+     */
+    private static final int BITS_SUBINTERVALO = 5;
+
+    /**
+     * La cantidad de intervalos en los que se divide cada potencia de 2
+     */
+    private static final int SUBINTERVALOS = 1 << BITS_SUBINTERVALO;
+
+    /**
+     * Los valores menores a este límite tienen cada uno su propio intervalo
+     */
+    private static final int LIMITE_EXACTO = SUBINTERVALOS * 2;
+
+    /**
+     * La cantidad total de intervalos, suficiente para cualquier valor positivo de tipo long
+     */
+    private static final int CANTIDAD_INTERVALOS = LIMITE_EXACTO + ( 63 - ( BITS_SUBINTERVALO + 1 ) ) * SUBINTERVALOS;
+
+    /**
+     * La cantidad de valores registrados en cada intervalo
+     */
+    private final AtomicLongArray conteos = new AtomicLongArray( CANTIDAD_INTERVALOS );
+
+    /**
+     * La cantidad total de valores registrados
+     */
+    private final LongAdder cantidad = new LongAdder( );
+
+    /**
+     * La suma de todos los valores registrados
+     */
+    private final LongAdder suma = new LongAdder( );
+
+    /**
+     * El mayor valor registrado
+     */
+    private final AtomicLong maximo = new AtomicLong( );
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Registra una duración. Las duraciones negativas se registran como 0
+     * @param nanos La duración en nanosegundos
+     */
+    public void registrar( long nanos )
+    {
+        long valor = Math.max( 0, nanos );
+        conteos.incrementAndGet( intervalo( valor ) );
+        cantidad.increment( );
+        suma.add( valor );
+        if( valor > maximo.get( ) )
+            maximo.accumulateAndGet( valor, Math::max );
+    }
+
+    /**
+     * Calcula el intervalo que le corresponde a un valor
+     */
+    static int intervalo( long valor )
+    {
+        if( valor < LIMITE_EXACTO )
+            return ( int )valor;
+        int bitMayor = 63 - Long.numberOfLeadingZeros( valor );
+        int desplazamiento = bitMayor - BITS_SUBINTERVALO;
+        int sub = ( int ) ( ( valor >>> desplazamiento ) & ( SUBINTERVALOS - 1 ) );
+        return LIMITE_EXACTO + ( bitMayor - ( BITS_SUBINTERVALO + 1 ) ) * SUBINTERVALOS + sub;
+    }
+
+    /**
+     * Calcula el mayor valor que le corresponde a un intervalo
+     */
+    static long limiteSuperior( int intervalo )
+    {
+        if( intervalo < LIMITE_EXACTO )
+            return intervalo;
+        int bitMayor = ( intervalo - LIMITE_EXACTO ) / SUBINTERVALOS + BITS_SUBINTERVALO + 1;
+        int sub = ( intervalo - LIMITE_EXACTO ) % SUBINTERVALOS;
+        int desplazamiento = bitMayor - BITS_SUBINTERVALO;
+        long inferior = ( long ) ( SUBINTERVALOS + sub ) << desplazamiento;
+        return inferior + ( 1L << desplazamiento ) - 1;
+    }
+
+    public long getCantidad( )
+    {
+        return cantidad.sum( );
+    }
+
+    public long getMaximo( )
+    {
+        return maximo.get( );
+    }
+
+    /**
+     * Retorna el promedio de los valores registrados
+     * @return El promedio en nanosegundos, o 0 si no hay valores
+     */
+    public double getPromedio( )
+    {
+        long n = cantidad.sum( );
+        return n == 0 ? 0 : suma.sum( ) / ( double )n;
+    }
+
+    /**
+     * Retorna un percentil de los valores registrados. El resultado es el límite superior del intervalo donde cae el percentil, así que nunca subestima la duración.
+     *
+     * Si hay valores registrándose mientras se calcula, el resultado puede no incluirlos.
+     * @param percentil El percentil, entre 0 y 100
+     * @return El valor del percentil en nanosegundos, o 0 si no hay valores
+     */
+    public long getPercentil( double percentil )
+    {
+        long[] copia = new long[CANTIDAD_INTERVALOS];
+        long total = 0;
+        for( int i = 0; i < CANTIDAD_INTERVALOS; i++ )
+        {
+            copia[ i ] = conteos.get( i );
+            total += copia[ i ];
+        }
+        if( total == 0 )
+            return 0;
+
+        long objetivo = Math.max( 1, ( long )Math.ceil( total * Math.min( 100, Math.max( 0, percentil ) ) / 100 ) );
+        long acumulado = 0;
+        for( int i = 0; i < CANTIDAD_INTERVALOS; i++ )
+        {
+            acumulado += copia[ i ];
+            if( acumulado >= objetivo )
+                return Math.min( limiteSuperior( i ), getMaximo( ) );
+        }
+        return getMaximo( );
+    }
+
+    /**
+     * Borra todos los valores registrados. Los valores que se registren mientras se borra pueden quedar o no
+     */
+    public void reiniciar( )
+    {
+        for( int i = 0; i < CANTIDAD_INTERVALOS; i++ )
+        {
+            conteos.set( i, 0 );
+        }
+        cantidad.reset( );
+        suma.reset( );
+        maximo.set( 0 );
+    }
+
+    /**
+     * Retorna un resumen del histograma con la cantidad de valores y sus percentiles principales en microsegundos
+     */
+    @Override
+    public String toString( )
+    {
+        return String.format( "n=%d promedio=%.1fus p50=%.1fus p99=%.1fus p99.9=%.1fus max=%.1fus", getCantidad( ), getPromedio( ) / 1000, getPercentil( 50 ) / 1000.0,
+                getPercentil( 99 ) / 1000.0, getPercentil( 99.9 ) / 1000.0, getMaximo( ) / 1000.0 );
+    }
+}
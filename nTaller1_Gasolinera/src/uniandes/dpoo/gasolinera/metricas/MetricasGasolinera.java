@@ -0,0 +1,219 @@
+package uniandes.dpoo.gasolinera.metricas;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * Las métricas de operación de una gasolinera: cuántas ventas se han hecho, cuántas de ellas entregaron menos gasolina de la solicitada (ventas parciales), y cuánto
+ * se demoran las ventas y las operaciones de guardar y cargar el estado. También cuentan las entregas de gasolina que llegan a la gasolinera.
+ *
+ * Los contadores por tipo de gasolina y por surtidor se guardan en arreglos atómicos indexados por el identificador del tipo y el número del surtidor, así que
+ * registrar una venta no crea objetos ni usa candados. Las métricas se pueden leer en cualquier momento, incluso mientras se están haciendo ventas.
+ */
+public class MetricasGasolinera
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La duración de las ventas
+     */
+    private final HistogramaLatencias latenciaVentas = new HistogramaLatencias( );
+
+    /**
+     * La duración de las operaciones para guardar el estado
+     */
+    private final HistogramaLatencias latenciaGuardar = new HistogramaLatencias( );
+
+    /**
+     * La duración de las operaciones para cargar el estado
+     */
+    private final HistogramaLatencias latenciaCargar = new HistogramaLatencias( );
+
+    /**
+     * La cantidad de ventas de cada tipo de gasolina
+     */
+    private final AtomicLongArray ventasPorTipo;
+
+    /**
+     * La cantidad de ventas parciales de cada tipo de gasolina
+     */
+    private final AtomicLongArray parcialesPorTipo;
+
+    /**
+     * La cantidad de ventas de cada surtidor
+     */
+    private final AtomicLongArray ventasPorSurtidor;
+
+    /**
+     * La cantidad de ventas parciales de cada surtidor
+     */
+    private final AtomicLongArray parcialesPorSurtidor;
+
+    /**
+     * La cantidad de entregas recibidas de cada tipo de gasolina
+     */
+    private final AtomicLongArray entregasPorTipo;
+
+    /**
+     * Los galones recibidos en entregas de cada tipo de gasolina
+     */
+    private final DoubleAdder[] galonesEntregadosPorTipo;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye las métricas vacías de una gasolinera
+     * @param cantidadTiposGasolina La cantidad de tipos de gasolina de la gasolinera
+     * @param cantidadSurtidores La cantidad de surtidores de la gasolinera
+     */
+    public MetricasGasolinera( int cantidadTiposGasolina, int cantidadSurtidores )
+    {
+        this.ventasPorTipo = new AtomicLongArray( cantidadTiposGasolina );
+        this.parcialesPorTipo = new AtomicLongArray( cantidadTiposGasolina );
+        this.ventasPorSurtidor = new AtomicLongArray( cantidadSurtidores );
+        this.parcialesPorSurtidor = new AtomicLongArray( cantidadSurtidores );
+        this.entregasPorTipo = new AtomicLongArray( cantidadTiposGasolina );
+        this.galonesEntregadosPorTipo = new DoubleAdder[cantidadTiposGasolina];
+        for( int id = 0; id < cantidadTiposGasolina; id++ )
+        {
+            galonesEntregadosPorTipo[ id ] = new DoubleAdder( );
+        }
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Registra una venta
+     * @param idTipoGasolina El identificador del tipo de gasolina vendido
+     * @param numeroSurtidor El número del surtidor donde se hizo la venta
+     * @param cantidadSolicitada La cantidad de galones que pidió el cliente
+     * @param cantidadEntregada La cantidad de galones que se entregaron
+     * @param nanos La duración de la venta en nanosegundos
+     */
+    public void registrarVenta( int idTipoGasolina, int numeroSurtidor, double cantidadSolicitada, double cantidadEntregada, long nanos )
+    {
+        latenciaVentas.registrar( nanos );
+        ventasPorTipo.incrementAndGet( idTipoGasolina );
+        ventasPorSurtidor.incrementAndGet( numeroSurtidor );
+        if( cantidadEntregada < cantidadSolicitada )
+        {
+            parcialesPorTipo.incrementAndGet( idTipoGasolina );
+            parcialesPorSurtidor.incrementAndGet( numeroSurtidor );
+        }
+    }
+
+    /**
+     * Registra una entrega de gasolina
+     * @param idTipoGasolina El identificador del tipo de gasolina recibido
+     * @param galones La cantidad de galones recibidos
+     */
+    public void registrarEntrega( int idTipoGasolina, double galones )
+    {
+        entregasPorTipo.incrementAndGet( idTipoGasolina );
+        galonesEntregadosPorTipo[ idTipoGasolina ].add( galones );
+    }
+
+    /**
+     * Registra la duración de una operación para guardar el estado
+     * @param nanos La duración en nanosegundos
+     */
+    public void registrarGuardar( long nanos )
+    {
+        latenciaGuardar.registrar( nanos );
+    }
+
+    /**
+     * Registra la duración de una operación para cargar el estado
+     * @param nanos La duración en nanosegundos
+     */
+    public void registrarCargar( long nanos )
+    {
+        latenciaCargar.registrar( nanos );
+    }
+
+    public HistogramaLatencias getLatenciaVentas( )
+    {
+        return latenciaVentas;
+    }
+
+    public HistogramaLatencias getLatenciaGuardar( )
+    {
+        return latenciaGuardar;
+    }
+
+    public HistogramaLatencias getLatenciaCargar( )
+    {
+        return latenciaCargar;
+    }
+
+    public long getVentasPorTipo( int idTipoGasolina )
+    {
+        return ventasPorTipo.get( idTipoGasolina );
+    }
+
+    public long getParcialesPorTipo( int idTipoGasolina )
+    {
+        return parcialesPorTipo.get( idTipoGasolina );
+    }
+
+    public long getVentasPorSurtidor( int numeroSurtidor )
+    {
+        return ventasPorSurtidor.get( numeroSurtidor );
+    }
+
+    public long getParcialesPorSurtidor( int numeroSurtidor )
+    {
+        return parcialesPorSurtidor.get( numeroSurtidor );
+    }
+
+    public long getEntregasPorTipo( int idTipoGasolina )
+    {
+        return entregasPorTipo.get( idTipoGasolina );
+    }
+
+    public double getGalonesEntregadosPorTipo( int idTipoGasolina )
+    {
+        return galonesEntregadosPorTipo[ idTipoGasolina ].sum( );
+    }
+
+    /**
+     * Retorna la fracción de las ventas de un tipo de gasolina que fueron parciales
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return Un número entre 0 y 1, o 0 si no hay ventas de ese tipo
+     */
+    public double getTasaParcialesPorTipo( int idTipoGasolina )
+    {
+        return tasa( parcialesPorTipo.get( idTipoGasolina ), ventasPorTipo.get( idTipoGasolina ) );
+    }
+
+    /**
+     * Retorna la fracción de las ventas de un surtidor que fueron parciales
+     * @param numeroSurtidor El número del surtidor
+     * @return Un número entre 0 y 1, o 0 si no hay ventas en ese surtidor
+     */
+    public double getTasaParcialesPorSurtidor( int numeroSurtidor )
+    {
+        return tasa( parcialesPorSurtidor.get( numeroSurtidor ), ventasPorSurtidor.get( numeroSurtidor ) );
+    }
+
+    private static double tasa( long parciales, long total )
+    {
+        return total == 0 ? 0 : parciales / ( double )total;
+    }
+
+    public int getCantidadTiposGasolina( )
+    {
+        return ventasPorTipo.length( );
+    }
+
+    public int getCantidadSurtidores( )
+    {
+        return ventasPorSurtidor.length( );
+    }
+}
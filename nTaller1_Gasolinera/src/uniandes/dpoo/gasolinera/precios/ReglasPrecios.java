@@ -0,0 +1,255 @@
+package uniandes.dpoo.gasolinera.precios;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+
+/**
+ * Las reglas con las que se ajusta el precio por galón de los tipos de gasolina: descuentos por volumen, ajustes según la hora del día y descuentos por nivel de
+ * fidelidad del cliente.
+ *
+ * Las reglas no se evalúan en cada venta: se compilan en una TablaPrecios, que tiene precalculado el factor que se le aplica al precio base para cada combinación de
+ * tipo de gasolina, hora, nivel de fidelidad y tramo de volumen. Los ajustes se combinan multiplicando sus factores: un recargo del 10% en hora pico y un descuento del 5%
+ * por volumen dan un factor de 1.10 * 0.95.
+ *
+ * Las reglas de un tipo de gasolina se indican con su nombre; si el nombre es null, la regla aplica para todos los tipos. Esta clase no es segura para usarla desde varios
+ * threads: se configura en un solo thread y luego se compila.
+ */
+public class ReglasPrecios
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Los descuentos por volumen, en el orden en el que se agregaron
+     */
+    private List<DescuentoVolumen> descuentosVolumen;
+
+    /**
+     * Los ajustes por franja horaria, en el orden en el que se agregaron
+     */
+    private List<FranjaHoraria> franjas;
+
+    /**
+     * El porcentaje de descuento de cada nivel de fidelidad
+     */
+    private TreeMap<Integer, Double> nivelesFidelidad;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un conjunto de reglas vacío: con él, todos los precios son el precio base
+     */
+    public ReglasPrecios( )
+    {
+        this.descuentosVolumen = new ArrayList<DescuentoVolumen>( );
+        this.franjas = new ArrayList<FranjaHoraria>( );
+        this.nivelesFidelidad = new TreeMap<Integer, Double>( );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Agrega un descuento para las ventas de al menos una cierta cantidad de galones. Si una venta alcanza varios descuentos, se aplica el del mayor volumen mínimo; si hay
+     * dos descuentos con el mismo volumen mínimo para el mismo tipo, se aplica el último que se agregó.
+     * @param nombreTipoGasolina El tipo de gasolina al que aplica el descuento, o null si aplica para todos
+     * @param galonesMinimos La cantidad de galones a partir de la cual aplica el descuento
+     * @param porcentajeDescuento El porcentaje de descuento, mayor o igual a 0 y menor a 100
+     */
+    public void agregarDescuentoPorVolumen( String nombreTipoGasolina, int galonesMinimos, double porcentajeDescuento )
+    {
+        if( galonesMinimos < 0 )
+            throw new IllegalArgumentException( "La cantidad mínima de galones no puede ser negativa" );
+        verificarPorcentaje( porcentajeDescuento );
+        descuentosVolumen.add( new DescuentoVolumen( nombreTipoGasolina, galonesMinimos, porcentajeDescuento ) );
+    }
+
+    /**
+     * Agrega un ajuste de precio para una franja del día. Un ajuste positivo es un recargo (por ejemplo en horas pico) y uno negativo es un descuento. Si varias franjas
+     * cubren la misma hora, se aplica la última que se agregó.
+     * @param nombreTipoGasolina El tipo de gasolina al que aplica el ajuste, o null si aplica para todos
+     * @param horaInicio La primera hora de la franja, entre 0 y 23
+     * @param horaFin La hora en la que termina la franja (sin incluirla), entre 1 y 24. Si es menor o igual a la hora de inicio, la franja pasa por la medianoche
+     * @param porcentajeAjuste El porcentaje de recargo (positivo) o de descuento (negativo), mayor a -100
+     */
+    public void agregarFranjaHoraria( String nombreTipoGasolina, int horaInicio, int horaFin, double porcentajeAjuste )
+    {
+        if( horaInicio < 0 || horaInicio > 23 || horaFin < 1 || horaFin > 24 )
+            throw new IllegalArgumentException( "Las horas de la franja deben estar entre 0 y 24" );
+        if( !( porcentajeAjuste > -100 ) )
+            throw new IllegalArgumentException( "El ajuste no puede dejar el precio en 0 o negativo" );
+        franjas.add( new FranjaHoraria( nombreTipoGasolina, horaInicio, horaFin, porcentajeAjuste ) );
+    }
+
+    /**
+     * Define el descuento de un nivel de fidelidad. El nivel 0 es el de los clientes sin programa de fidelidad, y los niveles que no se definan no tienen descuento.
+     * @param nivel El nivel de fidelidad, mayor o igual a 0
+     * @param porcentajeDescuento El porcentaje de descuento, mayor o igual a 0 y menor a 100
+     */
+    public void definirNivelFidelidad( int nivel, double porcentajeDescuento )
+    {
+        if( nivel < 0 )
+            throw new IllegalArgumentException( "El nivel de fidelidad no puede ser negativo" );
+        verificarPorcentaje( porcentajeDescuento );
+        nivelesFidelidad.put( nivel, porcentajeDescuento );
+    }
+
+    /**
+     * Revisa un porcentaje de descuento. Un descuento del 100% dejaría el precio en 0, y una venta por precio compraría galones infinitos
+     */
+    private static void verificarPorcentaje( double porcentaje )
+    {
+        if( !( porcentaje >= 0 && porcentaje < 100 ) )
+            throw new IllegalArgumentException( "El porcentaje de descuento debe ser mayor o igual a 0 y menor a 100" );
+    }
+
+    /**
+     * Compila las reglas en una tabla de precios, usando el reloj del sistema en su zona horaria por defecto
+     * @param nombresTiposGasolina Los nombres de los tipos de gasolina, cada uno en la posición de su identificador
+     * @return La tabla de precios
+     */
+    public TablaPrecios compilar( String[] nombresTiposGasolina )
+    {
+        return compilar( nombresTiposGasolina, Clock.systemDefaultZone( ) );
+    }
+
+    /**
+     * Compila las reglas en una tabla de precios. Las reglas que se agreguen después no afectan la tabla.
+     * @param nombresTiposGasolina Los nombres de los tipos de gasolina, cada uno en la posición de su identificador
+     * @param reloj El reloj con el que la tabla decide la hora del día, en la zona horaria del reloj
+     * @return La tabla de precios
+     */
+    public TablaPrecios compilar( String[] nombresTiposGasolina, Clock reloj )
+    {
+        int cantidadNiveles = nivelesFidelidad.isEmpty( ) ? 1 : nivelesFidelidad.lastKey( ) + 1;
+        double[] factoresNiveles = new double[cantidadNiveles];
+        for( int nivel = 0; nivel < cantidadNiveles; nivel++ )
+        {
+            factoresNiveles[ nivel ] = 1 - nivelesFidelidad.getOrDefault( nivel, 0.0 ) / 100;
+        }
+
+        int cantidadTipos = nombresTiposGasolina.length;
+        double[][] factores = new double[cantidadTipos][];
+        int[][] umbralesTramos = new int[cantidadTipos][];
+        for( int id = 0; id < cantidadTipos; id++ )
+        {
+            String nombre = nombresTiposGasolina[ id ];
+
+            // El factor de cada hora: la última franja que cubre la hora es la que cuenta
+            double[] factoresHoras = new double[TablaPrecios.HORAS_DIA];
+            for( int hora = 0; hora < TablaPrecios.HORAS_DIA; hora++ )
+            {
+                factoresHoras[ hora ] = 1;
+                for( FranjaHoraria franja : franjas )
+                {
+                    if( franja.aplicaA( nombre ) && franja.cubre( hora ) )
+                        factoresHoras[ hora ] = 1 + franja.porcentajeAjuste / 100;
+                }
+            }
+
+            // Los tramos de volumen: el tramo 0 es el de las ventas que no alcanzan ningún descuento
+            TreeMap<Integer, Double> descuentosTipo = new TreeMap<Integer, Double>( );
+            for( DescuentoVolumen descuento : descuentosVolumen )
+            {
+                if( descuento.aplicaA( nombre ) )
+                    descuentosTipo.put( descuento.galonesMinimos, descuento.porcentajeDescuento );
+            }
+            int cantidadTramos = descuentosTipo.size( ) + 1;
+            double[] factoresTramos = new double[cantidadTramos];
+            factoresTramos[ 0 ] = 1;
+            int[] umbrales = new int[cantidadTramos - 1];
+            int tramo = 0;
+            for( Integer galonesMinimos : descuentosTipo.keySet( ) )
+            {
+                umbrales[ tramo ] = galonesMinimos;
+                tramo++;
+                factoresTramos[ tramo ] = 1 - descuentosTipo.get( galonesMinimos ) / 100;
+            }
+            umbralesTramos[ id ] = umbrales;
+
+            // La tabla del tipo: una posición por cada combinación de hora, nivel y tramo
+            double[] factoresTipo = new double[TablaPrecios.HORAS_DIA * cantidadNiveles * cantidadTramos];
+            for( int hora = 0; hora < TablaPrecios.HORAS_DIA; hora++ )
+            {
+                for( int nivel = 0; nivel < cantidadNiveles; nivel++ )
+                {
+                    for( int t = 0; t < cantidadTramos; t++ )
+                    {
+                        factoresTipo[ ( hora * cantidadNiveles + nivel ) * cantidadTramos + t ] = factoresHoras[ hora ] * factoresNiveles[ nivel ] * factoresTramos[ t ];
+                    }
+                }
+            }
+            factores[ id ] = factoresTipo;
+        }
+
+        return new TablaPrecios( factores, umbralesTramos, cantidadNiveles, reloj );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Un descuento por volumen
+     */
+    private static class DescuentoVolumen
+    {
+        private final String nombreTipoGasolina;
+
+        private final int galonesMinimos;
+
+        private final double porcentajeDescuento;
+
+        DescuentoVolumen( String nombreTipoGasolina, int galonesMinimos, double porcentajeDescuento )
+        {
+            this.nombreTipoGasolina = nombreTipoGasolina;
+            this.galonesMinimos = galonesMinimos;
+            this.porcentajeDescuento = porcentajeDescuento;
+        }
+
+        boolean aplicaA( String nombre )
+        {
+            return nombreTipoGasolina == null || nombreTipoGasolina.equals( nombre );
+        }
+    }
+
+    /**
+     * Un ajuste de precio para una franja del día
+     */
+    private static class FranjaHoraria
+    {
+        private final String nombreTipoGasolina;
+
+        private final int horaInicio;
+
+        private final int horaFin;
+
+        private final double porcentajeAjuste;
+
+        FranjaHoraria( String nombreTipoGasolina, int horaInicio, int horaFin, double porcentajeAjuste )
+        {
+            this.nombreTipoGasolina = nombreTipoGasolina;
+            this.horaInicio = horaInicio;
+            this.horaFin = horaFin;
+            this.porcentajeAjuste = porcentajeAjuste;
+        }
+
+        boolean aplicaA( String nombre )
+        {
+            return nombreTipoGasolina == null || nombreTipoGasolina.equals( nombre );
+        }
+
+        boolean cubre( int hora )
+        {
+            if( horaInicio < horaFin )
+                return hora >= horaInicio && hora < horaFin;
+            return hora >= horaInicio || hora < horaFin;
+        }
+    }
+}
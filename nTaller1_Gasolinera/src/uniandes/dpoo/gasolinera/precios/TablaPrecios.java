@@ -0,0 +1,218 @@
+package uniandes.dpoo.gasolinera.precios;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.time.temporal.ChronoUnit;
+
+/**
+ * Las reglas de precios compiladas en tablas: para cada tipo de gasolina hay un arreglo con el factor que se le aplica al precio base en cada combinación de hora del día,
+ * nivel de fidelidad y tramo de volumen, y otro arreglo ordenado con la cantidad mínima de galones de cada tramo.
+ *
+ * Calcular un precio hace una búsqueda binaria en los umbrales de los tramos, lee una posición de la tabla de factores y hace una multiplicación; no evalúa reglas ni
+ * crea objetos. La hora del día tampoco se calcula en cada venta:
+ * la tabla guarda la hora actual junto con el intervalo de tiempo en el que es válida, y sólo la vuelve a calcular cuando el reloj sale de ese intervalo.
+ *
+ * Una tabla es inmutable y se puede usar desde varios threads al mismo tiempo. Para cambiar las reglas se compila una tabla nueva (ver ReglasPrecios.compilar).
+ */
+public class TablaPrecios
+{
+    /**
+     * La cantidad de horas de un día
+     */
+    static final int HORAS_DIA = 24;
+
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * Los factores de cada tipo de gasolina, según su identificador. El factor de una hora, un nivel y un tramo está en la posición
+     * ( hora * cantidadNiveles + nivel ) * cantidadTramos + tramo, donde cantidadTramos es propia de cada tipo
+     */
+    private final double[][] factores;
+
+    /**
+     * Para cada tipo de gasolina, la cantidad mínima de galones de cada tramo de volumen, en orden ascendente y sin repetidos. El tramo 0 no tiene umbral: el umbral en la
+     * posición i es el del tramo i + 1
+     */
+    private final int[][] umbralesTramos;
+
+    /**
+     * La cantidad de tramos de volumen de cada tipo de gasolina
+     */
+    private final int[] cantidadesTramos;
+
+    /**
+     * La cantidad de niveles de fidelidad
+     */
+    private final int cantidadNiveles;
+
+    /**
+     * El reloj con el que se decide la hora del día
+     */
+    private final Clock reloj;
+
+    /**
+     * La última hora que se calculó, con el intervalo en el que es válida
+     */
+    private volatile HoraCalculada horaActual;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    TablaPrecios( double[][] factores, int[][] umbralesTramos, int cantidadNiveles, Clock reloj )
+    {
+        this.factores = factores;
+        this.umbralesTramos = umbralesTramos;
+        this.cantidadNiveles = cantidadNiveles;
+        this.reloj = reloj;
+        this.cantidadesTramos = new int[factores.length];
+        for( int id = 0; id < factores.length; id++ )
+        {
+            cantidadesTramos[ id ] = factores[ id ].length / ( HORAS_DIA * cantidadNiveles );
+        }
+        this.horaActual = calcularHora( reloj.millis( ) );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    public int getCantidadTiposGasolina( )
+    {
+        return factores.length;
+    }
+
+    public int getCantidadNiveles( )
+    {
+        return cantidadNiveles;
+    }
+
+    /**
+     * Retorna la hora del día según el reloj de la tabla. Sólo se hace el cálculo con la zona horaria cuando el reloj pasa a otra hora.
+     * @return La hora, entre 0 y 23
+     */
+    public int getHoraActual( )
+    {
+        long ahora = reloj.millis( );
+        HoraCalculada calculada = horaActual;
+        if( ahora < calculada.inicio || ahora >= calculada.fin )
+        {
+            calculada = calcularHora( ahora );
+            horaActual = calculada;
+        }
+        return calculada.hora;
+    }
+
+    /**
+     * Calcula la hora del día de un instante y el intervalo en el que esa hora no cambia. Se usa la zona horaria del reloj, así que los cambios de horario de verano se
+     * respetan.
+     */
+    private HoraCalculada calcularHora( long millis )
+    {
+        ZonedDateTime fecha = Instant.ofEpochMilli( millis ).atZone( reloj.getZone( ) );
+        ZonedDateTime inicio = fecha.truncatedTo( ChronoUnit.HOURS );
+        ZonedDateTime fin = inicio.plusHours( 1 );
+        return new HoraCalculada( fecha.getHour( ), inicio.toInstant( ).toEpochMilli( ), fin.toInstant( ).toEpochMilli( ) );
+    }
+
+    /**
+     * Calcula el precio por galón de una venta a la hora actual
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param precioBase El precio por galón del tipo de gasolina, sin ajustes
+     * @param galones La cantidad de galones de la venta, con la que se decide el descuento por volumen
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio por galón, redondeado al entero más cercano
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe
+     */
+    public int precioPorGalon( int idTipoGasolina, int precioBase, double galones, int nivelFidelidad )
+    {
+        return precioPorGalon( idTipoGasolina, precioBase, galones, nivelFidelidad, getHoraActual( ) );
+    }
+
+    /**
+     * Calcula el precio por galón de una venta a una hora dada
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param precioBase El precio por galón del tipo de gasolina, sin ajustes
+     * @param galones La cantidad de galones de la venta, con la que se decide el descuento por volumen
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @param hora La hora del día, entre 0 y 23
+     * @return El precio por galón, redondeado al entero más cercano y como mínimo 1: un precio base pequeño con un descuento grande no puede redondearse a 0, porque
+     *         las ventas por precio dividen por el precio por galón
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe
+     */
+    public int precioPorGalon( int idTipoGasolina, int precioBase, double galones, int nivelFidelidad, int hora )
+    {
+        if( nivelFidelidad < 0 || nivelFidelidad >= cantidadNiveles )
+            throw new IllegalArgumentException( "El nivel de fidelidad " + nivelFidelidad + " no existe" );
+
+        int tramo = tramo( umbralesTramos[ idTipoGasolina ], galones );
+        double factor = factores[ idTipoGasolina ][ ( hora * cantidadNiveles + nivelFidelidad ) * cantidadesTramos[ idTipoGasolina ] + tramo ];
+        return ( int )Math.max( 1, Math.round( precioBase * factor ) );
+    }
+
+    /**
+     * Busca el tramo de volumen de una cantidad de galones, es decir la cantidad de umbrales que la cantidad alcanza. Las cantidades negativas están en el tramo de 0
+     * galones
+     * @param umbrales Los umbrales de los tramos, en orden ascendente
+     * @param galones La cantidad de galones
+     * @return El número del tramo
+     */
+    private static int tramo( int[] umbrales, double galones )
+    {
+        double cantidad = Math.max( galones, 0 );
+        int bajo = 0;
+        int alto = umbrales.length;
+        while( bajo < alto )
+        {
+            int medio = ( bajo + alto ) >>> 1;
+            if( umbrales[ medio ] <= cantidad )
+                bajo = medio + 1;
+            else
+                alto = medio;
+        }
+        return bajo;
+    }
+
+    /**
+     * Calcula el precio por galón de una venta en la que el cliente dice cuánto quiere pagar. El tramo de volumen se decide con los galones que le alcanzan al cliente
+     * sin descuento por volumen; como el descuento sólo baja el precio, con el precio final le alcanza para al menos esa cantidad.
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @param precioBase El precio por galón del tipo de gasolina, sin ajustes
+     * @param valor El valor que quiere pagar el cliente
+     * @param nivelFidelidad El nivel de fidelidad del cliente, o 0 si no tiene
+     * @return El precio por galón, redondeado al entero más cercano
+     * @throws IllegalArgumentException Si el nivel de fidelidad no existe
+     */
+    public int precioPorGalonParaValor( int idTipoGasolina, int precioBase, int valor, int nivelFidelidad )
+    {
+        int hora = getHoraActual( );
+        int precioSinVolumen = precioPorGalon( idTipoGasolina, precioBase, 0, nivelFidelidad, hora );
+        return precioPorGalon( idTipoGasolina, precioBase, valor / ( double )precioSinVolumen, nivelFidelidad, hora );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Una hora del día y el intervalo de tiempo, en milisegundos, en el que el reloj está en esa hora
+     */
+    private static class HoraCalculada
+    {
+        private final int hora;
+
+        private final long inicio;
+
+        private final long fin;
+
+        HoraCalculada( int hora, long inicio, long fin )
+        {
+            this.hora = hora;
+            this.inicio = inicio;
+            this.fin = fin;
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package uniandes.dpoo.gasolinera.reportes;
+
+/**
+ * Guarda los N elementos con mayor valor de una secuencia, sin ordenar la secuencia completa.
+ *
+ * Es un montículo de mínimos acotado sobre arreglos primitivos: la raíz es el peor de los mejores, así que un elemento nuevo sólo entra si supera a la raíz, y en ese
+ * caso la reemplaza. Procesar M elementos cuesta O(M log N) y no crea objetos por elemento. Los empates se resuelven a favor de la posición menor, para que el resultado
+ * no dependa del orden en que llegan los elementos.
+ */
+class MonticuloMejores
+{
+    /**
+     * Las posiciones de los elementos, organizadas como montículo
+     */
+    private final int[] elementos;
+
+    /**
+     * El valor de cada elemento del montículo
+     */
+    private final double[] valores;
+
+    /**
+     * La cantidad de elementos en el montículo
+     */
+    private int cantidad;
+
+    MonticuloMejores( int capacidad )
+    {
+        elementos = new int[capacidad];
+        valores = new double[capacidad];
+        cantidad = 0;
+    }
+
+    /**
+     * Considera un elemento: entra al montículo si todavía hay espacio o si es mejor que el peor de los que hay
+     * @param elemento La posición del elemento
+     * @param valor El valor del elemento
+     */
+    void ofrecer( int elemento, double valor )
+    {
+        if( cantidad < elementos.length )
+        {
+            elementos[ cantidad ] = elemento;
+            valores[ cantidad ] = valor;
+            cantidad++;
+            subir( cantidad - 1 );
+        }
+        else if( cantidad > 0 && mejor( elemento, valor, elementos[ 0 ], valores[ 0 ] ) )
+        {
+            elementos[ 0 ] = elemento;
+            valores[ 0 ] = valor;
+            bajar( 0 );
+        }
+    }
+
+    /**
+     * Agrega al montículo los elementos de otro montículo, por ejemplo el de otra parte de un cálculo en paralelo
+     * @param otro El otro montículo
+     */
+    void combinar( MonticuloMejores otro )
+    {
+        for( int i = 0; i < otro.cantidad; i++ )
+        {
+            ofrecer( otro.elementos[ i ], otro.valores[ i ] );
+        }
+    }
+
+    /**
+     * Retorna las posiciones de los elementos del montículo, del mejor al peor. Vacía el montículo.
+     * @return Las posiciones ordenadas
+     */
+    int[] extraerOrdenados( )
+    {
+        int[] ordenados = new int[cantidad];
+        for( int i = ordenados.length - 1; i >= 0; i-- )
+        {
+            ordenados[ i ] = elementos[ 0 ];
+            cantidad--;
+            elementos[ 0 ] = elementos[ cantidad ];
+            valores[ 0 ] = valores[ cantidad ];
+            bajar( 0 );
+        }
+        return ordenados;
+    }
+
+    /**
+     * Indica si un elemento es mejor que otro: tiene mayor valor o, con el mismo valor, una posición menor
+     */
+    private static boolean mejor( int elementoA, double valorA, int elementoB, double valorB )
+    {
+        if( valorA != valorB )
+            return valorA > valorB;
+        return elementoA < elementoB;
+    }
+
+    /**
+     * Indica si el elemento en la posición a del montículo debe ir más cerca de la raíz que el de la posición b, es decir si es peor
+     */
+    private boolean antes( int a, int b )
+    {
+        return mejor( elementos[ b ], valores[ b ], elementos[ a ], valores[ a ] );
+    }
+
+    private void subir( int posicion )
+    {
+        while( posicion > 0 )
+        {
+            int padre = ( posicion - 1 ) / 2;
+            if( !antes( posicion, padre ) )
+                return;
+            intercambiar( posicion, padre );
+            posicion = padre;
+        }
+    }
+
+    private void bajar( int posicion )
+    {
+        while( true )
+        {
+            int menor = posicion;
+            int izquierdo = 2 * posicion + 1;
+            int derecho = izquierdo + 1;
+            if( izquierdo < cantidad && antes( izquierdo, menor ) )
+                menor = izquierdo;
+            if( derecho < cantidad && antes( derecho, menor ) )
+                menor = derecho;
+            if( menor == posicion )
+                return;
+            intercambiar( posicion, menor );
+            posicion = menor;
+        }
+    }
+
+    private void intercambiar( int a, int b )
+    {
+        int elemento = elementos[ a ];
+        elementos[ a ] = elementos[ b ];
+        elementos[ b ] = elemento;
+        double valor = valores[ a ];
+        valores[ a ] = valores[ b ];
+        valores[ b ] = valor;
+    }
+}
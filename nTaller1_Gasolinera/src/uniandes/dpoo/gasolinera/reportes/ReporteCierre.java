@@ -0,0 +1,257 @@
+package uniandes.dpoo.gasolinera.reportes;
+
+import java.util.stream.IntStream;
+
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+
+/**
+ * El reporte de cierre de turno de una gasolinera: los totales por tipo de gasolina, por surtidor y por empleado, y los surtidores y empleados con más ventas.
+ *
+ * El reporte se calcula sobre una instantánea, así que todos los totales corresponden al mismo momento. Los surtidores se recorren una sola vez en paralelo, por
+ * rangos de SURTIDORES_POR_RANGO surtidores: cada rango acumula sus propios totales en arreglos primitivos y su propio montículo de mejores surtidores, y al final los
+ * rangos se combinan. La instantánea guarda los galones por columnas (todos los surtidores de un tipo de gasolina seguidos), así que dentro de un rango se suma una
+ * columna a la vez: cada lectura es la posición siguiente a la anterior, y los totales del rango caben en la caché mientras se recorren las columnas. Los rankings usan
+ * montículos acotados al tamaño pedido en lugar de ordenar todos los surtidores. El trabajo es proporcional a la cantidad de surtidores por la de tipos de gasolina,
+ * más O(S log N) para el ranking de S surtidores con N mejores; cuánto tarda depende de la máquina y de los núcleos del pool común de ForkJoin.
+ *
+ * La instantánea sólo tiene los galones de cada surtidor y el empleado asignado en ese momento, no quién hizo cada venta. Por eso los galones de cada empleado son
+ * los de los surtidores que tiene asignados al generar el reporte (ver getGalonesSurtidoresAsignados), no los de sus propias ventas: si a un empleado le reasignan un
+ * surtidor durante el turno, todas las ventas del surtidor cuentan para el nuevo. El dinero de cada empleado sí corresponde a sus propias ventas.
+ */
+public class ReporteCierre
+{
+    /**
+     * La cantidad de surtidores de cada rango del recorrido. Los totales de un rango ocupan 32 KB, así que se quedan en la caché mientras se suman las columnas
+     */
+    private static final int SURTIDORES_POR_RANGO = 4096;
+
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La instantánea sobre la que se calculó el reporte
+     */
+    private final InstantaneaGasolinera estado;
+
+    /**
+     * Los galones vendidos de cada tipo de gasolina, según su identificador
+     */
+    private final double[] galonesPorTipo;
+
+    /**
+     * Los galones vendidos en cada surtidor, sumando todos los tipos de gasolina
+     */
+    private final double[] galonesPorSurtidor;
+
+    /**
+     * Los galones vendidos en los surtidores que tiene asignados cada empleado al generar el reporte, según su identificador
+     */
+    private final double[] galonesSurtidoresAsignados;
+
+    /**
+     * La cantidad de surtidores que tiene asignados cada empleado
+     */
+    private final int[] surtidoresPorEmpleado;
+
+    /**
+     * Los números de los surtidores con más galones vendidos, del mayor al menor
+     */
+    private final int[] mejoresSurtidores;
+
+    /**
+     * Los identificadores de los empleados con más dinero, del mayor al menor
+     */
+    private final int[] mejoresEmpleados;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    private ReporteCierre( InstantaneaGasolinera estado, double[] galonesPorTipo, double[] galonesPorSurtidor, double[] galonesSurtidoresAsignados, int[] surtidoresPorEmpleado,
+                           int[] mejoresSurtidores, int[] mejoresEmpleados )
+    {
+        this.estado = estado;
+        this.galonesPorTipo = galonesPorTipo;
+        this.galonesPorSurtidor = galonesPorSurtidor;
+        this.galonesSurtidoresAsignados = galonesSurtidoresAsignados;
+        this.surtidoresPorEmpleado = surtidoresPorEmpleado;
+        this.mejoresSurtidores = mejoresSurtidores;
+        this.mejoresEmpleados = mejoresEmpleados;
+    }
+
+    /**
+     * Calcula el reporte de cierre de una instantánea
+     * @param estado La instantánea de la gasolinera
+     * @param cantidadMejores La cantidad de surtidores y de empleados que se incluyen en los rankings
+     * @return El reporte
+     */
+    public static ReporteCierre generar( InstantaneaGasolinera estado, int cantidadMejores )
+    {
+        if( cantidadMejores < 0 )
+            throw new IllegalArgumentException( "La cantidad de mejores no puede ser negativa" );
+        int cantidadSurtidores = estado.getCantidadSurtidores( );
+        int cantidadTipos = estado.getCantidadTiposGasolina( );
+        int cantidadEmpleados = estado.getCantidadEmpleados( );
+
+        // Cada posición de este arreglo la escribe un solo rango, así que se puede compartir
+        double[] galonesPorSurtidor = new double[cantidadSurtidores];
+        int cantidadRangos = ( cantidadSurtidores + SURTIDORES_POR_RANGO - 1 ) / SURTIDORES_POR_RANGO;
+        Acumulador total = IntStream.range( 0, cantidadRangos ).parallel( ).collect( ( ) -> new Acumulador( cantidadTipos, cantidadEmpleados, cantidadMejores ),
+                ( acumulador, rango ) -> acumulador.agregarRango( estado, rango * SURTIDORES_POR_RANGO,
+                        Math.min( cantidadSurtidores, ( rango + 1 ) * SURTIDORES_POR_RANGO ), galonesPorSurtidor ),
+                Acumulador::combinar );
+
+        MonticuloMejores empleados = IntStream.range( 0, cantidadEmpleados ).parallel( ).collect( ( ) -> new MonticuloMejores( cantidadMejores ),
+                ( monticulo, empleado ) -> monticulo.ofrecer( empleado, estado.getCantidadDinero( empleado ) ), MonticuloMejores::combinar );
+
+        return new ReporteCierre( estado, total.galonesPorTipo, galonesPorSurtidor, total.galonesSurtidoresAsignados, total.surtidoresPorEmpleado,
+                total.mejoresSurtidores.extraerOrdenados( ), empleados.extraerOrdenados( ) );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Retorna la instantánea sobre la que se calculó el reporte, para consultar nombres, precios y el dinero de los empleados
+     * @return La instantánea
+     */
+    public InstantaneaGasolinera getEstado( )
+    {
+        return estado;
+    }
+
+    public double getGalonesPorTipo( int idTipoGasolina )
+    {
+        return galonesPorTipo[ idTipoGasolina ];
+    }
+
+    /**
+     * Retorna el valor de los galones vendidos de un tipo de gasolina con el precio que tenía en la instantánea
+     * @param idTipoGasolina El identificador del tipo de gasolina
+     * @return El valor, redondeado al entero más cercano
+     */
+    public long getValorPorTipo( int idTipoGasolina )
+    {
+        return Math.round( galonesPorTipo[ idTipoGasolina ] * estado.getPrecioPorGalon( idTipoGasolina ) );
+    }
+
+    public double getGalonesPorSurtidor( int numeroSurtidor )
+    {
+        return galonesPorSurtidor[ numeroSurtidor ];
+    }
+
+    /**
+     * Retorna los galones vendidos en los surtidores que tiene asignados un empleado al generar el reporte. Incluye las ventas que se hicieron en esos surtidores
+     * antes de asignárselos, y no incluye las que hizo en surtidores que ya no tiene
+     * @param idEmpleado El identificador del empleado
+     * @return La cantidad de galones
+     */
+    public double getGalonesSurtidoresAsignados( int idEmpleado )
+    {
+        return galonesSurtidoresAsignados[ idEmpleado ];
+    }
+
+    public int getSurtidoresPorEmpleado( int idEmpleado )
+    {
+        return surtidoresPorEmpleado[ idEmpleado ];
+    }
+
+    public int getDineroPorEmpleado( int idEmpleado )
+    {
+        return estado.getCantidadDinero( idEmpleado );
+    }
+
+    /**
+     * Retorna los números de los surtidores con más galones vendidos
+     * @return Los números de los surtidores, del que más vendió al que menos. Los empates se ordenan por número de surtidor
+     */
+    public int[] getMejoresSurtidores( )
+    {
+        return mejoresSurtidores.clone( );
+    }
+
+    /**
+     * Retorna los identificadores de los empleados con más dinero
+     * @return Los identificadores de los empleados, del que más tiene al que menos. Los empates se ordenan por identificador
+     */
+    public int[] getMejoresEmpleados( )
+    {
+        return mejoresEmpleados.clone( );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Los totales de una parte del recorrido de los surtidores
+     */
+    private static class Acumulador
+    {
+        private final double[] galonesPorTipo;
+
+        private final double[] galonesSurtidoresAsignados;
+
+        private final int[] surtidoresPorEmpleado;
+
+        private final MonticuloMejores mejoresSurtidores;
+
+        Acumulador( int cantidadTipos, int cantidadEmpleados, int cantidadMejores )
+        {
+            this.galonesPorTipo = new double[cantidadTipos];
+            this.galonesSurtidoresAsignados = new double[cantidadEmpleados];
+            this.surtidoresPorEmpleado = new int[cantidadEmpleados];
+            this.mejoresSurtidores = new MonticuloMejores( cantidadMejores );
+        }
+
+        /**
+         * Acumula los surtidores de un rango. Primero se suma cada columna de galones sobre el rango completo, y luego se reparten los totales de cada surtidor
+         * @param estado La instantánea
+         * @param desde El primer surtidor del rango
+         * @param hasta El surtidor siguiente al último del rango
+         * @param galonesPorSurtidor Donde queda el total de cada surtidor. Las posiciones del rango deben estar en 0
+         */
+        void agregarRango( InstantaneaGasolinera estado, int desde, int hasta, double[] galonesPorSurtidor )
+        {
+            for( int tipo = 0; tipo < galonesPorTipo.length; tipo++ )
+            {
+                double galonesTipo = 0;
+                for( int surtidor = desde; surtidor < hasta; surtidor++ )
+                {
+                    double galones = estado.getGalonesVendidos( surtidor, tipo );
+                    galonesPorSurtidor[ surtidor ] += galones;
+                    galonesTipo += galones;
+                }
+                galonesPorTipo[ tipo ] += galonesTipo;
+            }
+
+            for( int surtidor = desde; surtidor < hasta; surtidor++ )
+            {
+                double galonesSurtidor = galonesPorSurtidor[ surtidor ];
+                mejoresSurtidores.ofrecer( surtidor, galonesSurtidor );
+                // Un surtidor sin empleado de la gasolinera sólo cuenta en los totales por surtidor y por tipo
+                int empleado = estado.getEmpleadoAsignado( surtidor );
+                if( empleado < 0 || empleado >= surtidoresPorEmpleado.length )
+                    continue;
+                galonesSurtidoresAsignados[ empleado ] += galonesSurtidor;
+                surtidoresPorEmpleado[ empleado ]++;
+            }
+        }
+
+        void combinar( Acumulador otro )
+        {
+            for( int tipo = 0; tipo < galonesPorTipo.length; tipo++ )
+            {
+                galonesPorTipo[ tipo ] += otro.galonesPorTipo[ tipo ];
+            }
+            for( int empleado = 0; empleado < galonesSurtidoresAsignados.length; empleado++ )
+            {
+                galonesSurtidoresAsignados[ empleado ] += otro.galonesSurtidoresAsignados[ empleado ];
+                surtidoresPorEmpleado[ empleado ] += otro.surtidoresPorEmpleado[ empleado ];
+            }
+            mejoresSurtidores.combinar( otro.mejoresSurtidores );
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package uniandes.dpoo.gasolinera.utils;
+
+import java.io.DataInput;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * Codificaciones compactas de números para los formatos en disco.
+ *
+ * Un entero variable (varint) usa 7 bits de cada byte para el número y el bit más alto para indicar si siguen más bytes, así que los números pequeños ocupan un solo
+ * byte. Los números que pueden ser negativos, como las diferencias entre valores consecutivos, se codifican primero en zigzag (0, -1, 1, -2, 2... se vuelven 0, 1, 2,
+ * 3, 4...) para que los negativos pequeños también ocupen pocos bytes. Las cantidades de galones casi siempre tienen pocos decimales, así que se pueden guardar como un
+ * entero de milésimas de galón cuando la conversión no pierde precisión.
+ */
+public final class CodificacionEnteros
+{
+    /**
+     * La cantidad de milésimas en un galón
+     */
+    public static final int MILESIMAS = 1000;
+
+    private CodificacionEnteros( )
+    {
+    }
+
+    // ************************************************************************
+    // Métodos estáticos
+    // ************************************************************************
+
+    /**
+     * Escribe un número no negativo como entero variable. Si el número es negativo se escriben 10 bytes
+     * @param salida El flujo donde se escribe
+     * @param valor El número
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static void escribirVarint( OutputStream salida, long valor ) throws IOException
+    {
+        while( ( valor & ~0x7FL ) != 0 )
+        {
+            salida.write( ( int ) ( ( valor & 0x7F ) | 0x80 ) );
+            valor >>>= 7;
+        }
+        salida.write( ( int )valor );
+    }
+
+    /**
+     * Escribe un número que puede ser negativo, codificado en zigzag y luego como entero variable
+     * @param salida El flujo donde se escribe
+     * @param valor El número
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo
+     */
+    public static void escribirZigzag( OutputStream salida, long valor ) throws IOException
+    {
+        escribirVarint( salida, ( valor << 1 ) ^ ( valor >> 63 ) );
+    }
+
+    /**
+     * Lee un entero variable desde la posición actual de un buffer, avanzando la posición
+     * @param entrada El buffer
+     * @return El número
+     * @throws IllegalArgumentException Si el número tiene más de 10 bytes
+     */
+    public static long leerVarint( ByteBuffer entrada )
+    {
+        long valor = 0;
+        for( int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7 )
+        {
+            byte b = entrada.get( );
+            valor |= ( long ) ( b & 0x7F ) << desplazamiento;
+            if( b >= 0 )
+                return valor;
+        }
+        throw new IllegalArgumentException( "El entero variable tiene más de 10 bytes" );
+    }
+
+    /**
+     * Lee un número codificado en zigzag desde la posición actual de un buffer, avanzando la posición
+     * @param entrada El buffer
+     * @return El número
+     */
+    public static long leerZigzag( ByteBuffer entrada )
+    {
+        long codificado = leerVarint( entrada );
+        return ( codificado >>> 1 ) ^ -( codificado & 1 );
+    }
+
+    /**
+     * Lee un entero variable desde un flujo
+     * @param entrada El flujo
+     * @return El número
+     * @throws IOException Se lanza esta excepción si hay problemas leyendo o si el número tiene más de 10 bytes
+     */
+    public static long leerVarint( DataInput entrada ) throws IOException
+    {
+        long valor = 0;
+        for( int desplazamiento = 0; desplazamiento < 64; desplazamiento += 7 )
+        {
+            byte b = entrada.readByte( );
+            valor |= ( long ) ( b & 0x7F ) << desplazamiento;
+            if( b >= 0 )
+                return valor;
+        }
+        throw new IOException( "El entero variable tiene más de 10 bytes" );
+    }
+
+    /**
+     * Lee un número codificado en zigzag desde un flujo
+     * @param entrada El flujo
+     * @return El número
+     * @throws IOException Se lanza esta excepción si hay problemas leyendo
+     */
+    public static long leerZigzag( DataInput entrada ) throws IOException
+    {
+        long codificado = leerVarint( entrada );
+        return ( codificado >>> 1 ) ^ -( codificado & 1 );
+    }
+
+    /**
+     * Indica si una cantidad de galones se puede guardar como milésimas de galón sin perder precisión
+     * @param galones La cantidad de galones
+     * @return Retorna true si al convertir la cantidad a milésimas y de vuelta a galones se obtiene exactamente la misma cantidad
+     */
+    public static boolean cabeEnMilesimas( double galones )
+    {
+        if( !( Math.abs( galones ) < ( double ) ( Long.MAX_VALUE / MILESIMAS ) ) )
+            return false;
+        return aGalones( aMilesimas( galones ) ) == galones;
+    }
+
+    /**
+     * Convierte una cantidad de galones a milésimas de galón, redondeando
+     * @param galones La cantidad de galones
+     * @return La cantidad de milésimas
+     */
+    public static long aMilesimas( double galones )
+    {
+        return Math.round( galones * MILESIMAS );
+    }
+
+    /**
+     * Convierte una cantidad de milésimas de galón a galones
+     * @param milesimas La cantidad de milésimas
+     * @return La cantidad de galones
+     */
+    public static double aGalones( long milesimas )
+    {
+        return milesimas / ( double )MILESIMAS;
+    }
+}
@@ -0,0 +1,387 @@
+package uniandes.dpoo.gasolinera.utils;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import uniandes.dpoo.gasolinera.logica.FormatoBinario;
+
+/**
+ * Genera archivos con gasolineras sintéticas de gran tamaño, para hacer pruebas de carga y mediciones de desempeño con datos del tamaño de los de producción.
+ *
+ * Los archivos se pueden generar en el formato de texto (.gas) que lee Gasolinera.cargarEstado, o en el formato binario que lee Gasolinera.cargarEstadoBinario. Los
+ * empleados no se reparten de manera uniforme: el empleado en la posición k atiende surtidores con probabilidad proporcional a 1 / (k + 1)^sesgo, como pasa cuando
+ * unos pocos empleados cubren la mayoría de los turnos.
+ *
+ * El contenido se genera por bloques en varios threads. Los números aleatorios de cada tipo de gasolina, empleado y surtidor se derivan sólo de la semilla y de su
+ * posición, así que la misma semilla produce exactamente la misma gasolinera en los dos formatos y con cualquier cantidad de threads.
+ */
+public class GeneradorGasolineras
+{
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * La cantidad aproximada de bytes de cada bloque de texto que genera un thread
+     */
+    private static final int BYTES_POR_BLOQUE = 1 << 20;
+
+    /**
+     * Las secciones del archivo, usadas para que cada una tenga números aleatorios independientes
+     */
+    private static final long SECCION_TIPOS = 1;
+    private static final long SECCION_EMPLEADOS = 2;
+    private static final long SECCION_SURTIDORES = 3;
+
+    private final int cantidadSurtidores;
+
+    private final int cantidadTipos;
+
+    private final int cantidadEmpleados;
+
+    private final long semilla;
+
+    /**
+     * La tabla para sortear el empleado de cada surtidor con la distribución sesgada
+     */
+    private final Sorteo.TablaPesos pesosEmpleados;
+
+    /**
+     * La cantidad de threads que generan el contenido
+     */
+    private int cantidadThreads;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un generador con sesgo 1 en la distribución de los empleados
+     * @param cantidadSurtidores La cantidad de surtidores de la gasolinera
+     * @param cantidadTipos La cantidad de tipos de gasolina
+     * @param cantidadEmpleados La cantidad de empleados
+     * @param semilla La semilla de los números aleatorios
+     */
+    public GeneradorGasolineras( int cantidadSurtidores, int cantidadTipos, int cantidadEmpleados, long semilla )
+    {
+        this( cantidadSurtidores, cantidadTipos, cantidadEmpleados, semilla, 1.0 );
+    }
+
+    /**
+     * Construye un generador
+     * @param cantidadSurtidores La cantidad de surtidores de la gasolinera
+     * @param cantidadTipos La cantidad de tipos de gasolina
+     * @param cantidadEmpleados La cantidad de empleados. Debe haber al menos uno
+     * @param semilla La semilla de los números aleatorios
+     * @param sesgo El exponente de la distribución de los empleados. Con 0 todos los empleados atienden la misma cantidad de surtidores en promedio
+     */
+    public GeneradorGasolineras( int cantidadSurtidores, int cantidadTipos, int cantidadEmpleados, long semilla, double sesgo )
+    {
+        if( cantidadEmpleados < 1 )
+            throw new IllegalArgumentException( "Debe haber al menos un empleado" );
+        this.cantidadSurtidores = cantidadSurtidores;
+        this.cantidadTipos = cantidadTipos;
+        this.cantidadEmpleados = cantidadEmpleados;
+        this.semilla = semilla;
+        this.cantidadThreads = Runtime.getRuntime( ).availableProcessors( );
+
+        double[] pesos = new double[cantidadEmpleados];
+        for( int k = 0; k < cantidadEmpleados; k++ )
+        {
+            pesos[ k ] = 1 / Math.pow( k + 1, sesgo );
+        }
+        this.pesosEmpleados = new Sorteo.TablaPesos( pesos );
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Cambia la cantidad de threads que generan el contenido de los archivos. El contenido generado es el mismo sin importar la cantidad de threads
+     * @param cantidadThreads La cantidad de threads. Si es menor a 1 se usa 1
+     */
+    public void cambiarCantidadThreads( int cantidadThreads )
+    {
+        this.cantidadThreads = Math.max( 1, cantidadThreads );
+    }
+
+    /**
+     * Genera la gasolinera en un archivo con el formato de texto
+     * @param archivo El archivo donde se escribirá la gasolinera. Si ya existe, se sobreescribe
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo
+     */
+    public void generarTexto( File archivo ) throws IOException
+    {
+        ExecutorService ejecutor = Executors.newFixedThreadPool( cantidadThreads );
+        try( OutputStream salida = new BufferedOutputStream( new FileOutputStream( archivo ), 1 << 16 ) )
+        {
+            int tamanoLineaSurtidor = Math.max( 1, cantidadTipos * 24 );
+            escribirEnOrden( salida, ejecutor, cantidadTipos, 4096, this::textoTipos );
+            escribirEnOrden( salida, ejecutor, cantidadSurtidores, Math.max( 1, BYTES_POR_BLOQUE / tamanoLineaSurtidor ), this::textoSurtidores );
+            escribirEnOrden( salida, ejecutor, cantidadEmpleados, 16384, this::textoEmpleados );
+        }
+        finally
+        {
+            ejecutor.shutdownNow( );
+        }
+    }
+
+    /**
+     * Genera la gasolinera en un archivo con el formato binario (ver FormatoBinario)
+     * @param archivo El archivo donde se escribirá la gasolinera. Si ya existe, se sobreescribe
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo
+     */
+    public void generarBinario( File archivo ) throws IOException
+    {
+        // El encabezado, los tipos y los empleados tienen tamaño variable: se escriben en orden
+        long inicioSurtidores;
+        try( DataOutputStream salida = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( archivo ), 1 << 16 ) ) )
+        {
+            salida.writeInt( FormatoBinario.MAGIA );
+            salida.writeInt( FormatoBinario.VERSION );
+            salida.writeInt( cantidadTipos );
+            salida.writeInt( cantidadEmpleados );
+            salida.writeInt( cantidadSurtidores );
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                SplittableRandom azar = generador( SECCION_TIPOS, id );
+                salida.writeUTF( nombreTipo( id ) );
+                salida.writeInt( precio( azar ) );
+                salida.writeDouble( disponible( azar ) );
+            }
+            for( int id = 0; id < cantidadEmpleados; id++ )
+            {
+                salida.writeUTF( nombreEmpleado( id ) );
+                salida.writeInt( dinero( generador( SECCION_EMPLEADOS, id ) ) );
+            }
+            salida.flush( );
+            inicioSurtidores = archivo.length( );
+        }
+
+        // Los registros de los surtidores tienen tamaño fijo: cada bloque se escribe directamente en su posición del archivo
+        int tamanoRegistro = FormatoBinario.tamanoRegistroSurtidor( cantidadTipos );
+        int surtidoresPorBloque = Math.max( 1, BYTES_POR_BLOQUE / tamanoRegistro );
+        ExecutorService ejecutor = Executors.newFixedThreadPool( cantidadThreads );
+        try( FileChannel canal = FileChannel.open( archivo.toPath( ), StandardOpenOption.WRITE ) )
+        {
+            List<Future<?>> pendientes = new ArrayList<Future<?>>( );
+            for( int inicio = 0; inicio < cantidadSurtidores; inicio += surtidoresPorBloque )
+            {
+                final int desde = inicio;
+                final int hasta = ( int )Math.min( cantidadSurtidores, ( long )inicio + surtidoresPorBloque );
+                pendientes.add( ejecutor.submit( ( ) -> {
+                    ByteBuffer bloque = ByteBuffer.allocate( ( hasta - desde ) * tamanoRegistro );
+                    for( int i = desde; i < hasta; i++ )
+                    {
+                        SplittableRandom azar = generador( SECCION_SURTIDORES, i );
+                        bloque.putInt( pesosEmpleados.sortear( azar ) );
+                        for( int id = 0; id < cantidadTipos; id++ )
+                        {
+                            bloque.putDouble( galones( azar ) );
+                        }
+                    }
+                    bloque.flip( );
+                    long posicion = inicioSurtidores + ( long )desde * tamanoRegistro;
+                    while( bloque.hasRemaining( ) )
+                    {
+                        posicion += canal.write( bloque, posicion );
+                    }
+                    return null;
+                } ) );
+            }
+            for( Future<?> pendiente : pendientes )
+            {
+                esperar( pendiente );
+            }
+        }
+        finally
+        {
+            ejecutor.shutdownNow( );
+        }
+    }
+
+    /**
+     * Genera el contenido de una sección por bloques en varios threads y lo escribe en orden. Para no tener todo el archivo en memoria, sólo se generan por adelantado
+     * unos pocos bloques por thread.
+     * @param salida Donde se escribe el contenido
+     * @param ejecutor Los threads que generan los bloques
+     * @param cantidad La cantidad de elementos de la sección
+     * @param elementosPorBloque La cantidad de elementos de cada bloque
+     * @param codificador Genera el contenido de los elementos entre dos posiciones
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo o generando un bloque
+     */
+    private void escribirEnOrden( OutputStream salida, ExecutorService ejecutor, int cantidad, int elementosPorBloque, CodificadorBloque codificador ) throws IOException
+    {
+        ArrayDeque<Future<byte[]>> pendientes = new ArrayDeque<Future<byte[]>>( );
+        int inicio = 0;
+        while( inicio < cantidad || !pendientes.isEmpty( ) )
+        {
+            while( inicio < cantidad && pendientes.size( ) < cantidadThreads * 2 )
+            {
+                final int desde = inicio;
+                final int hasta = ( int )Math.min( cantidad, ( long )inicio + elementosPorBloque );
+                pendientes.addLast( ejecutor.submit( ( ) -> codificador.codificar( desde, hasta ) ) );
+                inicio = hasta;
+            }
+            salida.write( esperar( pendientes.removeFirst( ) ) );
+        }
+    }
+
+    /**
+     * Espera el resultado de un bloque, convirtiendo los errores en IOException
+     */
+    private static <T> T esperar( Future<T> pendiente ) throws IOException
+    {
+        try
+        {
+            return pendiente.get( );
+        }
+        catch( InterruptedException e )
+        {
+            Thread.currentThread( ).interrupt( );
+            throw new IOException( "Se interrumpió la generación del archivo", e );
+        }
+        catch( ExecutionException e )
+        {
+            if( e.getCause( ) instanceof IOException )
+                throw ( IOException )e.getCause( );
+            throw new IOException( "No se pudo generar un bloque del archivo", e.getCause( ) );
+        }
+    }
+
+    private byte[] textoTipos( int desde, int hasta )
+    {
+        StringBuilder sb = new StringBuilder( ( hasta - desde ) * 32 );
+        for( int id = desde; id < hasta; id++ )
+        {
+            SplittableRandom azar = generador( SECCION_TIPOS, id );
+            sb.append( "tipo:" ).append( nombreTipo( id ) ).append( ':' ).append( precio( azar ) ).append( ':' ).append( disponible( azar ) ).append( '\n' );
+        }
+        return sb.toString( ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private byte[] textoSurtidores( int desde, int hasta )
+    {
+        StringBuilder sb = new StringBuilder( ( hasta - desde ) * ( 24 + cantidadTipos * 24 ) );
+        for( int i = desde; i < hasta; i++ )
+        {
+            SplittableRandom azar = generador( SECCION_SURTIDORES, i );
+            sb.append( "surtidor:" ).append( nombreEmpleado( pesosEmpleados.sortear( azar ) ) );
+            for( int id = 0; id < cantidadTipos; id++ )
+            {
+                sb.append( ':' ).append( nombreTipo( id ) ).append( ':' ).append( galones( azar ) );
+            }
+            sb.append( '\n' );
+        }
+        return sb.toString( ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    private byte[] textoEmpleados( int desde, int hasta )
+    {
+        StringBuilder sb = new StringBuilder( ( hasta - desde ) * 32 );
+        for( int id = desde; id < hasta; id++ )
+        {
+            sb.append( "empleado:" ).append( nombreEmpleado( id ) ).append( ':' ).append( dinero( generador( SECCION_EMPLEADOS, id ) ) ).append( '\n' );
+        }
+        return sb.toString( ).getBytes( StandardCharsets.UTF_8 );
+    }
+
+    /**
+     * Construye el generador de números aleatorios de un elemento, a partir de la semilla, la sección y la posición del elemento
+     */
+    private SplittableRandom generador( long seccion, int posicion )
+    {
+        return new SplittableRandom( semilla ^ ( seccion << 40 ) ^ ( posicion * 0x9E3779B97F4A7C15L ) );
+    }
+
+    private static String nombreTipo( int id )
+    {
+        return "tipo" + id;
+    }
+
+    private static String nombreEmpleado( int id )
+    {
+        return "empleado" + id;
+    }
+
+    private static int precio( SplittableRandom azar )
+    {
+        return 8000 + azar.nextInt( 20000 );
+    }
+
+    private static double disponible( SplittableRandom azar )
+    {
+        return redondear( 1000 + azar.nextDouble( ) * 99000 );
+    }
+
+    private static int dinero( SplittableRandom azar )
+    {
+        return azar.nextInt( 5000000 );
+    }
+
+    /**
+     * Los galones vendidos de un tipo en un surtidor: la mitad de los surtidores no han vendido cada tipo de gasolina
+     */
+    private static double galones( SplittableRandom azar )
+    {
+        return azar.nextBoolean( ) ? 0 : redondear( azar.nextDouble( ) * 500 );
+    }
+
+    private static double redondear( double valor )
+    {
+        return Math.round( valor * 100 ) / 100.0;
+    }
+
+    /**
+     * Genera una gasolinera desde la línea de comandos
+     * @param args La cantidad de surtidores, la cantidad de tipos de gasolina, la cantidad de empleados, la semilla y el archivo. Si el archivo termina en .gasb, se usa
+     *        el formato binario
+     * @throws IOException Se lanza esta excepción si hay problemas escribiendo en el archivo
+     */
+    public static void main( String[] args ) throws IOException
+    {
+        if( args.length != 5 )
+        {
+            System.out.println( "Uso: GeneradorGasolineras <surtidores> <tipos> <empleados> <semilla> <archivo>" );
+            return;
+        }
+        GeneradorGasolineras generador = new GeneradorGasolineras( Integer.parseInt( args[ 0 ] ), Integer.parseInt( args[ 1 ] ), Integer.parseInt( args[ 2 ] ),
+                Long.parseLong( args[ 3 ] ) );
+        File archivo = new File( args[ 4 ] );
+        long inicio = System.nanoTime( );
+        if( archivo.getName( ).endsWith( FormatoBinario.EXTENSION ) )
+            generador.generarBinario( archivo );
+        else
+            generador.generarTexto( archivo );
+        System.out.println( "Se generaron " + archivo.length( ) + " bytes en " + ( System.nanoTime( ) - inicio ) / 1000000 + " ms" );
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Genera el contenido de los elementos de una sección entre dos posiciones
+     */
+    private interface CodificadorBloque
+    {
+        byte[] codificar( int desde, int hasta );
+    }
+}
@@ -1,13 +1,339 @@
 package uniandes.dpoo.gasolinera.utils;
 
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.random.RandomGenerator;
+import java.util.random.RandomGenerator.SplittableGenerator;
+
+/**
+ * Esta clase sirve para hacer sorteos entre los elementos de un arreglo.
+ *
+ * Los métodos estáticos usan el generador propio de cada thread. Las instancias usan el generador que se les indique, lo cual permite reproducir un sorteo a partir de
+ * una semilla. Una instancia no debe compartirse entre threads: para sortear en paralelo se usa el método dividir, que entrega una instancia independiente para cada
+ * thread sin que compitan por el mismo generador.
+ *
+ * @param <E> El tipo de los elementos que se sortean
+ */
 public class Sorteo<E>
 {
+    // ************************************************************************
+    // Atributos
+    // ************************************************************************
+
+    /**
+     * El generador que usa esta instancia, o null si se debe usar el generador del thread actual
+     */
+    private RandomGenerator generador;
+
+    // ************************************************************************
+    // Constructores
+    // ************************************************************************
+
+    /**
+     * Construye un sorteo que usa el generador propio del thread que haga cada sorteo. Este sorteo sí se puede compartir entre threads, pero no es reproducible.
+     */
+    public Sorteo( )
+    {
+        this.generador = null;
+    }
+
+    /**
+     * Construye un sorteo reproducible: dos sorteos construidos con la misma semilla producen los mismos resultados
+     * @param semilla La semilla del generador
+     */
+    public Sorteo( long semilla )
+    {
+        this.generador = new SplittableRandom( semilla );
+    }
+
+    /**
+     * Construye un sorteo que usa el generador indicado
+     * @param generador El generador de números aleatorios
+     */
+    public Sorteo( RandomGenerator generador )
+    {
+        this.generador = generador;
+    }
+
+    // ************************************************************************
+    // Métodos estáticos
+    // ************************************************************************
+
+    /**
+     * Selecciona al azar uno de los elementos del arreglo.
+     *
+     * Se usa el generador propio del thread actual, así que varios threads pueden hacer sorteos al tiempo sin competir por un generador compartido.
+     * @param opciones Las opciones entre las que se hace el sorteo. No puede estar vacío
+     * @return El elemento seleccionado
+     */
     public static <E> E seleccionarAlAzar( E[] opciones )
     {
-        E seleccionado = null;
-        double cantidad = opciones.length;
-        int posicion = ( int ) ( Math.random( ) * cantidad );
-        seleccionado = opciones[ posicion ];
-        return seleccionado;
+        return seleccionarAlAzar( opciones, ThreadLocalRandom.current( ) );
+    }
+
+    /**
+     * Selecciona al azar uno de los elementos del arreglo usando el generador indicado
+     * @param opciones Las opciones entre las que se hace el sorteo. No puede estar vacío
+     * @param generador El generador de números aleatorios. Si se construye con una semilla, el resultado es reproducible
+     * @return El elemento seleccionado
+     */
+    public static <E> E seleccionarAlAzar( E[] opciones, RandomGenerator generador )
+    {
+        int posicion = generador.nextInt( opciones.length );
+        return opciones[ posicion ];
+    }
+
+    /**
+     * Llena el arreglo destino con elementos seleccionados al azar (con reemplazo) del arreglo de opciones.
+     *
+     * Es equivalente a llamar seleccionarAlAzar una vez por cada posición del destino, pero sin hacer ninguna copia de las opciones.
+     * @param opciones Las opciones entre las que se hace el sorteo. No puede estar vacío
+     * @param destino El arreglo donde quedarán los elementos seleccionados
+     * @param generador El generador de números aleatorios
+     */
+    public static <E> void seleccionarVariosAlAzar( E[] opciones, E[] destino, RandomGenerator generador )
+    {
+        int cantidad = opciones.length;
+        for( int i = 0; i < destino.length; i++ )
+        {
+            destino[ i ] = opciones[ generador.nextInt( cantidad ) ];
+        }
+    }
+
+    // ************************************************************************
+    // Métodos
+    // ************************************************************************
+
+    /**
+     * Retorna el generador que debe usarse en el sorteo actual
+     * @return El generador de la instancia, o el del thread actual si la instancia no tiene uno
+     */
+    private RandomGenerator generador( )
+    {
+        return generador != null ? generador : ThreadLocalRandom.current( );
+    }
+
+    /**
+     * Construye un nuevo sorteo, estadísticamente independiente de este, para usarlo en otro thread.
+     *
+     * Si este sorteo es reproducible, el nuevo también lo es: dividir dos sorteos con la misma semilla produce sorteos equivalentes.
+     * @return El nuevo sorteo
+     */
+    public Sorteo<E> dividir( )
+    {
+        if( generador == null )
+            return new Sorteo<E>( );
+        if( generador instanceof SplittableGenerator )
+            return new Sorteo<E>( ( ( SplittableGenerator )generador ).split( ) );
+        return new Sorteo<E>( new SplittableRandom( generador.nextLong( ) ) );
+    }
+
+    /**
+     * Selecciona al azar uno de los elementos del arreglo
+     * @param opciones Las opciones entre las que se hace el sorteo. No puede estar vacío
+     * @return El elemento seleccionado
+     */
+    public E seleccionar( E[] opciones )
+    {
+        return seleccionarAlAzar( opciones, generador( ) );
+    }
+
+    /**
+     * Selecciona al azar uno de los elementos del arreglo, donde la probabilidad de cada elemento es proporcional a su peso
+     * @param opciones Las opciones entre las que se hace el sorteo
+     * @param pesos Los pesos de cada opción. Debe tener la misma longitud que las opciones, y los pesos no pueden ser negativos
+     * @return El elemento seleccionado
+     */
+    public E seleccionarPonderado( E[] opciones, double[] pesos )
+    {
+        return opciones[ new TablaPesos( pesos ).sortear( generador( ) ) ];
+    }
+
+    /**
+     * Selecciona varios elementos distintos del arreglo (sin reemplazo). Todos los subconjuntos del tamaño indicado son igualmente probables.
+     * @param opciones Las opciones entre las que se hace el sorteo
+     * @param cantidad La cantidad de elementos que se quieren. No puede ser mayor a la cantidad de opciones
+     * @return Un arreglo nuevo con los elementos seleccionados
+     */
+    public E[] seleccionarSinReemplazo( E[] opciones, int cantidad )
+    {
+        int[] posiciones = posicionesSinReemplazo( opciones.length, cantidad );
+        E[] seleccionados = Arrays.copyOf( opciones, cantidad );
+        for( int i = 0; i < cantidad; i++ )
+        {
+            seleccionados[ i ] = opciones[ posiciones[ i ] ];
+        }
+        return seleccionados;
+    }
+
+    /**
+     * Selecciona varias posiciones distintas entre 0 y cantidadOpciones - 1, usando la versión parcial del algoritmo de Fisher-Yates
+     * @param cantidadOpciones La cantidad de posiciones entre las que se hace el sorteo
+     * @param cantidad La cantidad de posiciones que se quieren. No puede ser mayor a cantidadOpciones
+     * @return Un arreglo con las posiciones seleccionadas
+     */
+    public int[] posicionesSinReemplazo( int cantidadOpciones, int cantidad )
+    {
+        if( cantidad < 0 || cantidad > cantidadOpciones )
+            throw new IllegalArgumentException( "No se pueden seleccionar " + cantidad + " elementos distintos de " + cantidadOpciones );
+
+        RandomGenerator g = generador( );
+        int[] posiciones = new int[cantidadOpciones];
+        for( int i = 0; i < cantidadOpciones; i++ )
+        {
+            posiciones[ i ] = i;
+        }
+        for( int i = 0; i < cantidad; i++ )
+        {
+            int j = i + g.nextInt( cantidadOpciones - i );
+            int temporal = posiciones[ i ];
+            posiciones[ i ] = posiciones[ j ];
+            posiciones[ j ] = temporal;
+        }
+        return Arrays.copyOf( posiciones, cantidad );
+    }
+
+    /**
+     * Llena el arreglo destino con posiciones al azar (con reemplazo) entre 0 y cantidadOpciones - 1
+     * @param destino El arreglo donde quedarán las posiciones
+     * @param cantidadOpciones La cantidad de posiciones entre las que se hace el sorteo
+     */
+    public void llenarPosiciones( int[] destino, int cantidadOpciones )
+    {
+        RandomGenerator g = generador( );
+        for( int i = 0; i < destino.length; i++ )
+        {
+            destino[ i ] = g.nextInt( cantidadOpciones );
+        }
+    }
+
+    /**
+     * Llena el arreglo destino con posiciones al azar (con reemplazo), donde la probabilidad de cada posición es proporcional a su peso en la tabla
+     * @param destino El arreglo donde quedarán las posiciones
+     * @param tabla La tabla con los pesos de cada posición
+     */
+    public void llenarPosicionesPonderadas( int[] destino, TablaPesos tabla )
+    {
+        RandomGenerator g = generador( );
+        for( int i = 0; i < destino.length; i++ )
+        {
+            destino[ i ] = tabla.sortear( g );
+        }
+    }
+
+    /**
+     * Llena el arreglo destino con números al azar entre 0 (incluido) y 1 (excluido)
+     * @param destino El arreglo donde quedarán los números
+     */
+    public void llenarNumeros( double[] destino )
+    {
+        RandomGenerator g = generador( );
+        for( int i = 0; i < destino.length; i++ )
+        {
+            destino[ i ] = g.nextDouble( );
+        }
+    }
+
+    // ************************************************************************
+    // Clases internas
+    // ************************************************************************
+
+    /**
+     * Una tabla de pesos preparada con el método de alias de Vose, que permite hacer cada sorteo ponderado con una sola consulta, sin importar la cantidad de opciones.
+     *
+     * Construir la tabla toma tiempo proporcional a la cantidad de pesos, así que conviene construirla una vez si se van a hacer muchos sorteos con los mismos pesos.
+     * Una tabla no cambia después de construida, así que se puede compartir entre threads.
+     */
+    public static class TablaPesos
+    {
+        /**
+         * La probabilidad de quedarse con cada posición en lugar de pasar a su alias
+         */
+        private final double[] probabilidades;
+
+        /**
+         * La posición alternativa de cada posición
+         */
+        private final int[] alias;
+
+        /**
+         * Construye la tabla para los pesos indicados
+         * @param pesos Los pesos de cada posición. No pueden ser negativos y al menos uno debe ser positivo
+         */
+        public TablaPesos( double[] pesos )
+        {
+            int n = pesos.length;
+            double total = 0;
+            for( double peso : pesos )
+            {
+                if( peso < 0 || Double.isNaN( peso ) )
+                    throw new IllegalArgumentException( "Los pesos no pueden ser negativos" );
+                total += peso;
+            }
+            if( n == 0 || total <= 0 )
+                throw new IllegalArgumentException( "Al menos un peso debe ser positivo" );
+
+            probabilidades = new double[n];
+            alias = new int[n];
+
+            // Las posiciones se reparten en dos pilas según si su peso escalado es menor o mayor al promedio
+            double[] escalados = new double[n];
+            int[] pequenos = new int[n];
+            int[] grandes = new int[n];
+            int cantidadPequenos = 0;
+            int cantidadGrandes = 0;
+            for( int i = 0; i < n; i++ )
+            {
+                escalados[ i ] = pesos[ i ] * n / total;
+                if( escalados[ i ] < 1 )
+                    pequenos[ cantidadPequenos++ ] = i;
+                else
+                    grandes[ cantidadGrandes++ ] = i;
+            }
+
+            while( cantidadPequenos > 0 && cantidadGrandes > 0 )
+            {
+                int pequeno = pequenos[ --cantidadPequenos ];
+                int grande = grandes[ cantidadGrandes - 1 ];
+                probabilidades[ pequeno ] = escalados[ pequeno ];
+                alias[ pequeno ] = grande;
+                escalados[ grande ] = ( escalados[ grande ] + escalados[ pequeno ] ) - 1;
+                if( escalados[ grande ] < 1 )
+                {
+                    cantidadGrandes--;
+                    pequenos[ cantidadPequenos++ ] = grande;
+                }
+            }
+            // Lo que queda en cualquiera de las pilas tiene probabilidad 1 (salvo errores de redondeo)
+            while( cantidadGrandes > 0 )
+            {
+                probabilidades[ grandes[ --cantidadGrandes ] ] = 1;
+            }
+            while( cantidadPequenos > 0 )
+            {
+                probabilidades[ pequenos[ --cantidadPequenos ] ] = 1;
+            }
+        }
+
+        /**
+         * Retorna la cantidad de posiciones en la tabla
+         * @return La cantidad de pesos con la que se construyó la tabla
+         */
+        public int getCantidad( )
+        {
+            return probabilidades.length;
+        }
+
+        /**
+         * Sortea una posición de acuerdo con los pesos de la tabla
+         * @param generador El generador de números aleatorios
+         * @return La posición seleccionada
+         */
+        public int sortear( RandomGenerator generador )
+        {
+            int posicion = generador.nextInt( probabilidades.length );
+            return generador.nextDouble( ) < probabilidades[ posicion ] ? posicion : alias[ posicion ];
+        }
     }
 }
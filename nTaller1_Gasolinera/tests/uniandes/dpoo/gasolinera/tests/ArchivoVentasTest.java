@@ -0,0 +1,317 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.eventos.PublicadorVentas;
+import uniandes.dpoo.gasolinera.historial.ArchivoVentas;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class ArchivoVentasTest
+{
+    private static final long HORA = TimeUnit.HOURS.toMillis( 1 );
+
+    private static final String[] TIPOS = new String[]{ "corriente", "extra", "diesel" };
+
+    private File directorio;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        directorio = Files.createTempDirectory( "ventas" ).toFile( );
+        directorio.deleteOnExit( );
+    }
+
+    private static List<EventoVenta> generarVentas( int cantidad, long inicio, long semilla )
+    {
+        Random aleatorio = new Random( semilla );
+        List<EventoVenta> ventas = new ArrayList<EventoVenta>( );
+        long instante = inicio;
+        for( int i = 0; i < cantidad; i++ )
+        {
+            // Algunas ventas llegan un poco desordenadas, como las que publican varios threads
+            instante += aleatorio.nextInt( 2000 );
+            int tipo = aleatorio.nextInt( TIPOS.length );
+            double galones = 1 + aleatorio.nextInt( 200 ) / 10.0;
+            ventas.add( new EventoVenta( aleatorio.nextInt( 20 ), tipo, TIPOS[ tipo ], galones, ( int )Math.round( galones * 10000 ), 10000, 1, "Empleado " + aleatorio.nextInt( 5 ),
+                    instante - aleatorio.nextInt( 500 ) ) );
+        }
+        return ventas;
+    }
+
+    private static List<EventoVenta> filtrar( List<EventoVenta> ventas, long desde, long hasta, int surtidor, int tipo )
+    {
+        List<EventoVenta> resultado = new ArrayList<EventoVenta>( );
+        for( EventoVenta venta : ventas )
+        {
+            if( venta.getInstante( ) >= desde && venta.getInstante( ) < hasta && ( surtidor < 0 || venta.getNumeroSurtidor( ) == surtidor )
+                    && ( tipo < 0 || venta.getIdTipoGasolina( ) == tipo ) )
+                resultado.add( venta );
+        }
+        resultado.sort( ( a, b ) -> Long.compare( a.getInstante( ), b.getInstante( ) ) );
+        return resultado;
+    }
+
+    private static void assertMismasVentas( List<EventoVenta> esperadas, List<EventoVenta> obtenidas )
+    {
+        assertEquals( esperadas.size( ), obtenidas.size( ), "La consulta no retornó la cantidad de ventas esperada" );
+        // Una venta que llegó tarde queda en un segmento posterior, así que las respuestas se comparan en orden de instante
+        obtenidas.sort( ( a, b ) -> Long.compare( a.getInstante( ), b.getInstante( ) ) );
+        for( int i = 0; i < esperadas.size( ); i++ )
+        {
+            EventoVenta esperada = esperadas.get( i );
+            EventoVenta obtenida = obtenidas.get( i );
+            assertEquals( esperada.getInstante( ), obtenida.getInstante( ), "El instante de la venta no es correcto" );
+            assertEquals( esperada.getNumeroSurtidor( ), obtenida.getNumeroSurtidor( ), "El surtidor de la venta no es correcto" );
+            assertEquals( esperada.getNombreTipoGasolina( ), obtenida.getNombreTipoGasolina( ), "El tipo de la venta no es correcto" );
+            assertEquals( esperada.getGalones( ), obtenida.getGalones( ), 0.0001, "Los galones de la venta no son correctos" );
+            assertEquals( esperada.getPrecio( ), obtenida.getPrecio( ), "El precio de la venta no es correcto" );
+            assertEquals( esperada.getNombreEmpleado( ), obtenida.getNombreEmpleado( ), "El empleado de la venta no es correcto" );
+        }
+    }
+
+    @Test
+    public void testConsultasPorRango( ) throws Exception
+    {
+        long inicio = 100 * HORA;
+        List<EventoVenta> ventas = generarVentas( 20000, inicio, 3 );
+        ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.HOURS );
+        for( EventoVenta venta : ventas )
+        {
+            archivo.agregar( venta );
+        }
+        assertTrue( archivo.getCantidadSegmentos( ) >= 5, "Las ventas de cada hora deberían quedar en su propio segmento" );
+        assertTrue( archivo.getCantidadPendientes( ) > 0, "Las ventas de la última hora deberían seguir pendientes" );
+
+        // La consulta también incluye las ventas pendientes
+        long desde = inicio + 2 * HORA + 1234;
+        long hasta = desde + HORA;
+        assertMismasVentas( filtrar( ventas, desde, hasta, 3, 1 ), archivo.consultar( desde, hasta, 3, 1 ) );
+
+        archivo.close( );
+        assertEquals( 0, archivo.getCantidadPendientes( ), "Al cerrar el archivo se deberían escribir las ventas pendientes" );
+
+        // Al abrir de nuevo el directorio se leen los segmentos del disco
+        ArchivoVentas abierto = new ArchivoVentas( directorio, 1, TimeUnit.HOURS );
+        assertEquals( archivo.getCantidadSegmentos( ), abierto.getCantidadSegmentos( ), "Se deberían abrir todos los segmentos" );
+        assertEquals( ventas.size( ), abierto.recorrer( Long.MIN_VALUE, Long.MAX_VALUE, -1, -1, venta -> {} ), "El archivo debería tener todas las ventas" );
+        assertMismasVentas( filtrar( ventas, desde, hasta, -1, -1 ), abierto.consultar( desde, hasta, -1, -1 ) );
+        assertMismasVentas( filtrar( ventas, Long.MIN_VALUE, Long.MAX_VALUE, 7, -1 ), abierto.consultar( Long.MIN_VALUE, Long.MAX_VALUE, 7, -1 ) );
+        assertEquals( 0, abierto.consultar( desde, hasta, 25, -1 ).size( ), "Ningún segmento tiene el surtidor 25" );
+        assertEquals( 0, abierto.consultar( inicio - HORA, inicio - 1000, -1, -1 ).size( ), "No hay ventas antes del inicio" );
+    }
+
+    @Test
+    public void testAgregarConErrorDeEscritura( ) throws Exception
+    {
+        long inicio = 300 * HORA;
+        ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.HOURS );
+        archivo.agregar( new EventoVenta( 0, 0, TIPOS[ 0 ], 1, 10000, 10000, 1, "Empleado 0", inicio ) );
+        archivo.agregar( new EventoVenta( 0, 1, TIPOS[ 1 ], 1, 10000, 10000, 1, "Empleado 0", inicio + 1000 ) );
+
+        // Sin el directorio no se puede escribir el segmento de la hora anterior
+        assertTrue( directorio.delete( ), "El directorio vacío se debería poder borrar" );
+        EventoVenta siguiente = new EventoVenta( 1, 0, TIPOS[ 0 ], 2, 20000, 10000, 1, "Empleado 1", inicio + 2 * HORA );
+        assertThrows( IOException.class, ( ) -> archivo.agregar( siguiente ), "Si el segmento no se puede escribir se debería lanzar una excepción" );
+        assertEquals( 3, archivo.getCantidadPendientes( ), "La venta que no se pudo agregar debería quedar pendiente" );
+
+        assertTrue( directorio.mkdirs( ), "El directorio se debería poder crear de nuevo" );
+        archivo.close( );
+        assertEquals( 3, new ArchivoVentas( directorio, 1, TimeUnit.HOURS ).recorrer( Long.MIN_VALUE, Long.MAX_VALUE, -1, -1, venta -> {} ),
+                "Ninguna venta se debería perder" );
+    }
+
+    @Test
+    public void testCompresion( ) throws Exception
+    {
+        long inicio = 200 * HORA;
+        List<EventoVenta> ventas = generarVentas( 20000, inicio, 5 );
+        File directorioComprimido = Files.createTempDirectory( "comprimidas" ).toFile( );
+        directorioComprimido.deleteOnExit( );
+        try( ArchivoVentas simple = new ArchivoVentas( directorio, 1, TimeUnit.HOURS, false );
+                ArchivoVentas comprimido = new ArchivoVentas( directorioComprimido, 1, TimeUnit.HOURS, true ) )
+        {
+            for( EventoVenta venta : ventas )
+            {
+                simple.agregar( venta );
+                comprimido.agregar( venta );
+            }
+        }
+
+        ArchivoVentas abierto = new ArchivoVentas( directorioComprimido, 1, TimeUnit.HOURS );
+        long desde = inicio + 3 * HORA + 777;
+        long hasta = desde + 2 * HORA;
+        assertMismasVentas( filtrar( ventas, desde, hasta, -1, -1 ), abierto.consultar( desde, hasta, -1, -1 ) );
+        assertMismasVentas( filtrar( ventas, Long.MIN_VALUE, Long.MAX_VALUE, 4, 2 ), abierto.consultar( Long.MIN_VALUE, Long.MAX_VALUE, 4, 2 ) );
+        assertTrue( tamano( directorioComprimido ) < tamano( directorio ), "Los segmentos comprimidos deberían ocupar menos espacio" );
+    }
+
+    /**
+     * Escribe un segmento en el formato de registros de tamaño fijo (la versión 1), con un solo tipo de gasolina y un solo empleado
+     */
+    private static void escribirSegmentoVersion1( File archivo, List<EventoVenta> ventas, int registrosPorBloque ) throws IOException
+    {
+        ByteArrayOutputStream bytesCatalogo = new ByteArrayOutputStream( );
+        try( DataOutputStream catalogo = new DataOutputStream( bytesCatalogo ) )
+        {
+            catalogo.writeInt( 1 );
+            catalogo.writeUTF( TIPOS[ 0 ] );
+            catalogo.writeInt( 1 );
+            catalogo.writeUTF( ventas.get( 0 ).getNombreEmpleado( ) );
+        }
+        byte[] contenidoCatalogo = bytesCatalogo.toByteArray( );
+        int cantidadBloques = ( ventas.size( ) + registrosPorBloque - 1 ) / registrosPorBloque;
+        int inicioMapas = ( 48 + contenidoCatalogo.length + 7 ) & ~7;
+        int inicioIndice = inicioMapas + 2 * Long.BYTES;
+        int inicioRegistros = inicioIndice + cantidadBloques * Long.BYTES;
+
+        ByteBuffer contenido = ByteBuffer.allocate( inicioRegistros + ventas.size( ) * 40 ).order( ByteOrder.LITTLE_ENDIAN );
+        contenido.putInt( 0, 0x47415356 );
+        contenido.putInt( 4, 1 );
+        contenido.putInt( 8, ventas.size( ) );
+        contenido.putInt( 12, registrosPorBloque );
+        contenido.putLong( 16, ventas.get( 0 ).getInstante( ) );
+        contenido.putLong( 24, ventas.get( ventas.size( ) - 1 ).getInstante( ) );
+        contenido.putInt( 32, contenidoCatalogo.length );
+        contenido.putInt( 36, 1 );
+        contenido.putInt( 40, 1 );
+        contenido.put( 48, contenidoCatalogo );
+        long surtidores = 0;
+        for( EventoVenta venta : ventas )
+        {
+            surtidores |= 1L << venta.getNumeroSurtidor( );
+        }
+        contenido.putLong( inicioMapas, surtidores );
+        contenido.putLong( inicioMapas + Long.BYTES, 1L );
+        for( int b = 0; b < cantidadBloques; b++ )
+        {
+            contenido.putLong( inicioIndice + b * Long.BYTES, ventas.get( b * registrosPorBloque ).getInstante( ) );
+        }
+        for( int i = 0; i < ventas.size( ); i++ )
+        {
+            EventoVenta venta = ventas.get( i );
+            int registro = inicioRegistros + i * 40;
+            contenido.putLong( registro, venta.getInstante( ) );
+            contenido.putDouble( registro + 8, venta.getGalones( ) );
+            contenido.putInt( registro + 16, venta.getNumeroSurtidor( ) );
+            contenido.putInt( registro + 20, 0 );
+            contenido.putInt( registro + 24, 0 );
+            contenido.putInt( registro + 28, venta.getPrecio( ) );
+            contenido.putInt( registro + 32, venta.getPrecioPorGalon( ) );
+            contenido.putInt( registro + 36, venta.getVersionPrecio( ) );
+        }
+        Files.write( archivo.toPath( ), contenido.array( ) );
+    }
+
+    @Test
+    public void testSegmentosVersion1( ) throws Exception
+    {
+        long inicio = 400 * HORA;
+        List<EventoVenta> ventas = new ArrayList<EventoVenta>( );
+        for( int i = 0; i < 10; i++ )
+        {
+            ventas.add( new EventoVenta( i % 3, 0, TIPOS[ 0 ], 1 + i / 4.0, 10000 + i, 10000, 2, "Empleado 0", inicio + i * 1000L ) );
+        }
+        escribirSegmentoVersion1( new File( directorio, "segmento-00000000" + ArchivoVentas.EXTENSION ), ventas, 4 );
+
+        try( ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.HOURS ) )
+        {
+            assertEquals( 1, archivo.getCantidadSegmentos( ), "El segmento de la versión 1 se debería abrir" );
+            assertMismasVentas( filtrar( ventas, Long.MIN_VALUE, Long.MAX_VALUE, -1, -1 ), archivo.consultar( Long.MIN_VALUE, Long.MAX_VALUE, -1, -1 ) );
+            assertMismasVentas( filtrar( ventas, inicio + 4500, inicio + 8000, 1, -1 ), archivo.consultar( inicio + 4500, inicio + 8000, 1, -1 ) );
+
+            // Los segmentos nuevos se escriben en la versión actual, junto a los anteriores
+            archivo.agregar( new EventoVenta( 1, 0, TIPOS[ 0 ], 2, 20000, 10000, 2, "Empleado 0", inicio + HORA ) );
+            archivo.sincronizar( );
+            assertEquals( 2, archivo.getCantidadSegmentos( ), "La venta nueva debería quedar en un segmento nuevo" );
+            assertEquals( 11, archivo.recorrer( Long.MIN_VALUE, Long.MAX_VALUE, -1, -1, venta -> {} ), "Se deberían leer los dos segmentos" );
+        }
+    }
+
+    private static long tamano( File directorio )
+    {
+        long total = 0;
+        for( File archivo : directorio.listFiles( ) )
+        {
+            total += archivo.length( );
+        }
+        return total;
+    }
+
+    @Test
+    public void testSuscripcionEventos( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( "corriente", 10000, 1000 ) );
+        tipos.add( new TipoGasolina( "extra", 15000, 1000 ) );
+        Gasolinera gasolinera = new Gasolinera( 4, tipos, new String[]{ "Alice", "Bob" } );
+        int idExtra = gasolinera.getIdTipoGasolina( "extra" );
+
+        ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.DAYS );
+        gasolinera.activarEventosVenta( 1024 ).subscribe( archivo );
+        long desde = System.currentTimeMillis( );
+        for( int i = 0; i < 100; i++ )
+        {
+            gasolinera.venderGasolinaPorCantidad( i % 2 == 0 ? "corriente" : "extra", 1, i % 4 );
+        }
+        gasolinera.desactivarEventosVenta( );
+
+        // Al terminar la suscripción, el archivo escribe las ventas pendientes
+        long limite = System.currentTimeMillis( ) + 5000;
+        while( archivo.getCantidadSegmentos( ) == 0 && System.currentTimeMillis( ) < limite )
+        {
+            Thread.sleep( 10 );
+        }
+        assertEquals( 1, archivo.getCantidadSegmentos( ), "Las ventas deberían quedar en un segmento" );
+        List<EventoVenta> extraSurtidor1 = archivo.consultar( desde, Long.MAX_VALUE, 1, idExtra );
+        assertEquals( 25, extraSurtidor1.size( ), "El surtidor 1 vendió extra 25 veces" );
+        assertEquals( 15000, extraSurtidor1.get( 0 ).getPrecio( ), "El precio de la venta archivada no es correcto" );
+    }
+
+    @Test
+    public void testEventosDescartados( ) throws Exception
+    {
+        // Un ejecutor que no entrega nada hasta que se le pide, para que el buffer del archivo se llene
+        List<Runnable> tareas = new ArrayList<Runnable>( );
+        PublicadorVentas publicador = new PublicadorVentas( tareas::add, 1 );
+        ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.HOURS );
+        publicador.subscribe( archivo );
+
+        long inicio = 10 * HORA;
+        for( int i = 0; i < 100; i++ )
+        {
+            publicador.publicar( new EventoVenta( 0, 0, TIPOS[ 0 ], 1, 10000, 10000, 1, "Empleado 0", inicio + i * 1000 ) );
+        }
+        while( !tareas.isEmpty( ) )
+        {
+            tareas.remove( 0 ).run( );
+        }
+        publicador.close( );
+
+        long descartadas = archivo.getVentasDescartadas( );
+        assertTrue( descartadas > 0, "El buffer del archivo debió llenarse" );
+        assertEquals( descartadas, publicador.getDescartados( ), "El archivo debe conocer todos los eventos que se descartaron para él" );
+        assertThrows( IllegalStateException.class, ( ) -> archivo.consultar( inicio, inicio + HORA, -1, -1 ), "La consulta no puede retornar un resultado incompleto" );
+        assertEquals( 0, archivo.consultar( 0, inicio, -1, -1 ).size( ), "Una consulta que no se cruza con los eventos descartados debe funcionar" );
+        archivo.close( );
+    }
+}
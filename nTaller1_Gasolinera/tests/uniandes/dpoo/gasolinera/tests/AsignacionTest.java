@@ -0,0 +1,104 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.asignacion.AsignacionMenosCargado;
+import uniandes.dpoo.gasolinera.asignacion.AsignacionPonderada;
+import uniandes.dpoo.gasolinera.asignacion.AsignacionRoundRobin;
+import uniandes.dpoo.gasolinera.logica.Empleado;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class AsignacionTest
+{
+    private static final String CORRIENTE = "corriente";
+
+    private static final String ALICE = "Alice";
+    private static final String BOB = "Bob";
+    private static final String CHARLY = "Charly";
+
+    private List<TipoGasolina> tipos;
+
+    private String[] nombres;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 14500, 100 ) );
+        nombres = new String[]{ ALICE, BOB, CHARLY };
+    }
+
+    /**
+     * Cuenta cuántos surtidores atiende un empleado
+     */
+    private int contarSurtidores( Gasolinera gasolinera, String nombreEmpleado )
+    {
+        Empleado empleado = gasolinera.getEmpleado( nombreEmpleado );
+        int cantidad = 0;
+        for( int i = 0; i < gasolinera.getCantidadSurtidores( ); i++ )
+        {
+            if( gasolinera.getSurtidor( i ).getEmpleadoAsignado( ) == empleado )
+                cantidad++;
+        }
+        return cantidad;
+    }
+
+    @Test
+    public void testRoundRobin( )
+    {
+        Gasolinera gasolinera = new Gasolinera( 7, tipos, nombres, new AsignacionRoundRobin( ) );
+
+        for( int i = 0; i < 7; i++ )
+        {
+            assertSame( gasolinera.getEmpleado( nombres[ i % 3 ] ), gasolinera.getSurtidor( i ).getEmpleadoAsignado( ), "Los empleados deberían asignarse por turnos" );
+        }
+    }
+
+    @Test
+    public void testMenosCargado( )
+    {
+        Gasolinera gasolinera = new Gasolinera( 9, tipos, nombres, new AsignacionMenosCargado( ) );
+        assertEquals( 3, contarSurtidores( gasolinera, ALICE ), "Cada empleado debería atender la misma cantidad de surtidores" );
+        assertEquals( 3, contarSurtidores( gasolinera, BOB ), "Cada empleado debería atender la misma cantidad de surtidores" );
+        assertEquals( 3, contarSurtidores( gasolinera, CHARLY ), "Cada empleado debería atender la misma cantidad de surtidores" );
+
+        // Si Alice pasa a atender seis surtidores, al reasignar los otros tres deben quedar con Bob y Charly
+        for( int i = 0; i < 6; i++ )
+        {
+            gasolinera.getSurtidor( i ).asignarEmpleado( gasolinera.getEmpleado( ALICE ) );
+        }
+        gasolinera.reasignarSurtidores( new int[]{ 6, 7, 8 }, new AsignacionMenosCargado( ) );
+        assertEquals( 6, contarSurtidores( gasolinera, ALICE ), "Los surtidores que no se reasignan conservan su empleado" );
+        assertEquals( 3, contarSurtidores( gasolinera, BOB ) + contarSurtidores( gasolinera, CHARLY ), "Los surtidores reasignados deberían quedar con los empleados menos cargados" );
+
+        gasolinera.reasignarEmpleados( new AsignacionMenosCargado( ) );
+        assertEquals( 3, contarSurtidores( gasolinera, ALICE ), "Después de reasignar todo, la carga debería quedar balanceada" );
+    }
+
+    @Test
+    public void testPonderada( )
+    {
+        Map<String, Double> pesos = new HashMap<String, Double>( );
+        pesos.put( ALICE, 2.0 );
+        pesos.put( CHARLY, 0.0 );
+
+        Gasolinera gasolinera = new Gasolinera( 12, tipos, nombres, new AsignacionPonderada( pesos, 1 ) );
+        assertEquals( 8, contarSurtidores( gasolinera, ALICE ), "Alice debería atender el doble de surtidores que Bob" );
+        assertEquals( 4, contarSurtidores( gasolinera, BOB ), "Bob debería atender la mitad de surtidores que Alice" );
+        assertEquals( 0, contarSurtidores( gasolinera, CHARLY ), "Un empleado con peso 0 no debería atender surtidores" );
+
+        pesos.put( BOB, -1.0 );
+        assertThrows( IllegalArgumentException.class, ( ) -> new AsignacionPonderada( pesos, 1 ), "Un peso negativo no debería aceptarse" );
+    }
+}
@@ -0,0 +1,168 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.CacheVentas;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class CacheVentasTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    @Test
+    public void testVentaRepetida( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 100 ) );
+        Gasolinera gasolinera = new Gasolinera( 1, tipos, new String[]{ "Alice" } );
+
+        int precio = gasolinera.venderGasolinaPorCantidad( 1L, CORRIENTE, 10, 0 );
+        int repetido = gasolinera.venderGasolinaPorCantidad( 1L, CORRIENTE, 10, 0 );
+        assertEquals( precio, repetido, "Una venta repetida debería retornar el precio de la original" );
+        assertEquals( 90, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Una venta repetida no debería despachar gasolina" );
+        assertEquals( precio, gasolinera.getEmpleado( "Alice" ).getCantidadDinero( ), "Una venta repetida no debería darle dinero al empleado" );
+
+        gasolinera.venderGasolinaPorPrecio( 2L, CORRIENTE, VALOR_CORRIENTE, 0 );
+        gasolinera.venderGasolinaPorPrecio( 2L, CORRIENTE, VALOR_CORRIENTE, 0 );
+        assertEquals( 89, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Una venta repetida no debería despachar gasolina" );
+    }
+
+    @Test
+    public void testVentaRepetidaConOtrosParametros( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 100 ) );
+        Gasolinera gasolinera = new Gasolinera( 2, tipos, new String[]{ "Alice" } );
+
+        gasolinera.venderGasolinaPorCantidad( 1L, CORRIENTE, 10, 0 );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.venderGasolinaPorCantidad( 1L, CORRIENTE, 20, 0 ),
+                "Un identificador repetido con otra cantidad se debería rechazar" );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.venderGasolinaPorCantidad( 1L, CORRIENTE, 10, 1 ),
+                "Un identificador repetido en otro surtidor se debería rechazar" );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.venderGasolinaPorPrecio( 1L, CORRIENTE, VALOR_CORRIENTE, 0 ),
+                "Un identificador repetido en una venta por precio se debería rechazar" );
+        assertEquals( 90, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Las ventas rechazadas no deberían despachar gasolina" );
+    }
+
+    @Test
+    public void testCapacidad( )
+    {
+        CacheVentas cache = new CacheVentas( 3, 1, TimeUnit.HOURS );
+        AtomicInteger ejecuciones = new AtomicInteger( );
+
+        for( long id = 0; id < 10; id++ )
+        {
+            cache.venderUnaVez( id, ( ) -> ejecuciones.incrementAndGet( ) );
+        }
+        assertEquals( 10, ejecuciones.get( ), "Cada venta nueva debería ejecutarse" );
+        assertEquals( 3, cache.getCantidad( ), "La cache debería recordar exactamente tantas ventas como su capacidad" );
+
+        // La venta más reciente se recuerda y la más antigua se olvidó
+        cache.venderUnaVez( 9, ( ) -> ejecuciones.incrementAndGet( ) );
+        assertEquals( 10, ejecuciones.get( ), "Una venta reciente no debería ejecutarse de nuevo" );
+        cache.venderUnaVez( 0, ( ) -> ejecuciones.incrementAndGet( ) );
+        assertEquals( 11, ejecuciones.get( ), "Una venta olvidada debería ejecutarse de nuevo" );
+    }
+
+    @Test
+    public void testVencimiento( ) throws Exception
+    {
+        CacheVentas cache = new CacheVentas( 100, 20, TimeUnit.MILLISECONDS );
+        AtomicInteger ejecuciones = new AtomicInteger( );
+
+        cache.venderUnaVez( 5, ( ) -> ejecuciones.incrementAndGet( ) );
+        cache.venderUnaVez( 5, ( ) -> ejecuciones.incrementAndGet( ) );
+        assertEquals( 1, ejecuciones.get( ), "Antes de vencer la venta no debería ejecutarse de nuevo" );
+
+        Thread.sleep( 50 );
+        cache.venderUnaVez( 5, ( ) -> ejecuciones.incrementAndGet( ) );
+        assertEquals( 2, ejecuciones.get( ), "Después de vencer la venta debería ejecutarse de nuevo" );
+    }
+
+    @Test
+    public void testReintentoDuranteVentaEnCurso( ) throws Exception
+    {
+        // Una venta en curso no se olvida aunque se venza ni aunque la cache se llene: el reintento espera su resultado en lugar de venderla otra vez
+        CacheVentas cache = new CacheVentas( 1, 1, TimeUnit.MILLISECONDS );
+        AtomicInteger ejecuciones = new AtomicInteger( );
+        CountDownLatch empezo = new CountDownLatch( 1 );
+        CountDownLatch terminar = new CountDownLatch( 1 );
+        int[] precios = new int[2];
+
+        Thread original = new Thread( ( ) -> precios[ 0 ] = cache.venderUnaVez( 3, ( ) -> {
+            ejecuciones.incrementAndGet( );
+            empezo.countDown( );
+            try
+            {
+                terminar.await( );
+            }
+            catch( InterruptedException e )
+            {
+                Thread.currentThread( ).interrupt( );
+            }
+            return 77;
+        } ) );
+        original.start( );
+        empezo.await( );
+
+        Thread.sleep( 20 );
+        cache.venderUnaVez( 4, ( ) -> ejecuciones.incrementAndGet( ) );
+        Thread reintento = new Thread( ( ) -> precios[ 1 ] = cache.venderUnaVez( 3, ( ) -> ejecuciones.incrementAndGet( ) + 1000 ) );
+        reintento.start( );
+        reintento.join( 50 );
+        assertTrue( reintento.isAlive( ), "El reintento debería esperar a que termine la venta en curso" );
+
+        terminar.countDown( );
+        original.join( );
+        reintento.join( );
+        assertEquals( 2, ejecuciones.get( ), "La venta en curso no debería ejecutarse de nuevo" );
+        assertEquals( 77, precios[ 0 ], "La venta original debería retornar su precio" );
+        assertEquals( 77, precios[ 1 ], "El reintento debería retornar el precio de la venta original" );
+    }
+
+    @Test
+    public void testVentaFallida( )
+    {
+        CacheVentas cache = new CacheVentas( 100, 1, TimeUnit.HOURS );
+        assertThrows( IllegalStateException.class, ( ) -> cache.venderUnaVez( 7, ( ) -> {
+            throw new IllegalStateException( "falla" );
+        } ) );
+        assertEquals( 42, cache.venderUnaVez( 7, ( ) -> 42 ), "Una venta que falló debería poder reintentarse" );
+    }
+
+    @Test
+    public void testVentaConcurrente( ) throws Exception
+    {
+        CacheVentas cache = new CacheVentas( 1000, 1, TimeUnit.HOURS );
+        AtomicInteger ejecuciones = new AtomicInteger( );
+
+        Thread[] threads = new Thread[8];
+        for( int t = 0; t < threads.length; t++ )
+        {
+            threads[ t ] = new Thread( ( ) -> {
+                for( long id = 0; id < 500; id++ )
+                {
+                    cache.venderUnaVez( id, ( ) -> ejecuciones.incrementAndGet( ) );
+                }
+            } );
+            threads[ t ].start( );
+        }
+        for( Thread thread : threads )
+        {
+            thread.join( );
+        }
+        assertEquals( 500, ejecuciones.get( ), "Cada venta debería ejecutarse una sola vez aunque se intente desde varios threads" );
+    }
+}
@@ -0,0 +1,44 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+
+/**
+ * Las comparaciones de instantáneas que comparten varias pruebas
+ */
+public final class ComparacionInstantaneas
+{
+    private ComparacionInstantaneas( )
+    {
+    }
+
+    /**
+     * Compara dos instantáneas usando los nombres, porque los identificadores de los empleados pueden ser distintos según el formato del que se cargaron
+     */
+    public static void assertIguales( InstantaneaGasolinera esperada, InstantaneaGasolinera real )
+    {
+        assertEquals( esperada.getCantidadSurtidores( ), real.getCantidadSurtidores( ), "La cantidad de surtidores no coincide" );
+        assertEquals( esperada.getCantidadTiposGasolina( ), real.getCantidadTiposGasolina( ), "La cantidad de tipos de gasolina no coincide" );
+        assertEquals( esperada.getCantidadEmpleados( ), real.getCantidadEmpleados( ), "La cantidad de empleados no coincide" );
+        for( int id = 0; id < esperada.getCantidadTiposGasolina( ); id++ )
+        {
+            int otroId = real.getIdTipoGasolina( esperada.getNombreTipoGasolina( id ) );
+            assertEquals( esperada.getPrecioPorGalon( id ), real.getPrecioPorGalon( otroId ), "El precio no coincide" );
+            assertEquals( esperada.getCantidadDisponible( id ), real.getCantidadDisponible( otroId ), "La cantidad disponible no coincide" );
+            for( int i = 0; i < esperada.getCantidadSurtidores( ); i++ )
+            {
+                assertEquals( esperada.getGalonesVendidos( i, id ), real.getGalonesVendidos( i, otroId ), "Los galones vendidos no coinciden" );
+            }
+        }
+        for( int i = 0; i < esperada.getCantidadSurtidores( ); i++ )
+        {
+            assertEquals( esperada.getNombreEmpleado( esperada.getEmpleadoAsignado( i ) ), real.getNombreEmpleado( real.getEmpleadoAsignado( i ) ), "El empleado asignado no coincide" );
+        }
+        for( int id = 0; id < esperada.getCantidadEmpleados( ); id++ )
+        {
+            int otroId = real.getIdEmpleado( esperada.getNombreEmpleado( id ) );
+            assertEquals( esperada.getCantidadDinero( id ), real.getCantidadDinero( otroId ), "El dinero del empleado no coincide" );
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.concurrencia.DespachadorVentas;
+import uniandes.dpoo.gasolinera.concurrencia.PoliticaSaturacion;
+import uniandes.dpoo.gasolinera.exceptions.VentaRechazadaException;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class DespachadorVentasTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    private static final String EXTRA = "extra";
+    private static final int VALOR_EXTRA = 21090;
+
+    private Gasolinera gasolinera;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 100000 ) );
+        tipos.add( new TipoGasolina( EXTRA, VALOR_EXTRA, 100000 ) );
+        gasolinera = new Gasolinera( 4, tipos, new String[]{ "Alice", "Bob" } );
+    }
+
+    @Test
+    public void testVentasAsincronas( ) throws Exception
+    {
+        DespachadorVentas despachador = new DespachadorVentas( gasolinera, 16, PoliticaSaturacion.ESPERAR, 10, TimeUnit.SECONDS );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+        int idExtra = gasolinera.getIdTipoGasolina( EXTRA );
+
+        List<CompletableFuture<Integer>> futuros = new ArrayList<CompletableFuture<Integer>>( );
+        for( int i = 0; i < 1000; i++ )
+        {
+            futuros.add( despachador.enviarVentaPorCantidad( idCorriente, 1, i % 4 ) );
+            futuros.add( despachador.enviarVentaPorPrecio( idExtra, VALOR_EXTRA, i % 4 ) );
+        }
+
+        long total = 0;
+        for( CompletableFuture<Integer> futuro : futuros )
+        {
+            total += futuro.get( 10, TimeUnit.SECONDS );
+        }
+        assertEquals( 1000L * ( VALOR_CORRIENTE + VALOR_EXTRA ), total, "El total vendido no es correcto" );
+        assertEquals( 99000, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "El inventario no se actualizó correctamente" );
+        assertEquals( 1000, despachador.getProcesadas( idCorriente ), "No se procesaron todas las ventas" );
+        assertEquals( 0, despachador.getRechazadas( idCorriente ), "Con la política ESPERAR no debería rechazarse ninguna venta" );
+        assertTrue( despachador.getProfundidadMaxima( idCorriente ) <= 16, "La cola no debería superar su capacidad" );
+
+        assertTrue( despachador.cerrar( 5, TimeUnit.SECONDS ), "El despachador debería cerrarse a tiempo" );
+    }
+
+    @Test
+    public void testEjecutarEnLlamador( ) throws Exception
+    {
+        DespachadorVentas despachador = new DespachadorVentas( gasolinera, 1, PoliticaSaturacion.EJECUTAR_EN_LLAMADOR, 0, TimeUnit.SECONDS );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        List<CompletableFuture<Integer>> futuros = new ArrayList<CompletableFuture<Integer>>( );
+        for( int i = 0; i < 500; i++ )
+        {
+            futuros.add( despachador.enviarVentaPorCantidad( idCorriente, 2, 0 ) );
+        }
+        for( CompletableFuture<Integer> futuro : futuros )
+        {
+            assertEquals( 2 * VALOR_CORRIENTE, futuro.get( 10, TimeUnit.SECONDS ), "El precio de la venta no es correcto" );
+        }
+        assertEquals( 0, despachador.getRechazadas( idCorriente ), "Con la política EJECUTAR_EN_LLAMADOR no debería rechazarse ninguna venta" );
+        despachador.cerrar( 5, TimeUnit.SECONDS );
+    }
+
+    @Test
+    public void testOrdenConEjecutarEnLlamador( ) throws Exception
+    {
+        DespachadorVentas despachador = new DespachadorVentas( gasolinera, 2, PoliticaSaturacion.EJECUTAR_EN_LLAMADOR, 0, TimeUnit.SECONDS );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        // Cada venta anota su número al completarse, en el thread que la completa
+        List<Integer> orden = Collections.synchronizedList( new ArrayList<Integer>( ) );
+        List<CompletableFuture<Integer>> futuros = new ArrayList<CompletableFuture<Integer>>( );
+        for( int i = 0; i < 2000; i++ )
+        {
+            final int numero = i;
+            CompletableFuture<Integer> futuro = despachador.enviarVentaPorCantidad( idCorriente, 1, i % 4 );
+            futuro.thenRun( ( ) -> orden.add( numero ) );
+            futuros.add( futuro );
+        }
+        for( CompletableFuture<Integer> futuro : futuros )
+        {
+            futuro.get( 10, TimeUnit.SECONDS );
+        }
+        assertTrue( despachador.cerrar( 5, TimeUnit.SECONDS ), "El despachador debería cerrarse a tiempo" );
+
+        assertEquals( 2000, orden.size( ), "Todas las ventas se deberían completar" );
+        for( int i = 0; i < orden.size( ); i++ )
+        {
+            assertEquals( i, orden.get( i ), "Las ventas de un tipo de gasolina se deberían hacer en el orden en que se enviaron" );
+        }
+    }
+
+    @Test
+    public void testRechazoDespuesDeCerrar( ) throws Exception
+    {
+        DespachadorVentas despachador = new DespachadorVentas( gasolinera, 16, PoliticaSaturacion.RECHAZAR, 0, TimeUnit.SECONDS );
+        despachador.cerrar( 5, TimeUnit.SECONDS );
+
+        CompletableFuture<Integer> futuro = despachador.enviarVentaPorCantidad( 0, 1, 0 );
+        try
+        {
+            futuro.get( );
+        }
+        catch( ExecutionException e )
+        {
+            assertTrue( e.getCause( ) instanceof VentaRechazadaException, "La venta debería haberse rechazado" );
+        }
+        assertTrue( futuro.isCompletedExceptionally( ), "La venta debería haberse rechazado" );
+        assertEquals( 1, despachador.getRechazadas( 0 ), "La venta rechazada debería contarse" );
+        ExecutionException rechazo = assertThrows( ExecutionException.class, ( ) -> futuro.get( ) );
+        assertEquals( 16, ( ( VentaRechazadaException )rechazo.getCause( ) ).getVentasEnEspera( ), "El rechazo debería informar la capacidad de la cola" );
+    }
+}
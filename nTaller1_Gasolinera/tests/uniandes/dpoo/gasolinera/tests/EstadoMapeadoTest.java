@@ -0,0 +1,166 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uniandes.dpoo.gasolinera.tests.ComparacionInstantaneas.assertIguales;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.RandomAccessFile;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.Empleado;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+import uniandes.dpoo.gasolinera.logica.ReservaGasolina;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class EstadoMapeadoTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final String EXTRA = "extra";
+
+    private Gasolinera gasolinera;
+
+    private File archivo;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 14500, 1000 ) );
+        tipos.add( new TipoGasolina( EXTRA, 21090, 500 ) );
+        gasolinera = new Gasolinera( 6, tipos, new String[]{ "Alice", "Bob", "Charly" }, 42 );
+
+        archivo = File.createTempFile( "mapeada", ".gasm" );
+        archivo.deleteOnExit( );
+    }
+
+    @Test
+    public void testEstadoSobreviveAlReabrir( ) throws Exception
+    {
+        gasolinera.venderGasolinaPorCantidad( CORRIENTE, 10, 1 );
+        gasolinera.guardarEstadoMapeado( archivo );
+
+        Gasolinera mapeada = Gasolinera.abrirEstadoMapeado( archivo );
+        assertIguales( gasolinera.tomarInstantanea( ), mapeada.tomarInstantanea( ) );
+
+        // Las ventas sobre la gasolinera mapeada quedan en el archivo sin volver a guardarla
+        int idExtra = mapeada.getIdTipoGasolina( EXTRA );
+        mapeada.venderGasolinaPorCantidad( idExtra, 7, 4 );
+        mapeada.venderGasolinaPorCantidad( CORRIENTE, 2, 1 );
+        mapeada.cambiarPrecio( EXTRA, 22000 );
+        mapeada.recargarGasolina( EXTRA, 100 );
+        mapeada.sincronizarEstado( );
+
+        Gasolinera reabierta = Gasolinera.abrirEstadoMapeado( archivo );
+        assertIguales( mapeada.tomarInstantanea( ), reabierta.tomarInstantanea( ) );
+        assertEquals( 12, reabierta.getSurtidor( 1 ).getGalonesVendidos( CORRIENTE ), 0.001, "Los galones vendidos no quedaron en el archivo" );
+        assertEquals( 593, reabierta.getTipoGasolina( EXTRA ).getCantidadDisponible( ), 0.001, "El inventario no quedó en el archivo" );
+        assertEquals( 22000, reabierta.getTipoGasolina( EXTRA ).getPrecioPorGalon( ), "El precio no quedó en el archivo" );
+        assertEquals( 1, reabierta.getTipoGasolina( EXTRA ).getVersionPrecio( ), "La versión del precio no quedó en el archivo" );
+        Empleado empleado = reabierta.getSurtidor( 4 ).getEmpleadoAsignado( );
+        assertEquals( mapeada.getSurtidor( 4 ).getEmpleadoAsignado( ).getCantidadDinero( ), empleado.getCantidadDinero( ), "El dinero del empleado no quedó en el archivo" );
+    }
+
+    @Test
+    public void testVentasConcurrentes( ) throws Exception
+    {
+        gasolinera.guardarEstadoMapeado( archivo );
+        Gasolinera mapeada = Gasolinera.abrirEstadoMapeado( archivo );
+        int idCorriente = mapeada.getIdTipoGasolina( CORRIENTE );
+
+        Thread[] vendedores = new Thread[4];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int inicio = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 2000; i++ )
+                {
+                    mapeada.venderGasolinaPorCantidad( idCorriente, 0.1, ( inicio + i ) % 6 );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+        for( Thread vendedor : vendedores )
+        {
+            vendedor.join( );
+        }
+
+        InstantaneaGasolinera estado = Gasolinera.abrirEstadoMapeado( archivo ).tomarInstantanea( );
+        assertEquals( 800, estado.getTotalGalonesVendidos( idCorriente ), 0.001, "Se perdieron ventas en el archivo mapeado" );
+        assertEquals( 200, estado.getCantidadDisponible( idCorriente ), 0.001, "El inventario no cuadra con lo vendido" );
+        assertEquals( 8000 * 1450, estado.getTotalDinero( ), "El dinero no cuadra con lo vendido" );
+    }
+
+    @Test
+    public void testEmpleadoDesconocido( ) throws Exception
+    {
+        gasolinera.guardarEstadoMapeado( archivo );
+        Gasolinera mapeada = Gasolinera.abrirEstadoMapeado( archivo );
+
+        assertThrows( IllegalArgumentException.class, ( ) -> mapeada.getSurtidor( 0 ).asignarEmpleado( new Empleado( "Dave" ) ),
+                "No se debería poder asignar un empleado que no está en el archivo" );
+        mapeada.getSurtidor( 0 ).asignarEmpleado( mapeada.getEmpleado( "Bob" ) );
+        assertEquals( "Bob", Gasolinera.abrirEstadoMapeado( archivo ).getSurtidor( 0 ).getEmpleadoAsignado( ).getNombre( ), "La asignación no quedó en el archivo" );
+    }
+
+    @Test
+    public void testTanquesYReservas( ) throws Exception
+    {
+        gasolinera.guardarEstadoMapeado( archivo );
+        Gasolinera mapeada = Gasolinera.abrirEstadoMapeado( archivo );
+        TipoGasolina corriente = mapeada.getTipoGasolina( CORRIENTE );
+
+        assertEquals( 1, corriente.getCantidadTanques( ), "En el archivo cada tipo de gasolina tiene un solo tanque" );
+        assertEquals( 1000, corriente.getTanque( 0 ).getCantidad( ), 0.001, "El tanque debería tener la gasolina del archivo" );
+        assertThrows( IndexOutOfBoundsException.class, ( ) -> corriente.getTanque( 1 ), "En el archivo cada tipo de gasolina tiene un solo tanque" );
+
+        int idCorriente = mapeada.getIdTipoGasolina( CORRIENTE );
+        ReservaGasolina reserva = mapeada.reservarGasolina( idCorriente, 14500 * 10, 0 );
+        assertEquals( 10, corriente.getCantidadReservada( ), 0.001, "La reserva debería apartar la gasolina" );
+        assertEquals( 990, corriente.getCantidadDisponible( ), 0.001, "La gasolina reservada no debería estar disponible" );
+        assertEquals( 990, corriente.getTanque( 0 ).getCantidad( ), 0.001, "La gasolina reservada no debería estar en el tanque" );
+
+        // Si el programa termina con la reserva abierta, la gasolina reservada sigue en el inventario del archivo
+        mapeada.sincronizarEstado( );
+        assertEquals( 1000, Gasolinera.abrirEstadoMapeado( archivo ).getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001,
+                "La gasolina de una reserva abierta no se debería perder al reabrir el archivo" );
+
+        mapeada.confirmarReserva( reserva.getId( ), 4 );
+        assertEquals( 0, corriente.getCantidadReservada( ), 0.001, "Al confirmar la reserva no debería quedar gasolina reservada" );
+        assertEquals( 996, corriente.getCantidadDisponible( ), 0.001, "Lo que no se entregó debería volver a estar disponible" );
+        assertEquals( 996, Gasolinera.abrirEstadoMapeado( archivo ).getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001,
+                "La venta confirmada debería quedar en el archivo" );
+    }
+
+    @Test
+    public void testVersionAnterior( ) throws Exception
+    {
+        gasolinera.guardarEstadoMapeado( archivo );
+        // La versión está en los bytes 4 a 7 del encabezado, en orden little-endian
+        try( RandomAccessFile acceso = new RandomAccessFile( archivo, "rw" ) )
+        {
+            acceso.seek( 4 );
+            acceso.write( new byte[]{ 1, 0, 0, 0 } );
+        }
+        IOException e = assertThrows( IOException.class, ( ) -> Gasolinera.abrirEstadoMapeado( archivo ), "Un archivo con la versión 1 del formato no se debería abrir" );
+        assertTrue( e.getMessage( ).contains( "versión 1" ), "El mensaje debería explicar que el archivo es de la versión 1" );
+    }
+
+    @Test
+    public void testArchivoInvalido( ) throws Exception
+    {
+        try( PrintWriter writer = new PrintWriter( archivo ) )
+        {
+            writer.println( "tipo:corriente:14500:100.0" );
+        }
+        assertThrows( IOException.class, ( ) -> Gasolinera.abrirEstadoMapeado( archivo ), "Un archivo de texto no se debería poder abrir como archivo mapeado" );
+    }
+}
@@ -0,0 +1,85 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.nio.file.Path;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class EventosJfrTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    @Test
+    public void testEventosRegistrados( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 10 ) );
+        Gasolinera gasolinera = new Gasolinera( 1, tipos, new String[]{ "Alice" } );
+        File archivo = File.createTempFile( "jfr", ".gas" );
+        archivo.deleteOnExit( );
+        Path grabacion = File.createTempFile( "gasolinera", ".jfr" ).toPath( );
+        grabacion.toFile( ).deleteOnExit( );
+
+        try( Recording recording = new Recording( ) )
+        {
+            recording.enable( "uniandes.gasolinera.Venta" ).withoutThreshold( );
+            recording.enable( "uniandes.gasolinera.VentaParcial" );
+            recording.enable( "uniandes.gasolinera.Persistencia" ).withoutThreshold( );
+            recording.enable( "uniandes.gasolinera.Instantanea" ).withoutThreshold( );
+            recording.start( );
+
+            gasolinera.venderGasolinaPorCantidad( CORRIENTE, 4, 0 );
+            gasolinera.venderGasolinaPorCantidad( CORRIENTE, 8, 0 );
+            gasolinera.guardarEstado( archivo );
+            Gasolinera.cargarEstado( archivo );
+
+            recording.stop( );
+            recording.dump( grabacion );
+        }
+
+        int ventas = 0;
+        int parciales = 0;
+        int persistencia = 0;
+        int instantaneas = 0;
+        for( RecordedEvent evento : RecordingFile.readAllEvents( grabacion ) )
+        {
+            String nombre = evento.getEventType( ).getName( );
+            if( nombre.equals( "uniandes.gasolinera.Venta" ) )
+            {
+                ventas++;
+                assertEquals( CORRIENTE, evento.getString( "tipoGasolina" ), "El tipo de gasolina del evento no es correcto" );
+            }
+            else if( nombre.equals( "uniandes.gasolinera.VentaParcial" ) )
+            {
+                parciales++;
+                assertEquals( 6, evento.getDouble( "galonesEntregados" ), 0.001, "Los galones entregados en la venta parcial no son correctos" );
+            }
+            else if( nombre.equals( "uniandes.gasolinera.Persistencia" ) )
+            {
+                persistencia++;
+                assertEquals( archivo.length( ), evento.getLong( "bytes" ), "La cantidad de bytes del archivo no es correcta" );
+            }
+            else if( nombre.equals( "uniandes.gasolinera.Instantanea" ) )
+            {
+                instantaneas++;
+            }
+        }
+        assertEquals( 2, ventas, "Debería haber un evento por cada venta" );
+        assertEquals( 1, parciales, "Debería haber un evento por la venta parcial" );
+        assertEquals( 2, persistencia, "Debería haber un evento al guardar y otro al cargar" );
+        assertTrue( instantaneas >= 1, "Guardar el estado debería tomar una instantánea" );
+    }
+}
@@ -0,0 +1,134 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Flow;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.eventos.PublicadorVentas;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class EventosVentaTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    private Gasolinera gasolinera;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 100000 ) );
+        gasolinera = new Gasolinera( 2, tipos, new String[]{ "Alice" } );
+    }
+
+    @Test
+    public void testEventosVenta( ) throws Exception
+    {
+        PublicadorVentas publicador = gasolinera.activarEventosVenta( 64 );
+        Recolector recolector = new Recolector( Long.MAX_VALUE );
+        publicador.subscribe( recolector );
+        assertTrue( recolector.suscrito.await( 5, TimeUnit.SECONDS ), "El suscriptor debería quedar suscrito" );
+
+        gasolinera.venderGasolinaPorCantidad( CORRIENTE, 2, 1 );
+        gasolinera.cambiarPrecio( CORRIENTE, VALOR_CORRIENTE * 2 );
+        gasolinera.venderGasolinaPorPrecio( CORRIENTE, VALOR_CORRIENTE, 0 );
+        gasolinera.venderGasolinaPorCantidad( 7L, CORRIENTE, 1, 0 );
+        gasolinera.venderGasolinaPorCantidad( 7L, CORRIENTE, 1, 0 );
+        gasolinera.desactivarEventosVenta( );
+
+        assertTrue( recolector.terminado.await( 5, TimeUnit.SECONDS ), "El suscriptor debería recibir onComplete" );
+        assertEquals( 3, recolector.eventos.size( ), "La venta repetida no debería generar un evento" );
+
+        EventoVenta primero = recolector.eventos.get( 0 );
+        assertEquals( 1, primero.getNumeroSurtidor( ), "El surtidor del evento no es correcto" );
+        assertEquals( CORRIENTE, primero.getNombreTipoGasolina( ), "El tipo de gasolina del evento no es correcto" );
+        assertEquals( gasolinera.getIdTipoGasolina( CORRIENTE ), primero.getIdTipoGasolina( ), "El identificador del tipo del evento no es correcto" );
+        assertEquals( 2, primero.getGalones( ), 0.001, "Los galones del evento no son correctos" );
+        assertEquals( 2 * VALOR_CORRIENTE, primero.getPrecio( ), "El precio del evento no es correcto" );
+        assertEquals( "Alice", primero.getNombreEmpleado( ), "El empleado del evento no es correcto" );
+        assertEquals( 0, primero.getVersionPrecio( ), "La versión del precio del evento no es correcta" );
+
+        EventoVenta segundo = recolector.eventos.get( 1 );
+        assertEquals( VALOR_CORRIENTE * 2, segundo.getPrecioPorGalon( ), "El evento debería tener el precio con el que se hizo la venta" );
+        assertEquals( 1, segundo.getVersionPrecio( ), "El evento debería tener la versión del precio con el que se hizo la venta" );
+        assertEquals( 0.5, segundo.getGalones( ), 0.001, "La venta por precio debería convertir el valor con el precio nuevo" );
+    }
+
+    @Test
+    public void testSuscriptorLento( ) throws Exception
+    {
+        PublicadorVentas publicador = gasolinera.activarEventosVenta( 8 );
+        Recolector lento = new Recolector( 0 );
+        Recolector rapido = new Recolector( Long.MAX_VALUE );
+        publicador.subscribe( lento );
+        publicador.subscribe( rapido );
+        assertTrue( lento.suscrito.await( 5, TimeUnit.SECONDS ), "El suscriptor debería quedar suscrito" );
+        assertTrue( rapido.suscrito.await( 5, TimeUnit.SECONDS ), "El suscriptor debería quedar suscrito" );
+
+        // El suscriptor lento no pide ningún evento: las ventas no deben esperarlo
+        for( int i = 0; i < 1000; i++ )
+        {
+            gasolinera.venderGasolinaPorCantidad( CORRIENTE, 1, i % 2 );
+        }
+        gasolinera.desactivarEventosVenta( );
+
+        assertTrue( rapido.terminado.await( 5, TimeUnit.SECONDS ), "El suscriptor rápido debería recibir onComplete" );
+        assertTrue( publicador.getDescartados( ) > 0, "Los eventos del suscriptor lento deberían descartarse" );
+        assertEquals( 99000, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Todas las ventas deberían haberse hecho" );
+        assertTrue( rapido.eventos.size( ) > lento.eventos.size( ), "El suscriptor rápido debería recibir eventos aunque el lento no pida ninguno" );
+    }
+
+    /**
+     * Un suscriptor que guarda los eventos que recibe, pidiendo al inicio una cantidad fija
+     */
+    private static class Recolector implements Flow.Subscriber<EventoVenta>
+    {
+        private final long pedidos;
+        private final List<EventoVenta> eventos = new CopyOnWriteArrayList<EventoVenta>( );
+        private final CountDownLatch suscrito = new CountDownLatch( 1 );
+        private final CountDownLatch terminado = new CountDownLatch( 1 );
+
+        Recolector( long pedidos )
+        {
+            this.pedidos = pedidos;
+        }
+
+        @Override
+        public void onSubscribe( Flow.Subscription suscripcion )
+        {
+            if( pedidos > 0 )
+                suscripcion.request( pedidos );
+            suscrito.countDown( );
+        }
+
+        @Override
+        public void onNext( EventoVenta evento )
+        {
+            eventos.add( evento );
+        }
+
+        @Override
+        public void onError( Throwable error )
+        {
+            terminado.countDown( );
+        }
+
+        @Override
+        public void onComplete( )
+        {
+            terminado.countDown( );
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.eventos.EventoVenta;
+import uniandes.dpoo.gasolinera.exportacion.EscritorCsv;
+import uniandes.dpoo.gasolinera.exportacion.EscritorJsonl;
+import uniandes.dpoo.gasolinera.exportacion.ExportadorGasolinera;
+import uniandes.dpoo.gasolinera.historial.ArchivoVentas;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class ExportadorGasolineraTest
+{
+    private Gasolinera gasolinera;
+
+    @BeforeEach
+    void setUp( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( "corriente", 10000, 1000 ) );
+        tipos.add( new TipoGasolina( "extra \"premium\"", 15000, 500.25 ) );
+        gasolinera = new Gasolinera( 3, tipos, new String[]{ "Peña, Ana" } );
+    }
+
+    private static String[] lineas( ByteArrayOutputStream bytes )
+    {
+        return new String( bytes.toByteArray( ), StandardCharsets.UTF_8 ).split( "\n" );
+    }
+
+    @Test
+    public void testCsv( ) throws Exception
+    {
+        gasolinera.venderGasolinaPorCantidad( "corriente", 12.5, 1 );
+        gasolinera.venderGasolinaPorCantidad( "extra \"premium\"", 1.0 / 3, 2 );
+
+        ByteArrayOutputStream tipos = new ByteArrayOutputStream( );
+        assertEquals( 2, ExportadorGasolinera.exportarTiposGasolina( gasolinera, new EscritorCsv( tipos ) ), "Se deberían exportar los dos tipos" );
+        String[] lineasTipos = lineas( tipos );
+        assertEquals( "id,nombre,precio_por_galon,version_precio,cantidad_disponible,cantidad_reservada", lineasTipos[ 0 ], "El encabezado no es correcto" );
+        assertEquals( "0,corriente,10000,0,987.5,0", lineasTipos[ 1 ], "El registro del tipo no es correcto" );
+        assertTrue( lineasTipos[ 2 ].startsWith( "1,\"extra \"\"premium\"\"\",15000,0,499.91666" ), "Las comillas del nombre se deberían duplicar" );
+
+        ByteArrayOutputStream surtidores = new ByteArrayOutputStream( );
+        assertEquals( 3, ExportadorGasolinera.exportarSurtidores( gasolinera, new EscritorCsv( surtidores ) ), "Se deberían exportar los tres surtidores" );
+        String[] lineasSurtidores = lineas( surtidores );
+        assertEquals( "numero,empleado,corriente,\"extra \"\"premium\"\"\"", lineasSurtidores[ 0 ], "El encabezado debería tener una columna por tipo" );
+        assertEquals( "1,\"Peña, Ana\",12.5,0", lineasSurtidores[ 2 ], "El registro del surtidor no es correcto" );
+        assertEquals( 1.0 / 3, Double.parseDouble( lineasSurtidores[ 3 ].substring( lineasSurtidores[ 3 ].lastIndexOf( ',' ) + 1 ) ), "Los galones deberían ser exactos" );
+
+        ByteArrayOutputStream empleados = new ByteArrayOutputStream( );
+        ExportadorGasolinera.exportarEmpleados( gasolinera, new EscritorCsv( empleados ) );
+        int dinero = gasolinera.getEmpleado( 0 ).getCantidadDinero( );
+        assertEquals( "0,\"Peña, Ana\"," + dinero, lineas( empleados )[ 1 ], "El registro del empleado no es correcto" );
+    }
+
+    @Test
+    public void testJsonl( ) throws Exception
+    {
+        gasolinera.venderGasolinaPorCantidad( "corriente", 0.05, 0 );
+
+        ByteArrayOutputStream surtidores = new ByteArrayOutputStream( );
+        ExportadorGasolinera.exportarSurtidores( gasolinera, new EscritorJsonl( surtidores ) );
+        String[] lineasSurtidores = lineas( surtidores );
+        assertEquals( 3, lineasSurtidores.length, "Cada surtidor debería ser una línea, sin encabezado" );
+        assertEquals( "{\"numero\":0,\"empleado\":\"Peña, Ana\",\"corriente\":0.05,\"extra \\\"premium\\\"\":0}", lineasSurtidores[ 0 ], "El objeto del surtidor no es correcto" );
+
+        EscritorJsonl escritor = new EscritorJsonl( new ByteArrayOutputStream( ) );
+        escritor.iniciarTabla( "a", "b" );
+        escritor.escribirCampo( 1 );
+        assertThrows( IOException.class, ( ) -> escritor.terminarRegistro( ), "Un registro incompleto no se debería terminar" );
+    }
+
+    @Test
+    public void testInstantanea( ) throws Exception
+    {
+        gasolinera.venderGasolinaPorCantidad( "corriente", 12.5, 1 );
+        InstantaneaGasolinera estado = gasolinera.tomarInstantanea( );
+        int dinero = estado.getCantidadDinero( 0 );
+        gasolinera.venderGasolinaPorCantidad( "corriente", 2, 1 );
+
+        // Las tablas exportadas desde la instantánea tienen sus valores, aunque la gasolinera haya seguido vendiendo
+        ByteArrayOutputStream surtidores = new ByteArrayOutputStream( );
+        assertEquals( 3, ExportadorGasolinera.exportarSurtidores( estado, new EscritorCsv( surtidores ) ), "Se deberían exportar los tres surtidores" );
+        String[] lineasSurtidores = lineas( surtidores );
+        assertEquals( "numero,empleado,corriente,\"extra \"\"premium\"\"\"", lineasSurtidores[ 0 ], "El encabezado debería tener una columna por tipo" );
+        assertEquals( "1,\"Peña, Ana\",12.5,0", lineasSurtidores[ 2 ], "El surtidor debería tener los galones de la instantánea" );
+
+        ByteArrayOutputStream tipos = new ByteArrayOutputStream( );
+        assertEquals( 2, ExportadorGasolinera.exportarTiposGasolina( estado, new EscritorCsv( tipos ) ), "Se deberían exportar los dos tipos" );
+        assertEquals( "0,corriente,10000,0,987.5,0", lineas( tipos )[ 1 ], "El tipo debería tener el inventario de la instantánea" );
+
+        ByteArrayOutputStream empleados = new ByteArrayOutputStream( );
+        assertEquals( 1, ExportadorGasolinera.exportarEmpleados( estado, new EscritorJsonl( empleados ) ), "Se debería exportar el empleado" );
+        assertEquals( "{\"id\":0,\"nombre\":\"Peña, Ana\",\"dinero\":" + dinero + "}", lineas( empleados )[ 0 ], "El empleado debería tener el dinero de la instantánea" );
+    }
+
+    @Test
+    public void testValoresNoFinitos( ) throws Exception
+    {
+        ByteArrayOutputStream csv = new ByteArrayOutputStream( );
+        EscritorCsv escritorCsv = new EscritorCsv( csv );
+        escritorCsv.iniciarTabla( "a", "b", "c" );
+        escritorCsv.escribirCampo( Double.NaN );
+        escritorCsv.escribirCampo( Double.POSITIVE_INFINITY );
+        escritorCsv.escribirCampo( 1.5 );
+        escritorCsv.terminarRegistro( );
+        escritorCsv.flush( );
+        assertEquals( ",,1.5", lineas( csv )[ 1 ], "NaN y los infinitos se deberían escribir como campos vacíos" );
+
+        ByteArrayOutputStream jsonl = new ByteArrayOutputStream( );
+        EscritorJsonl escritorJsonl = new EscritorJsonl( jsonl );
+        escritorJsonl.iniciarTabla( "a", "b" );
+        escritorJsonl.escribirCampo( Double.NEGATIVE_INFINITY );
+        escritorJsonl.escribirCampo( Double.NaN );
+        escritorJsonl.terminarRegistro( );
+        escritorJsonl.flush( );
+        assertEquals( "{\"a\":null,\"b\":null}", lineas( jsonl )[ 0 ], "NaN y los infinitos se deberían escribir como null" );
+    }
+
+    @Test
+    public void testVentas( ) throws Exception
+    {
+        File directorio = Files.createTempDirectory( "exportacion" ).toFile( );
+        directorio.deleteOnExit( );
+        long inicio = TimeUnit.DAYS.toMillis( 100 );
+        try( ArchivoVentas archivo = new ArchivoVentas( directorio, 1, TimeUnit.HOURS ) )
+        {
+            for( int i = 0; i < 5000; i++ )
+            {
+                archivo.agregar( new EventoVenta( i % 3, i % 2, i % 2 == 0 ? "corriente" : "extra", 1 + i % 10, 10000 * ( 1 + i % 10 ), 10000, 1, "Peña, Ana",
+                        inicio + i * 1000L ) );
+            }
+
+            ByteArrayOutputStream csv = new ByteArrayOutputStream( );
+            long desde = inicio + 1000 * 1000L;
+            long hasta = inicio + 3000 * 1000L;
+            assertEquals( 2000, ExportadorGasolinera.exportarVentas( archivo, desde, hasta, new EscritorCsv( csv ) ), "Se deberían exportar las ventas del rango" );
+            assertEquals( 0, archivo.getCantidadPendientes( ), "Las ventas pendientes se deberían escribir en un segmento antes de exportarlas" );
+            String[] lineasCsv = lineas( csv );
+            assertEquals( 2001, lineasCsv.length, "Debería haber una línea por venta y el encabezado" );
+            assertEquals( "instante,surtidor,tipo_gasolina,galones,precio,precio_por_galon,version_precio,empleado", lineasCsv[ 0 ], "El encabezado no es correcto" );
+            assertEquals( desde + ",1,corriente,1,10000,10000,1,\"Peña, Ana\"", lineasCsv[ 1 ], "La primera venta del rango no es correcta" );
+
+            ByteArrayOutputStream jsonl = new ByteArrayOutputStream( );
+            assertEquals( 5000, ExportadorGasolinera.exportarVentas( archivo, Long.MIN_VALUE, Long.MAX_VALUE, new EscritorJsonl( jsonl ) ),
+                    "Se deberían exportar todas las ventas" );
+            assertEquals( 5000, lineas( jsonl ).length, "Debería haber una línea por venta" );
+        }
+    }
+}
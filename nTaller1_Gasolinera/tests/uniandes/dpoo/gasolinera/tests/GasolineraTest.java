@@ -5,22 +5,36 @@ import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
+import uniandes.dpoo.gasolinera.inventario.DespachoMasLleno;
+import uniandes.dpoo.gasolinera.logica.CierreTurno;
 import uniandes.dpoo.gasolinera.logica.Empleado;
+import uniandes.dpoo.gasolinera.logica.EntregaGasolina;
 import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
 import uniandes.dpoo.gasolinera.logica.Surtidor;
 import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+import uniandes.dpoo.gasolinera.metricas.MetricasGasolinera;
 
 public class GasolineraTest
 {
@@ -151,6 +165,26 @@ public class GasolineraTest
 
     }
 
+    @Test
+    public void testConstructorConSemilla( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, CANTIDAD_CORRIENTE ) );
+        String[] empleados = new String[]{ ALICE, BOB, CHARLY };
+
+        Gasolinera a = new Gasolinera( 50, tipos, empleados, 42 );
+        Gasolinera b = new Gasolinera( 50, tipos, empleados, 42 );
+
+        assertEquals( 50, a.getCantidadSurtidores( ), "La cantidad de surtidores es incorrecta" );
+        for( int i = 0; i < 50; i++ )
+        {
+            Empleado empleadoA = a.getSurtidor( i ).getEmpleadoAsignado( );
+            Empleado empleadoB = b.getSurtidor( i ).getEmpleadoAsignado( );
+            assertSame( a.getEmpleado( empleadoA.getNombre( ) ), empleadoA, "El empleado asignado debe ser uno de los empleados de la gasolinera" );
+            assertEquals( empleadoA.getNombre( ), empleadoB.getNombre( ), "Con la misma semilla los surtidores deben tener los mismos empleados" );
+        }
+    }
+
     @Test
     public void testCargarEstado( )
     {
@@ -332,4 +366,377 @@ public class GasolineraTest
         assertEquals( 0, galonesDisponibles, 0.01, "El inventario del tipo de gasolina no se actualizó correctamente" );
     }
 
+    @Test
+    public void testVenderGasolinaPorIdentificador( )
+    {
+        int idCorriente = g2.getIdTipoGasolina( CORRIENTE );
+        assertEquals( -1, g2.getIdTipoGasolina( "Diesel" ), "Un tipo de gasolina inexistente no debería tener identificador" );
+        assertSame( g2.getTipoGasolina( CORRIENTE ), g2.getTipoGasolina( idCorriente ), "El identificador debería corresponder al tipo de gasolina" );
+        assertEquals( 3, g2.getCantidadTiposGasolina( ), "La cantidad de tipos de gasolina es incorrecta" );
+
+        int idBob = g2.getIdEmpleado( BOB );
+        assertSame( g2.getEmpleado( BOB ), g2.getEmpleado( idBob ), "El identificador debería corresponder al empleado" );
+        assertEquals( 3, g2.getCantidadEmpleados( ), "La cantidad de empleados es incorrecta" );
+
+        int precioPagado = g2.venderGasolinaPorCantidad( idCorriente, 10, 2 );
+        assertEquals( VALOR_CORRIENTE * 10, precioPagado, "El precio pagado no es correcto" );
+        assertEquals( 10, g2.getSurtidor( 2 ).getGalonesVendidos( idCorriente ), 0.01, "La cantidad de galones vendidos en el surtidor no es correcta" );
+        assertEquals( 10, g2.getSurtidor( 2 ).getGalonesVendidos( CORRIENTE ), 0.01, "La cantidad de galones vendidos en el surtidor no es correcta" );
+
+        int precioPorValor = g2.venderGasolinaPorPrecio( idCorriente, 14500, 2 );
+        assertEquals( 14500, precioPorValor, "El precio pagado no es correcto" );
+        assertEquals( CANTIDAD_CORRIENTE - 11, g2.getTipoGasolina( idCorriente ).getCantidadDisponible( ), 0.01, "El inventario del tipo de gasolina no se actualizó correctamente" );
+    }
+
+    @Test
+    public void testInstantaneaConsistente( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 1000000 ) );
+        Gasolinera gasolinera = new Gasolinera( 8, tipos, new String[]{ ALICE, BOB, CHARLY } );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        Thread[] vendedores = new Thread[4];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int surtidor = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 20000; i++ )
+                {
+                    gasolinera.venderGasolinaPorCantidad( idCorriente, 1, ( surtidor + i ) % 8 );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+
+        // Mientras se vende, todas las instantáneas deben cuadrar: lo vendido más lo disponible es el inventario inicial, y el dinero corresponde a lo vendido
+        boolean terminaron = false;
+        while( !terminaron )
+        {
+            terminaron = true;
+            for( Thread vendedor : vendedores )
+            {
+                terminaron = terminaron && !vendedor.isAlive( );
+            }
+
+            InstantaneaGasolinera instantanea = gasolinera.tomarInstantanea( );
+            double vendidos = instantanea.getTotalGalonesVendidos( idCorriente );
+            assertEquals( 1000000, vendidos + instantanea.getCantidadDisponible( idCorriente ), 0.001, "El inventario de la instantánea no cuadra con lo vendido" );
+            assertEquals( ( long ) ( vendidos * VALOR_CORRIENTE ), instantanea.getTotalDinero( ), "El dinero de la instantánea no cuadra con lo vendido" );
+        }
+
+        InstantaneaGasolinera finalizada = gasolinera.tomarInstantanea( );
+        assertEquals( 80000, finalizada.getTotalGalonesVendidos( idCorriente ), 0.001, "No se registraron todas las ventas" );
+        assertSame( finalizada, gasolinera.tomarInstantanea( ), "Si el estado no cambia se debería reutilizar la misma instantánea" );
+    }
+
+    @Test
+    public void testInstantaneaGrandeDuranteVentas( ) throws Exception
+    {
+        // Con muchos surtidores la copia tarda más que el tiempo entre ventas, así que las instantáneas se hacen con copia en escritura
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 100, 10000000 ) );
+        tipos.add( new TipoGasolina( EXTRA, 150, 10000000 ) );
+        Gasolinera gasolinera = new Gasolinera( 100000, tipos, new String[]{ ALICE, BOB, CHARLY } );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+        int idExtra = gasolinera.getIdTipoGasolina( EXTRA );
+
+        AtomicBoolean detener = new AtomicBoolean( );
+        Thread[] vendedores = new Thread[4];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int semilla = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                Random aleatorio = new Random( semilla );
+                while( !detener.get( ) )
+                {
+                    gasolinera.venderGasolinaPorCantidad( aleatorio.nextBoolean( ) ? idCorriente : idExtra, 1, aleatorio.nextInt( 100000 ) );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+
+        try
+        {
+            for( int i = 0; i < 30; i++ )
+            {
+                InstantaneaGasolinera instantanea = gasolinera.tomarInstantanea( );
+                double corriente = instantanea.getTotalGalonesVendidos( idCorriente );
+                double extra = instantanea.getTotalGalonesVendidos( idExtra );
+                assertEquals( 10000000, corriente + instantanea.getCantidadDisponible( idCorriente ), 0.001, "El inventario de corriente no cuadra con lo vendido" );
+                assertEquals( 10000000, extra + instantanea.getCantidadDisponible( idExtra ), 0.001, "El inventario de extra no cuadra con lo vendido" );
+                assertEquals( ( long ) ( corriente * 100 + extra * 150 ), instantanea.getTotalDinero( ), "El dinero de la instantánea no cuadra con lo vendido" );
+            }
+        }
+        finally
+        {
+            detener.set( true );
+            for( Thread vendedor : vendedores )
+            {
+                vendedor.join( );
+            }
+        }
+    }
+
+    @Test
+    public void testSurtidoresPorColumnas( )
+    {
+        int idCorriente = g2.getIdTipoGasolina( CORRIENTE );
+        g2.venderGasolinaPorCantidad( idCorriente, 10, 0 );
+        g2.venderGasolinaPorCantidad( idCorriente, 5, 2 );
+
+        Surtidor surtidor = g2.getSurtidor( 2 );
+        assertEquals( 2, surtidor.getNumero( ), "El número del surtidor no es correcto" );
+        assertEquals( 5, surtidor.getGalonesVendidos( CORRIENTE ), 0.01, "La vista del surtidor no refleja las ventas de la gasolinera" );
+
+        g2.venderGasolinaPorCantidad( idCorriente, 1, 2 );
+        assertEquals( 6, surtidor.getGalonesVendidos( idCorriente ), 0.01, "Una vista existente debería ver las ventas posteriores" );
+        assertEquals( 16, g2.getTotalGalonesVendidos( idCorriente ), 0.01, "El total de galones vendidos no es correcto" );
+        assertEquals( g2.tomarInstantanea( ).getTotalGalonesVendidos( idCorriente ), g2.getTotalGalonesVendidos( idCorriente ), 0.01,
+                "El total de galones vendidos no coincide con el de la instantánea" );
+
+        Empleado alice = g2.getEmpleado( ALICE );
+        surtidor.asignarEmpleado( alice );
+        assertSame( alice, g2.getSurtidor( 2 ).getEmpleadoAsignado( ), "El cambio de empleado debería verse desde otra vista del mismo surtidor" );
+        assertThrows( IllegalArgumentException.class, ( ) -> surtidor.asignarEmpleado( new Empleado( "Dave" ) ),
+                "No se debería poder asignar un empleado que no trabaja en la gasolinera" );
+        assertSame( alice, surtidor.getEmpleadoAsignado( ), "Una asignación rechazada no debería cambiar el empleado" );
+
+        assertThrows( IndexOutOfBoundsException.class, ( ) -> g2.getSurtidor( 4 ), "No se debería poder obtener un surtidor inexistente" );
+    }
+
+    @Test
+    public void testCambiarPrecioDuranteVentas( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 1000000 ) );
+        Gasolinera gasolinera = new Gasolinera( 4, tipos, new String[]{ ALICE, BOB } );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        // Mientras el precio cambia todo el tiempo, cada venta por precio debe cobrar exactamente el valor solicitado
+        Thread cambios = new Thread( ( ) -> {
+            for( int i = 0; i < 20000; i++ )
+            {
+                gasolinera.cambiarPrecio( idCorriente, i % 2 == 0 ? 20000 : 10000 );
+            }
+        } );
+        cambios.start( );
+        while( cambios.isAlive( ) )
+        {
+            assertEquals( 10000, gasolinera.venderGasolinaPorPrecio( idCorriente, 10000, 1 ), "La venta debería usar el mismo precio para convertir y para cobrar" );
+        }
+
+        assertEquals( 20000, gasolinera.getTipoGasolina( idCorriente ).getVersionPrecio( ), "Se perdieron cambios de precio" );
+        InstantaneaGasolinera instantanea = gasolinera.tomarInstantanea( );
+        assertEquals( 10000, instantanea.getPrecioPorGalon( idCorriente ), "La instantánea debería tener el último precio" );
+        assertEquals( 20000, instantanea.getVersionPrecio( idCorriente ), "La instantánea debería tener la última versión del precio" );
+    }
+
+    @Test
+    public void testRecargarDuranteVentas( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 5000 ) );
+        Gasolinera gasolinera = new Gasolinera( 4, tipos, new String[]{ ALICE, BOB } );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        // Cada permiso es una venta de medio galón que ya tiene gasolina: el inventario inicial alcanza para 10000 ventas y cada recarga de 2 galones habilita 4 más.
+        // Así las ventas se cruzan con las recargas, pero ninguna se puede quedar sin gasolina sin importar cómo se intercalen los threads
+        Semaphore ventasHabilitadas = new Semaphore( 10000 );
+        Thread[] vendedores = new Thread[3];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int surtidor = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 10000; i++ )
+                {
+                    ventasHabilitadas.acquireUninterruptibly( );
+                    gasolinera.venderGasolinaPorCantidad( idCorriente, 0.5, surtidor );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+        for( int i = 0; i < 5000; i++ )
+        {
+            gasolinera.recargarGasolina( idCorriente, 2 );
+            ventasHabilitadas.release( 4 );
+        }
+        for( Thread vendedor : vendedores )
+        {
+            vendedor.join( );
+        }
+
+        // Entre el inventario inicial y las recargas hay exactamente lo que se vendió
+        assertEquals( 15000, gasolinera.getTotalGalonesVendidos( idCorriente ), 0.001, "Las ventas no deberían quedarse sin gasolina" );
+        assertEquals( 0, gasolinera.getTipoGasolina( idCorriente ).getCantidadDisponible( ), 0.001, "Se perdieron recargas o despachos" );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.recargarGasolina( idCorriente, -1 ), "No se debería poder recargar una cantidad negativa" );
+    }
+
+    @Test
+    public void testGuardarConVariosTanques( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, new double[]{ 100, 200 }, new DespachoMasLleno( ) ) );
+        Gasolinera gasolinera = new Gasolinera( 2, tipos, new String[]{ ALICE } );
+        File archivo = File.createTempFile( "tanques", ".txt" );
+        archivo.deleteOnExit( );
+
+        assertThrows( IOException.class, ( ) -> gasolinera.guardarEstado( archivo ), "Los tanques no se guardan, así que no se debería guardar la gasolinera" );
+        assertThrows( IOException.class, ( ) -> gasolinera.guardarEstadoBinario( archivo ), "El formato binario tampoco guarda los tanques" );
+        assertThrows( IOException.class, ( ) -> gasolinera.guardarEstadoBinario( archivo, true ), "El formato por columnas tampoco guarda los tanques" );
+        assertThrows( IOException.class, ( ) -> gasolinera.guardarEstadoMapeado( archivo ), "El archivo mapeado tampoco guarda los tanques" );
+    }
+
+    @Test
+    public void testRecibirEntregas( ) throws Exception
+    {
+        MetricasGasolinera metricas = g2.activarMetricas( );
+        double total = g2.recibirEntregas( Arrays.asList( new EntregaGasolina( CORRIENTE, 10 ), new EntregaGasolina( EXTRA, 5 ), new EntregaGasolina( CORRIENTE, 2.5 ) ) );
+        assertEquals( 17.5, total, 0.001, "El total recibido no es correcto" );
+        assertEquals( CANTIDAD_CORRIENTE + 12.5, g2.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Las entregas de corriente no se sumaron" );
+        assertEquals( CANTIDAD_EXTRA + 5, g2.getTipoGasolina( EXTRA ).getCantidadDisponible( ), 0.001, "La entrega de extra no se sumó" );
+        int idCorriente = g2.getIdTipoGasolina( CORRIENTE );
+        assertEquals( 2, metricas.getEntregasPorTipo( idCorriente ), "Las métricas deberían contar cada entrega" );
+        assertEquals( 12.5, metricas.getGalonesEntregadosPorTipo( idCorriente ), 0.001, "Las métricas deberían sumar los galones entregados" );
+
+        // Si una entrega del lote no es válida, no se recarga ninguna
+        assertThrows( IllegalArgumentException.class, ( ) -> g2.recibirEntregas( Arrays.asList( new EntregaGasolina( PLUS, 10 ), new EntregaGasolina( "diesel", 5 ) ) ),
+                "No se debería aceptar un tipo de gasolina que no existe" );
+        assertEquals( CANTIDAD_PLUS, g2.getTipoGasolina( PLUS ).getCantidadDisponible( ), 0.001, "Un lote inválido no debería recargar nada" );
+
+        File archivo = File.createTempFile( "entregas", ".txt" );
+        archivo.deleteOnExit( );
+        try( PrintWriter writer = new PrintWriter( archivo ) )
+        {
+            writer.println( "proveedor:Terpel" );
+            writer.println( "entrega:plus:20.0" );
+            writer.println( "entrega:plus:abc" );
+        }
+        assertThrows( IOException.class, ( ) -> g2.recibirEntregas( archivo ), "Una cantidad inválida en el archivo debería lanzar una excepción" );
+        try( PrintWriter writer = new PrintWriter( archivo ) )
+        {
+            writer.println( "proveedor:Terpel" );
+            writer.println( "entrega:plus:20.0" );
+            writer.println( "entrega:extra:1.5" );
+        }
+        assertEquals( 21.5, g2.recibirEntregas( archivo ), 0.001, "El total del archivo no es correcto" );
+        assertEquals( CANTIDAD_PLUS + 20, g2.getTipoGasolina( PLUS ).getCantidadDisponible( ), 0.001, "La entrega del archivo no se sumó" );
+    }
+
+    @Test
+    public void testCerrarTurno( ) throws Exception
+    {
+        g2.venderGasolinaPorCantidad( CORRIENTE, 10, 0 );
+        g2.venderGasolinaPorCantidad( EXTRA, 5, 3 );
+        long dineroTurno = g2.tomarInstantanea( ).getTotalDinero( );
+
+        CierreTurno cierre = g2.cerrarTurno( );
+        assertEquals( 1, cierre.getNumero( ), "El primer turno cerrado debería ser el 1" );
+        assertEquals( dineroTurno, cierre.getTotalDinero( ), "El cierre debería tener el dinero del turno" );
+        assertEquals( 10, cierre.getVentas( ).getTotalGalonesVendidos( g2.getIdTipoGasolina( CORRIENTE ) ), 0.001, "El cierre debería tener los galones del turno" );
+
+        InstantaneaGasolinera despues = g2.tomarInstantanea( );
+        assertEquals( 0, despues.getTotalDinero( ), "Los empleados deberían empezar el turno sin dinero" );
+        assertEquals( 0, despues.getTotalGalonesVendidos( g2.getIdTipoGasolina( EXTRA ) ), 0.001, "Los surtidores deberían empezar el turno en cero" );
+        assertEquals( CANTIDAD_CORRIENTE - 10, despues.getCantidadDisponible( g2.getIdTipoGasolina( CORRIENTE ) ), 0.001, "El cierre no debería cambiar el inventario" );
+
+        g2.venderGasolinaPorCantidad( PLUS, 2, 1 );
+        CierreTurno segundo = g2.cerrarTurno( );
+        assertEquals( 2, segundo.getNumero( ), "El segundo turno debería ser el 2" );
+        assertEquals( Math.round( 2 * VALOR_PLUS ), segundo.getTotalDinero( ), "El segundo turno sólo debería tener sus ventas" );
+        assertEquals( Arrays.asList( cierre, segundo ), g2.getCierresTurno( ), "Los turnos cerrados deberían quedar archivados en orden" );
+    }
+
+    @Test
+    public void testCerrarTurnoConReasignacion( ) throws Exception
+    {
+        Surtidor surtidor = g2.getSurtidor( 0 );
+        assertThrows( IllegalArgumentException.class, ( ) -> surtidor.asignarEmpleado( new Empleado( "Dave" ) ),
+                "Un empleado de fuera de la gasolinera no podría cerrar su turno" );
+        Empleado otro = g2.getEmpleado( surtidor.getEmpleadoAsignado( ).getNombre( ).equals( ALICE ) ? BOB : ALICE );
+        surtidor.asignarEmpleado( otro );
+        int precio = g2.venderGasolinaPorCantidad( CORRIENTE, 1, 0 );
+
+        CierreTurno cierre = g2.cerrarTurno( );
+        assertEquals( precio, cierre.getTotalDinero( ), "El turno debería cerrar el dinero del empleado reasignado" );
+        assertEquals( 0, otro.getCantidadDinero( ), "El dinero del empleado reasignado no debería pasar al turno siguiente" );
+    }
+
+    @Test
+    public void testCerrarTurnoDuranteVentas( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 100000 ) );
+        Gasolinera gasolinera = new Gasolinera( 4, tipos, new String[]{ ALICE, BOB } );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        Thread[] vendedores = new Thread[4];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int surtidor = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 20000; i++ )
+                {
+                    gasolinera.venderGasolinaPorCantidad( idCorriente, 0.5, surtidor );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+        List<CierreTurno> cierres = new ArrayList<CierreTurno>( );
+        for( int i = 0; i < 200; i++ )
+        {
+            cierres.add( gasolinera.cerrarTurno( ) );
+        }
+        for( Thread vendedor : vendedores )
+        {
+            vendedor.join( );
+        }
+        cierres.add( gasolinera.cerrarTurno( ) );
+        assertEquals( Gasolinera.MAXIMO_CIERRES_EN_MEMORIA, gasolinera.getCierresTurno( ).size( ), "Sólo se deberían conservar los últimos turnos" );
+        assertEquals( 201, gasolinera.getCierresTurno( ).get( Gasolinera.MAXIMO_CIERRES_EN_MEMORIA - 1 ).getNumero( ), "El último turno conservado debería ser el más reciente" );
+
+        // Cada venta debe quedar en exactamente un turno
+        double galones = 0;
+        long dinero = 0;
+        for( CierreTurno cierre : cierres )
+        {
+            galones += cierre.getVentas( ).getTotalGalonesVendidos( idCorriente );
+            dinero += cierre.getTotalDinero( );
+            assertEquals( cierre.getTotalDinero( ), Math.round( cierre.getVentas( ).getTotalGalonesVendidos( idCorriente ) * 10000 ),
+                    "El dinero y los galones de un turno deberían corresponder a las mismas ventas" );
+        }
+        assertEquals( 40000, galones, 0.001, "Los turnos deberían sumar todos los galones vendidos" );
+        assertEquals( 40000L * 10000, dinero, "Los turnos deberían sumar todo el dinero" );
+        assertEquals( 0, gasolinera.tomarInstantanea( ).getTotalDinero( ), "Después del último cierre no debería quedar dinero" );
+    }
+
+    @Test
+    public void testCerrarTurnoEnDisco( ) throws Exception
+    {
+        File directorio = Files.createTempDirectory( "turnos" ).toFile( );
+        directorio.deleteOnExit( );
+        g2.configurarDirectorioTurnos( directorio );
+        g2.venderGasolinaPorCantidad( CORRIENTE, 10, 0 );
+        CierreTurno cierre = g2.cerrarTurno( );
+        g2.venderGasolinaPorCantidad( EXTRA, 5, 3 );
+        CierreTurno segundo = g2.cerrarTurno( );
+
+        List<CierreTurno> cargados = Gasolinera.cargarCierresTurno( directorio );
+        assertEquals( 2, cargados.size( ), "Cada turno cerrado debería quedar en el directorio" );
+        assertEquals( 1, cargados.get( 0 ).getNumero( ), "Los turnos deberían cargarse en orden" );
+        assertEquals( cierre.getMomento( ), cargados.get( 0 ).getMomento( ), "El momento del cierre debería conservarse" );
+        assertEquals( cierre.getTotalDinero( ), cargados.get( 0 ).getTotalDinero( ), "El dinero del turno debería conservarse" );
+        assertEquals( 5, cargados.get( 1 ).getVentas( ).getTotalGalonesVendidos( g2.getIdTipoGasolina( EXTRA ) ), 0.001, "Los galones del turno deberían conservarse" );
+        assertEquals( segundo.getTotalDinero( ), cargados.get( 1 ).getTotalDinero( ), "El dinero del segundo turno debería conservarse" );
+
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 100 ) );
+        Gasolinera reabierta = new Gasolinera( 1, tipos, new String[]{ ALICE } );
+        reabierta.configurarDirectorioTurnos( directorio );
+        assertEquals( 3, reabierta.cerrarTurno( ).getNumero( ), "La numeración debería continuar después de los turnos del directorio" );
+        for( File archivo : directorio.listFiles( ) )
+        {
+            archivo.deleteOnExit( );
+        }
+    }
 }
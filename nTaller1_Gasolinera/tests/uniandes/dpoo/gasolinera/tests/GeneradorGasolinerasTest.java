@@ -0,0 +1,159 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static uniandes.dpoo.gasolinera.tests.ComparacionInstantaneas.assertIguales;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.zip.DeflaterOutputStream;
+
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.FormatoBinario;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+import uniandes.dpoo.gasolinera.utils.CodificacionEnteros;
+import uniandes.dpoo.gasolinera.utils.GeneradorGasolineras;
+
+public class GeneradorGasolinerasTest
+{
+    private static File archivoTemporal( String extension ) throws IOException
+    {
+        File archivo = File.createTempFile( "generada", extension );
+        archivo.deleteOnExit( );
+        return archivo;
+    }
+
+    @Test
+    public void testReproducible( ) throws Exception
+    {
+        File uno = archivoTemporal( ".gas" );
+        File otro = archivoTemporal( ".gas" );
+
+        GeneradorGasolineras generador = new GeneradorGasolineras( 3000, 7, 40, 42 );
+        generador.cambiarCantidadThreads( 1 );
+        generador.generarTexto( uno );
+        generador.cambiarCantidadThreads( 8 );
+        generador.generarTexto( otro );
+
+        assertArrayEquals( Files.readAllBytes( uno.toPath( ) ), Files.readAllBytes( otro.toPath( ) ), "La misma semilla debería generar el mismo archivo con cualquier cantidad de threads" );
+    }
+
+    @Test
+    public void testFormatosEquivalentes( ) throws Exception
+    {
+        File texto = archivoTemporal( ".gas" );
+        File binario = archivoTemporal( ".gasb" );
+        GeneradorGasolineras generador = new GeneradorGasolineras( 2000, 5, 30, 7, 1.2 );
+        generador.generarTexto( texto );
+        generador.generarBinario( binario );
+
+        InstantaneaGasolinera deTexto = Gasolinera.cargarEstado( texto ).tomarInstantanea( );
+        InstantaneaGasolinera deBinario = Gasolinera.cargarEstadoBinario( binario ).tomarInstantanea( );
+        assertIguales( deTexto, deBinario );
+
+        // La distribución de los empleados es sesgada: el primer empleado atiende muchos más surtidores que el último
+        int primero = 0;
+        int ultimo = 0;
+        for( int i = 0; i < deBinario.getCantidadSurtidores( ); i++ )
+        {
+            String nombre = deBinario.getNombreEmpleado( deBinario.getEmpleadoAsignado( i ) );
+            if( nombre.equals( "empleado0" ) )
+                primero++;
+            else if( nombre.equals( "empleado29" ) )
+                ultimo++;
+        }
+        assertTrue( primero > 5 * ultimo, "El primer empleado debería atender muchos más surtidores que el último" );
+    }
+
+    @Test
+    public void testGuardarBinario( ) throws Exception
+    {
+        File texto = archivoTemporal( ".gas" );
+        File binario = archivoTemporal( ".gasb" );
+        new GeneradorGasolineras( 500, 4, 10, 3 ).generarTexto( texto );
+
+        Gasolinera original = Gasolinera.cargarEstado( texto );
+        original.guardarEstadoBinario( binario );
+        assertIguales( original.tomarInstantanea( ), Gasolinera.cargarEstadoBinario( binario ).tomarInstantanea( ) );
+
+        assertThrows( IOException.class, ( ) -> Gasolinera.cargarEstadoBinario( texto ), "Un archivo de texto no debería cargarse como binario" );
+    }
+
+    @Test
+    public void testBinarioDanado( ) throws Exception
+    {
+        File binario = archivoTemporal( ".gasb" );
+        int[][] encabezados = { { 2, -1, 10 }, { 2, 3, Integer.MAX_VALUE }, { Integer.MAX_VALUE, 1, 1 }, { 4, 1, 1000000 } };
+        for( int[] cantidades : encabezados )
+        {
+            try( DataOutputStream salida = new DataOutputStream( new FileOutputStream( binario ) ) )
+            {
+                salida.writeInt( FormatoBinario.MAGIA );
+                salida.writeInt( FormatoBinario.VERSION );
+                for( int cantidad : cantidades )
+                {
+                    salida.writeInt( cantidad );
+                }
+            }
+            assertThrows( IOException.class, ( ) -> Gasolinera.cargarEstadoBinario( binario ), "Un archivo con cantidades inválidas debería rechazarse con IOException" );
+        }
+    }
+
+    @Test
+    public void testColumnasDanadas( ) throws Exception
+    {
+        File binario = archivoTemporal( ".gasb" );
+        long[][] encabezados = { { 1L << 31, 1, 1 }, { 2, 1L << 40, 1 }, { 1, 1, 100000000 } };
+        for( int opciones : new int[]{ 0, FormatoBinario.COMPRIMIDO } )
+        {
+            for( long[] cantidades : encabezados )
+            {
+                try( DataOutputStream salida = new DataOutputStream( new FileOutputStream( binario ) ) )
+                {
+                    salida.writeInt( FormatoBinario.MAGIA );
+                    salida.writeInt( FormatoBinario.VERSION_COLUMNAS );
+                    salida.writeInt( opciones );
+                    OutputStream columnas = opciones == 0 ? salida : new DeflaterOutputStream( salida );
+                    for( long cantidad : cantidades )
+                    {
+                        CodificacionEnteros.escribirVarint( columnas, cantidad );
+                    }
+                    if( columnas instanceof DeflaterOutputStream )
+                        ( ( DeflaterOutputStream )columnas ).finish( );
+                }
+                assertThrows( IOException.class, ( ) -> Gasolinera.cargarEstadoBinario( binario ), "Un archivo con cantidades inválidas debería rechazarse con IOException" );
+            }
+        }
+    }
+
+    @Test
+    public void testGuardarBinarioColumnas( ) throws Exception
+    {
+        File texto = archivoTemporal( ".gas" );
+        File filas = archivoTemporal( ".gasb" );
+        File columnas = archivoTemporal( ".gasb" );
+        File comprimido = archivoTemporal( ".gasb" );
+        new GeneradorGasolineras( 3000, 4, 20, 11 ).generarTexto( texto );
+
+        Gasolinera original = Gasolinera.cargarEstado( texto );
+        // Una cantidad sin representación exacta en milésimas obliga a guardar esa columna como double
+        InstantaneaGasolinera antes = original.tomarInstantanea( );
+        original.venderGasolinaPorCantidad( antes.getNombreTipoGasolina( 0 ), 1.0 / 3, 0 );
+
+        original.guardarEstadoBinario( filas );
+        original.guardarEstadoBinario( columnas, false );
+        original.guardarEstadoBinario( comprimido, true );
+        assertIguales( original.tomarInstantanea( ), Gasolinera.cargarEstadoBinario( columnas ).tomarInstantanea( ) );
+        assertIguales( original.tomarInstantanea( ), Gasolinera.cargarEstadoBinario( comprimido ).tomarInstantanea( ) );
+
+        assertTrue( columnas.length( ) < filas.length( ), "El formato por columnas debería ocupar menos que el formato por surtidores" );
+        assertTrue( comprimido.length( ) < columnas.length( ), "El formato comprimido debería ocupar menos que el formato sin comprimir" );
+    }
+}
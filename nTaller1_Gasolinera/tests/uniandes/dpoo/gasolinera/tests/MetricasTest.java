@@ -0,0 +1,82 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+import uniandes.dpoo.gasolinera.metricas.HistogramaLatencias;
+import uniandes.dpoo.gasolinera.metricas.MetricasGasolinera;
+
+public class MetricasTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    @Test
+    public void testPercentiles( )
+    {
+        HistogramaLatencias histograma = new HistogramaLatencias( );
+        for( long v = 1; v <= 10000; v++ )
+        {
+            histograma.registrar( v * 1000 );
+        }
+        assertEquals( 10000, histograma.getCantidad( ), "La cantidad de valores no es correcta" );
+        assertEquals( 10000000, histograma.getMaximo( ), "El máximo no es correcto" );
+        assertEquals( 5000500, histograma.getPromedio( ), 0.001, "El promedio no es correcto" );
+
+        // El error relativo de los percentiles debe ser menor al 3.2%, y nunca por debajo del valor real
+        long p50 = histograma.getPercentil( 50 );
+        long p99 = histograma.getPercentil( 99 );
+        assertTrue( p50 >= 5000000 && p50 <= 5000000 * 1.032, "El percentil 50 no es correcto: " + p50 );
+        assertTrue( p99 >= 9900000 && p99 <= 9900000 * 1.032, "El percentil 99 no es correcto: " + p99 );
+        assertEquals( 10000000, histograma.getPercentil( 100 ), "El percentil 100 debería ser el máximo" );
+
+        histograma.reiniciar( );
+        assertEquals( 0, histograma.getPercentil( 50 ), "Un histograma vacío no tiene percentiles" );
+    }
+
+    @Test
+    public void testMetricasVentas( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 10 ) );
+        Gasolinera gasolinera = new Gasolinera( 2, tipos, new String[]{ "Alice" } );
+        assertNull( gasolinera.getMetricas( ), "Las métricas no deberían estar activadas por defecto" );
+
+        MetricasGasolinera metricas = gasolinera.activarMetricas( );
+        int id = gasolinera.getIdTipoGasolina( CORRIENTE );
+        gasolinera.venderGasolinaPorCantidad( id, 4, 0 );
+        gasolinera.venderGasolinaPorCantidad( id, 4, 1 );
+        gasolinera.venderGasolinaPorCantidad( id, 4, 1 );
+        gasolinera.venderGasolinaPorCantidad( id, 4, 1 );
+
+        assertEquals( 4, metricas.getLatenciaVentas( ).getCantidad( ), "No se registraron todas las ventas" );
+        assertEquals( 4, metricas.getVentasPorTipo( id ), "Las ventas por tipo no son correctas" );
+        assertEquals( 2, metricas.getParcialesPorTipo( id ), "Las ventas parciales por tipo no son correctas" );
+        assertEquals( 0.5, metricas.getTasaParcialesPorTipo( id ), 0.001, "La tasa de ventas parciales no es correcta" );
+        assertEquals( 0, metricas.getTasaParcialesPorSurtidor( 0 ), 0.001, "El surtidor 0 no tuvo ventas parciales" );
+        assertEquals( 2 / 3.0, metricas.getTasaParcialesPorSurtidor( 1 ), 0.001, "La tasa de ventas parciales del surtidor 1 no es correcta" );
+
+        File archivo = File.createTempFile( "metricas", ".gas" );
+        archivo.deleteOnExit( );
+        gasolinera.guardarEstado( archivo );
+        assertEquals( 1, metricas.getLatenciaGuardar( ).getCantidad( ), "No se registró la operación de guardar" );
+
+        Gasolinera cargada = Gasolinera.cargarEstado( archivo, true );
+        assertNotNull( cargada.getMetricas( ), "Las métricas de la gasolinera cargada deberían estar activadas" );
+        assertEquals( 1, cargada.getMetricas( ).getLatenciaCargar( ).getCantidad( ), "No se registró la operación de cargar" );
+
+        gasolinera.desactivarMetricas( );
+        gasolinera.venderGasolinaPorCantidad( id, 1, 0 );
+        assertEquals( 4, metricas.getVentasPorTipo( id ), "Con las métricas desactivadas no se deberían registrar ventas" );
+    }
+}
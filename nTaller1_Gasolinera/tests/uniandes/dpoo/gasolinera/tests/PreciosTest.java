@@ -0,0 +1,183 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.util.LinkedList;
+import java.util.List;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+import uniandes.dpoo.gasolinera.precios.ReglasPrecios;
+import uniandes.dpoo.gasolinera.precios.TablaPrecios;
+
+public class PreciosTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final String EXTRA = "extra";
+    private static final String[] TIPOS = new String[]{ CORRIENTE, EXTRA };
+
+    private ReglasPrecios reglas;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        reglas = new ReglasPrecios( );
+    }
+
+    @Test
+    public void testDescuentoPorVolumen( )
+    {
+        reglas.agregarDescuentoPorVolumen( null, 10, 5 );
+        reglas.agregarDescuentoPorVolumen( CORRIENTE, 20, 10 );
+        TablaPrecios tabla = reglas.compilar( TIPOS );
+
+        assertEquals( 10000, tabla.precioPorGalon( 0, 10000, 9.99, 0, 12 ), "Por debajo del primer tramo no hay descuento" );
+        assertEquals( 9500, tabla.precioPorGalon( 0, 10000, 10, 0, 12 ), "Desde 10 galones el descuento es del 5%" );
+        assertEquals( 9000, tabla.precioPorGalon( 0, 10000, 20, 0, 12 ), "Desde 20 galones se aplica sólo el descuento mayor" );
+        assertEquals( 9000, tabla.precioPorGalon( 0, 10000, 5000, 0, 12 ), "Las cantidades grandes quedan en el último tramo" );
+        assertEquals( 9500, tabla.precioPorGalon( 1, 10000, 50, 0, 12 ), "El descuento de la corriente no aplica para la extra" );
+    }
+
+    @Test
+    public void testUmbralMuyGrande( )
+    {
+        reglas.agregarDescuentoPorVolumen( null, 10, 5 );
+        reglas.agregarDescuentoPorVolumen( null, Integer.MAX_VALUE, 50 );
+        TablaPrecios tabla = reglas.compilar( TIPOS );
+
+        assertEquals( 9500, tabla.precioPorGalon( 0, 10000, 1e9, 0, 12 ), "Por debajo del umbral mayor se aplica el tramo anterior" );
+        assertEquals( 5000, tabla.precioPorGalon( 0, 10000, Integer.MAX_VALUE, 0, 12 ), "Desde el umbral mayor se aplica su descuento" );
+        assertEquals( 5000, tabla.precioPorGalon( 0, 10000, Double.MAX_VALUE, 0, 12 ), "Las cantidades enormes quedan en el último tramo" );
+        assertEquals( 10000, tabla.precioPorGalon( 0, 10000, -3, 0, 12 ), "Las cantidades negativas no tienen descuento" );
+    }
+
+    @Test
+    public void testFranjasHorarias( )
+    {
+        reglas.agregarFranjaHoraria( null, 7, 9, 10 );
+        reglas.agregarFranjaHoraria( null, 22, 5, -20 );
+        reglas.agregarFranjaHoraria( EXTRA, 8, 9, 0 );
+        TablaPrecios tabla = reglas.compilar( TIPOS );
+
+        assertEquals( 11000, tabla.precioPorGalon( 0, 10000, 1, 0, 7 ), "En hora pico hay recargo" );
+        assertEquals( 10000, tabla.precioPorGalon( 0, 10000, 1, 0, 9 ), "La franja no incluye su hora final" );
+        assertEquals( 8000, tabla.precioPorGalon( 0, 10000, 1, 0, 23 ), "En la noche hay descuento" );
+        assertEquals( 8000, tabla.precioPorGalon( 0, 10000, 1, 0, 2 ), "La franja nocturna pasa por la medianoche" );
+        assertEquals( 11000, tabla.precioPorGalon( 1, 10000, 1, 0, 7 ), "El recargo general aplica para la extra" );
+        assertEquals( 10000, tabla.precioPorGalon( 1, 10000, 1, 0, 8 ), "La última franja agregada es la que cuenta" );
+    }
+
+    @Test
+    public void testNivelesFidelidad( )
+    {
+        reglas.definirNivelFidelidad( 2, 10 );
+        reglas.agregarDescuentoPorVolumen( null, 10, 5 );
+        reglas.agregarFranjaHoraria( null, 7, 9, 10 );
+        TablaPrecios tabla = reglas.compilar( TIPOS );
+
+        assertEquals( 3, tabla.getCantidadNiveles( ), "Los niveles van de 0 al mayor que se definió" );
+        assertEquals( 10000, tabla.precioPorGalon( 0, 10000, 1, 1, 12 ), "Un nivel sin definir no tiene descuento" );
+        assertEquals( 9000, tabla.precioPorGalon( 0, 10000, 1, 2, 12 ), "El nivel 2 tiene 10% de descuento" );
+        assertEquals( Math.round( 10000 * 1.1 * 0.9 * 0.95 ), tabla.precioPorGalon( 0, 10000, 10, 2, 8 ), "Los ajustes se deberían combinar" );
+        assertThrows( IllegalArgumentException.class, ( ) -> tabla.precioPorGalon( 0, 10000, 1, 3, 12 ), "El nivel 3 no existe" );
+    }
+
+    @Test
+    public void testHoraDelReloj( )
+    {
+        reglas.agregarFranjaHoraria( null, 7, 9, 10 );
+        Clock reloj = Clock.fixed( Instant.parse( "2026-03-02T07:30:00Z" ), ZoneOffset.UTC );
+        TablaPrecios tabla = reglas.compilar( TIPOS, reloj );
+
+        assertEquals( 7, tabla.getHoraActual( ), "La hora no corresponde al reloj" );
+        assertEquals( 11000, tabla.precioPorGalon( 0, 10000, 1, 0 ), "Se debería usar la hora del reloj" );
+
+        TablaPrecios tablaOtraZona = reglas.compilar( TIPOS, reloj.withZone( ZoneOffset.ofHours( -5 ) ) );
+        assertEquals( 2, tablaOtraZona.getHoraActual( ), "La hora se debería calcular en la zona del reloj" );
+    }
+
+    @Test
+    public void testReglasEnVentas( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 1000 ) );
+        tipos.add( new TipoGasolina( EXTRA, 20000, 500 ) );
+        Gasolinera gasolinera = new Gasolinera( 3, tipos, new String[]{ "Alice", "Bob" }, 42 );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        assertEquals( 100000, gasolinera.venderGasolinaPorCantidad( idCorriente, 10, 0 ), "Sin reglas se debería cobrar el precio base" );
+
+        reglas.agregarDescuentoPorVolumen( null, 10, 5 );
+        reglas.definirNivelFidelidad( 1, 10 );
+        gasolinera.cambiarReglasPrecios( reglas );
+
+        assertEquals( 95000, gasolinera.venderGasolinaPorCantidad( idCorriente, 10, 0 ), "El descuento por volumen no se aplicó" );
+        assertEquals( 85500, gasolinera.venderGasolinaPorCantidadConFidelidad( idCorriente, 10, 0, 1 ), "Los descuentos de volumen y fidelidad no se combinaron" );
+        assertEquals( 9000, gasolinera.venderGasolinaPorCantidadConFidelidad( idCorriente, 1, 0, 1 ), "El descuento de fidelidad no se aplicó" );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.venderGasolinaPorCantidadConFidelidad( idCorriente, 1, 0, 2 ), "El nivel 2 no existe" );
+
+        // Por precio: 100000 alcanzan para 10 galones sin descuento, así que se cobran a 9500 el galón
+        double antes = gasolinera.getTotalGalonesVendidos( idCorriente );
+        assertEquals( 100000, gasolinera.venderGasolinaPorPrecio( idCorriente, 100000, 1 ), "Se debería cobrar el valor solicitado" );
+        assertEquals( antes + 100000 / 9500.0, gasolinera.getTotalGalonesVendidos( idCorriente ), 0.001, "La venta por precio debería usar el precio con descuento" );
+
+        // El surtidor también usa la tabla de la gasolinera
+        assertEquals( 40000, gasolinera.getSurtidor( 2 ).venderGasolina( EXTRA, 2 ), "El surtidor no debería aplicar descuento sin volumen" );
+        assertEquals( 36000, gasolinera.getSurtidor( 2 ).venderGasolina( gasolinera.getIdTipoGasolina( EXTRA ), 2, 1 ), "El surtidor no aplicó la fidelidad" );
+
+        gasolinera.cambiarReglasPrecios( null );
+        assertEquals( 100000, gasolinera.venderGasolinaPorCantidad( idCorriente, 10, 0 ), "Sin reglas se debería volver al precio base" );
+    }
+
+    @Test
+    public void testDescuentoConEntregaParcial( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 5 ) );
+        tipos.add( new TipoGasolina( EXTRA, 20000, 5 ) );
+        Gasolinera gasolinera = new Gasolinera( 2, tipos, new String[]{ "Alice" }, 42 );
+        reglas.agregarDescuentoPorVolumen( null, 10, 5 );
+        gasolinera.cambiarReglasPrecios( reglas );
+
+        assertEquals( 50000, gasolinera.venderGasolinaPorCantidad( gasolinera.getIdTipoGasolina( CORRIENTE ), 20, 0 ),
+                "Si sólo se entregan 5 galones no debería aplicar el descuento de 10" );
+
+        int idExtra = gasolinera.getIdTipoGasolina( EXTRA );
+        int[] precios = new int[1];
+        gasolinera.venderLote( idExtra, new double[]{ 20 }, new int[]{ 1 }, new boolean[]{ false }, 1, precios );
+        assertEquals( 100000, precios[ 0 ], "En un lote tampoco debería aplicar el descuento si la entrega es parcial" );
+    }
+
+    @Test
+    public void testDescuentoTotal( )
+    {
+        assertThrows( IllegalArgumentException.class, ( ) -> reglas.definirNivelFidelidad( 1, 100 ), "Un descuento del 100% dejaría el precio en 0" );
+        assertThrows( IllegalArgumentException.class, ( ) -> reglas.agregarDescuentoPorVolumen( null, 10, 100 ), "Un descuento del 100% dejaría el precio en 0" );
+        assertThrows( IllegalArgumentException.class, ( ) -> reglas.agregarDescuentoPorVolumen( null, 10, Double.NaN ), "Un descuento inválido se debería rechazar" );
+    }
+
+    @Test
+    public void testPrecioMinimo( ) throws Exception
+    {
+        reglas.definirNivelFidelidad( 1, 60 );
+        TablaPrecios tabla = reglas.compilar( TIPOS );
+        assertEquals( 1, tabla.precioPorGalon( 0, 1, 1, 1, 12 ), "El precio con descuento no debería redondearse a 0" );
+
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 1, 1000 ) );
+        Gasolinera gasolinera = new Gasolinera( 1, tipos, new String[]{ "Alice" }, 42 );
+        gasolinera.cambiarReglasPrecios( reglas );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+
+        assertEquals( 1, gasolinera.venderGasolinaPorPrecioConFidelidad( idCorriente, 1, 0, 1 ), "Se debería cobrar el valor solicitado" );
+        assertEquals( 999, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Un peso sólo debería comprar un galón" );
+        assertEquals( 1, gasolinera.reservarGasolina( idCorriente, 1, 0, 1 ).getGalonesReservados( ), 0.001, "Un peso sólo debería reservar un galón" );
+    }
+}
@@ -0,0 +1,121 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.concurrencia.ProcesadorVentasUnEscritor;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class ProcesadorVentasUnEscritorTest
+{
+    private static final String CORRIENTE = "corriente";
+    private static final int VALOR_CORRIENTE = 14500;
+
+    private static final String EXTRA = "extra";
+    private static final int VALOR_EXTRA = 21090;
+
+    private Gasolinera gasolinera;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, 100000 ) );
+        tipos.add( new TipoGasolina( EXTRA, VALOR_EXTRA, 100000 ) );
+        gasolinera = new Gasolinera( 4, tipos, new String[]{ "Alice", "Bob" } );
+    }
+
+    @Test
+    public void testVariosProductores( ) throws Exception
+    {
+        AtomicLong total = new AtomicLong( );
+        ProcesadorVentasUnEscritor procesador = new ProcesadorVentasUnEscritor( gasolinera, 64, ( idTipo, secuencia, precio ) -> total.addAndGet( precio ) );
+        int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+        int idExtra = gasolinera.getIdTipoGasolina( EXTRA );
+
+        Thread[] productores = new Thread[4];
+        for( int t = 0; t < productores.length; t++ )
+        {
+            final int surtidor = t;
+            productores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 5000; i++ )
+                {
+                    procesador.publicarVentaPorCantidad( idCorriente, 1, surtidor );
+                    if( i % 5 == 0 )
+                        procesador.publicarVentaPorPrecio( idExtra, VALOR_EXTRA, surtidor );
+                }
+            } );
+            productores[ t ].start( );
+        }
+        for( Thread productor : productores )
+        {
+            productor.join( );
+        }
+        assertTrue( procesador.cerrar( 10, TimeUnit.SECONDS ), "El procesador debería cerrarse a tiempo" );
+
+        assertEquals( 20000, procesador.getProcesadas( idCorriente ), "No se procesaron todas las ventas de corriente" );
+        assertEquals( 4000, procesador.getProcesadas( idExtra ), "No se procesaron todas las ventas de extra" );
+        assertEquals( 0, procesador.getPendientes( idCorriente ), "No deberían quedar ventas pendientes" );
+        assertEquals( 20000L * VALOR_CORRIENTE + 4000L * VALOR_EXTRA, total.get( ), "El total informado al oyente no es correcto" );
+        assertEquals( 80000, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "El inventario de corriente no es correcto" );
+        assertEquals( 96000, gasolinera.getTipoGasolina( EXTRA ).getCantidadDisponible( ), 0.001, "El inventario de extra no es correcto" );
+        assertEquals( 5000, gasolinera.getSurtidor( 0 ).getGalonesVendidos( CORRIENTE ), 0.001, "Los galones vendidos en el surtidor no son correctos" );
+    }
+
+    @Test
+    public void testOyenteConErrores( ) throws Exception
+    {
+        AtomicLong informados = new AtomicLong( );
+        AtomicLong errores = new AtomicLong( );
+        Thread.UncaughtExceptionHandler anterior = Thread.getDefaultUncaughtExceptionHandler( );
+        Thread.setDefaultUncaughtExceptionHandler( ( thread, e ) -> errores.incrementAndGet( ) );
+        try
+        {
+            ProcesadorVentasUnEscritor procesador = new ProcesadorVentasUnEscritor( gasolinera, 8, ( idTipo, secuencia, precio ) -> {
+                informados.incrementAndGet( );
+                if( secuencia == 3 )
+                    throw new AssertionError( "falla el oyente" );
+                if( secuencia % 10 == 0 )
+                    throw new IllegalStateException( "falla el oyente" );
+            } );
+            int idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+            for( int i = 0; i < 100; i++ )
+            {
+                procesador.publicarVentaPorCantidad( idCorriente, 1, i % 4 );
+            }
+            assertTrue( procesador.cerrar( 5, TimeUnit.SECONDS ), "El procesador debería cerrarse a tiempo" );
+
+            assertEquals( 100, procesador.getProcesadas( idCorriente ), "Los errores del oyente no deberían detener al consumidor" );
+            assertEquals( 100, informados.get( ), "Se le debería informar cada venta al oyente" );
+            assertEquals( 11, errores.get( ), "Cada error del oyente se debería entregar al manejador de excepciones" );
+            assertEquals( 99900, gasolinera.getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Todas las ventas se deberían hacer" );
+        }
+        finally
+        {
+            Thread.setDefaultUncaughtExceptionHandler( anterior );
+        }
+    }
+
+    @Test
+    public void testVentaFallida( ) throws Exception
+    {
+        ProcesadorVentasUnEscritor procesador = new ProcesadorVentasUnEscritor( gasolinera, 8, null );
+        procesador.publicarVentaPorCantidad( 0, 1, 99 );
+        procesador.publicarVentaPorCantidad( 0, 1, 0 );
+        assertTrue( procesador.cerrar( 5, TimeUnit.SECONDS ), "El procesador debería cerrarse a tiempo" );
+
+        assertEquals( 1, procesador.getFallidas( 0 ), "La venta en un surtidor inexistente debería fallar" );
+        assertEquals( 2, procesador.getProcesadas( 0 ), "El consumidor debería seguir después de una venta fallida" );
+        assertThrows( IllegalStateException.class, ( ) -> procesador.publicarVentaPorCantidad( 0, 1, 0 ), "No se deberían aceptar ventas después de cerrar" );
+    }
+}
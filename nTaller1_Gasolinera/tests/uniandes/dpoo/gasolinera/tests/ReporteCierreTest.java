@@ -0,0 +1,122 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.File;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.InstantaneaGasolinera;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+import uniandes.dpoo.gasolinera.reportes.ReporteCierre;
+import uniandes.dpoo.gasolinera.utils.GeneradorGasolineras;
+
+public class ReporteCierreTest
+{
+    @Test
+    public void testReporteConocido( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( "corriente", 10000, 1000 ) );
+        tipos.add( new TipoGasolina( "extra", 15000, 1000 ) );
+        Gasolinera gasolinera = new Gasolinera( 5, tipos, new String[]{ "Alice", "Bob" }, 42 );
+        int corriente = gasolinera.getIdTipoGasolina( "corriente" );
+        int extra = gasolinera.getIdTipoGasolina( "extra" );
+
+        gasolinera.venderGasolinaPorCantidad( corriente, 10, 0 );
+        gasolinera.venderGasolinaPorCantidad( extra, 30, 1 );
+        gasolinera.venderGasolinaPorCantidad( corriente, 20, 2 );
+        gasolinera.venderGasolinaPorCantidad( extra, 5, 2 );
+        gasolinera.venderGasolinaPorCantidad( corriente, 1, 4 );
+
+        ReporteCierre reporte = gasolinera.generarReporteCierre( 3 );
+        assertEquals( 31, reporte.getGalonesPorTipo( corriente ), 0.001, "Los galones de corriente no cuadran" );
+        assertEquals( 35, reporte.getGalonesPorTipo( extra ), 0.001, "Los galones de extra no cuadran" );
+        assertEquals( 35 * 15000, reporte.getValorPorTipo( extra ), "El valor de extra no cuadra" );
+        assertEquals( 25, reporte.getGalonesPorSurtidor( 2 ), 0.001, "El surtidor 2 debería sumar ambos tipos" );
+        assertEquals( 0, reporte.getGalonesPorSurtidor( 3 ), 0.001, "El surtidor 3 no vendió nada" );
+        assertArrayEquals( new int[]{ 1, 2, 0 }, reporte.getMejoresSurtidores( ), "Los mejores surtidores deberían ir del que más vendió al que menos" );
+
+        InstantaneaGasolinera estado = reporte.getEstado( );
+        for( int empleado = 0; empleado < estado.getCantidadEmpleados( ); empleado++ )
+        {
+            double galones = 0;
+            int surtidores = 0;
+            for( int s = 0; s < estado.getCantidadSurtidores( ); s++ )
+            {
+                if( estado.getEmpleadoAsignado( s ) == empleado )
+                {
+                    galones += reporte.getGalonesPorSurtidor( s );
+                    surtidores++;
+                }
+            }
+            assertEquals( galones, reporte.getGalonesSurtidoresAsignados( empleado ), 0.001, "Los galones del empleado no cuadran con sus surtidores" );
+            assertEquals( surtidores, reporte.getSurtidoresPorEmpleado( empleado ), "Los surtidores del empleado no cuadran" );
+        }
+        int mejorEmpleado = reporte.getMejoresEmpleados( )[ 0 ];
+        assertEquals( 2, reporte.getMejoresEmpleados( ).length, "Sólo hay dos empleados en el ranking" );
+        assertEquals( Math.max( reporte.getDineroPorEmpleado( 0 ), reporte.getDineroPorEmpleado( 1 ) ), reporte.getDineroPorEmpleado( mejorEmpleado ),
+                "El primer empleado del ranking debería ser el que tiene más dinero" );
+    }
+
+    @Test
+    public void testGalonesConReasignacion( )
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( "corriente", 10000, 1000 ) );
+        Gasolinera gasolinera = new Gasolinera( 1, tipos, new String[]{ "Alice", "Bob" }, 42 );
+        int corriente = gasolinera.getIdTipoGasolina( "corriente" );
+        int anterior = gasolinera.getIdEmpleado( gasolinera.getSurtidor( 0 ).getEmpleadoAsignado( ).getNombre( ) );
+        int nuevo = 1 - anterior;
+
+        gasolinera.venderGasolinaPorCantidad( corriente, 10, 0 );
+        gasolinera.getSurtidor( 0 ).asignarEmpleado( gasolinera.getEmpleado( nuevo ) );
+
+        // Los galones van con el surtidor, pero el dinero se queda con quien hizo la venta
+        ReporteCierre reporte = gasolinera.generarReporteCierre( 2 );
+        assertEquals( 10, reporte.getGalonesSurtidoresAsignados( nuevo ), 0.001, "Los galones del surtidor deberían contar para el empleado asignado" );
+        assertEquals( 0, reporte.getGalonesSurtidoresAsignados( anterior ), 0.001, "El empleado anterior ya no tiene el surtidor" );
+        assertEquals( 100000, reporte.getDineroPorEmpleado( anterior ), "El dinero debería quedarse con quien hizo la venta" );
+    }
+
+    @Test
+    public void testReporteGenerado( ) throws Exception
+    {
+        File archivo = File.createTempFile( "reporte", ".gasb" );
+        archivo.deleteOnExit( );
+        new GeneradorGasolineras( 20000, 6, 50, 11 ).generarBinario( archivo );
+        InstantaneaGasolinera estado = Gasolinera.cargarEstadoBinario( archivo ).tomarInstantanea( );
+
+        ReporteCierre reporte = ReporteCierre.generar( estado, 10 );
+
+        // Se compara contra un cálculo secuencial que ordena todos los surtidores
+        double[] porSurtidor = new double[estado.getCantidadSurtidores( )];
+        for( int s = 0; s < porSurtidor.length; s++ )
+        {
+            for( int t = 0; t < estado.getCantidadTiposGasolina( ); t++ )
+            {
+                porSurtidor[ s ] += estado.getGalonesVendidos( s, t );
+            }
+            assertEquals( porSurtidor[ s ], reporte.getGalonesPorSurtidor( s ), 0.001, "Los galones del surtidor no cuadran" );
+        }
+        for( int t = 0; t < estado.getCantidadTiposGasolina( ); t++ )
+        {
+            assertEquals( estado.getTotalGalonesVendidos( t ), reporte.getGalonesPorTipo( t ), 0.01, "Los galones del tipo no cuadran" );
+        }
+
+        int[] esperados = IntStream.range( 0, porSurtidor.length ).boxed( )
+                .sorted( Comparator.<Integer> comparingDouble( s -> -porSurtidor[ s ] ).thenComparingInt( s -> s ) ).limit( 10 ).mapToInt( Integer::intValue ).toArray( );
+        assertArrayEquals( esperados, reporte.getMejoresSurtidores( ), "El ranking de surtidores no coincide con el ordenamiento completo" );
+
+        int[] empleadosEsperados = IntStream.range( 0, estado.getCantidadEmpleados( ) ).boxed( )
+                .sorted( Comparator.<Integer> comparingInt( e -> -estado.getCantidadDinero( e ) ).thenComparingInt( e -> e ) ).limit( 10 ).mapToInt( Integer::intValue )
+                .toArray( );
+        assertArrayEquals( empleadosEsperados, reporte.getMejoresEmpleados( ), "El ranking de empleados no coincide con el ordenamiento completo" );
+    }
+}
@@ -0,0 +1,243 @@
+package uniandes.dpoo.gasolinera.tests;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import uniandes.dpoo.gasolinera.concurrencia.RuedaVencimientos;
+import uniandes.dpoo.gasolinera.logica.Gasolinera;
+import uniandes.dpoo.gasolinera.logica.ReservaGasolina;
+import uniandes.dpoo.gasolinera.logica.TipoGasolina;
+
+public class ReservasTest
+{
+    private static final String CORRIENTE = "corriente";
+
+    private Gasolinera gasolinera;
+
+    private int idCorriente;
+
+    private TipoGasolina corriente;
+
+    @BeforeEach
+    void setUp( ) throws Exception
+    {
+        List<TipoGasolina> tipos = new LinkedList<TipoGasolina>( );
+        tipos.add( new TipoGasolina( CORRIENTE, 10000, 100 ) );
+        gasolinera = new Gasolinera( 4, tipos, new String[]{ "Alice", "Bob" }, 42 );
+        idCorriente = gasolinera.getIdTipoGasolina( CORRIENTE );
+        corriente = gasolinera.getTipoGasolina( idCorriente );
+    }
+
+    @Test
+    public void testConfirmarReserva( )
+    {
+        ReservaGasolina reserva = gasolinera.reservarGasolina( idCorriente, 200000, 1 );
+        assertEquals( 20, reserva.getGalonesReservados( ), 0.001, "Se deberían reservar los galones que alcanza a pagar el cliente" );
+        assertEquals( 80, corriente.getCantidadDisponible( ), 0.001, "La gasolina reservada no debería estar disponible" );
+        assertEquals( 20, corriente.getCantidadReservada( ), 0.001, "La gasolina reservada no se contó" );
+
+        // El precio queda fijo en la reserva aunque cambie antes de confirmarla
+        gasolinera.cambiarPrecio( idCorriente, 20000 );
+        assertEquals( 150000, gasolinera.confirmarReserva( reserva.getId( ), 15 ), "Se debería cobrar lo entregado con el precio de la reserva" );
+        assertEquals( ReservaGasolina.EstadoReserva.CONFIRMADA, reserva.getEstado( ), "La reserva debería quedar confirmada" );
+        assertEquals( 85, corriente.getCantidadDisponible( ), 0.001, "Lo que sobró de la reserva debería volver al inventario" );
+        assertEquals( 0, corriente.getCantidadReservada( ), 0.001, "No deberían quedar galones reservados" );
+        assertEquals( 15, gasolinera.getTotalGalonesVendidos( idCorriente ), 0.001, "La venta no quedó registrada en el surtidor" );
+
+        assertThrows( IllegalStateException.class, ( ) -> gasolinera.confirmarReserva( reserva.getId( ), 1 ), "Una reserva no se debería poder confirmar dos veces" );
+        assertFalse( gasolinera.liberarReserva( reserva.getId( ) ), "Una reserva confirmada no se debería poder liberar" );
+    }
+
+    @Test
+    public void testLiberarReserva( )
+    {
+        ReservaGasolina reserva = gasolinera.reservarGasolina( idCorriente, 300000, 0 );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.confirmarReserva( reserva.getId( ), 31 ), "No se puede entregar más de lo reservado" );
+        assertTrue( gasolinera.liberarReserva( reserva.getId( ) ), "La reserva debería liberarse" );
+        assertEquals( 100, corriente.getCantidadDisponible( ), 0.001, "La gasolina debería volver al inventario" );
+        assertNull( gasolinera.getReserva( reserva.getId( ) ), "La reserva liberada no debería seguir abierta" );
+        assertEquals( 0, gasolinera.getTotalGalonesVendidos( idCorriente ), 0.001, "Una reserva liberada no es una venta" );
+    }
+
+    @Test
+    public void testReservasNoSobrevenden( ) throws Exception
+    {
+        // 8 threads reservan 10 galones 100 veces cada uno, pero sólo hay 100 galones: cuando se acaba la gasolina las reservas se rechazan
+        List<ReservaGasolina> todas = new ArrayList<ReservaGasolina>( );
+        AtomicInteger rechazadas = new AtomicInteger( );
+        Thread[] clientes = new Thread[8];
+        for( int t = 0; t < clientes.length; t++ )
+        {
+            final int surtidor = t % 4;
+            clientes[ t ] = new Thread( ( ) -> {
+                List<ReservaGasolina> propias = new ArrayList<ReservaGasolina>( );
+                for( int i = 0; i < 100; i++ )
+                {
+                    try
+                    {
+                        propias.add( gasolinera.reservarGasolina( idCorriente, 100000, surtidor ) );
+                    }
+                    catch( IllegalStateException e )
+                    {
+                        rechazadas.incrementAndGet( );
+                    }
+                }
+                synchronized( todas )
+                {
+                    todas.addAll( propias );
+                }
+            } );
+            clientes[ t ].start( );
+        }
+        for( Thread cliente : clientes )
+        {
+            cliente.join( );
+        }
+
+        double reservado = 0;
+        for( ReservaGasolina reserva : todas )
+        {
+            reservado += reserva.getGalonesReservados( );
+        }
+        assertEquals( 100, reservado, 0.001, "Las reservas deberían sumar exactamente el inventario" );
+        assertEquals( 0, corriente.getCantidadDisponible( ), 0.001, "No debería quedar gasolina disponible" );
+        assertEquals( 10, todas.size( ), "Sólo deberían abrirse las reservas que alcanzaron gasolina" );
+        assertEquals( 790, rechazadas.get( ), "Las reservas sin gasolina deberían rechazarse" );
+        assertEquals( 10, gasolinera.getCantidadReservasAbiertas( ), "Todas las reservas aceptadas deberían estar abiertas" );
+
+        for( ReservaGasolina reserva : todas )
+        {
+            gasolinera.confirmarReserva( reserva.getId( ), reserva.getGalonesReservados( ) / 2 );
+        }
+        assertEquals( 50, corriente.getCantidadDisponible( ), 0.001, "Lo que no se entregó debería volver al inventario" );
+        assertEquals( 50, gasolinera.getTotalGalonesVendidos( idCorriente ), 0.001, "Las ventas no cuadran con lo entregado" );
+    }
+
+    @Test
+    public void testVencerReservas( ) throws Exception
+    {
+        gasolinera.configurarDuracionReservas( 1, TimeUnit.MILLISECONDS );
+        ReservaGasolina reserva = gasolinera.reservarGasolina( idCorriente, 500000, 2 );
+        assertEquals( 50, corriente.getCantidadDisponible( ), 0.001, "La reserva no apartó la gasolina" );
+
+        // La rueda revisa por segundos: después de un poco más de un segundo la reserva ya debe haber vencido
+        Thread.sleep( 1100 );
+        assertEquals( 1, gasolinera.vencerReservas( ), "La reserva debería vencerse" );
+        assertEquals( ReservaGasolina.EstadoReserva.VENCIDA, reserva.getEstado( ), "La reserva debería quedar vencida" );
+        assertEquals( 100, corriente.getCantidadDisponible( ), 0.001, "La gasolina de la reserva vencida debería volver al inventario" );
+        assertThrows( IllegalStateException.class, ( ) -> gasolinera.confirmarReserva( reserva.getId( ), 1 ), "Una reserva vencida no se puede confirmar" );
+    }
+
+    @Test
+    public void testReservaSinGasolina( )
+    {
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.reservarGasolina( idCorriente, 0, 0 ), "Una reserva sin valor no se debería aceptar" );
+        assertThrows( IllegalArgumentException.class, ( ) -> gasolinera.reservarGasolina( idCorriente, -10000, 0 ), "Una reserva con valor negativo no se debería aceptar" );
+
+        gasolinera.venderGasolinaPorCantidad( idCorriente, 100, 0 );
+        assertThrows( IllegalStateException.class, ( ) -> gasolinera.reservarGasolina( idCorriente, 10000, 0 ), "Sin gasolina no se debería abrir una reserva" );
+        assertEquals( 0, gasolinera.getCantidadReservasAbiertas( ), "No debería quedar ninguna reserva abierta" );
+    }
+
+    @Test
+    public void testGuardarConReservas( ) throws Exception
+    {
+        gasolinera.reservarGasolina( idCorriente, 300000, 0 );
+        assertEquals( 30, gasolinera.tomarInstantanea( ).getCantidadReservada( idCorriente ), 0.001, "La instantánea debería tener la gasolina reservada" );
+
+        // Las reservas no se guardan: la gasolina reservada se guarda como disponible para que no se pierda
+        File archivo = File.createTempFile( "reservas", ".txt" );
+        archivo.deleteOnExit( );
+        gasolinera.guardarEstado( archivo );
+        assertEquals( 100, Gasolinera.cargarEstado( archivo ).getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001, "Se perdió la gasolina reservada" );
+        gasolinera.guardarEstadoBinario( archivo, true );
+        assertEquals( 100, Gasolinera.cargarEstadoBinario( archivo ).getTipoGasolina( CORRIENTE ).getCantidadDisponible( ), 0.001,
+                "Se perdió la gasolina reservada en el formato binario" );
+    }
+
+    @Test
+    public void testRuedaVencimientos( )
+    {
+        RuedaVencimientos<String> rueda = new RuedaVencimientos<String>( 4, 10, 0 );
+        rueda.agregar( "a", 5 );
+        rueda.agregar( "b", 25 );
+        rueda.agregar( "c", 95 );
+        List<String> vencidos = new ArrayList<String>( );
+
+        assertEquals( 0, rueda.avanzar( 4, vencidos::add ), "Nada debería vencer antes de tiempo" );
+        assertEquals( 1, rueda.avanzar( 12, vencidos::add ), "Sólo debería vencer el primero" );
+        assertEquals( 1, rueda.avanzar( 30, vencidos::add ), "Debería vencer el segundo" );
+        // El tercero está a más de una vuelta de la rueda: no debe vencer cuando su ranura pasa por primera vez
+        assertEquals( 0, rueda.avanzar( 60, vencidos::add ), "El tercero vence en una vuelta posterior" );
+        assertEquals( 1, rueda.avanzar( 1000, vencidos::add ), "Después de varias vueltas debería vencer el tercero" );
+        assertEquals( List.of( "a", "b", "c" ), vencidos, "Los elementos deberían vencer en orden" );
+
+        // La acción se ejecuta después de la revisión, así que puede volver a usar la rueda
+        rueda.agregar( "d", 1005 );
+        rueda.agregar( "e", 1100 );
+        assertEquals( 1, rueda.avanzar( 1010, d -> {
+            vencidos.add( d );
+            assertEquals( 1, rueda.avanzar( 1200, vencidos::add ), "La revisión desde la acción debería vencer el quinto" );
+        } ), "Debería vencer el cuarto" );
+        assertEquals( 0, rueda.avanzar( 1300, vencidos::add ), "No deberían quedar elementos" );
+        assertEquals( List.of( "a", "b", "c", "d", "e" ), vencidos, "Todos los elementos deberían vencer" );
+    }
+
+    @Test
+    public void testRuedaVencimientosConcurrente( ) throws Exception
+    {
+        // La rueda no alcanza a dar una vuelta completa, así que un elemento que quede en una ranura ya revisada no vencería nunca
+        int turnos = 50000;
+        RuedaVencimientos<Integer> rueda = new RuedaVencimientos<Integer>( 1 << 16, 10, 0 );
+        AtomicLong reloj = new AtomicLong( );
+        AtomicInteger vencidos = new AtomicInteger( );
+        Thread revisor = new Thread( ( ) -> {
+            for( int turno = 1; turno <= turnos; turno++ )
+            {
+                reloj.set( turno * 10L );
+                vencidos.addAndGet( rueda.avanzar( turno * 10L, elemento -> {
+                } ) );
+            }
+        } );
+
+        int porThread = 20000;
+        Thread[] threads = new Thread[4];
+        for( int i = 0; i < threads.length; i++ )
+        {
+            threads[ i ] = new Thread( ( ) -> {
+                for( int j = 0; j < porThread; j++ )
+                {
+                    rueda.agregar( j, reloj.get( ) );
+                }
+            } );
+        }
+        revisor.start( );
+        for( Thread thread : threads )
+        {
+            thread.start( );
+        }
+        for( Thread thread : threads )
+        {
+            thread.join( );
+        }
+        revisor.join( );
+
+        vencidos.addAndGet( rueda.avanzar( reloj.get( ) + 20, elemento -> {
+        } ) );
+        assertEquals( porThread * threads.length, vencidos.get( ), "Todos los elementos deberían vencer en la siguiente revisión" );
+    }
+}
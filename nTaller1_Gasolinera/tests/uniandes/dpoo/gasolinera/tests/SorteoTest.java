@@ -1,10 +1,15 @@
 package uniandes.dpoo.gasolinera.tests;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
 import org.junit.jupiter.api.RepeatedTest;
 import org.junit.jupiter.api.Test;
 
@@ -103,4 +108,72 @@ class SorteoTest
 
         assertEquals( promedioEsperado, promedio, promedioEsperado * 0.15, "No debería haber más de un 15% de diferencia en la cantidad de veces que apareció cada valor" );
     }
+
+    @Test
+    public void testReproducible( )
+    {
+        Sorteo<Integer> sorteo1 = new Sorteo<Integer>( 1234 );
+        Sorteo<Integer> sorteo2 = new Sorteo<Integer>( 1234 );
+
+        int[] posiciones1 = new int[1000];
+        int[] posiciones2 = new int[1000];
+        sorteo1.llenarPosiciones( posiciones1, 17 );
+        sorteo2.llenarPosiciones( posiciones2, 17 );
+        assertArrayEquals( posiciones1, posiciones2, "Con la misma semilla los sorteos deberían ser iguales" );
+
+        // Las divisiones de dos sorteos iguales también deben ser iguales entre sí
+        Sorteo<Integer> division1 = sorteo1.dividir( );
+        Sorteo<Integer> division2 = sorteo2.dividir( );
+        division1.llenarPosiciones( posiciones1, 17 );
+        division2.llenarPosiciones( posiciones2, 17 );
+        assertArrayEquals( posiciones1, posiciones2, "Las divisiones de sorteos con la misma semilla deberían ser iguales" );
+        for( int posicion : posiciones1 )
+        {
+            assertTrue( posicion >= 0 && posicion < 17, "La posición está fuera del rango" );
+        }
+    }
+
+    @Test
+    public void testPonderado( )
+    {
+        Sorteo<String> sorteo = new Sorteo<String>( 99 );
+        String[] opciones = new String[]{ A, B, "C" };
+        double[] pesos = new double[]{ 1, 3, 0 };
+
+        Sorteo.TablaPesos tabla = new Sorteo.TablaPesos( pesos );
+        int[] posiciones = new int[40000];
+        sorteo.llenarPosicionesPonderadas( posiciones, tabla );
+
+        int[] histograma = new int[3];
+        for( int posicion : posiciones )
+        {
+            histograma[ posicion ] += 1;
+        }
+        assertEquals( 0, histograma[ 2 ], "Una opción con peso 0 nunca debería quedar seleccionada" );
+        assertEquals( 3.0, histograma[ 1 ] / ( double )histograma[ 0 ], 0.3, "La opción B debería aparecer tres veces más que la opción A" );
+
+        for( int i = 0; i < 100; i++ )
+        {
+            assertNotEquals( "C", sorteo.seleccionarPonderado( opciones, pesos ), "Una opción con peso 0 nunca debería quedar seleccionada" );
+        }
+    }
+
+    @Test
+    public void testSinReemplazo( )
+    {
+        Sorteo<Integer> sorteo = new Sorteo<Integer>( 7 );
+        Integer[] opciones = new Integer[50];
+        for( int i = 0; i < opciones.length; i++ )
+        {
+            opciones[ i ] = i;
+        }
+
+        Integer[] seleccionados = sorteo.seleccionarSinReemplazo( opciones, 20 );
+        assertEquals( 20, seleccionados.length, "La cantidad de elementos seleccionados es incorrecta" );
+        Set<Integer> distintos = new HashSet<Integer>( Arrays.asList( seleccionados ) );
+        assertEquals( 20, distintos.size( ), "No debería haber elementos repetidos" );
+
+        Integer[] todos = sorteo.seleccionarSinReemplazo( opciones, 50 );
+        assertEquals( 50, new HashSet<Integer>( Arrays.asList( todos ) ).size( ), "Al seleccionar todos deberían aparecer todos los elementos" );
+    }
 }
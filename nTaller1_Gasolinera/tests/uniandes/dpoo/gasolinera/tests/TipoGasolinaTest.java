@@ -1,12 +1,16 @@
 package uniandes.dpoo.gasolinera.tests;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 import static org.junit.jupiter.api.Assertions.fail;
 
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import uniandes.dpoo.gasolinera.exceptions.GasolinaInsuficienteException;
+import uniandes.dpoo.gasolinera.inventario.DespachoEnOrden;
+import uniandes.dpoo.gasolinera.inventario.DespachoMasLleno;
+import uniandes.dpoo.gasolinera.inventario.DespachoRepartido;
 import uniandes.dpoo.gasolinera.logica.TipoGasolina;
 
 class TipoGasolinaTest
@@ -87,4 +91,87 @@ class TipoGasolinaTest
         assertEquals( CANTIDAD_CORRIENTE - ( 3 * CANTIDAD_VENTA ), tipoCorriente.getCantidadDisponible( ), 0.001, "La venta fallida no debió actualizar el inventario de gasolina" );
     }
 
+    @Test
+    public void testCambiarPrecio( )
+    {
+        assertEquals( 0, tipoCorriente.getVersionPrecio( ), "La versión inicial del precio debería ser 0" );
+        assertEquals( 1, tipoCorriente.cambiarPrecio( 12000 ), "La versión debería aumentar con cada cambio de precio" );
+        assertEquals( 2, tipoCorriente.cambiarPrecio( 11000 ), "La versión debería aumentar con cada cambio de precio" );
+
+        long precioVersionado = tipoCorriente.getPrecioVersionado( );
+        assertEquals( 11000, TipoGasolina.precioDe( precioVersionado ), "El precio empacado no es correcto" );
+        assertEquals( 2, TipoGasolina.versionDe( precioVersionado ), "La versión empacada no es correcta" );
+        assertEquals( 11000, tipoCorriente.getPrecioPorGalon( ), "El precio no cambió" );
+        assertThrows( IllegalArgumentException.class, ( ) -> tipoCorriente.cambiarPrecio( -1 ), "Un precio negativo no debería aceptarse" );
+        assertThrows( IllegalArgumentException.class, ( ) -> tipoCorriente.cambiarPrecio( 0 ), "Un precio de 0 no debería aceptarse" );
+        assertEquals( 11000, tipoCorriente.getPrecioPorGalon( ), "Un precio rechazado no debería cambiar el precio" );
+    }
+
+    @Test
+    public void testVariosTanques( )
+    {
+        TipoGasolina tipo = new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, new double[]{ 10, 30, 20 }, new DespachoMasLleno( ) );
+        assertEquals( 60, tipo.getCantidadDisponible( ), 0.001, "La cantidad disponible debería ser la suma de los tanques" );
+
+        assertEquals( 25, tipo.despacharDisponible( 25 ), 0.001, "La venta debería salir completa del tanque más lleno" );
+        assertEquals( 5, tipo.getTanque( 1 ).getCantidad( ), 0.001, "La venta debería haber salido del tanque más lleno" );
+
+        // Una venta que no cabe en un tanque se completa con los demás
+        assertEquals( 30, tipo.despacharDisponible( 30 ), 0.001, "La venta debería completarse entre varios tanques" );
+        assertEquals( 5, tipo.getCantidadDisponible( ), 0.001, "La cantidad disponible no es correcta" );
+
+        // Igual que con un solo tanque, si no alcanza se entrega todo lo que haya
+        assertEquals( 5, tipo.despacharDisponible( 8 ), 0.001, "Se debería entregar todo lo que queda en los tanques" );
+        assertEquals( 0, tipo.getCantidadDisponible( ), 0.001, "Los tanques deberían quedar vacíos" );
+
+        assertEquals( 12, tipo.recargar( 12 ), 0.001, "La recarga no se sumó" );
+        assertThrows( GasolinaInsuficienteException.class, ( ) -> tipo.despacharGasolina( 13 ), "No debería alcanzar la gasolina" );
+        assertEquals( 12, tipo.getCantidadDisponible( ), 0.001, "La venta fallida no debió actualizar el inventario" );
+    }
+
+    @Test
+    public void testPoliticasDespacho( ) throws Exception
+    {
+        TipoGasolina enOrden = new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, new double[]{ 10, 10 }, new DespachoEnOrden( ) );
+        enOrden.despacharGasolina( 4 );
+        assertEquals( 6, enOrden.getTanque( 0 ).getCantidad( ), 0.001, "Se debería sacar primero del primer tanque" );
+        assertEquals( 10, enOrden.getTanque( 1 ).getCantidad( ), 0.001, "El segundo tanque no se debería tocar" );
+
+        enOrden.recargarTanque( 1, 5 );
+        assertEquals( 15, enOrden.getTanque( 1 ).getCantidad( ), 0.001, "La recarga debería ir al tanque indicado" );
+        enOrden.recargar( 1 );
+        assertEquals( 7, enOrden.getTanque( 0 ).getCantidad( ), 0.001, "La recarga debería ir al tanque con menos gasolina" );
+    }
+
+    @Test
+    public void testVentasConcurrentesEnTanques( ) throws Exception
+    {
+        TipoGasolina tipo = new TipoGasolina( CORRIENTE, VALOR_CORRIENTE, new double[]{ 1000, 1000, 1000, 1000 }, new DespachoRepartido( ) );
+        double[] entregado = new double[8];
+        Thread[] vendedores = new Thread[entregado.length];
+        for( int t = 0; t < vendedores.length; t++ )
+        {
+            final int vendedor = t;
+            vendedores[ t ] = new Thread( ( ) -> {
+                for( int i = 0; i < 5000; i++ )
+                {
+                    entregado[ vendedor ] += tipo.despacharDisponible( 0.25 );
+                }
+            } );
+            vendedores[ t ].start( );
+        }
+        for( Thread vendedor : vendedores )
+        {
+            vendedor.join( );
+        }
+
+        // Se pidieron 10000 galones pero sólo había 4000: se deben entregar exactamente los 4000
+        double total = 0;
+        for( double cantidad : entregado )
+        {
+            total += cantidad;
+        }
+        assertEquals( 4000, total, 0.001, "Se entregó gasolina de más o de menos" );
+        assertEquals( 0, tipo.getCantidadDisponible( ), 0.001, "Los tanques deberían quedar vacíos" );
+    }
 }